@@ -1,10 +1,14 @@
 package raycast;
 
 import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
 import javafx.beans.property.BooleanProperty;
 import javafx.beans.property.IntegerProperty;
 import javafx.beans.property.SimpleBooleanProperty;
 import javafx.beans.property.SimpleIntegerProperty;
+import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
 import javafx.event.Event;
 import javafx.event.EventHandler;
 import javafx.event.EventType;
@@ -14,10 +18,24 @@ import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.input.MouseEvent;
 import javafx.scene.paint.Color;
 import raycast.animator.AbstractAnimator;
+import raycast.engine.DirectionTable;
+import raycast.engine.SegmentBuffer;
+import raycast.engine.ShapeQuadtree;
+import raycast.engine.ShapeStore;
+import raycast.entity.Light;
 import raycast.entity.geometry.PolyShape;
-
-import java.util.ArrayList;
+import raycast.io.SceneFile;
+import raycast.io.ShapeImporter;
+import raycast.render.FxRenderer;
+import raycast.render.Renderer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
 
 /**
  * this class represents the drawing area. it is backed by {@link Canvas} class.
@@ -29,6 +47,11 @@ import java.util.List;
  */
 public class CanvasMap {
 
+    /**
+     * batches of imported shapes that may wait for the FX thread before the import waits for them
+     */
+    private static final int IMPORT_BATCHES_PENDING = 4;
+
     /**
      * <p>
      * create a {@link Canvas} object call board. it provides the tools to draw in JavaFX. this is also a {@link Node}
@@ -38,6 +61,11 @@ public class CanvasMap {
      */
     private Canvas board;
 
+    /**
+     * {@link FxRenderer} drawing on {@link CanvasMap#board}, animators draw through it
+     */
+    private FxRenderer renderer;
+
     /**
      * create a {@link AbstractAnimator} called animator. {@link AnimationTimer} provides
      * most common functionally needed to draw animations of ray casting.
@@ -47,7 +75,44 @@ public class CanvasMap {
     /**
      * list of shapes
      */
-    private List<PolyShape> shapes;
+    private ObservableList<PolyShape> shapes;
+
+    /**
+     * number of times {@link CanvasMap#shapes} has been changed
+     */
+    private int shapesModCount;
+
+    /**
+     * number of changes to {@link CanvasMap#shapes}, their points or their style, set on every shape of the list
+     * as {@link PolyShape#setOnChange(Runnable)}
+     */
+    private long shapesVersion;
+    private final Runnable shapeChanged = () -> shapesVersion++;
+
+    /**
+     * every edge of {@link CanvasMap#shapes} plus canvas borders, rebuilt only when they change
+     */
+    private SegmentBuffer segments;
+
+    /**
+     * shapes that are drawn and cast against but not edited, kept off the heap. null if there are none
+     */
+    private ShapeStore store;
+
+    /**
+     * scene file {@link CanvasMap#store} is read from, null if the store is not from a file
+     */
+    private SceneFile scene;
+
+    /**
+     * {@link CanvasMap#shapes} by their bounds, shapes are added and removed with the list
+     */
+    private ShapeQuadtree shapeIndex;
+
+    /**
+     * lights of the scene, used by animators that draw more than the light at the mouse
+     */
+    private ObservableList<Light> lights;
 
     /**
      * <p>
@@ -76,6 +141,15 @@ public class CanvasMap {
         return rayCount;
     }
 
+    /**
+     * directions of {@link CanvasMap#getRayCount()} evenly spread rays, rebuilt only when ray count changes.
+     */
+    private DirectionTable directions;
+
+    public DirectionTable directions() {
+        return directions;
+    }
+
     /**
      * <p>
      * create a set of {@link BooleanProperty}s to track some drawing options.<br>
@@ -145,21 +219,73 @@ public class CanvasMap {
         return drawFPS;
     }
 
+    /**
+     * if true animators compute and record the next frame on a worker thread while the JavaFX thread draws the
+     * last one, which shows every frame one pulse later
+     */
+    private BooleanProperty pipelined;
+
+    public boolean getPipelined() {
+        return pipelined.get();
+    }
+
+    public BooleanProperty pipelinedProperty() {
+        return pipelined;
+    }
+
+    /**
+     * if true the lit area is rasterized into pixels with the light fading by distance and drawn as one image,
+     * instead of filled as a polygon by the canvas
+     */
+    private BooleanProperty pixelLight;
+
+    public boolean getPixelLight() {
+        return pixelLight.get();
+    }
+
+    public BooleanProperty pixelLightProperty() {
+        return pixelLight;
+    }
+
     /**
      * create a constructor and initialize all class variables.
      */
     public CanvasMap() {
         rayCount = new SimpleIntegerProperty();
+        directions = new DirectionTable(rayCount);
         drawBounds = new SimpleBooleanProperty();
         drawFPS = new SimpleBooleanProperty();
         drawIntersectPoint = new SimpleBooleanProperty();
         drawLightSource = new SimpleBooleanProperty();
         drawShapeJoints = new SimpleBooleanProperty();
         drawSectors = new SimpleBooleanProperty();
+        pipelined = new SimpleBooleanProperty();
+        pixelLight = new SimpleBooleanProperty();
 
         board = new Canvas();
-
-        shapes = new ArrayList<>(20);
+        renderer = new FxRenderer(board.getGraphicsContext2D());
+
+        shapes = FXCollections.observableArrayList();
+        lights = FXCollections.observableArrayList();
+        segments = new SegmentBuffer();
+        shapeIndex = new ShapeQuadtree(0, 0, w(), h());
+        shapes.addListener((ListChangeListener<PolyShape>) c -> {
+            shapesModCount++;
+            shapesVersion++;
+            while (c.next()) {
+                for (PolyShape shape : c.getRemoved()) {
+                    shapeIndex.remove(shape);
+                    // a shape may be in the list more than once
+                    if (shape.getOnChange() == shapeChanged && !shapes.contains(shape)) {
+                        shape.setOnChange(null);
+                    }
+                }
+                for (PolyShape shape : c.getAddedSubList()) {
+                    shapeIndex.insert(shape);
+                    shape.setOnChange(shapeChanged);
+                }
+            }
+        });
     }
     /**
      * create the property class variables functions here
@@ -279,6 +405,15 @@ public class CanvasMap {
         return board.getGraphicsContext2D();
     }
 
+    /**
+     * get the {@link Renderer} that draws on the {@link GraphicsContext} of {@link Canvas}.
+     *
+     * @return {@link Renderer} of {@link Canvas}
+     */
+    public Renderer renderer() {
+        return renderer;
+    }
+
     /**
      * create a method called h.
      * get the height of the map, {@link Canvas#getHeight()}
@@ -307,6 +442,159 @@ public class CanvasMap {
         return shapes;
     }
 
+    /**
+     * getter method for lights, read on the FX thread
+     *
+     * @return list of {@link Light}
+     */
+    public List<Light> lights() {
+        return lights;
+    }
+
+    /**
+     * get the number of times the shape list has been changed, changes to points of a shape are counted by
+     * {@link PolyShape#getModCount()}
+     *
+     * @return modification count of shape list
+     */
+    public int getShapesModCount() {
+        return shapesModCount;
+    }
+
+    /**
+     * get a number that grows whenever the shape list, the points of a shape, the style of a shape or the
+     * {@link CanvasMap#store()} change, so anything drawn from the shapes is stale when it is different from the
+     * value it was drawn with. it is counted as the changes happen and costs nothing to read.
+     *
+     * @return version of everything drawn by the shapes
+     */
+    public long getShapesVersion() {
+        return shapesVersion;
+    }
+
+    /**
+     * set shapes that are drawn under {@link CanvasMap#shapes()} and that the rays of
+     * {@link raycast.animator.RayCastAnimator} are cast against straight from their columns. the store is read
+     * on the thread that casts, it must not change while it is set. the sweep and
+     * {@link raycast.animator.LightsAnimator} only see the edges of {@link CanvasMap#segments()}, their light
+     * passes through the store.
+     *
+     * @param store - {@link ShapeStore} to show, null for none
+     * @return the current instance of this object
+     */
+    public CanvasMap setStore(ShapeStore store) {
+        if (scene != null && scene.store() != store) {
+            scene = null;
+        }
+        this.store = store;
+        shapesVersion++;
+        return this;
+    }
+
+    /**
+     * @return shapes drawn and cast against but not edited, null if there are none
+     */
+    public ShapeStore store() {
+        return store;
+    }
+
+    /**
+     * get every edge of the scene plus the canvas borders, rebuilt first if shapes or canvas size changed
+     *
+     * @return up to date {@link SegmentBuffer}
+     */
+    public SegmentBuffer segments() {
+        segments.update(shapes, shapesModCount, w(), h());
+        return segments;
+    }
+
+    /**
+     * get the shapes by their bounds for region, point and ray queries, shapes whose points changed are moved
+     * first
+     *
+     * @return up to date {@link ShapeQuadtree}
+     */
+    public ShapeQuadtree shapeIndex() {
+        shapeIndex.update();
+        return shapeIndex;
+    }
+
+    /**
+     * read shapes from a SVG or WKT file on a background thread and add them to {@link CanvasMap#shapes} batch
+     * by batch on the FX thread, so the scene fills in while the file is read. only a few batches wait for the
+     * FX thread at any time, a slow frame holds the reading back instead of queuing the whole file.
+     *
+     * @param path     - file to read
+     * @param importer - {@link ShapeImporter} with the style and progress callback to use
+     * @return number of shapes read, complete once the last batch is queued for the FX thread
+     */
+    public CompletableFuture<Integer> importShapes(Path path, ShapeImporter importer) {
+        Semaphore pending = new Semaphore(IMPORT_BATCHES_PENDING);
+        return importer.readAsync(path, batch -> {
+            pending.acquireUninterruptibly();
+            Platform.runLater(() -> {
+                shapes.addAll(batch);
+                pending.release();
+            });
+        });
+    }
+
+    /**
+     * map a {@link SceneFile} on a background thread and show it with {@link CanvasMap#setScene(SceneFile)} on
+     * the FX thread. only the header and offsets are read here, the shapes are read from the mapping as they are
+     * cast and drawn and are not copied onto the heap.
+     *
+     * @param path - file written by {@link SceneFile#write(Path, List)}
+     * @return number of shapes in the scene, complete once it is queued for the FX thread
+     */
+    public CompletableFuture<Integer> openScene(Path path) {
+        return CompletableFuture.supplyAsync(() -> {
+            SceneFile file;
+            try {
+                file = SceneFile.open(path);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            Platform.runLater(() -> setScene(file));
+            return file.shapeCount();
+        });
+    }
+
+    /**
+     * show an opened scene file in place of the one before, its {@link SceneFile#store()} becomes
+     * {@link CanvasMap#store()} and it is drawn with the style of every shape.
+     *
+     * @param scene - {@link SceneFile} to show, null for none
+     * @return the current instance of this object
+     */
+    public CanvasMap setScene(SceneFile scene) {
+        this.scene = scene;
+        return setStore(scene == null ? null : scene.store());
+    }
+
+    /**
+     * @return scene file shown, null if there is none
+     */
+    public SceneFile scene() {
+        return scene;
+    }
+
+    /**
+     * copy the shapes of the scene file into {@link CanvasMap#shapes()} and stop showing the file, for when they
+     * are to be edited. this is the only time a scene is brought onto the heap.
+     *
+     * @return number of shapes copied
+     */
+    public int editScene() {
+        if (scene == null) {
+            return 0;
+        }
+        List<PolyShape> copies = scene.toShapes();
+        setScene(null);
+        shapes.addAll(copies);
+        return copies.size();
+    }
+
     /**
      * Create a bunch of sample shapes
      */
@@ -323,4 +611,17 @@ public class CanvasMap {
         shapes.add(new PolyShape().randomize(620, 160, 150, 4, 6)
                 .setWidth(5).setStroke(Color.DARKRED).setFill(Color.LIGHTCORAL));
     }
+
+    /**
+     * Create a bunch of dim sample lights of every hue, each shining from a small disc
+     *
+     * @param count - number of lights
+     */
+    public void addSampleLights(int count) {
+        Random random = new Random();
+        for (int i = 0; i < count; i++) {
+            lights.add(new Light(random.nextDouble() * 800, random.nextDouble() * 600, 80 + random.nextDouble() * 120,
+                    Color.hsb(random.nextDouble() * 360, 0.8, 0.5)).setSize(4 + random.nextDouble() * 8));
+        }
+    }
 }
@@ -1,8 +1,11 @@
 package raycast;
 
+import java.io.File;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.beans.property.BooleanProperty;
 import javafx.beans.property.IntegerProperty;
 import javafx.beans.value.ObservableValue;
@@ -11,11 +14,13 @@ import javafx.collections.ObservableList;
 import javafx.event.ActionEvent;
 import javafx.event.EventHandler;
 import javafx.scene.Scene;
+import javafx.scene.control.Alert;
 import javafx.scene.control.Button;
 import javafx.scene.control.CheckMenuItem;
 import javafx.scene.control.ChoiceBox;
 import javafx.scene.control.Label;
 import javafx.scene.control.MenuButton;
+import javafx.scene.control.ProgressBar;
 import javafx.scene.control.Spinner;
 import javafx.scene.control.ToolBar;
 import javafx.scene.input.KeyCode;
@@ -26,10 +31,21 @@ import javafx.scene.layout.HBox;
 import javafx.scene.layout.Pane;
 import javafx.scene.layout.Priority;
 import javafx.scene.paint.Color;
+import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 import raycast.animator.AbstractAnimator;
+import raycast.animator.LightsAnimator;
+import raycast.animator.RayCastAnimator;
 import raycast.animator.StaticShapes;
 import raycast.animator.TextAnimator;
+import raycast.engine.BoundingVolumeHierarchy;
+import raycast.engine.BruteForceCaster;
+import raycast.engine.CastMode;
+import raycast.engine.CoherentCaster;
+import raycast.engine.LaneCaster;
+import raycast.engine.Precision;
+import raycast.io.SceneFile;
+import raycast.io.ShapeImporter;
 
 
 /**
@@ -110,6 +126,16 @@ public class RayCast extends Application{
      */
     private ObservableList<AbstractAnimator> animators;
 
+    /**
+     * progress of the running import, shown in the status bar while a file is imported
+     */
+    private ProgressBar importProgress;
+
+    /**
+     * why the selected animator does not cast as it was set up, empty if it does
+     */
+    private Label animatorStatus;
+
     /**
      * this method is called at the very beginning of the JavaFX application and can be used to initialize
      * all components in the application. however, {@link Scene} and {@link Stage} must not be created in
@@ -121,6 +147,15 @@ public class RayCast extends Application{
         animators = FXCollections.observableArrayList();
         animators.add(new TextAnimator());
         animators.add(new StaticShapes());
+        animators.add(new RayCastAnimator());
+        animators.add(new RayCastAnimator().setMode(CastMode.VERTEX));
+        animators.add(new RayCastAnimator().setMode(CastMode.SWEEP));
+        animators.add(new RayCastAnimator().setCaster(new CoherentCaster(new BoundingVolumeHierarchy())));
+        animators.add(new RayCastAnimator().setCaster(new BruteForceCaster().setPrecision(Precision.FLOAT)));
+        animators.add(new RayCastAnimator().setCaster(new BruteForceCaster().setPrecision(Precision.FIXED)));
+        animators.add(new RayCastAnimator().setCaster(new LaneCaster()));
+        animators.add(new LightsAnimator());
+        animators.add(new LightsAnimator().setSamples(16));
 
         //initialize the board object
         board = new CanvasMap();
@@ -149,9 +184,13 @@ public class RayCast extends Application{
         //animators.forEach(animator -> animator.setCanvas(board));
         for (AbstractAnimator a: animators) {
             a.setCanvas(board);
+            if (a instanceof RayCastAnimator) {
+                ((RayCastAnimator) a).setStatusListener(status -> Platform.runLater(() -> showStatus(a)));
+            }
         }
 
         board.addSampleShapes();
+        board.addSampleLights(200);
 
     }
 
@@ -252,8 +291,11 @@ public class RayCast extends Application{
         CheckMenuItem Joints = createCheckMenuItem("Joints", false, board.drawShapeJointsProperty());
         CheckMenuItem Bounds = createCheckMenuItem("Bounds", false, board.drawBoundsProperty());
         CheckMenuItem Sectors = createCheckMenuItem("Sectors", false, board.drawSectorsProperty());
+        CheckMenuItem Pipeline = createCheckMenuItem("Pipeline", true, board.pipelinedProperty());
+        CheckMenuItem PixelLight = createCheckMenuItem("Pixel Light", true, board.pixelLightProperty());
 
-        MenuButton options = new MenuButton("Options", null, FPS, Intersects, Lights, Joints, Bounds, Sectors);
+        MenuButton options = new MenuButton("Options", null, FPS, Intersects, Lights, Joints, Bounds, Sectors,
+                Pipeline, PixelLight);
 
         //Initialize animatorsBox with the animators list
         animatorsBox = new ChoiceBox<>(animators);
@@ -268,6 +310,7 @@ public class RayCast extends Application{
         animatorsBox.getSelectionModel().selectedItemProperty().addListener(
                 ((observable, oldValue, newValue) -> {
                     board.setAnimator(newValue);
+                    showStatus(newValue);
                 })
         );
 
@@ -276,7 +319,9 @@ public class RayCast extends Application{
         // startButton, stopButton, filler1, rayCount,
         // options, filler2, new Label( "Animators "), animatorsBox
         // return the created ToolBar
-        return new ToolBar(startButton, stopButton, filler1, rayCount, options, filler2, new Label("Animators"), animatorsBox);
+        Button importButton = createButton("Import", e -> importShapes());
+
+        return new ToolBar(startButton, stopButton, importButton, filler1, rayCount, options, filler2, new Label("Animators"), animatorsBox);
     }
 
     /**
@@ -308,7 +353,67 @@ public class RayCast extends Application{
         // create a new ToolBar and as arguments of its constructor pass the create labels to it.
         // there should be 4 labels: new Label( "Mouse: "), mouseCoordLabel, new Label( "Drag: "), dragCoordLabel
         // return the created ToolBar
-        return new ToolBar(new Label( "Mouse: "), mouseCoordLabel, new Label( "Drag: "), dragCoordLabel);
+        // hidden until a file is imported
+        importProgress = new ProgressBar();
+        importProgress.setVisible(false);
+        animatorStatus = new Label();
+
+        return new ToolBar(new Label( "Mouse: "), mouseCoordLabel, new Label( "Drag: "), dragCoordLabel, importProgress,
+                animatorStatus);
+    }
+
+    /**
+     * show in the status bar why the animator does not cast as it was set up, if it is the selected one.
+     *
+     * @param animator - {@link AbstractAnimator} whose status changed
+     */
+    private void showStatus(AbstractAnimator animator) {
+        if (animator != animatorsBox.getValue()) {
+            return;
+        }
+        String status = animator instanceof RayCastAnimator ? ((RayCastAnimator) animator).getStatus() : null;
+        animatorStatus.setText(status == null ? "" : status);
+    }
+
+    /**
+     * ask for a SVG, WKT or scene file and add its shapes to the board while it is read in the background, with
+     * the progress in the status bar.
+     */
+    public void importShapes(){
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle("Import Shapes");
+        chooser.getExtensionFilters().addAll(
+                new FileChooser.ExtensionFilter("SVG and WKT", "*.svg", "*.wkt", "*.txt"),
+                new FileChooser.ExtensionFilter("Scene", "*." + SceneFile.EXTENSION),
+                new FileChooser.ExtensionFilter("All Files", "*.*"));
+        File file = chooser.showOpenDialog(root.getScene().getWindow());
+        if (file == null) {
+            return;
+        }
+        importProgress.setProgress(0);
+        importProgress.setVisible(true);
+        CompletableFuture<Integer> done;
+        if (file.getName().endsWith("." + SceneFile.EXTENSION)) {
+            // a scene file keeps its own style and is shown from the mapped file in place of the one before
+            importProgress.setProgress(ProgressBar.INDETERMINATE_PROGRESS);
+            done = board.openScene(file.toPath());
+        } else {
+            ShapeImporter importer = new ShapeImporter().setStroke(Color.DARKRED).setFill(Color.LIGHTCORAL)
+                    .setProgress((read, total, shapes) -> Platform.runLater(() -> importProgress.setProgress(
+                            total > 0 ? (double) read / total : ProgressBar.INDETERMINATE_PROGRESS)));
+            done = board.importShapes(file.toPath(), importer);
+        }
+        done.whenComplete((count, error) -> Platform.runLater(() -> {
+            importProgress.setVisible(false);
+            if (error != null) {
+                Throwable cause = error;
+                while (cause.getCause() != null) {
+                    cause = cause.getCause();
+                }
+                new Alert(Alert.AlertType.ERROR, "could not import " + file.getName() + ": " + cause.getMessage())
+                        .show();
+            }
+        }));
     }
 
     /**
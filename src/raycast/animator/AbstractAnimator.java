@@ -1,15 +1,21 @@
 package raycast.animator;
 
 import javafx.animation.AnimationTimer;
-import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.input.MouseEvent;
 import javafx.scene.paint.Color;
 import raycast.CanvasMap;
+import raycast.engine.FixedStepClock;
+import raycast.entity.DrawBatch;
 import raycast.entity.FpsCounter;
 import raycast.entity.geometry.PolyShape;
+import raycast.entity.geometry.RectangleBounds;
+import raycast.render.Renderer;
 import utility.Point;
 
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
 /**
  * this class must extend {@link AnimationTimer}. job of this class is to hold common functionality among animators.
@@ -30,6 +36,8 @@ public abstract class AbstractAnimator extends AnimationTimer {
 
     /**
      * this array has in order x, y, scalar of intersect point with ray and scalar of intersect with line segment.
+     * it is shared by every caller of this animator, threads should pass their own array to
+     * {@link AbstractAnimator#getIntersection(double, double, double, double, double, double, double, double, double[])}.
      */
     protected double[] intersectResult;
 
@@ -38,6 +46,46 @@ public abstract class AbstractAnimator extends AnimationTimer {
      */
     private FpsCounter fps;
 
+    /**
+     * runs the simulation of an animator at a fixed rate on its own thread while the animator runs, independent
+     * of pulses. null for animators that only draw what the mouse does, subclasses that simulate create it
+     */
+    protected FixedStepClock clock;
+
+    /**
+     * records frames off the JavaFX thread when pipelined, one frame at a time
+     */
+    private static final Executor RECORDER = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "frame recorder");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * parts of the canvas that change in the frame being computed, only they are cleared and drawn
+     */
+    protected DirtyRegion dirty;
+
+    /**
+     * front is replayed on the canvas while back is recorded, they swap when back is done. pending is true if
+     * front was recorded and not yet replayed.
+     */
+    private Frame front = new Frame(), back = new Frame();
+    private CompletableFuture<Void> recording;
+    private boolean pending;
+
+    /**
+     * bounds and corners of the shapes grouped by style, built once per frame and drawn in every dirty rectangle
+     */
+    private final DrawBatch overlays = new DrawBatch();
+
+    /**
+     * what the last frame was drawn with, any change repaints the whole canvas
+     */
+    private double lastW = -1, lastH = -1;
+    private long lastShapesVersion = -1;
+    private boolean lastBounds, lastJoints, lastFPS;
+
     /**
      * create a protected constructor and initialize the {@link AbstractAnimator#mouse} variable
      */
@@ -63,6 +111,16 @@ public abstract class AbstractAnimator extends AnimationTimer {
      */
     public void setCanvas(CanvasMap map) {
         this.map = map;
+        repaint();
+    }
+
+    /**
+     * make the next frame drawn repaint the whole canvas, not only what changed since the last frame of this
+     * animator. called by {@link AbstractAnimator#start()}, another animator may have drawn on the canvas since.
+     */
+    public void repaint() {
+        lastW = lastH = -1;
+        lastShapesVersion = -1;
     }
 
     /**
@@ -86,44 +144,237 @@ public abstract class AbstractAnimator extends AnimationTimer {
     /**
      * <p>create a method called handle that is inherited from {@link AnimationTimer#handle(long)}.
      * this method is called by JavaFX application, it should not be called directly.</p>
-     * <p>inside of this method call the abstract handle method {@link AbstractAnimator#handle(GraphicsContext, long)}.
-     * {@link GraphicsContext} can be retrieved from {@link CanvasMap#gc()}</p>
+     * <p>inside of this method call {@link AbstractAnimator#render(Renderer, long)} with the {@link Renderer} of
+     * the canvas, which can be retrieved from {@link CanvasMap#renderer()}</p>
      *
      * @param now - current time in nanoseconds, represents the time that this function is called.
      */
     @Override
     public void handle(long now) {
-        GraphicsContext gc = map.gc();
+        render(map.renderer(), now);
+    }
 
-        if (map.getDrawFPS()) {
-            fps.calculateFPS(now);
+    /**
+     * <p>draw a frame of the animator on a {@link Renderer}, the size of the map. called by
+     * {@link AbstractAnimator#handle(long)} for the canvas, or directly with a
+     * {@link raycast.render.SoftwareRenderer} to draw without JavaFX, on any thread as long as one thread draws
+     * at a time. the abstract method {@link AbstractAnimator#handle(Renderer, long)} does the drawing.</p>
+     * <p>a frame is computed by {@link AbstractAnimator#update(long)}, recorded by
+     * {@link AbstractAnimator#record(CommandBuffer, long)} and replayed on the renderer. with
+     * {@link CanvasMap#getPipelined()} the next frame is computed and recorded on a worker thread while this one
+     * is replayed, which shows every frame one pulse later. otherwise all of it happens here.</p>
+     * <p>only the dirty parts of the canvas are drawn. a change of canvas size, shapes or overlays marks the whole
+     * canvas, a new FPS text marks its area and {@link AbstractAnimator#update(long)} marks what the animator
+     * changes. each dirty rectangle is clipped and drawn on its own, a frame without changes draws nothing.</p>
+     *
+     * @param renderer - {@link Renderer} to draw on
+     * @param now      - current time in nanoseconds
+     */
+    public void render(Renderer renderer, long now) {
+        awaitRecording();
+        Frame frame = null;
+        if (pending) {
+            // recorded in the last pulse, or before pipelining was turned off
+            frame = front;
+            pending = false;
+        }
+        if (map.getPipelined()) {
+            Frame next = begin(back, now);
+            recording = CompletableFuture.runAsync(() -> record(next), RECORDER);
+        } else if (frame == null) {
+            frame = begin(front, now);
+            record(frame);
+        }
+        if (frame == null) {
+            return;
         }
 
-        handle(gc, now);
+        DirtyRegion region = frame.dirty;
+        markChanges(region, now);
+        if (region.isEmpty()) {
+            return;
+        }
 
+        overlays.clear(map.w(), map.h());
         if (map.getDrawShapeJoints() || map.getDrawBounds()) {
             for (PolyShape shape : map.shapes()) {
                 if (map.getDrawBounds()) {
-                    shape.getBounds().draw(gc);
+                    shape.getBounds().draw(overlays);
                 }
                 if (map.getDrawShapeJoints()) {
-                    shape.drawCorners(gc);
+                    shape.drawCorners(overlays);
                 }
             }
         }
 
+        for (int i = 0; i < region.size(); i++) {
+            renderer.save();
+            region.clip(renderer, i);
+            frame.commands.replay(renderer);
+            overlays.flush(renderer);
+            if (map.getDrawFPS()) {
+                fps.draw(renderer);
+            }
+            renderer.restore();
+        }
+    }
+
+    /**
+     * start the animator and its {@link AbstractAnimator#clock}, if any. the first frame after a start repaints
+     * the whole canvas.
+     */
+    @Override
+    public void start() {
+        repaint();
+        super.start();
+        if (clock != null) {
+            clock.start();
+        }
+    }
+
+    /**
+     * stop the animator and its {@link AbstractAnimator#clock}, if any. a frame being recorded is finished first
+     * and drawn when it starts again.
+     */
+    @Override
+    public void stop() {
+        super.stop();
+        if (clock != null) {
+            clock.stop();
+        }
+        awaitRecording();
+    }
+
+    /**
+     * @return {@link FixedStepClock} that runs the simulation of this animator, null if it has none
+     */
+    public FixedStepClock getClock() {
+        return clock;
+    }
+
+    /**
+     * wait for the frame being recorded, if any, and make it the next to be replayed.
+     */
+    private void awaitRecording() {
+        if (recording == null) {
+            return;
+        }
+        CompletableFuture<Void> done = recording;
+        recording = null;
+        done.join();
+        Frame recorded = back;
+        back = front;
+        front = recorded;
+        pending = true;
+    }
+
+    /**
+     * get a frame ready to be recorded, on the thread that draws.
+     */
+    private Frame begin(Frame frame, long now) {
+        frame.now = now;
+        frame.dirty.clear(map.w(), map.h());
+        frame.commands.clear();
+        dirty = frame.dirty;
+        prepare(now);
+        return frame;
+    }
+
+    /**
+     * compute and record a frame, on any thread.
+     */
+    private void record(Frame frame) {
+        update(frame.now);
+        record(frame.commands, frame.now);
+    }
+
+    /**
+     * mark what changed outside of the animator since the last frame that was drawn.
+     *
+     * @param region - {@link DirtyRegion} of the frame about to be drawn
+     * @param now    - current time in nanoseconds
+     */
+    private void markChanges(DirtyRegion region, long now) {
+        long shapesVersion = map.getShapesVersion();
+        if (lastW != map.w() || lastH != map.h() || lastShapesVersion != shapesVersion
+                || lastBounds != map.getDrawBounds() || lastJoints != map.getDrawShapeJoints()) {
+            // the frame may have been recorded for another size
+            region.clear(map.w(), map.h());
+            region.addAll();
+        }
+        lastW = map.w();
+        lastH = map.h();
+        lastShapesVersion = shapesVersion;
+        lastBounds = map.getDrawBounds();
+        lastJoints = map.getDrawShapeJoints();
+
+        if (map.getDrawFPS() != lastFPS) {
+            // erase the old text or draw the new one
+            markDirty(region, fps.getBounds());
+        }
         if (map.getDrawFPS()) {
-            fps.draw(gc);
+            RectangleBounds before = fps.getBounds();
+            if (fps.calculateFPS(now)) {
+                markDirty(region, before);
+                markDirty(region, fps.getBounds());
+            }
         }
+        lastFPS = map.getDrawFPS();
+    }
+
+    /**
+     * read what the frame needs from the map and the mouse, called once per frame on the thread that draws, the
+     * JavaFX thread for the canvas, before {@link AbstractAnimator#update(long)}, which may run on another
+     * thread. anything the JavaFX thread may change, such as the shapes, should be read here and not in update.
+     *
+     * @param now - current time in nanoseconds
+     */
+    void prepare(long now) {
+    }
+
+    /**
+     * compute the frame and mark in {@link AbstractAnimator#dirty} what changes on the canvas, called once per
+     * frame before {@link AbstractAnimator#record(CommandBuffer, long)}, on a worker thread if pipelined. changes
+     * of canvas size, shapes and overlays are marked for every animator. by default the whole canvas is marked,
+     * override to mark less.
+     *
+     * @param now - current time in nanoseconds
+     */
+    void update(long now) {
+        dirty.addAll();
+    }
+
+    /**
+     * record the drawing of the frame computed by {@link AbstractAnimator#update(long)}, on a worker thread if
+     * pipelined. the commands are replayed once for every dirty rectangle. by default
+     * {@link AbstractAnimator#handle(Renderer, long)} is called when they are replayed, override to record
+     * the drawing itself and leave less for the thread that draws.
+     *
+     * @param commands - {@link CommandBuffer} to record into, empty
+     * @param now      - current time in nanoseconds
+     */
+    void record(CommandBuffer commands, long now) {
+        commands.defer(renderer -> handle(renderer, now));
     }
 
     /**
      * create a protected abstract method called handle, this method to be overridden by subclasses.
+     * it may be called more than once per frame, once for every dirty rectangle, so it should only draw.
      *
-     * @param gc  - {@link GraphicsContext} object.
-     * @param now - current time in nanoseconds, represents the time that this function is called.
+     * @param renderer - {@link Renderer} object.
+     * @param now      - current time in nanoseconds, represents the time that this function is called.
      */
-    abstract void handle(GraphicsContext gc, long now);
+    abstract void handle(Renderer renderer, long now);
+
+    /**
+     * mark the area of a rectangle as changed.
+     *
+     * @param region - {@link DirtyRegion} to mark in
+     * @param bounds - {@link RectangleBounds} that changed
+     */
+    private static void markDirty(DirtyRegion region, RectangleBounds bounds) {
+        region.add(bounds.x(), bounds.y(), bounds.w(), bounds.h());
+    }
 
     /**
      * return the result of {@link AbstractAnimator#getIntersection} methods calculations
@@ -140,6 +391,10 @@ public abstract class AbstractAnimator extends AnimationTimer {
 
     /**
      * Determine if a light ray and a line segment intersect.
+     * the result is stored in the shared {@link AbstractAnimator#intersectResult} array so this method must not be
+     * called by two threads at the same time, use
+     * {@link AbstractAnimator#getIntersection(double, double, double, double, double, double, double, double, double[])}
+     * for that.
      *
      * @param rsx - light ray start x
      * @param rsy - light ray start y
@@ -155,6 +410,28 @@ public abstract class AbstractAnimator extends AnimationTimer {
      */
     public boolean getIntersection(double rsx, double rsy, double rex, double rey,
                                    double ssx, double ssy, double sex, double sey) {
+        return getIntersection(rsx, rsy, rex, rey, ssx, ssy, sex, sey, intersectResult);
+    }
+
+    /**
+     * Determine if a light ray and a line segment intersect. same as
+     * {@link AbstractAnimator#getIntersection(double, double, double, double, double, double, double, double)}
+     * but the result is stored in the given array, so it touches no shared state and any number of threads can
+     * call it at the same time as long as each uses its own result array.
+     *
+     * @param rsx    - light ray start x
+     * @param rsy    - light ray start y
+     * @param rex    - light ray end x
+     * @param rey    - light ray end y
+     * @param ssx    - line segment start x
+     * @param ssy    - line segment start y
+     * @param sex    - line segment end x
+     * @param sey    - line segment end y
+     * @param result - array of at least 4, filled in order with x, y, scalar of ray and scalar of segment
+     * @return true if intersect and data stored in result array else false.
+     */
+    public static boolean getIntersection(double rsx, double rsy, double rex, double rey,
+                                          double ssx, double ssy, double sex, double sey, double[] result) {
         // given 2 line segments as vectors their intersect will q + tr or p + us where
         // q and p are the starting point in from of (x, y),
         // r and s are the distance of end point to start point in form of ( x2-x1, y2-y1),
@@ -185,22 +462,32 @@ public abstract class AbstractAnimator extends AnimationTimer {
         double rayScaler = -qps / rs;
         double segmentScaler = -qpr / rs;
 
-        intersectResult[0] = rsx + rx * rayScaler;
-        intersectResult[1] = rsy + ry * rayScaler;
-        intersectResult[2] = rayScaler;
-        intersectResult[3] = segmentScaler;
+        result[0] = rsx + rx * rayScaler;
+        result[1] = rsy + ry * rayScaler;
+        result[2] = rayScaler;
+        result[3] = segmentScaler;
 
         return rs != 0 && rayScaler >= 0 && segmentScaler >= 0 && segmentScaler <= 1;
     }
 
     /**
-     * Clear the canvas
-     * @param gc - Graphics Context
+     * Clear the canvas, only the dirty rectangle it is clipped to is touched
+     * @param renderer - Renderer
      * @param background - the background color
      */
-    public void clearAndFill(GraphicsContext gc, Color background) {
-        gc.setFill(background);
-        gc.clearRect(0, 0, map.w(), map.h());
-        gc.fillRect(0, 0, map.w(), map.h());
+    public void clearAndFill(Renderer renderer, Color background) {
+        renderer.setFill(background);
+        renderer.clearRect(0, 0, map.w(), map.h());
+        renderer.fillRect(0, 0, map.w(), map.h());
+    }
+
+    /**
+     * a frame as recorded commands and the parts of the canvas they change
+     */
+    private static final class Frame {
+
+        private final CommandBuffer commands = new CommandBuffer();
+        private final DirtyRegion dirty = new DirtyRegion();
+        private long now;
     }
 }
\ No newline at end of file
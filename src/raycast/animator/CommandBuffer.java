@@ -0,0 +1,233 @@
+package raycast.animator;
+
+import javafx.scene.paint.Color;
+import raycast.render.Renderer;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * a frame recorded as drawing commands, to be replayed on a {@link Renderer} later and on another thread.
+ * commands are kept in three arrays, one op code per command, its numbers in a double array and its colors or
+ * callbacks in an object array. the arrays are kept from one {@link #clear()} to the next, so recording a frame
+ * like the last allocates nothing.
+ *
+ * <p>recording touches nothing but this buffer and may happen on any thread, replaying must happen on the thread
+ * that owns the renderer, the JavaFX thread for a canvas. a buffer must not be recorded and replayed at the same
+ * time.</p>
+ *
+ * @author leon
+ * @since Apr-6-2019
+ */
+public class CommandBuffer {
+
+    private static final byte FILL = 0, STROKE = 1, LINE_WIDTH = 2, BACKGROUND = 3, FILL_POLYGON = 4,
+            STROKE_LINE = 5, FILL_OVAL = 6, DEFER = 7;
+
+    private byte[] ops = new byte[64];
+    private int opCount;
+
+    private double[] args = new double[1024];
+    private int argCount;
+
+    private Object[] refs = new Object[64];
+    private int refCount;
+
+    /**
+     * points of a polygon being replayed, {@link Renderer#fillPolygon} takes x and y apart
+     */
+    private double[] polygonX = new double[0], polygonY = new double[0];
+
+    /**
+     * remove every command.
+     */
+    public void clear() {
+        Arrays.fill(refs, 0, refCount, null);
+        opCount = argCount = refCount = 0;
+    }
+
+    /**
+     * @return number of commands recorded
+     */
+    public int size() {
+        return opCount;
+    }
+
+    /**
+     * record {@link Renderer#setFill}.
+     *
+     * @param color - fill {@link Color}
+     */
+    public void setFill(Color color) {
+        op(FILL);
+        ref(color);
+    }
+
+    /**
+     * record {@link Renderer#setStroke}.
+     *
+     * @param color - stroke {@link Color}
+     */
+    public void setStroke(Color color) {
+        op(STROKE);
+        ref(color);
+    }
+
+    /**
+     * record {@link Renderer#setLineWidth}.
+     *
+     * @param width - line width
+     */
+    public void setLineWidth(double width) {
+        op(LINE_WIDTH);
+        reserve(1);
+        args[argCount++] = width;
+    }
+
+    /**
+     * record clearing the canvas and filling it with a color, see
+     * {@link AbstractAnimator#clearAndFill(Renderer, Color)}. the size of the renderer is taken when replayed.
+     *
+     * @param color - background {@link Color}
+     */
+    public void background(Color color) {
+        op(BACKGROUND);
+        ref(color);
+    }
+
+    /**
+     * record {@link Renderer#fillPolygon}, the points are copied.
+     *
+     * @param x     - x of the points
+     * @param y     - y of the points
+     * @param count - number of points
+     */
+    public void fillPolygon(double[] x, double[] y, int count) {
+        op(FILL_POLYGON);
+        reserve(1 + 2 * count);
+        args[argCount++] = count;
+        System.arraycopy(x, 0, args, argCount, count);
+        System.arraycopy(y, 0, args, argCount + count, count);
+        argCount += 2 * count;
+    }
+
+    /**
+     * record {@link Renderer#strokeLine}.
+     *
+     * @param x1 - x of the start
+     * @param y1 - y of the start
+     * @param x2 - x of the end
+     * @param y2 - y of the end
+     */
+    public void strokeLine(double x1, double y1, double x2, double y2) {
+        op(STROKE_LINE);
+        reserve(4);
+        args[argCount++] = x1;
+        args[argCount++] = y1;
+        args[argCount++] = x2;
+        args[argCount++] = y2;
+    }
+
+    /**
+     * record {@link Renderer#fillOval}.
+     *
+     * @param x - left of the oval
+     * @param y - top of the oval
+     * @param w - width of the oval
+     * @param h - height of the oval
+     */
+    public void fillOval(double x, double y, double w, double h) {
+        op(FILL_OVAL);
+        reserve(4);
+        args[argCount++] = x;
+        args[argCount++] = y;
+        args[argCount++] = w;
+        args[argCount++] = h;
+    }
+
+    /**
+     * record drawing that can only be done on the thread of the renderer, such as copying a JavaFX image, the
+     * callback is called with the renderer when the buffer is replayed.
+     *
+     * @param draw - callback that draws on the {@link Renderer}
+     */
+    public void defer(Consumer<Renderer> draw) {
+        op(DEFER);
+        ref(draw);
+    }
+
+    /**
+     * draw every command in the order it was recorded.
+     *
+     * @param renderer - {@link Renderer} to draw on
+     */
+    @SuppressWarnings("unchecked")
+    public void replay(Renderer renderer) {
+        int a = 0, r = 0;
+        for (int i = 0; i < opCount; i++) {
+            switch (ops[i]) {
+                case FILL:
+                    renderer.setFill((Color) refs[r++]);
+                    break;
+                case STROKE:
+                    renderer.setStroke((Color) refs[r++]);
+                    break;
+                case LINE_WIDTH:
+                    renderer.setLineWidth(args[a++]);
+                    break;
+                case BACKGROUND: {
+                    double w = renderer.getWidth(), h = renderer.getHeight();
+                    renderer.setFill((Color) refs[r++]);
+                    renderer.clearRect(0, 0, w, h);
+                    renderer.fillRect(0, 0, w, h);
+                    break;
+                }
+                case FILL_POLYGON: {
+                    int count = (int) args[a++];
+                    if (polygonX.length < count) {
+                        polygonX = new double[count];
+                        polygonY = new double[count];
+                    }
+                    System.arraycopy(args, a, polygonX, 0, count);
+                    System.arraycopy(args, a + count, polygonY, 0, count);
+                    renderer.fillPolygon(polygonX, polygonY, count);
+                    a += 2 * count;
+                    break;
+                }
+                case STROKE_LINE:
+                    renderer.strokeLine(args[a], args[a + 1], args[a + 2], args[a + 3]);
+                    a += 4;
+                    break;
+                case FILL_OVAL:
+                    renderer.fillOval(args[a], args[a + 1], args[a + 2], args[a + 3]);
+                    a += 4;
+                    break;
+                case DEFER:
+                    ((Consumer<Renderer>) refs[r++]).accept(renderer);
+                    break;
+                default:
+                    throw new IllegalStateException("unknown op " + ops[i]);
+            }
+        }
+    }
+
+    private void op(byte op) {
+        if (opCount == ops.length) {
+            ops = Arrays.copyOf(ops, opCount * 2);
+        }
+        ops[opCount++] = op;
+    }
+
+    private void ref(Object ref) {
+        if (refCount == refs.length) {
+            refs = Arrays.copyOf(refs, refCount * 2);
+        }
+        refs[refCount++] = ref;
+    }
+
+    private void reserve(int length) {
+        if (argCount + length > args.length) {
+            args = Arrays.copyOf(args, Math.max(args.length * 2, argCount + length));
+        }
+    }
+}
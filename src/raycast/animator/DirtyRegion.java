@@ -0,0 +1,200 @@
+package raycast.animator;
+
+import raycast.render.Renderer;
+
+/**
+ * the parts of the canvas that change in a frame, as a few rectangles. rectangles are grown to whole pixels
+ * plus {@link #MARGIN} for anti aliasing and cut to the canvas, overlapping rectangles are merged, and beyond
+ * {@link #MAX_RECTS} a new rectangle is merged into the one it grows least, so a frame repaints a few tight
+ * rectangles instead of one that spans the far corners of the canvas.
+ *
+ * <p>every rectangle is repainted on its own with a rectangular clip, see {@link #clip(Renderer, int)},
+ * JavaFX clips a rectangle cheaply while a clip of many rectangles is drawn as a mask.</p>
+ *
+ * @author leon
+ * @since Apr-4-2019
+ */
+public class DirtyRegion {
+
+    /**
+     * most rectangles kept apart
+     */
+    public static final int MAX_RECTS = 4;
+
+    /**
+     * pixels added on every side of a rectangle for anti aliased edges
+     */
+    public static final double MARGIN = 2;
+
+    private final double[] x0 = new double[MAX_RECTS], y0 = new double[MAX_RECTS];
+    private final double[] x1 = new double[MAX_RECTS], y1 = new double[MAX_RECTS];
+    private int count;
+
+    /**
+     * size of the canvas
+     */
+    private double w, h;
+
+    /**
+     * remove every rectangle and set the size of the canvas for the next frame.
+     *
+     * @param w - width of the canvas
+     * @param h - height of the canvas
+     */
+    public void clear(double w, double h) {
+        this.w = w;
+        this.h = h;
+        count = 0;
+    }
+
+    /**
+     * mark the whole canvas as changed.
+     */
+    public void addAll() {
+        count = 0;
+        add(0, 0, w, h);
+    }
+
+    /**
+     * mark a rectangle as changed.
+     *
+     * @param x - left of the rectangle
+     * @param y - top of the rectangle
+     * @param w - width of the rectangle
+     * @param h - height of the rectangle
+     */
+    public void add(double x, double y, double w, double h) {
+        addBounds(x, y, x + w, y + h);
+    }
+
+    /**
+     * mark the bounds of a polygon as changed.
+     *
+     * @param x     - x of the points
+     * @param y     - y of the points
+     * @param count - number of points
+     * @param pad   - extra space around the points, such as half a stroke width
+     */
+    public void addPolygon(double[] x, double[] y, int count, double pad) {
+        if (count == 0) {
+            return;
+        }
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < count; i++) {
+            minX = Math.min(minX, x[i]);
+            minY = Math.min(minY, y[i]);
+            maxX = Math.max(maxX, x[i]);
+            maxY = Math.max(maxY, y[i]);
+        }
+        addBounds(minX - pad, minY - pad, maxX + pad, maxY + pad);
+    }
+
+    private void addBounds(double left, double top, double right, double bottom) {
+        left = Math.max(0, Math.floor(left - MARGIN));
+        top = Math.max(0, Math.floor(top - MARGIN));
+        right = Math.min(w, Math.ceil(right + MARGIN));
+        bottom = Math.min(h, Math.ceil(bottom + MARGIN));
+        if (!(left < right && top < bottom)) {
+            // empty, outside the canvas or NaN
+            return;
+        }
+        // merge with every rectangle it touches, the merged one may touch more
+        for (int i = 0; i < count; i++) {
+            if (left <= x1[i] && x0[i] <= right && top <= y1[i] && y0[i] <= bottom) {
+                left = Math.min(left, x0[i]);
+                top = Math.min(top, y0[i]);
+                right = Math.max(right, x1[i]);
+                bottom = Math.max(bottom, y1[i]);
+                remove(i);
+                i = -1;
+            }
+        }
+        if (count == MAX_RECTS) {
+            int best = 0;
+            double bestGrowth = Double.POSITIVE_INFINITY;
+            for (int i = 0; i < count; i++) {
+                double growth = (Math.max(right, x1[i]) - Math.min(left, x0[i]))
+                        * (Math.max(bottom, y1[i]) - Math.min(top, y0[i])) - area(i);
+                if (growth < bestGrowth) {
+                    bestGrowth = growth;
+                    best = i;
+                }
+            }
+            double l = Math.min(left, x0[best]), t = Math.min(top, y0[best]);
+            double r = Math.max(right, x1[best]), b = Math.max(bottom, y1[best]);
+            remove(best);
+            // the grown rectangle may now touch others
+            addBounds(l + MARGIN, t + MARGIN, r - MARGIN, b - MARGIN);
+            return;
+        }
+        x0[count] = left;
+        y0[count] = top;
+        x1[count] = right;
+        y1[count++] = bottom;
+    }
+
+    private void remove(int i) {
+        count--;
+        x0[i] = x0[count];
+        y0[i] = y0[count];
+        x1[i] = x1[count];
+        y1[i] = y1[count];
+    }
+
+    private double area(int i) {
+        return (x1[i] - x0[i]) * (y1[i] - y0[i]);
+    }
+
+    /**
+     * @return true if nothing changed
+     */
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    /**
+     * @return number of rectangles
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * @return number of pixels covered by the rectangles
+     */
+    public double area() {
+        double area = 0;
+        for (int i = 0; i < count; i++) {
+            area += area(i);
+        }
+        return area;
+    }
+
+    public double x(int i) {
+        return x0[i];
+    }
+
+    public double y(int i) {
+        return y0[i];
+    }
+
+    public double w(int i) {
+        return x1[i] - x0[i];
+    }
+
+    public double h(int i) {
+        return y1[i] - y0[i];
+    }
+
+    /**
+     * limit drawing to rectangle i, call {@link Renderer#save()} first and
+     * {@link Renderer#restore()} to remove the clip.
+     *
+     * @param renderer - {@link Renderer} to clip
+     * @param i        - index of the rectangle
+     */
+    public void clip(Renderer renderer, int i) {
+        renderer.clipRect(x(i), y(i), w(i), h(i));
+    }
+}
@@ -0,0 +1,73 @@
+package raycast.animator;
+
+/**
+ * position of a light that follows a target, such as the mouse, advanced in fixed steps by a
+ * {@link raycast.engine.FixedStepClock}. each step closes the same part of the distance for the same time step,
+ * so the light moves the same however fast frames are drawn, and frames blend the last two positions.
+ *
+ * <p>steps and frames run on different threads, both methods are synchronized so a frame never sees half a
+ * step.</p>
+ *
+ * @author leon
+ * @since Apr-7-2019
+ */
+public class LightMotion {
+
+    /**
+     * closer than this the light is put on the target, so a still target ends in a still light
+     */
+    private static final double SNAP = 0.01;
+
+    /**
+     * seconds for the light to close all but 1/e of the distance
+     */
+    private final double lag;
+
+    private double prevX = Double.NaN, prevY = Double.NaN, x = Double.NaN, y = Double.NaN;
+
+    /**
+     * @param lag - seconds for the light to close all but 1/e of the distance to the target, 0 to jump to it
+     */
+    public LightMotion(double lag) {
+        this.lag = lag;
+    }
+
+    /**
+     * move the light towards the target, the first step puts it on the target.
+     *
+     * @param targetX - x of the target
+     * @param targetY - y of the target
+     * @param dt      - seconds of the step
+     */
+    public synchronized void step(double targetX, double targetY, double dt) {
+        prevX = x;
+        prevY = y;
+        if (Double.isNaN(x) || lag <= 0) {
+            x = targetX;
+            y = targetY;
+        } else {
+            double follow = 1 - Math.exp(-dt / lag);
+            x += (targetX - x) * follow;
+            y += (targetY - y) * follow;
+            if (Math.abs(targetX - x) < SNAP && Math.abs(targetY - y) < SNAP) {
+                x = targetX;
+                y = targetY;
+            }
+        }
+        if (Double.isNaN(prevX)) {
+            prevX = x;
+            prevY = y;
+        }
+    }
+
+    /**
+     * get the position between the last two steps.
+     *
+     * @param alpha    - 0 for the position before the last step up to 1 for the position after it
+     * @param position - array of at least 2, filled with x and y, NaN before the first step
+     */
+    public synchronized void position(double alpha, double[] position) {
+        position[0] = prevX + (x - prevX) * alpha;
+        position[1] = prevY + (y - prevY) * alpha;
+    }
+}
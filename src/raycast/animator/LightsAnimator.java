@@ -0,0 +1,644 @@
+package raycast.animator;
+
+import javafx.scene.paint.Color;
+import raycast.engine.RayKernel;
+import raycast.engine.SegmentBuffer;
+import raycast.engine.SegmentSplitter;
+import raycast.engine.ShapeQuadtree;
+import raycast.engine.SweepVisibility;
+import raycast.engine.VisibilityPolygon;
+import raycast.entity.Light;
+import raycast.entity.geometry.PolyShape;
+import raycast.render.LightBuffer;
+import raycast.render.Renderer;
+import raycast.render.ScanConverter;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+
+/**
+ * light the scene with a light at the mouse plus every light of {@link raycast.CanvasMap#lights()}, added up per
+ * pixel by a {@link LightBuffer}.
+ *
+ * <p>a light only sees the shapes whose bounds overlap the square of its radius, found in
+ * {@link raycast.CanvasMap#shapeIndex()}, so its visibility is a {@link SweepVisibility} over their edges plus
+ * the 4 sides of the square instead of over the whole scene. every light keeps its own sweep, edges and lit area
+ * and is only computed again when it moved or the scene changed, the lights that need it are computed in
+ * parallel on a {@link ForkJoinPool}. the cost of a frame follows the edges each light reaches and the area it
+ * covers, not the number of lights times the scene.</p>
+ *
+ * <p>a light with a {@link Light#getSize()} casts soft shadows. its disc is sampled at up to
+ * {@link #getSamples()} jittered points, each a light of its own with a share of the color, so the shadow fades
+ * where only part of the disc is hidden. the edges of a light are gathered and split once and shared by all of
+ * its samples, which are swept in parallel. the points follow a low discrepancy sequence, so fewer samples are
+ * the first points of more samples and keep their lit areas. when a frame that moved lights takes longer than
+ * {@link #getBudget()} the samples are cut, and they grow back one by one while frames are well under it.</p>
+ *
+ * @author leon
+ * @since Apr-10-2019
+ */
+public class LightsAnimator extends AbstractAnimator {
+
+    /**
+     * radius of the light at the mouse
+     */
+    private static final double MOUSE_RADIUS = 300;
+
+    /**
+     * radius of the disc of the light at the mouse
+     */
+    private static final double MOUSE_SIZE = 15;
+
+    /**
+     * where no light reaches
+     */
+    private static final Color AMBIENT = Color.gray(0.15);
+
+    /**
+     * light following the mouse, always the first light
+     */
+    private final Light cursor = new Light(0, 0, MOUSE_RADIUS, Color.WHITE).setSize(MOUSE_SIZE);
+
+    /**
+     * pool running the lights and the bands of the {@link LightBuffer}
+     */
+    private ForkJoinPool pool;
+
+    /**
+     * most samples per light with a size, and the samples the budget allows at the moment
+     */
+    private int samples = 1, activeSamples = 1;
+
+    /**
+     * milliseconds a frame may spend on the lights before samples are cut
+     */
+    private double budget = 10;
+
+    /**
+     * one per light, kept between frames so a light that did not move is not computed again
+     */
+    private final List<LightJob> jobs = new ArrayList<>();
+    private int lightCount;
+
+    /**
+     * lights whose edges have to be gathered and samples that have to be swept in the current frame
+     */
+    private final List<LightJob> gathers = new ArrayList<>();
+    private final List<Sample> sweeps = new ArrayList<>();
+
+    /**
+     * compiled edges of the scene in the current frame
+     */
+    private SegmentBuffer buffer;
+    private double frameW, frameH;
+    private boolean drawSource;
+
+    /**
+     * index of every shape in {@link raycast.CanvasMap#shapes()}, which is its index in the {@link SegmentBuffer}
+     */
+    private final Map<PolyShape, Integer> shapeIndices = new IdentityHashMap<>();
+    private int indexedModCount = -1;
+    private final List<PolyShape> found = new ArrayList<>();
+
+    /**
+     * samples on the canvas packed for {@link LightBuffer#composite}
+     */
+    private double[] packed = new double[0];
+    private ScanConverter[] areas = new ScanConverter[0];
+
+    /**
+     * buffers used in turn, one is drawn into while one is shown and JavaFX may still be reading the one before
+     */
+    private final LightBuffer[] buffers = new LightBuffer[3];
+    private final List<Consumer<Renderer>> drawBuffers;
+    private int nextBuffer;
+
+    /**
+     * shapes drawn once and laid over the light every frame until they change
+     */
+    private final ShapeLayer layer = new ShapeLayer();
+    private final Consumer<Renderer> drawShapes = renderer -> layer.draw(renderer, map);
+
+    /**
+     * used to draw the current frame directly
+     */
+    private final CommandBuffer direct = new CommandBuffer();
+
+    /**
+     * edges swept in the last frame, and when its update started
+     */
+    private int sweptEdges;
+    private long updateStart;
+
+    public LightsAnimator() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param parallelism - number of threads used to compute the lights
+     */
+    public LightsAnimator(int parallelism) {
+        super();
+        setParallelism(parallelism);
+        drawBuffers = newBuffers();
+    }
+
+    private List<Consumer<Renderer>> newBuffers() {
+        List<Consumer<Renderer>> draws = new ArrayList<>(buffers.length);
+        for (int i = 0; i < buffers.length; i++) {
+            LightBuffer lights = buffers[i] = new LightBuffer(AMBIENT);
+            draws.add(lights::draw);
+        }
+        return draws;
+    }
+
+    /**
+     * change the number of threads used to compute the lights, the old pool is shutdown.
+     *
+     * @param parallelism - number of threads, at least 1
+     * @return the current instance of this object
+     */
+    public LightsAnimator setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1");
+        }
+        if (pool != null) {
+            pool.shutdown();
+        }
+        pool = new ForkJoinPool(parallelism);
+        return this;
+    }
+
+    /**
+     * @return number of threads used to compute the lights
+     */
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    /**
+     * start the animation, with a new pool if it was stopped before.
+     */
+    @Override
+    public void start() {
+        if (pool.isShutdown()) {
+            pool = new ForkJoinPool(pool.getParallelism());
+        }
+        super.start();
+    }
+
+    /**
+     * stop the animation and shutdown the pool, its threads are not kept while another animator runs.
+     */
+    @Override
+    public void stop() {
+        super.stop();
+        pool.shutdown();
+    }
+
+    /**
+     * choose the quality of soft shadows, the budget starts from it again.
+     *
+     * @param samples - most points sampled on the disc of a light, 1 for hard shadows from its center
+     * @return the current instance of this object
+     */
+    public LightsAnimator setSamples(int samples) {
+        if (samples < 1) {
+            throw new IllegalArgumentException("samples must be at least 1");
+        }
+        this.samples = activeSamples = samples;
+        return this;
+    }
+
+    /**
+     * @return most points sampled on the disc of a light
+     */
+    public int getSamples() {
+        return samples;
+    }
+
+    /**
+     * @return points sampled on the disc of a light in the next frame, cut by {@link #getBudget()}
+     */
+    public int getActiveSamples() {
+        return Math.min(activeSamples, samples);
+    }
+
+    /**
+     * @param budget - milliseconds a frame may spend on the lights before samples are cut, positive or
+     *               {@link Double#POSITIVE_INFINITY} for no limit
+     * @return the current instance of this object
+     */
+    public LightsAnimator setBudget(double budget) {
+        if (!(budget > 0)) {
+            throw new IllegalArgumentException("budget has to be positive: " + budget);
+        }
+        this.budget = budget;
+        return this;
+    }
+
+    /**
+     * @return milliseconds a frame may spend on the lights before samples are cut
+     */
+    public double getBudget() {
+        return budget;
+    }
+
+    /**
+     * @return number of edges swept in the last frame, the edges reached by every sample computed again plus 4
+     * sides of its square
+     */
+    public int getSweptEdges() {
+        return sweptEdges;
+    }
+
+    /**
+     * read the lights, the edges and the shapes each light reaches, which change on the JavaFX thread. lights
+     * that moved, changed or went away mark their old and new square dirty.
+     */
+    @Override
+    void prepare(long now) {
+        buffer = map.segments();
+        frameW = Math.ceil(map.w());
+        frameH = Math.ceil(map.h());
+        drawSource = map.getDrawLightSource();
+        if (indexedModCount != map.getShapesModCount()) {
+            shapeIndices.clear();
+            List<PolyShape> shapes = map.shapes();
+            for (int i = 0; i < shapes.size(); i++) {
+                shapeIndices.put(shapes.get(i), i);
+            }
+            indexedModCount = map.getShapesModCount();
+        }
+        ShapeQuadtree index = map.shapeIndex();
+        cursor.setPosition(mouse.x(), mouse.y());
+        List<Light> lights = map.lights();
+        int count = 1 + lights.size();
+        while (jobs.size() < count) {
+            jobs.add(new LightJob(jobs.size()));
+        }
+        gathers.clear();
+        sweeps.clear();
+        int k = getActiveSamples();
+        for (int i = 0; i < count; i++) {
+            jobs.get(i).prepare(i == 0 ? cursor : lights.get(i - 1), index, k);
+        }
+        for (int i = count; i < lightCount; i++) {
+            jobs.get(i).remove();
+        }
+        lightCount = count;
+    }
+
+    /**
+     * gather and split the edges of the lights that moved, then sweep all of their samples.
+     */
+    @Override
+    void update(long now) {
+        updateStart = System.nanoTime();
+        pool.invoke(new Tasks(gathers, 0, gathers.size()));
+        pool.invoke(new Tasks(sweeps, 0, sweeps.size()));
+        int edges = 0;
+        for (Sample sample : sweeps) {
+            edges += sample.light.splitCount;
+        }
+        sweptEdges = edges;
+    }
+
+    /**
+     * add up the samples on the canvas into the next {@link LightBuffer}, then record it, the shapes and the
+     * optional light sources. only the shapes and the image of the buffer are left to the JavaFX thread.
+     */
+    @Override
+    void record(CommandBuffer commands, long now) {
+        commands.background(AMBIENT);
+        int count = 0;
+        for (int i = 0; i < lightCount; i++) {
+            LightJob job = jobs.get(i);
+            if (!job.visible) {
+                continue;
+            }
+            if (areas.length < count + job.used) {
+                grow(count + job.used);
+            }
+            for (int s = 0; s < job.used; s++) {
+                job.pack(s, packed, count * LightBuffer.STRIDE);
+                areas[count++] = job.samples.get(s).area;
+            }
+        }
+        int i = nextBuffer;
+        nextBuffer = (nextBuffer + 1) % buffers.length;
+        buffers[i].composite((int) frameW, (int) frameH, packed, areas, count, pool);
+        if (!sweeps.isEmpty()) {
+            adapt(System.nanoTime() - updateStart);
+        }
+        commands.defer(drawBuffers.get(i));
+        commands.defer(drawShapes);
+        if (drawSource) {
+            for (int l = 0; l < lightCount; l++) {
+                LightJob job = jobs.get(l);
+                if (job.visible) {
+                    commands.setFill(job.color);
+                    commands.fillOval(job.x - 5, job.y - 5, 10, 10);
+                }
+            }
+        }
+    }
+
+    private void grow(int count) {
+        count = Math.max(count, areas.length * 2);
+        double[] grownPacked = new double[count * LightBuffer.STRIDE];
+        ScanConverter[] grownAreas = new ScanConverter[count];
+        System.arraycopy(packed, 0, grownPacked, 0, packed.length);
+        System.arraycopy(areas, 0, grownAreas, 0, areas.length);
+        packed = grownPacked;
+        areas = grownAreas;
+    }
+
+    /**
+     * cut the samples of the next frames in proportion if this one was over the budget, or add one if it was
+     * well under it. only frames that swept something are measured, a still scene costs nothing to sample.
+     *
+     * @param nanos - time spent on the lights in this frame
+     */
+    private void adapt(long nanos) {
+        double millis = nanos / 1e6;
+        if (millis > budget && activeSamples > 1) {
+            activeSamples = Math.max(1, (int) (activeSamples * budget / millis));
+        } else if (millis < budget / 2 && activeSamples < samples) {
+            activeSamples++;
+        }
+    }
+
+    @Override
+    void handle(Renderer renderer, long now) {
+        direct.clear();
+        record(direct, now);
+        direct.replay(renderer);
+    }
+
+    @Override
+    public String toString() {
+        return samples == 1 ? "Many lights" : "Many soft lights (" + samples + " samples)";
+    }
+
+    /**
+     * value of the given index in the van der Corput sequence of the base, between 0 and 1.
+     */
+    private static double halton(int index, int base) {
+        double fraction = 1, result = 0;
+        for (int i = index; i > 0; i /= base) {
+            fraction /= base;
+            result += fraction * (i % base);
+        }
+        return result;
+    }
+
+    /**
+     * a range of tasks, split in half until it is one task.
+     */
+    private static class Tasks extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final List<? extends Runnable> tasks;
+        private final int from, to;
+
+        Tasks(List<? extends Runnable> tasks, int from, int to) {
+            this.tasks = tasks;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new Tasks(tasks, from, mid), new Tasks(tasks, mid, to));
+            } else if (from < to) {
+                tasks.get(from).run();
+            }
+        }
+    }
+
+    /**
+     * one light with the edges it reaches and its samples. {@link #prepare} runs on the JavaFX thread and
+     * {@link #run()}, which gathers the edges, on the pool, never at the same time.
+     */
+    private class LightJob implements Runnable {
+
+        /**
+         * shift of the sample sequence, so lights do not share their pattern
+         */
+        private final double jitterX, jitterY;
+
+        /**
+         * light of the current frame, a radius of 0 is no light
+         */
+        private double x, y, radius, size;
+        private Color color;
+
+        /**
+         * {@link SegmentBuffer#getModCount()} the edges are gathered from
+         */
+        private int modCount = -1;
+
+        /**
+         * shapes reaching the square of the light, their packed edges plus the sides of the square, and the same
+         * edges split for {@link SweepVisibility#computeSplit}
+         */
+        private int[] reach = new int[0];
+        private int reachCount;
+        private double[] edges = new double[0];
+        private final SegmentSplitter splitter = new SegmentSplitter();
+        private double[] split;
+        private int splitCount;
+
+        /**
+         * true if the edges are up to date and if the square is on the canvas
+         */
+        private boolean gathered, visible;
+
+        /**
+         * samples of the disc, the first {@link #used} are lit in the current frame
+         */
+        private final List<Sample> samples = new ArrayList<>();
+        private int used;
+
+        LightJob(int index) {
+            Random random = new Random(index);
+            jitterX = random.nextDouble();
+            jitterY = random.nextDouble();
+        }
+
+        void prepare(Light light, ShapeQuadtree index, int k) {
+            double r = light.getRadius(), s = light.getSize();
+            boolean moved = x != light.x() || y != light.y() || radius != r || size != s
+                    || modCount != buffer.getModCount();
+            int usedSamples = s > 0 ? k : 1;
+            if (moved || usedSamples != used || !light.getColor().equals(color)) {
+                markDirty();
+                x = light.x();
+                y = light.y();
+                radius = r;
+                size = s;
+                color = light.getColor();
+                used = usedSamples;
+                double reach = radius + size;
+                visible = x + reach > 0 && x - reach < frameW && y + reach > 0 && y - reach < frameH;
+                markDirty();
+            }
+            if (moved) {
+                modCount = buffer.getModCount();
+                query(index);
+                gathered = false;
+            }
+            if (!visible) {
+                return;
+            }
+            if (!gathered) {
+                gathers.add(this);
+            }
+            while (samples.size() < used) {
+                samples.add(new Sample(this));
+            }
+            for (int i = 0; i < used; i++) {
+                Sample sample = samples.get(i);
+                double sx = x, sy = y;
+                if (used > 1) {
+                    // stratified over the area of the disc, shifted per light
+                    double u = (halton(i + 1, 2) + jitterX) % 1, v = (halton(i + 1, 3) + jitterY) % 1;
+                    double d = size * Math.sqrt(u), angle = 2 * Math.PI * v;
+                    sx += d * Math.cos(angle);
+                    sy += d * Math.sin(angle);
+                }
+                if (!gathered || sample.x != sx || sample.y != sy) {
+                    sample.x = sx;
+                    sample.y = sy;
+                    sweeps.add(sample);
+                }
+            }
+        }
+
+        private void query(ShapeQuadtree index) {
+            double reach = radius + size;
+            found.clear();
+            index.query(x - reach, y - reach, reach * 2, reach * 2, found);
+            if (this.reach.length < found.size()) {
+                this.reach = new int[found.size()];
+            }
+            reachCount = 0;
+            for (PolyShape shape : found) {
+                Integer s = shapeIndices.get(shape);
+                if (s != null) {
+                    this.reach[reachCount++] = s;
+                }
+            }
+        }
+
+        /**
+         * the light went away, its square is dirty and the job is as new.
+         */
+        void remove() {
+            markDirty();
+            x = y = radius = size = 0;
+            color = null;
+            modCount = -1;
+            used = 0;
+            gathered = visible = false;
+        }
+
+        private void markDirty() {
+            double reach = radius + size;
+            if (radius > 0 && visible) {
+                dirty.add(x - reach, y - reach, reach * 2, reach * 2);
+            }
+        }
+
+        /**
+         * gather the edges of the reached shapes and the sides of the square around the disc, and split them
+         * once for all samples.
+         */
+        @Override
+        public void run() {
+            double[] all = buffer.segments();
+            int needed = 4;
+            for (int i = 0; i < reachCount; i++) {
+                needed += buffer.offset(reach[i] + 1) - buffer.offset(reach[i]);
+            }
+            if (edges.length < needed * RayKernel.SEGMENT_STRIDE) {
+                edges = new double[needed * RayKernel.SEGMENT_STRIDE];
+            }
+            int n = 0;
+            for (int i = 0; i < reachCount; i++) {
+                int from = buffer.offset(reach[i]), to = buffer.offset(reach[i] + 1);
+                System.arraycopy(all, from * RayKernel.SEGMENT_STRIDE, edges, n * RayKernel.SEGMENT_STRIDE,
+                        (to - from) * RayKernel.SEGMENT_STRIDE);
+                n += to - from;
+            }
+            double reach = radius + size, d = reach * 2;
+            n = edge(n, x - reach, y - reach, d, 0);
+            n = edge(n, x + reach, y - reach, 0, d);
+            n = edge(n, x + reach, y + reach, -d, 0);
+            n = edge(n, x - reach, y + reach, 0, -d);
+            splitCount = splitter.split(edges, n);
+            split = splitter.segments();
+            gathered = true;
+        }
+
+        private int edge(int n, double sx, double sy, double dx, double dy) {
+            int i = n * RayKernel.SEGMENT_STRIDE;
+            edges[i] = sx;
+            edges[i + 1] = sy;
+            edges[i + 2] = dx;
+            edges[i + 3] = dy;
+            return n + 1;
+        }
+
+        /**
+         * write a sample as {@link LightBuffer#STRIDE} doubles, with its share of the color.
+         */
+        void pack(int s, double[] lights, int i) {
+            Sample sample = samples.get(s);
+            double share = color.getOpacity() / used;
+            lights[i] = sample.x;
+            lights[i + 1] = sample.y;
+            lights[i + 2] = radius;
+            lights[i + 3] = color.getRed() * share;
+            lights[i + 4] = color.getGreen() * share;
+            lights[i + 5] = color.getBlue() * share;
+        }
+    }
+
+    /**
+     * one point of the disc of a light and what it lights, swept on the pool against the split edges of the
+     * light.
+     */
+    private static class Sample implements Runnable {
+
+        private final LightJob light;
+        private final SweepVisibility sweep = new SweepVisibility();
+        private final VisibilityPolygon polygon = new VisibilityPolygon();
+        private final ScanConverter area = new ScanConverter();
+
+        /**
+         * where the area was swept from
+         */
+        private double x = Double.NaN, y = Double.NaN;
+
+        Sample(LightJob light) {
+            this.light = light;
+        }
+
+        @Override
+        public void run() {
+            sweep.computeSplit(x, y, light.split, light.splitCount, polygon);
+            area.clear().addPolygon(polygon.x(), polygon.y(), polygon.size());
+        }
+    }
+}
@@ -0,0 +1,619 @@
+package raycast.animator;
+
+import javafx.scene.paint.Color;
+import raycast.engine.BruteForceCaster;
+import raycast.engine.CastMode;
+import raycast.engine.CoherentCaster;
+import raycast.engine.DirectionTable;
+import raycast.engine.FixedStepClock;
+import raycast.engine.Precision;
+import raycast.engine.RayCaster;
+import raycast.engine.RayKernel;
+import raycast.engine.SegmentBuffer;
+import raycast.engine.SegmentSplitter;
+import raycast.engine.ShapeStore;
+import raycast.engine.SweepVisibility;
+import raycast.engine.UniformGrid;
+import raycast.engine.VertexFan;
+import raycast.engine.VisibilityPolygon;
+import raycast.render.LightRaster;
+import raycast.render.Renderer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+
+/**
+ * cast rays from the mouse and draw the lit area. depending on {@link CastMode} the rays are either
+ * {@link raycast.CanvasMap#getRayCount()} evenly spread rays or 3 rays per shape corner, or no rays are cast
+ * and the area is found by a {@link SweepVisibility} over edges split only when the scene changes.
+ * the ray fan is split in angular chunks which are computed on a {@link ForkJoinPool} by a {@link RayCaster},
+ * only the drawing is done on the JavaFX thread. the light follows the mouse in fixed steps of a
+ * {@link FixedStepClock}, frames blend its last two positions. rays also stop at the shapes of
+ * {@link raycast.CanvasMap#store()}, which the sweep does not see.
+ *
+ * @author leon
+ * @since Mar-21-2019
+ */
+public class RayCastAnimator extends AbstractAnimator {
+
+    /**
+     * smallest number of rays given to one task, below this splitting costs more than it saves
+     */
+    private static final int MIN_CHUNK = 256;
+
+    /**
+     * steps per second of the light following the mouse
+     */
+    public static final double SIMULATION_RATE = 120;
+
+    /**
+     * seconds for the light to close all but 1/e of the distance to the mouse
+     */
+    private static final double LIGHT_LAG = 0.02;
+
+    /**
+     * distance at which the light of {@link raycast.CanvasMap#getPixelLight()} is half as bright
+     */
+    private static final double LIGHT_FALLOFF = 400;
+
+    private final Color BACKGROUND = Color.DARKGREY;
+    private final Color LIGHT = Color.LIGHTYELLOW;
+
+    /**
+     * how the rays of a frame are chosen
+     */
+    private CastMode mode = CastMode.UNIFORM;
+
+    /**
+     * pool running the ray chunks
+     */
+    private ForkJoinPool pool;
+
+    /**
+     * number of rays per leaf task for the current frame
+     */
+    private int chunkSize;
+
+    /**
+     * ray directions of the current frame, either {@link raycast.CanvasMap#directions()} or the corner rays
+     */
+    private double[] dirX, dirY;
+
+    /**
+     * corner rays and closest hit per ray, grown only when ray count grows
+     */
+    private double[] angles, vertexX, vertexY, hitX, hitY, hitT;
+    private int[] hitSegment;
+
+    /**
+     * hits of the rays that hit something, only used in a frame where a ray hit nothing
+     */
+    private double[] keptX, keptY;
+
+    /**
+     * packed scene edges plus the 4 canvas borders, see {@link SegmentBuffer}
+     */
+    private SegmentBuffer buffer;
+    private double[] segments;
+    private int segmentCount;
+
+    /**
+     * evenly spread rays of the current frame, see {@link raycast.CanvasMap#directions()}
+     */
+    private double[] tableX, tableY;
+    private int tableSize;
+
+    /**
+     * overlays drawn in the current frame
+     */
+    private boolean drawSectors, drawIntersects, drawSource;
+
+    /**
+     * finds the closest edge per ray, kept up to date with the edges every frame. rays remember their hit
+     * between frames, so a still mouse casts nothing
+     */
+    private RayCaster caster = new CoherentCaster(new UniformGrid());
+
+    /**
+     * why the caster is not cast as it was set, null if it is. told to {@link #statusListener} on the thread
+     * that casts
+     */
+    private volatile String status;
+    private Consumer<String> statusListener;
+
+    /**
+     * {@link raycast.CanvasMap#store()} of the current frame, cast against after the caster. null if none
+     */
+    private ShapeStore store;
+
+    /**
+     * used in {@link CastMode#SWEEP}
+     */
+    private final SweepVisibility sweep = new SweepVisibility();
+    private final VisibilityPolygon polygon = new VisibilityPolygon();
+
+    /**
+     * edges of {@link #buffer} split where they cross, used in {@link CastMode#SWEEP}. only split again when
+     * {@link SegmentBuffer#getModCount()} changes, the crossings do not depend on the light
+     */
+    private final SegmentSplitter splitter = new SegmentSplitter();
+    private SegmentBuffer splitBuffer;
+    private int splitModCount, splitCount;
+
+    /**
+     * shapes drawn once and laid over the lit area every frame until they change, it can only be drawn on the
+     * JavaFX thread
+     */
+    private final ShapeLayer layer = new ShapeLayer();
+    private final Consumer<Renderer> drawShapes = renderer -> layer.draw(renderer, map);
+
+    /**
+     * rasters of the lit area used in turn, one is drawn into while one is shown and JavaFX may still be reading
+     * the one before, see {@link raycast.CanvasMap#getPixelLight()}
+     */
+    private final LightRaster[] rasters = new LightRaster[3];
+    private final List<Consumer<Renderer>> drawRasters;
+    private int nextRaster;
+
+    /**
+     * lit area rasterized in the current frame, and its size
+     */
+    private boolean pixelLight;
+    private int frameW, frameH;
+
+    /**
+     * used to draw the current frame directly
+     */
+    private final CommandBuffer direct = new CommandBuffer();
+
+    /**
+     * light following the mouse, stepped by the {@link AbstractAnimator#clock}
+     */
+    private final LightMotion light = new LightMotion(LIGHT_LAG);
+    private final double[] lightPosition = new double[2];
+
+    /**
+     * origin of the rays in the current frame
+     */
+    private double ox, oy;
+
+    /**
+     * lit area of the current frame
+     */
+    private double[] litX, litY;
+    private int litCount;
+
+    /**
+     * lit area and ray overlays of the last frame, a frame that draws the same marks nothing dirty
+     */
+    private double[] lastLitX, lastLitY;
+    private int lastLitCount = -1;
+    private double lastOx, lastOy;
+    private boolean lastSectors, lastIntersects, lastSource, lastPixelLight;
+
+    public RayCastAnimator() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param parallelism - number of threads used to cast rays
+     */
+    public RayCastAnimator(int parallelism) {
+        super();
+        clock = new FixedStepClock(SIMULATION_RATE, this::simulate);
+        setParallelism(parallelism);
+        angles = vertexX = vertexY = hitX = hitY = hitT = keptX = keptY = lastLitX = lastLitY = new double[0];
+        hitSegment = new int[0];
+        drawRasters = newRasters();
+    }
+
+    private List<Consumer<Renderer>> newRasters() {
+        List<Consumer<Renderer>> draws = new ArrayList<>(rasters.length);
+        for (int i = 0; i < rasters.length; i++) {
+            LightRaster raster = rasters[i] = new LightRaster(LIGHT, LIGHT_FALLOFF);
+            draws.add(raster::draw);
+        }
+        return draws;
+    }
+
+    /**
+     * change the number of threads used to cast rays, the old pool is shutdown.
+     *
+     * @param parallelism - number of threads, at least 1
+     * @return the current instance of this object
+     */
+    public RayCastAnimator setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1");
+        }
+        if (pool != null) {
+            pool.shutdown();
+        }
+        pool = new ForkJoinPool(parallelism);
+        return this;
+    }
+
+    /**
+     * @return number of threads used to cast rays
+     */
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    /**
+     * start the animation, with a new pool if it was stopped before.
+     */
+    @Override
+    public void start() {
+        if (pool.isShutdown()) {
+            pool = new ForkJoinPool(pool.getParallelism());
+        }
+        super.start();
+    }
+
+    /**
+     * stop the animation and shutdown the pool, its threads are not kept while another animator runs.
+     */
+    @Override
+    public void stop() {
+        super.stop();
+        pool.shutdown();
+    }
+
+    /**
+     * choose how the rays of a frame are chosen.
+     *
+     * @param mode - {@link CastMode}
+     * @return the current instance of this object
+     */
+    public RayCastAnimator setMode(CastMode mode) {
+        this.mode = mode;
+        return this;
+    }
+
+    /**
+     * @return how the rays of a frame are chosen
+     */
+    public CastMode getMode() {
+        return mode;
+    }
+
+    /**
+     * choose how the closest edge of every ray is found.
+     *
+     * @param caster - {@link RayCaster}
+     * @return the current instance of this object
+     */
+    public RayCastAnimator setCaster(RayCaster caster) {
+        this.caster = caster;
+        return this;
+    }
+
+    /**
+     * @return how the closest edge of every ray is found
+     */
+    public RayCaster getCaster() {
+        return caster;
+    }
+
+    /**
+     * @param statusListener - called with {@link #getStatus()} when it changes, on the thread that casts. null
+     *                       for nobody
+     * @return the current instance of this object
+     */
+    public RayCastAnimator setStatusListener(Consumer<String> statusListener) {
+        this.statusListener = statusListener;
+        return this;
+    }
+
+    /**
+     * @return why the caster does not cast as it was set, such as a {@link Precision#FIXED}
+     * {@link BruteForceCaster} on a scene beyond {@link BruteForceCaster#FIXED_RANGE}. null if it does
+     */
+    public String getStatus() {
+        return status;
+    }
+
+    /**
+     * one step of the light towards the mouse, on the thread of the {@link AbstractAnimator#clock}.
+     *
+     * @param dt - seconds of the step
+     */
+    private void simulate(double dt) {
+        light.step(mouse.x(), mouse.y(), dt);
+    }
+
+    /**
+     * read the light, the edges and the ray directions, which change on other threads. the light is blended
+     * between its last two steps by how far the clock is towards the next, before the first step it is on the
+     * mouse.
+     */
+    @Override
+    void prepare(long now) {
+        light.position(clock.alpha(now), lightPosition);
+        boolean stepped = !Double.isNaN(lightPosition[0]);
+        ox = stepped ? lightPosition[0] : mouse.x();
+        oy = stepped ? lightPosition[1] : mouse.y();
+        prepareSegments();
+        store = map.store();
+        DirectionTable directions = map.directions();
+        // a new ray count replaces the arrays instead of writing them, so the frame keeps the ones read here
+        tableX = directions.dirX();
+        tableY = directions.dirY();
+        tableSize = directions.size();
+        drawSectors = map.getDrawSectors();
+        drawIntersects = map.getsDrawIntersectPoint();
+        drawSource = map.getDrawLightSource();
+        pixelLight = map.getPixelLight();
+        frameW = (int) Math.ceil(map.w());
+        frameH = (int) Math.ceil(map.h());
+    }
+
+    @Override
+    void update(long now) {
+        if (mode == CastMode.SWEEP) {
+            if (splitBuffer != buffer || splitModCount != buffer.getModCount()) {
+                splitCount = splitter.split(segments, segmentCount);
+                splitBuffer = buffer;
+                splitModCount = buffer.getModCount();
+            }
+            sweep.computeSplit(ox, oy, splitter.segments(), splitCount, polygon);
+            litX = polygon.x();
+            litY = polygon.y();
+            litCount = polygon.size();
+        } else {
+            if (mode == CastMode.VERTEX) {
+                litCount = prepareVertexRays();
+            } else {
+                litCount = prepareRays();
+            }
+            // about 4 chunks per thread so a slow chunk does not leave the other threads idle
+            chunkSize = Math.max(MIN_CHUNK, litCount / (pool.getParallelism() * 4));
+            try {
+                castRays();
+            } catch (IllegalArgumentException e) {
+                fallBack(e);
+                castRays();
+            }
+            litX = hitX;
+            litY = hitY;
+            dropMissedRays();
+        }
+        markChanges();
+    }
+
+    private void castRays() {
+        caster.update(buffer);
+        pool.invoke(new RayChunk(0, litCount));
+    }
+
+    /**
+     * a {@link Precision#FIXED} caster refuses edges and lights beyond {@link BruteForceCaster#FIXED_RANGE}, which
+     * would fail every frame. it is switched to {@link Precision#DOUBLE} for good and the reason made the status.
+     *
+     * @param e - what the caster refused
+     * @throws IllegalArgumentException e if it was not refused by a fixed point caster
+     */
+    private void fallBack(IllegalArgumentException e) {
+        if (!(caster instanceof BruteForceCaster) || ((BruteForceCaster) caster).getPrecision() != Precision.FIXED) {
+            throw e;
+        }
+        ((BruteForceCaster) caster).setPrecision(Precision.DOUBLE);
+        status = e.getMessage() + ", cast in " + Precision.DOUBLE + " instead";
+        Consumer<String> listener = statusListener;
+        if (listener != null) {
+            listener.accept(status);
+        }
+    }
+
+    /**
+     * leave out rays that hit nothing. a ray aimed exactly at the corner where two edges meet, like a corner of the
+     * canvas, can pass between them by rounding. the rays beside it already end at the corner, so the lit area
+     * stays the same without it. the hits are copied so the caster keeps its own for the next frame.
+     */
+    private void dropMissedRays() {
+        int missed = 0;
+        for (int i = 0; i < litCount; i++) {
+            if (hitSegment[i] == RayKernel.NO_HIT) {
+                missed++;
+            }
+        }
+        if (missed == 0) {
+            return;
+        }
+        if (keptX.length < litCount) {
+            keptX = new double[hitX.length];
+            keptY = new double[hitY.length];
+        }
+        int kept = 0;
+        for (int i = 0; i < litCount; i++) {
+            if (hitSegment[i] != RayKernel.NO_HIT) {
+                keptX[kept] = hitX[i];
+                keptY[kept++] = hitY[i];
+            }
+        }
+        litX = keptX;
+        litY = keptY;
+        litCount = kept;
+    }
+
+    /**
+     * mark the bounds of the old and new lit area if it or the rays drawn over it changed. the rays and
+     * intersect points end on the lit area and the light source is inside it, so the bounds hold all of them.
+     */
+    private void markChanges() {
+        boolean same = litCount == lastLitCount && ox == lastOx && oy == lastOy && lastSectors == drawSectors
+                && lastIntersects == drawIntersects && lastSource == drawSource && lastPixelLight == pixelLight;
+        for (int i = 0; same && i < litCount; i++) {
+            same = litX[i] == lastLitX[i] && litY[i] == lastLitY[i];
+        }
+        if (same) {
+            return;
+        }
+        // the light source is drawn 5 pixels around the origin
+        dirty.addPolygon(lastLitX, lastLitY, Math.max(0, lastLitCount), 5);
+        dirty.addPolygon(litX, litY, litCount, 5);
+
+        if (lastLitX.length < litCount) {
+            lastLitX = new double[litX.length];
+            lastLitY = new double[litY.length];
+        }
+        System.arraycopy(litX, 0, lastLitX, 0, litCount);
+        System.arraycopy(litY, 0, lastLitY, 0, litCount);
+        lastLitCount = litCount;
+        lastOx = ox;
+        lastOy = oy;
+        lastSectors = drawSectors;
+        lastIntersects = drawIntersects;
+        lastSource = drawSource;
+        lastPixelLight = pixelLight;
+    }
+
+    /**
+     * record the lit area, the shapes and the optional overlays. only the shapes are left to the JavaFX thread,
+     * and with {@link raycast.CanvasMap#getPixelLight()} the image of the lit area, which is rasterized here.
+     */
+    @Override
+    void record(CommandBuffer commands, long now) {
+        commands.background(BACKGROUND);
+        if (pixelLight) {
+            int i = nextRaster;
+            nextRaster = (nextRaster + 1) % rasters.length;
+            rasters[i].rasterize(frameW, frameH, litX, litY, litCount, ox, oy, pool);
+            commands.defer(drawRasters.get(i));
+        } else {
+            commands.setFill(LIGHT);
+            commands.fillPolygon(litX, litY, litCount);
+        }
+        commands.defer(drawShapes);
+        recordRays(commands, litX, litY, litCount);
+    }
+
+    @Override
+    void handle(Renderer renderer, long now) {
+        direct.clear();
+        record(direct, now);
+        direct.replay(renderer);
+    }
+
+    /**
+     * record the optional sectors, intersect points and light source on top of the scene.
+     *
+     * @param commands - {@link CommandBuffer} object
+     * @param x        - x of the lit polygon
+     * @param y        - y of the lit polygon
+     * @param count    - number of points in the lit polygon
+     */
+    private void recordRays(CommandBuffer commands, double[] x, double[] y, int count) {
+        if (drawSectors) {
+            commands.setStroke(Color.GOLD);
+            commands.setLineWidth(1);
+            for (int i = 0; i < count; i++) {
+                commands.strokeLine(ox, oy, x[i], y[i]);
+            }
+        }
+        if (drawIntersects) {
+            commands.setFill(Color.DARKORANGE);
+            for (int i = 0; i < count; i++) {
+                commands.fillOval(x[i] - 2, y[i] - 2, 4, 4);
+            }
+        }
+        if (drawSource) {
+            commands.setFill(Color.YELLOW);
+            commands.fillOval(ox - 5, oy - 5, 10, 10);
+        }
+    }
+
+    /**
+     * grow the ray buffers if needed.
+     *
+     * @param rayCount - number of rays in this frame
+     * @param corners  - true if the corner ray buffers are needed as well
+     */
+    private void ensureRayCapacity(int rayCount, boolean corners) {
+        if (hitX.length < rayCount) {
+            hitX = new double[rayCount];
+            hitY = new double[rayCount];
+            hitT = new double[rayCount];
+            hitSegment = new int[rayCount];
+        }
+        if (corners && vertexX.length < rayCount) {
+            angles = new double[rayCount];
+            vertexX = new double[rayCount];
+            vertexY = new double[rayCount];
+        }
+    }
+
+    /**
+     * use the evenly spread rays of {@link raycast.CanvasMap#directions()} read by {@link #prepare(long)}.
+     *
+     * @return number of rays in this frame
+     */
+    private int prepareRays() {
+        ensureRayCapacity(tableSize, false);
+        dirX = tableX;
+        dirY = tableY;
+        return tableSize;
+    }
+
+    /**
+     * fill the directions of 3 rays per corner, sorted by angle. {@link #prepareSegments()} must be called first.
+     *
+     * @return number of rays in this frame
+     */
+    private int prepareVertexRays() {
+        ensureRayCapacity(segmentCount * VertexFan.RAYS_PER_VERTEX, true);
+        int rayCount = VertexFan.angles(ox, oy, segments, segmentCount, angles);
+        VertexFan.directions(angles, rayCount, vertexX, vertexY);
+        dirX = vertexX;
+        dirY = vertexY;
+        return rayCount;
+    }
+
+    /**
+     * use the compiled edges of the scene, see {@link raycast.CanvasMap#segments()}.
+     */
+    private void prepareSegments() {
+        buffer = map.segments();
+        segments = buffer.segments();
+        segmentCount = buffer.size();
+    }
+
+    @Override
+    public String toString() {
+        // the sweep finds the lit area without casting rays
+        return "Ray casting (" + mode + (mode == CastMode.SWEEP ? "" : ", " + caster) + ")";
+    }
+
+    /**
+     * a range of rays, split in half until it is no bigger than {@link RayCastAnimator#chunkSize}.
+     */
+    private class RayChunk extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int from, to;
+
+        RayChunk(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= chunkSize) {
+                caster.castFan(ox, oy, dirX, dirY, from, to, hitX, hitY, hitT, hitSegment);
+                if (store != null) {
+                    // the borders leave every ray with a hit, shapes of the store beyond it are not looked at
+                    store.castFanNearer(ox, oy, dirX, dirY, from, to, segmentCount, hitX, hitY, hitT, hitSegment);
+                }
+            } else {
+                int mid = (from + to) >>> 1;
+                invokeAll(new RayChunk(from, mid), new RayChunk(mid, to));
+            }
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package raycast.animator;
+
+import javafx.scene.SnapshotParameters;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.image.WritableImage;
+import javafx.scene.paint.Color;
+import javafx.scene.transform.Transform;
+import javafx.stage.Window;
+import raycast.CanvasMap;
+import raycast.engine.ShapeStore;
+import raycast.entity.DrawBatch;
+import raycast.entity.geometry.PolyShape;
+import raycast.render.FxRenderer;
+import raycast.render.Renderer;
+
+/**
+ * the shapes of a {@link CanvasMap} drawn once into an image and copied onto the canvas every frame, so a frame
+ * costs one {@link javafx.scene.canvas.GraphicsContext#drawImage} instead of a fill and a stroke per shape. the
+ * shapes are drawn on a canvas of their own which is then {@link Canvas#snapshot}, outside the shapes the image
+ * is transparent so it can be laid over a background or a lit area.
+ *
+ * <p>the shapes of {@link CanvasMap#store()} are drawn first, under the editable ones.</p>
+ *
+ * <p>the image is drawn again only when it is stale, that is when {@link CanvasMap#getShapesVersion()}, the size
+ * of the canvas or the output scale of its window changed. the image is made at the output scale of the window,
+ * on a HiDPI screen it has as many pixels as the canvas would and looks as sharp.</p>
+ *
+ * <p>must be used on the JavaFX thread. a {@link Renderer} that is not an {@link FxRenderer} cannot draw an image,
+ * the shapes are drawn on it as they are, grouped by style.</p>
+ *
+ * @author leon
+ * @since Apr-3-2019
+ */
+public class ShapeLayer {
+
+    /**
+     * style of the shapes of {@link CanvasMap#store()} when they are not from a {@link CanvasMap#scene()}, which
+     * has a style per shape
+     */
+    private static final Color STORE_FILL = Color.LIGHTCORAL, STORE_STROKE = Color.DARKRED;
+
+    private final Canvas layer;
+    private final FxRenderer layerRenderer;
+    private final SnapshotParameters parameters;
+    private WritableImage image;
+
+    /**
+     * shapes grouped by style, most scenes use a few styles
+     */
+    private final DrawBatch batch = new DrawBatch();
+
+    /**
+     * what the image was drawn with
+     */
+    private long shapesVersion = -1;
+    private double w = -1, h = -1, scale = -1;
+
+    /**
+     * number of times the image was drawn
+     */
+    private int renders;
+
+    public ShapeLayer() {
+        layer = new Canvas();
+        layerRenderer = new FxRenderer(layer.getGraphicsContext2D());
+        parameters = new SnapshotParameters();
+        parameters.setFill(Color.TRANSPARENT);
+    }
+
+    /**
+     * copy the shapes of the map onto the given {@link Renderer}, drawing them again first if stale.
+     *
+     * @param renderer - {@link Renderer} to draw on
+     * @param map      - {@link CanvasMap} with the shapes
+     */
+    public void draw(Renderer renderer, CanvasMap map) {
+        if (!(renderer instanceof FxRenderer)) {
+            batch.clear(renderer.getWidth(), renderer.getHeight());
+            drawShapes(renderer, map);
+            return;
+        }
+        if (map.w() <= 0 || map.h() <= 0) {
+            return;
+        }
+        if (isStale(map)) {
+            render(map);
+        }
+        ((FxRenderer) renderer).getGraphicsContext().drawImage(image, 0, 0, w, h);
+    }
+
+    /**
+     * @param map - {@link CanvasMap} with the shapes
+     * @return true if the image does not show the shapes of the map as they are now
+     */
+    public boolean isStale(CanvasMap map) {
+        return image == null || shapesVersion != map.getShapesVersion() || w != map.w() || h != map.h()
+                || scale != outputScale(map);
+    }
+
+    /**
+     * draw the image again on the next {@link #draw(Renderer, CanvasMap)} even if nothing changed.
+     */
+    public void invalidate() {
+        image = null;
+    }
+
+    /**
+     * @return number of times the shapes were drawn into the image
+     */
+    public int getRenderCount() {
+        return renders;
+    }
+
+    private void render(CanvasMap map) {
+        w = map.w();
+        h = map.h();
+        scale = outputScale(map);
+        shapesVersion = map.getShapesVersion();
+
+        layer.setWidth(w);
+        layer.setHeight(h);
+        layerRenderer.clearRect(0, 0, w, h);
+        batch.clear(w, h);
+        drawShapes(layerRenderer, map);
+        parameters.setTransform(Transform.scale(scale, scale));
+        int pixelW = (int) Math.ceil(w * scale), pixelH = (int) Math.ceil(h * scale);
+        if (image == null || image.getWidth() != pixelW || image.getHeight() != pixelH) {
+            image = new WritableImage(pixelW, pixelH);
+        }
+        layer.snapshot(parameters, image);
+        renders++;
+    }
+
+    private void drawShapes(Renderer renderer, CanvasMap map) {
+        ShapeStore store = map.store();
+        if (map.scene() != null) {
+            map.scene().draw(renderer, 0, 0, map.w(), map.h());
+        } else if (store != null) {
+            renderer.setFill(STORE_FILL);
+            renderer.setStroke(STORE_STROKE);
+            renderer.setLineWidth(1);
+            store.draw(renderer, 0, 0, map.w(), map.h());
+        }
+        for (PolyShape shape : map.shapes()) {
+            shape.draw(batch);
+        }
+        batch.flush(renderer);
+        batch.clear(0, 0);
+    }
+
+    /**
+     * @return pixels per unit of the window showing the canvas, 1 if it is not shown yet
+     */
+    private static double outputScale(CanvasMap map) {
+        if (map.getCanvas().getScene() == null) {
+            return 1;
+        }
+        Window window = map.getCanvas().getScene().getWindow();
+        return window == null ? 1 : Math.max(window.getOutputScaleX(), window.getOutputScaleY());
+    }
+}
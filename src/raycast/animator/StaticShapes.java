@@ -1,8 +1,7 @@
 package raycast.animator;
 
-import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.paint.Color;
-import raycast.entity.geometry.PolyShape;
+import raycast.render.Renderer;
 
 
 /**
@@ -19,12 +18,21 @@ public class StaticShapes extends AbstractAnimator {
     }
 
     private final Color BACKGROUND = Color.DARKGREY;
+
+    /**
+     * shapes drawn once and copied every frame until they change
+     */
+    private final ShapeLayer layer = new ShapeLayer();
+
+    @Override
+    void update(long now) {
+        // nothing moves, changes of the shapes or the canvas are marked for every animator
+    }
+
     @Override
-    void handle(GraphicsContext gc, long now) {
-        clearAndFill(gc, BACKGROUND);
-        for (PolyShape shape : map.shapes()) {
-            shape.draw(gc);
-        }
+    void handle(Renderer renderer, long now) {
+        clearAndFill(renderer, BACKGROUND);
+        layer.draw(renderer, map);
     }
 
     @Override
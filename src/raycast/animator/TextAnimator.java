@@ -1,9 +1,9 @@
 package raycast.animator;
 
-import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.paint.Color;
 import javafx.scene.text.Font;
 import javafx.scene.text.FontWeight;
+import raycast.render.Renderer;
 
 /**
  * this class handles the job of drawing on the canvas. it must extend {@link AbstractAnimator}
@@ -14,32 +14,32 @@ import javafx.scene.text.FontWeight;
 public class TextAnimator extends AbstractAnimator{
     /**
      * <p>
-     * Inherited the abstract method {@link AbstractAnimator#handle(GraphicsContext, long)} as public.
+     * Inherited the abstract method {@link AbstractAnimator#handle(Renderer, long)} as public.
      * </p>
      * <p>
      * inside of the method:
      * <ol>
-     * <li>call {@link GraphicsContext#save()} which saves the current state of {@link GraphicsContext}</li>
-     * <li>create a new larger {@link Font} using <code>Font.font( gc.getFont().getFamily(), FontWeight.BLACK, 50)</code></li>
-     * <li>call {@link GraphicsContext#setFont} and set the newly created font</li>
-     * <li>call {@link GraphicsContext#setFill} and set a {@link Color} of your choice</li>
-     * <li>call {@link GraphicsContext#fillText} and use "CST 8288 - Ray Cast" and mouse.x() and mouse.y()</li>
-     * <li>call {@link GraphicsContext#setStroke} and set a {@link Color} of your choice</li>
-     * <li>call {@link GraphicsContext#strokeText} and use "CST 8288 - Ray Cast" and mouse.x() and mouse.y()</li>
-     * <li>call {@link GraphicsContext#restore} which restores the state of {@link GraphicsContext}</li>
+     * <li>call {@link Renderer#save()} which saves the current state of {@link Renderer}</li>
+     * <li>create a new larger {@link Font} using <code>Font.font( renderer.getFont().getFamily(), FontWeight.BLACK, 50)</code></li>
+     * <li>call {@link Renderer#setFont} and set the newly created font</li>
+     * <li>call {@link Renderer#setFill} and set a {@link Color} of your choice</li>
+     * <li>call {@link Renderer#fillText} and use "CST 8288 - Ray Cast" and mouse.x() and mouse.y()</li>
+     * <li>call {@link Renderer#setStroke} and set a {@link Color} of your choice</li>
+     * <li>call {@link Renderer#strokeText} and use "CST 8288 - Ray Cast" and mouse.x() and mouse.y()</li>
+     * <li>call {@link Renderer#restore} which restores the state of {@link Renderer}</li>
      * </ol>
      * </p>
      */
 
     @Override
-    void handle(GraphicsContext gc, long now) {
-        gc.save();
-        gc.setFont(Font.font(gc.getFont().getFamily(), FontWeight.BLACK, 50));
-        gc.setFill(Color.LIGHTGRAY);
-        gc.fillText("CST 8288 - Ray Cast", mouse.x(), mouse.y());
-        gc.setStroke(Color.BLACK);
-        gc.strokeText("CST 8288 - Ray Cast", mouse.x(), mouse.y());
-        gc.restore();
+    void handle(Renderer renderer, long now) {
+        renderer.save();
+        renderer.setFont(Font.font(renderer.getFont().getFamily(), FontWeight.BLACK, 50));
+        renderer.setFill(Color.LIGHTGRAY);
+        renderer.fillText("CST 8288 - Ray Cast", mouse.x(), mouse.y());
+        renderer.setStroke(Color.BLACK);
+        renderer.strokeText("CST 8288 - Ray Cast", mouse.x(), mouse.y());
+        renderer.restore();
     }
 
     /**
@@ -0,0 +1,454 @@
+package raycast.engine;
+
+import java.util.Arrays;
+
+/**
+ * bounding volume hierarchy over the bounds of the shapes, so a ray skips every edge of a shape whose box it
+ * misses or only reaches beyond the closest hit found so far. the tree is built with a binned surface area
+ * heuristic, in 2D the perimeter, and falls back to a median split when that does not separate the shapes.
+ *
+ * <p>nodes are stored depth first in flat arrays: the left child of a node is the next node and the right
+ * child is stored in the node. traversal visits the nearer child first and keeps the farther one on a stack
+ * that is allocated once per thread, so casting allocates nothing and is safe from many threads.</p>
+ *
+ * <p>the box of a shape is the min and max of its points, the same box {@link
+ * raycast.entity.geometry.PolyShape#getBounds()} holds, but taken from the {@link SegmentBuffer} so it is
+ * always in step with the edges. when shapes only moved the boxes are refit instead of rebuilding the tree.</p>
+ *
+ * @author leon
+ * @since Mar-26-2019
+ */
+public class BoundingVolumeHierarchy implements RayCaster {
+
+    /**
+     * most shapes in one leaf
+     */
+    private static final int LEAF_SIZE = 2;
+
+    /**
+     * number of buckets the surface area heuristic tries as split positions
+     */
+    private static final int BINS = 16;
+
+    /**
+     * below this depth the surface area heuristic is used, deeper nodes are split at the median which bounds
+     * the depth of degenerate scenes
+     */
+    private static final int SAH_DEPTH = 48;
+
+    /**
+     * number of refits before the tree is rebuilt, moved shapes make the boxes overlap more and more
+     */
+    private static final int REFIT_LIMIT = 64;
+
+    /**
+     * boxes are widened by this so a ray along a box side or through a corner still enters it
+     */
+    private static final double PADDING = 0.000001;
+
+    private SegmentBuffer buffer;
+    private double[] segments;
+    private int size;
+    private int shapeCount;
+
+    /**
+     * box and center of every shape
+     */
+    private double[] shapeBox, centerX, centerY;
+
+    /**
+     * shapes in the order the leaves refer to
+     */
+    private int[] order;
+
+    /**
+     * box of every node, first shape in {@link #order} for leaves or right child for inner nodes, and number
+     * of shapes which is 0 for inner nodes
+     */
+    private double[] nodeBox;
+    private int[] nodeFirst, nodeCount;
+    private int nodes;
+    private int depth;
+
+    /**
+     * buckets of the surface area heuristic
+     */
+    private final int[] binCount = new int[BINS];
+    private final double[] binBox = new double[BINS * 4];
+    private final double[] rightCost = new double[BINS];
+
+    private final ThreadLocal<TraversalStack> stacks = ThreadLocal.withInitial(TraversalStack::new);
+
+    /**
+     * what the tree was built from
+     */
+    private int modCount;
+    private int layoutModCount;
+    private int refits;
+
+    public BoundingVolumeHierarchy() {
+        shapeBox = centerX = centerY = nodeBox = new double[0];
+        order = nodeFirst = nodeCount = new int[0];
+        layoutModCount = -1;
+    }
+
+    @Override
+    public void update(SegmentBuffer buffer) {
+        this.buffer = buffer;
+        segments = buffer.segments();
+        size = buffer.size();
+        boolean sameLayout = buffer.getLayoutModCount() == layoutModCount;
+        if (sameLayout && buffer.getModCount() == modCount) {
+            return;
+        }
+        if (sameLayout && buffer.getModCount() == modCount + 1 && refits < REFIT_LIMIT) {
+            for (int i = 0; i < buffer.changedCount(); i++) {
+                measure(buffer.changedShape(i));
+            }
+            refit();
+            refits++;
+        } else {
+            rebuild();
+        }
+        modCount = buffer.getModCount();
+        layoutModCount = buffer.getLayoutModCount();
+    }
+
+    private void rebuild() {
+        shapeCount = buffer.shapeCount();
+        if (order.length < shapeCount) {
+            shapeBox = new double[shapeCount * 4];
+            centerX = new double[shapeCount];
+            centerY = new double[shapeCount];
+            order = new int[shapeCount];
+            nodeBox = new double[shapeCount * 2 * 4];
+            nodeFirst = new int[shapeCount * 2];
+            nodeCount = new int[shapeCount * 2];
+        }
+        for (int s = 0; s < shapeCount; s++) {
+            measure(s);
+            order[s] = s;
+        }
+        nodes = 0;
+        depth = 0;
+        if (shapeCount > 0) {
+            build(0, shapeCount, 1);
+        }
+        refits = 0;
+    }
+
+    /**
+     * compute the box and center of a shape from its edges, every point is the start of one edge.
+     */
+    private void measure(int shape) {
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        for (int e = buffer.offset(shape); e < buffer.offset(shape + 1); e++) {
+            int s = e * RayKernel.SEGMENT_STRIDE;
+            minX = Math.min(minX, segments[s]);
+            maxX = Math.max(maxX, segments[s]);
+            minY = Math.min(minY, segments[s + 1]);
+            maxY = Math.max(maxY, segments[s + 1]);
+        }
+        int b = shape * 4;
+        shapeBox[b] = minX - PADDING;
+        shapeBox[b + 1] = minY - PADDING;
+        shapeBox[b + 2] = maxX + PADDING;
+        shapeBox[b + 3] = maxY + PADDING;
+        centerX[shape] = (minX + maxX) / 2;
+        centerY[shape] = (minY + maxY) / 2;
+    }
+
+    /**
+     * build the subtree of order[from, to).
+     *
+     * @return index of the subtree root
+     */
+    private int build(int from, int to, int level) {
+        int node = nodes++;
+        depth = Math.max(depth, level);
+        emptyBox(nodeBox, node);
+        for (int i = from; i < to; i++) {
+            unionBox(nodeBox, node, shapeBox, order[i]);
+        }
+        if (to - from <= LEAF_SIZE) {
+            nodeFirst[node] = from;
+            nodeCount[node] = to - from;
+            return node;
+        }
+
+        // split along the axis where the centers are spread the most
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        for (int i = from; i < to; i++) {
+            minX = Math.min(minX, centerX[order[i]]);
+            maxX = Math.max(maxX, centerX[order[i]]);
+            minY = Math.min(minY, centerY[order[i]]);
+            maxY = Math.max(maxY, centerY[order[i]]);
+        }
+        boolean alongX = maxX - minX >= maxY - minY;
+        double[] centers = alongX ? centerX : centerY;
+        double min = alongX ? minX : minY;
+        double extent = alongX ? maxX - minX : maxY - minY;
+
+        int mid = level < SAH_DEPTH && extent > 0 ? splitBySurfaceArea(from, to, centers, min, extent) : from;
+        if (mid <= from || mid >= to) {
+            IndexSort.sort(order, from, to, centers);
+            mid = (from + to) >>> 1;
+        }
+        nodeCount[node] = 0;
+        build(from, mid, level + 1);
+        nodeFirst[node] = build(mid, to, level + 1);
+        return node;
+    }
+
+    /**
+     * bucket the centers and split where the perimeter of both sides times their number of shapes is least.
+     *
+     * @return first index of the right side, order[from, to) is partitioned around it
+     */
+    private int splitBySurfaceArea(int from, int to, double[] centers, double min, double extent) {
+        Arrays.fill(binCount, 0);
+        for (int b = 0; b < BINS; b++) {
+            emptyBox(binBox, b);
+        }
+        double scale = BINS / extent;
+        for (int i = from; i < to; i++) {
+            int b = Math.min(BINS - 1, (int) ((centers[order[i]] - min) * scale));
+            binCount[b]++;
+            unionBox(binBox, b, shapeBox, order[i]);
+        }
+
+        // cost of everything right of each bucket boundary, then sweep from the left for the cheapest
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        int count = 0;
+        for (int b = BINS - 1; b > 0; b--) {
+            if (binCount[b] > 0) {
+                minX = Math.min(minX, binBox[b * 4]);
+                minY = Math.min(minY, binBox[b * 4 + 1]);
+                maxX = Math.max(maxX, binBox[b * 4 + 2]);
+                maxY = Math.max(maxY, binBox[b * 4 + 3]);
+                count += binCount[b];
+            }
+            rightCost[b] = count == 0 ? 0 : count * (maxX - minX + maxY - minY);
+        }
+        minX = minY = Double.POSITIVE_INFINITY;
+        maxX = maxY = Double.NEGATIVE_INFINITY;
+        count = 0;
+        int bestBin = -1;
+        double bestCost = Double.POSITIVE_INFINITY;
+        for (int b = 0; b < BINS - 1; b++) {
+            if (binCount[b] > 0) {
+                minX = Math.min(minX, binBox[b * 4]);
+                minY = Math.min(minY, binBox[b * 4 + 1]);
+                maxX = Math.max(maxX, binBox[b * 4 + 2]);
+                maxY = Math.max(maxY, binBox[b * 4 + 3]);
+                count += binCount[b];
+            }
+            if (count == 0 || count == to - from) {
+                continue;
+            }
+            double cost = count * (maxX - minX + maxY - minY) + rightCost[b + 1];
+            if (cost < bestCost) {
+                bestCost = cost;
+                bestBin = b;
+            }
+        }
+        if (bestBin < 0) {
+            return from;
+        }
+
+        int i = from, j = to - 1;
+        while (i <= j) {
+            if (Math.min(BINS - 1, (int) ((centers[order[i]] - min) * scale)) <= bestBin) {
+                i++;
+            } else {
+                int t = order[i];
+                order[i] = order[j];
+                order[j--] = t;
+            }
+        }
+        return i;
+    }
+
+    /**
+     * recompute the boxes of all nodes from the shape boxes, children come after their parent so going
+     * backwards sees every child first.
+     */
+    private void refit() {
+        for (int node = nodes - 1; node >= 0; node--) {
+            emptyBox(nodeBox, node);
+            if (nodeCount[node] > 0) {
+                for (int i = nodeFirst[node]; i < nodeFirst[node] + nodeCount[node]; i++) {
+                    unionBox(nodeBox, node, shapeBox, order[i]);
+                }
+            } else {
+                unionBox(nodeBox, node, nodeBox, node + 1);
+                unionBox(nodeBox, node, nodeBox, nodeFirst[node]);
+            }
+        }
+    }
+
+    private static void emptyBox(double[] boxes, int i) {
+        boxes[i * 4] = boxes[i * 4 + 1] = Double.POSITIVE_INFINITY;
+        boxes[i * 4 + 2] = boxes[i * 4 + 3] = Double.NEGATIVE_INFINITY;
+    }
+
+    private static void unionBox(double[] boxes, int i, double[] other, int j) {
+        boxes[i * 4] = Math.min(boxes[i * 4], other[j * 4]);
+        boxes[i * 4 + 1] = Math.min(boxes[i * 4 + 1], other[j * 4 + 1]);
+        boxes[i * 4 + 2] = Math.max(boxes[i * 4 + 2], other[j * 4 + 2]);
+        boxes[i * 4 + 3] = Math.max(boxes[i * 4 + 3], other[j * 4 + 3]);
+    }
+
+    @Override
+    public void castFan(double ox, double oy, double[] dirX, double[] dirY, int from, int to,
+                        double[] hitX, double[] hitY, double[] hitT, int[] hitSegment) {
+        TraversalStack stack = stacks.get();
+        stack.ensure(depth + 1);
+        int[] stackNode = stack.node;
+        double[] stackEnter = stack.enter;
+        int borders = buffer.offset(shapeCount);
+
+        for (int r = from; r < to; r++) {
+            double rx = dirX[r];
+            double ry = dirY[r];
+            // a zero component would give 0 * infinity on a box side, a huge value gives 0 there instead
+            double invX = rx == 0 ? Double.MAX_VALUE : 1 / rx;
+            double invY = ry == 0 ? Double.MAX_VALUE : 1 / ry;
+
+            // the borders usually give a first limit before any box is visited
+            stack.t = Double.POSITIVE_INFINITY;
+            int best = closest(stack, ox, oy, rx, ry, borders, size, RayKernel.NO_HIT);
+            double bestT = stack.t;
+
+            int top = 0;
+            if (nodes > 0) {
+                double enter = enter(0, ox, oy, invX, invY);
+                if (enter <= bestT) {
+                    stackNode[top] = 0;
+                    stackEnter[top++] = enter;
+                }
+            }
+            while (top > 0) {
+                int node = stackNode[--top];
+                if (stackEnter[top] > bestT) {
+                    // a closer hit was found since this node was pushed
+                    continue;
+                }
+                if (nodeCount[node] > 0) {
+                    for (int i = nodeFirst[node]; i < nodeFirst[node] + nodeCount[node]; i++) {
+                        int shape = order[i];
+                        best = closest(stack, ox, oy, rx, ry, buffer.offset(shape), buffer.offset(shape + 1),
+                                best);
+                        bestT = stack.t;
+                    }
+                    continue;
+                }
+                int near = node + 1, far = nodeFirst[node];
+                double nearEnter = enter(near, ox, oy, invX, invY);
+                double farEnter = enter(far, ox, oy, invX, invY);
+                if (farEnter < nearEnter) {
+                    int n = near;
+                    near = far;
+                    far = n;
+                    double e = nearEnter;
+                    nearEnter = farEnter;
+                    farEnter = e;
+                }
+                // push the far child first so the near one is visited first
+                if (farEnter <= bestT) {
+                    stackNode[top] = far;
+                    stackEnter[top++] = farEnter;
+                }
+                if (nearEnter <= bestT) {
+                    stackNode[top] = near;
+                    stackEnter[top++] = nearEnter;
+                }
+            }
+
+            hitT[r] = bestT;
+            hitSegment[r] = best;
+            if (best == RayKernel.NO_HIT) {
+                hitX[r] = Double.NaN;
+                hitY[r] = Double.NaN;
+            } else {
+                hitX[r] = ox + rx * bestT;
+                hitY[r] = oy + ry * bestT;
+            }
+        }
+    }
+
+    /**
+     * ray scalar where the ray enters the box of a node, 0 if it starts inside and infinity if it misses.
+     */
+    private double enter(int node, double ox, double oy, double invX, double invY) {
+        int b = node * 4;
+        double x1 = (nodeBox[b] - ox) * invX, x2 = (nodeBox[b + 2] - ox) * invX;
+        double y1 = (nodeBox[b + 1] - oy) * invY, y2 = (nodeBox[b + 3] - oy) * invY;
+        double near = Math.max(0, Math.max(Math.min(x1, x2), Math.min(y1, y2)));
+        double far = Math.min(Math.max(x1, x2), Math.max(y1, y2));
+        return near <= far ? near : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * test edges [from, to) with the same math as {@link RayKernel} so both give identical scalars, and on
+     * equal scalars the lower edge index wins like it does there. the scalar of the best hit so far is kept in
+     * {@link TraversalStack#t} so both results come back without boxing.
+     *
+     * @return index of the closest edge, the given best if none is closer
+     */
+    private int closest(TraversalStack stack, double ox, double oy, double rx, double ry, int from, int to,
+                        int best) {
+        double bestT = stack.t;
+        for (int e = from; e < to; e++) {
+            int s = e * RayKernel.SEGMENT_STRIDE;
+            double sx = segments[s + 2];
+            double sy = segments[s + 3];
+            double rs = rx * sy - sx * ry;
+            if (rs == 0) {
+                continue;
+            }
+            double qpx = ox - segments[s];
+            double qpy = oy - segments[s + 1];
+            double rayScaler = -(qpx * sy - sx * qpy) / rs;
+            if (rayScaler < 0 || rayScaler > bestT || rayScaler == bestT && e > best) {
+                continue;
+            }
+            double segmentScaler = -(qpx * ry - rx * qpy) / rs;
+            if (segmentScaler >= 0 && segmentScaler <= 1) {
+                bestT = rayScaler;
+                best = e;
+            }
+        }
+        stack.t = bestT;
+        return best;
+    }
+
+    @Override
+    public String toString() {
+        return "bounding volume hierarchy";
+    }
+
+    /**
+     * nodes still to visit and where the ray enters them, one per thread and grown with the tree depth.
+     */
+    private static class TraversalStack {
+
+        private int[] node = new int[0];
+        private double[] enter = new double[0];
+
+        /**
+         * scalar of the closest hit of the current ray
+         */
+        private double t;
+
+        private void ensure(int size) {
+            if (node.length < size) {
+                node = new int[size];
+                enter = new double[size];
+            }
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package raycast.engine;
+
+/**
+ * test every ray against every edge with {@link RayKernel}. no structure to keep up to date, best for a handful
+ * of shapes and the reference the other casters are checked against.
+ *
+ * <p>with a {@link Precision} other than {@link Precision#DOUBLE} the edges are compiled into a 32 bit copy on
+ * update and rays are converted as they are cast. {@link Precision#FIXED} stores coordinates in
+ * 1/{@link #POSITION_SCALE} pixels and ray directions in 1/{@link #DIRECTION_SCALE} units. coordinates have to
+ * stay within {@link #FIXED_RANGE} pixels of the origin, which is checked, and then every cross product is an
+ * exact long below 2^53. only the final scalar is a division, of two integers a double holds exactly, which
+ * rounds the same everywhere.</p>
+ *
+ * @author leon
+ * @since Mar-25-2019
+ */
+public class BruteForceCaster implements RayCaster {
+
+    /**
+     * fixed point steps per pixel
+     */
+    public static final int POSITION_SCALE = 1 << 8;
+
+    /**
+     * fixed point steps per unit of ray direction
+     */
+    public static final int DIRECTION_SCALE = 1 << 22;
+
+    /**
+     * largest coordinate in pixels {@link Precision#FIXED} accepts, the products stay exact in a double up to it
+     */
+    public static final double FIXED_RANGE = 1 << 15;
+
+    private Precision precision = Precision.DOUBLE;
+
+    private double[] segments;
+    private int size;
+
+    /**
+     * edges in the current precision, packed like {@link RayKernel#SEGMENT_STRIDE}
+     */
+    private float[] floatSegments;
+    private int[] fixedSegments;
+    private int modCount;
+
+    public BruteForceCaster() {
+        floatSegments = new float[0];
+        fixedSegments = new int[0];
+        modCount = -1;
+    }
+
+    /**
+     * choose the number format edges and rays are cast in. with {@link Precision#FIXED} edges and lights beyond
+     * {@link #FIXED_RANGE} are refused.
+     *
+     * @param precision - {@link Precision}
+     * @return the current instance of this object
+     */
+    public BruteForceCaster setPrecision(Precision precision) {
+        this.precision = precision;
+        // compile again on the next update
+        modCount = -1;
+        return this;
+    }
+
+    /**
+     * @return the number format edges and rays are cast in
+     */
+    public Precision getPrecision() {
+        return precision;
+    }
+
+    @Override
+    public void update(SegmentBuffer buffer) {
+        segments = buffer.segments();
+        size = buffer.size();
+        if (precision == Precision.DOUBLE || buffer.getModCount() == modCount) {
+            return;
+        }
+        int length = size * RayKernel.SEGMENT_STRIDE;
+        if (precision == Precision.FLOAT) {
+            if (floatSegments.length < length) {
+                floatSegments = new float[length];
+            }
+            for (int i = 0; i < length; i++) {
+                floatSegments[i] = (float) segments[i];
+            }
+        } else {
+            if (fixedSegments.length < length) {
+                fixedSegments = new int[length];
+            }
+            for (int e = 0; e < size; e++) {
+                // the delta is taken between rounded ends so neighbouring edges still share their corner exactly
+                int s = e * RayKernel.SEGMENT_STRIDE;
+                int x = fixed(segments[s]), y = fixed(segments[s + 1]);
+                fixedSegments[s] = x;
+                fixedSegments[s + 1] = y;
+                fixedSegments[s + 2] = fixed(segments[s] + segments[s + 2]) - x;
+                fixedSegments[s + 3] = fixed(segments[s + 1] + segments[s + 3]) - y;
+            }
+        }
+        modCount = buffer.getModCount();
+    }
+
+    /**
+     * @throws IllegalArgumentException if v is farther than {@link #FIXED_RANGE} from the origin, or NaN
+     */
+    private static int fixed(double v) {
+        if (!(Math.abs(v) <= FIXED_RANGE)) {
+            throw new IllegalArgumentException("coordinate out of fixed point range: " + v);
+        }
+        return (int) Math.round(v * POSITION_SCALE);
+    }
+
+    @Override
+    public void castFan(double ox, double oy, double[] dirX, double[] dirY, int from, int to,
+                        double[] hitX, double[] hitY, double[] hitT, int[] hitSegment) {
+        switch (precision) {
+            case FLOAT:
+                castFloat(ox, oy, dirX, dirY, from, to, hitX, hitY, hitT, hitSegment);
+                break;
+            case FIXED:
+                castFixed(ox, oy, dirX, dirY, from, to, hitX, hitY, hitT, hitSegment);
+                break;
+            default:
+                RayKernel.castFan(ox, oy, dirX, dirY, from, to, segments, size, hitX, hitY, hitT, hitSegment);
+        }
+    }
+
+    /**
+     * {@link RayKernel#castFan} with every term in float.
+     */
+    private void castFloat(double ox, double oy, double[] dirX, double[] dirY, int from, int to,
+                           double[] hitX, double[] hitY, double[] hitT, int[] hitSegment) {
+        float fox = (float) ox, foy = (float) oy;
+        int end = size * RayKernel.SEGMENT_STRIDE;
+        for (int r = from; r < to; r++) {
+            float rx = (float) dirX[r];
+            float ry = (float) dirY[r];
+            float bestT = Float.POSITIVE_INFINITY;
+            int best = RayKernel.NO_HIT;
+            for (int s = 0; s < end; s += RayKernel.SEGMENT_STRIDE) {
+                float sx = floatSegments[s + 2];
+                float sy = floatSegments[s + 3];
+                float rs = rx * sy - sx * ry;
+                if (rs == 0) {
+                    continue;
+                }
+                float qpx = fox - floatSegments[s];
+                float qpy = foy - floatSegments[s + 1];
+                float rayScaler = -(qpx * sy - sx * qpy) / rs;
+                if (rayScaler < 0 || rayScaler >= bestT) {
+                    continue;
+                }
+                float segmentScaler = -(qpx * ry - rx * qpy) / rs;
+                if (segmentScaler >= 0 && segmentScaler <= 1) {
+                    bestT = rayScaler;
+                    best = s;
+                }
+            }
+            store(r, best, bestT, ox, oy, dirX[r], dirY[r], hitX, hitY, hitT, hitSegment);
+        }
+    }
+
+    /**
+     * {@link RayKernel#castFan} in fixed point. the hit tests compare integers only, the scalar of a hit is
+     * its numerator over rs in one correctly rounded division.
+     */
+    private void castFixed(double ox, double oy, double[] dirX, double[] dirY, int from, int to,
+                           double[] hitX, double[] hitY, double[] hitT, int[] hitSegment) {
+        long fox = fixed(ox), foy = fixed(oy);
+        int end = size * RayKernel.SEGMENT_STRIDE;
+        // scalars are in fixed steps per direction step, this turns them into pixels per unit direction
+        double toPixels = (double) DIRECTION_SCALE / POSITION_SCALE;
+        for (int r = from; r < to; r++) {
+            long rx = Math.round(dirX[r] * DIRECTION_SCALE);
+            long ry = Math.round(dirY[r] * DIRECTION_SCALE);
+            double bestT = Double.POSITIVE_INFINITY;
+            int best = RayKernel.NO_HIT;
+            for (int s = 0; s < end; s += RayKernel.SEGMENT_STRIDE) {
+                long sx = fixedSegments[s + 2];
+                long sy = fixedSegments[s + 3];
+                long rs = rx * sy - sx * ry;
+                if (rs == 0) {
+                    continue;
+                }
+                long qpx = fox - fixedSegments[s];
+                long qpy = foy - fixedSegments[s + 1];
+                long rayScaler = -(qpx * sy - sx * qpy);
+                long segmentScaler = -(qpx * ry - rx * qpy);
+                if (rs < 0) {
+                    rs = -rs;
+                    rayScaler = -rayScaler;
+                    segmentScaler = -segmentScaler;
+                }
+                if (rayScaler < 0 || segmentScaler < 0 || segmentScaler > rs) {
+                    continue;
+                }
+                double t = (double) rayScaler / rs;
+                if (t < bestT) {
+                    bestT = t;
+                    best = s;
+                }
+            }
+            // the hit lies on the rounded ray, so the rounded direction gives its position
+            store(r, best, bestT * toPixels, fox / (double) POSITION_SCALE, foy / (double) POSITION_SCALE,
+                    rx / (double) DIRECTION_SCALE, ry / (double) DIRECTION_SCALE, hitX, hitY, hitT, hitSegment);
+        }
+    }
+
+    private static void store(int r, int best, double t, double ox, double oy, double rx, double ry,
+                              double[] hitX, double[] hitY, double[] hitT, int[] hitSegment) {
+        hitT[r] = t;
+        if (best == RayKernel.NO_HIT) {
+            hitSegment[r] = RayKernel.NO_HIT;
+            hitX[r] = Double.NaN;
+            hitY[r] = Double.NaN;
+        } else {
+            hitSegment[r] = best / RayKernel.SEGMENT_STRIDE;
+            hitX[r] = ox + rx * t;
+            hitY[r] = oy + ry * t;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "brute force (" + precision + ")";
+    }
+}
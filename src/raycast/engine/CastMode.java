@@ -0,0 +1,36 @@
+package raycast.engine;
+
+/**
+ * the ways a light can find the area it lights.
+ *
+ * @author leon
+ * @since Mar-22-2019
+ */
+public enum CastMode {
+
+    /**
+     * cast {@link raycast.CanvasMap#getRayCount()} rays evenly spread around the light
+     */
+    UNIFORM("uniform"),
+
+    /**
+     * cast 3 rays toward every shape corner, the result is exact no matter the ray count
+     */
+    VERTEX("vertex"),
+
+    /**
+     * rotational sweep around the light keeping the segments ordered by distance, exact and O(n log n)
+     */
+    SWEEP("sweep");
+
+    private final String name;
+
+    CastMode(String name) {
+        this.name = name;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,226 @@
+package raycast.engine;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * wraps another {@link RayCaster} and remembers the hit of every ray from one frame to the next. the light
+ * follows the mouse, which stands still in most frames and moves a few pixels in the others, so most rays hit
+ * what they hit before. every ray is looked up by its index:
+ * <ul>
+ * <li>same origin, direction and scene, the remembered hit is the answer and nothing is cast.</li>
+ * <li>same origin and direction, and only a few edges moved since, the remembered hit is tested first and
+ * compared with just the moved edges, unless it was one of them.</li>
+ * <li>otherwise the ray is cast by the wrapped caster.</li>
+ * </ul>
+ * every path gives exactly the result of {@link RayKernel#castFan}, a remembered hit is never trusted without
+ * the checks above. a light that moved is always cast, a ray from a new origin can be blocked by any edge and
+ * proving it is not costs as much as the cast, starting the search from the remembered edge was measured to
+ * save nothing.
+ *
+ * <p>memory grows to the largest number of rays cast, rays beyond it in the frame that first asks for them are
+ * cast without help and remembered from the next {@link #update(SegmentBuffer)} on, so casting threads never
+ * see the memory replaced.</p>
+ *
+ * @author leon
+ * @since Apr-2-2019
+ */
+public class CoherentCaster implements RayCaster {
+
+    /**
+     * most moved edges a remembered hit is compared with, beyond that casting the ray is cheaper
+     */
+    private static final int CHANGED_LIMIT = 64;
+
+    private final RayCaster caster;
+
+    private double[] segments;
+
+    /**
+     * what the buffer was at the last update
+     */
+    private int modCount = -1;
+    private int layoutModCount = -1;
+
+    /**
+     * increased whenever the edges change, and the version since which edges have their current indices
+     */
+    private int version, layoutVersion;
+
+    /**
+     * edges [changedFrom, changedTo) moved between version - 1 and version, valid if changesKnown
+     */
+    private int[] changedFrom, changedTo;
+    private int changedRanges;
+    private boolean changesKnown;
+
+    /**
+     * remembered ray and hit per ray index, and the version it was cast against
+     */
+    private double[] lastOx, lastOy, lastDirX, lastDirY, lastX, lastY, lastT;
+    private int[] lastSegment, lastVersion;
+
+    /**
+     * most rays asked for, memory grows to it on the next update
+     */
+    private final AtomicInteger wanted = new AtomicInteger();
+
+    /**
+     * @param caster - {@link RayCaster} used for the rays that need a cast
+     */
+    public CoherentCaster(RayCaster caster) {
+        this.caster = caster;
+        changedFrom = new int[CHANGED_LIMIT];
+        changedTo = new int[CHANGED_LIMIT];
+        grow(0);
+    }
+
+    /**
+     * @return {@link RayCaster} used for the rays that need a cast
+     */
+    public RayCaster getCaster() {
+        return caster;
+    }
+
+    @Override
+    public void update(SegmentBuffer buffer) {
+        caster.update(buffer);
+        segments = buffer.segments();
+        if (buffer.getLayoutModCount() != layoutModCount) {
+            version++;
+            layoutVersion = version;
+            changesKnown = false;
+        } else if (buffer.getModCount() != modCount) {
+            version++;
+            changesKnown = buffer.getModCount() == modCount + 1 && collectChanges(buffer);
+        }
+        modCount = buffer.getModCount();
+        layoutModCount = buffer.getLayoutModCount();
+        if (wanted.get() > lastT.length) {
+            grow(wanted.get());
+        }
+    }
+
+    /**
+     * copy the edge ranges of the changed shapes.
+     *
+     * @return false if more than {@link #CHANGED_LIMIT} edges changed
+     */
+    private boolean collectChanges(SegmentBuffer buffer) {
+        int edges = 0;
+        changedRanges = 0;
+        for (int i = 0; i < buffer.changedCount(); i++) {
+            int shape = buffer.changedShape(i);
+            edges += buffer.offset(shape + 1) - buffer.offset(shape);
+            if (edges > CHANGED_LIMIT) {
+                return false;
+            }
+            changedFrom[changedRanges] = buffer.offset(shape);
+            changedTo[changedRanges++] = buffer.offset(shape + 1);
+        }
+        return true;
+    }
+
+    private void grow(int rays) {
+        lastOx = new double[rays];
+        lastOy = new double[rays];
+        lastDirX = new double[rays];
+        lastDirY = new double[rays];
+        lastX = new double[rays];
+        lastY = new double[rays];
+        lastT = new double[rays];
+        lastSegment = new int[rays];
+        // version 0 is before the first update, so nothing is remembered yet
+        lastVersion = new int[rays];
+    }
+
+    @Override
+    public void castFan(double ox, double oy, double[] dirX, double[] dirY, int from, int to,
+                        double[] hitX, double[] hitY, double[] hitT, int[] hitSegment) {
+        int remembered = Math.max(from, Math.min(to, lastT.length));
+        if (to > lastT.length) {
+            wanted.accumulateAndGet(to, Math::max);
+        }
+        // rays the remembered hits did not settle are cast in runs
+        int run = -1;
+        for (int r = from; r < to; r++) {
+            boolean settled = r < remembered && recall(r, ox, oy, dirX[r], dirY[r], hitX, hitY, hitT, hitSegment);
+            if (settled && run >= 0) {
+                caster.castFan(ox, oy, dirX, dirY, run, r, hitX, hitY, hitT, hitSegment);
+                run = -1;
+            } else if (!settled && run < 0) {
+                run = r;
+            }
+        }
+        if (run >= 0) {
+            caster.castFan(ox, oy, dirX, dirY, run, to, hitX, hitY, hitT, hitSegment);
+        }
+
+        for (int r = from; r < remembered; r++) {
+            lastOx[r] = ox;
+            lastOy[r] = oy;
+            lastDirX[r] = dirX[r];
+            lastDirY[r] = dirY[r];
+            lastX[r] = hitX[r];
+            lastY[r] = hitY[r];
+            lastT[r] = hitT[r];
+            lastSegment[r] = hitSegment[r];
+            lastVersion[r] = version;
+        }
+    }
+
+    /**
+     * answer ray r from what is remembered of it, if that is enough.
+     *
+     * @return true if the hit of the ray was written
+     */
+    private boolean recall(int r, double ox, double oy, double rx, double ry,
+                           double[] hitX, double[] hitY, double[] hitT, int[] hitSegment) {
+        if (lastVersion[r] < layoutVersion) {
+            // nothing remembered, or edge indices changed since
+            return false;
+        }
+        boolean sameRay = lastOx[r] == ox && lastOy[r] == oy && lastDirX[r] == rx && lastDirY[r] == ry;
+        int last = lastSegment[r];
+        if (sameRay && lastVersion[r] == version) {
+            hitX[r] = lastX[r];
+            hitY[r] = lastY[r];
+            hitT[r] = lastT[r];
+            hitSegment[r] = last;
+            return true;
+        }
+        if (sameRay && changesKnown && lastVersion[r] == version - 1 && !changed(last)) {
+            // every other edge is where it was and lost to the remembered one
+            double bestT = lastT[r];
+            int best = last;
+            for (int i = 0; i < changedRanges; i++) {
+                for (int e = changedFrom[i]; e < changedTo[i]; e++) {
+                    double t = RayKernel.scalar(ox, oy, rx, ry, segments, e);
+                    if (t < bestT || t == bestT && e < best) {
+                        bestT = t;
+                        best = e;
+                    }
+                }
+            }
+            hitT[r] = bestT;
+            hitSegment[r] = best;
+            hitX[r] = best == RayKernel.NO_HIT ? Double.NaN : ox + rx * bestT;
+            hitY[r] = best == RayKernel.NO_HIT ? Double.NaN : oy + ry * bestT;
+            return true;
+        }
+        return false;
+    }
+
+    private boolean changed(int edge) {
+        for (int i = 0; i < changedRanges; i++) {
+            if (edge >= changedFrom[i] && edge < changedTo[i]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return caster + " with coherence";
+    }
+}
@@ -0,0 +1,73 @@
+package raycast.engine;
+
+import javafx.beans.property.IntegerProperty;
+import javafx.beans.value.ObservableIntegerValue;
+
+/**
+ * unit directions of {@link raycast.CanvasMap#getRayCount()} evenly spread rays. the angles only change when the
+ * ray count does, so instead of a cos and sin per ray per frame the table listens to
+ * {@link raycast.CanvasMap#rayCountProperty()} and is only rebuilt when the count changes.
+ *
+ * <p>the table is rebuilt by the listener, so it must be read on the thread that changes the property,
+ * which for the toolbar spinner is the JavaFX thread. a rebuild never writes to arrays it handed out, it puts
+ * new ones in their place, so arrays read for a frame can be cast from on other threads while the count
+ * changes.</p>
+ *
+ * @author leon
+ * @since Mar-24-2019
+ */
+public class DirectionTable {
+
+    private double[] dirX, dirY;
+    private int size;
+
+    /**
+     * create a table that follows the given ray count.
+     *
+     * @param rayCount - {@link IntegerProperty} of ray count
+     */
+    public DirectionTable(ObservableIntegerValue rayCount) {
+        dirX = dirY = new double[0];
+        rayCount.addListener((observable, oldValue, newValue) -> rebuild(newValue.intValue()));
+        rebuild(rayCount.get());
+    }
+
+    /**
+     * fill new arrays for the given number of rays, the old ones may still be in use by a frame.
+     *
+     * @param count - number of rays
+     */
+    private void rebuild(int count) {
+        count = Math.max(count, 0);
+        double[] x = new double[count], y = new double[count];
+        double step = 2 * Math.PI / count;
+        for (int i = 0; i < count; i++) {
+            x[i] = Math.cos(step * i);
+            y[i] = Math.sin(step * i);
+        }
+        dirX = x;
+        dirY = y;
+        size = count;
+    }
+
+    /**
+     * @return x of unit directions, only the first {@link #size()} are valid. never changed once returned
+     */
+    public double[] dirX() {
+        return dirX;
+    }
+
+    /**
+     * @return y of unit directions, only the first {@link #size()} are valid. never changed once returned
+     */
+    public double[] dirY() {
+        return dirY;
+    }
+
+    /**
+     * @return number of directions
+     */
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,234 @@
+package raycast.engine;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * calls a {@link Step} at a fixed rate on its own thread, so a simulation advances by the same time step no matter
+ * how often or how late frames are drawn. a frame drawn between two steps can blend the last two states with
+ * {@link #alpha(long)}.
+ *
+ * <p>the clock keeps to its rate by the deadline of the next step, not by sleeping a fixed time after each step,
+ * so slow steps do not add up. if it falls behind it runs up to {@link #MAX_CATCH_UP} steps back to back and then
+ * drops the rest, a stall does not turn into a burst of steps. {@link #setSpeed(double)} runs the simulation
+ * faster or slower than real time, at infinite speed steps run back to back, and {@link #advance(int)} runs steps
+ * on the calling thread, both meant for benchmarks.</p>
+ *
+ * @author leon
+ * @since Apr-7-2019
+ */
+public class FixedStepClock {
+
+    /**
+     * steps run back to back when behind, beyond that steps are dropped
+     */
+    public static final int MAX_CATCH_UP = 5;
+
+    /**
+     * one step of a simulation
+     */
+    public interface Step {
+
+        /**
+         * advance the simulation.
+         *
+         * @param dt - simulated seconds of this step, the same for every step
+         */
+        void step(double dt);
+    }
+
+    private final double rate, dt;
+    private final long stepNanos;
+    private final Step step;
+
+    /**
+     * simulated seconds per real second
+     */
+    private volatile double speed = 1;
+
+    private Thread thread;
+    private volatile boolean running;
+
+    /**
+     * steps run, steps dropped and when the last step ended
+     */
+    private volatile long ticks, dropped, lastStep;
+
+    /**
+     * steps per real second, measured over about a second
+     */
+    private volatile double throughput;
+
+    /**
+     * @param rate - steps per simulated second
+     * @param step - {@link Step} to run
+     */
+    public FixedStepClock(double rate, Step step) {
+        if (!(rate > 0)) {
+            throw new IllegalArgumentException("rate must be positive");
+        }
+        this.rate = rate;
+        this.dt = 1 / rate;
+        this.stepNanos = Math.round(1e9 / rate);
+        this.step = step;
+    }
+
+    /**
+     * run the simulation faster or slower than real time.
+     *
+     * @param speed - simulated seconds per real second, {@link Double#POSITIVE_INFINITY} to run steps back to back
+     * @return the current instance of this object
+     */
+    public FixedStepClock setSpeed(double speed) {
+        if (!(speed > 0)) {
+            throw new IllegalArgumentException("speed must be positive");
+        }
+        this.speed = speed;
+        return this;
+    }
+
+    /**
+     * @return simulated seconds per real second
+     */
+    public double getSpeed() {
+        return speed;
+    }
+
+    /**
+     * @return steps per simulated second
+     */
+    public double getRate() {
+        return rate;
+    }
+
+    /**
+     * start stepping on a daemon thread, nothing happens if already started.
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        thread = new Thread(this::run, "simulation");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * stop stepping and wait for the step being run, if any.
+     */
+    public synchronized void stop() {
+        running = false;
+        if (thread == null) {
+            return;
+        }
+        LockSupport.unpark(thread);
+        if (thread != Thread.currentThread()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        thread = null;
+    }
+
+    /**
+     * @return true if stepping on its own thread
+     */
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * run steps on the calling thread as fast as they go, must not be called while running.
+     *
+     * @param steps - number of steps to run
+     */
+    public void advance(int steps) {
+        if (running) {
+            throw new IllegalStateException("clock is running");
+        }
+        for (int i = 0; i < steps; i++) {
+            tick();
+        }
+    }
+
+    private void run() {
+        long next = System.nanoTime();
+        long windowStart = next, windowTicks = ticks;
+        try {
+            while (running) {
+                double speed = this.speed;
+                long now = System.nanoTime();
+                if (speed == Double.POSITIVE_INFINITY) {
+                    tick();
+                    next = now;
+                } else {
+                    long interval = Math.max(1, (long) (stepNanos / speed));
+                    if (now < next) {
+                        LockSupport.parkNanos(next - now);
+                        continue;
+                    }
+                    for (int i = 0; i < MAX_CATCH_UP && now >= next; i++) {
+                        tick();
+                        next += interval;
+                    }
+                    if (now >= next) {
+                        dropped += (now - next) / interval + 1;
+                        next = now + interval;
+                    }
+                }
+                if (now - windowStart >= 1_000_000_000L) {
+                    throughput = (ticks - windowTicks) * 1e9 / (now - windowStart);
+                    windowStart = now;
+                    windowTicks = ticks;
+                }
+            }
+        } finally {
+            running = false;
+        }
+    }
+
+    private void tick() {
+        step.step(dt);
+        lastStep = System.nanoTime();
+        ticks++;
+    }
+
+    /**
+     * get how far time has moved from the last step towards the next, to blend the last two states of the
+     * simulation. 1 if no step was run yet or steps run back to back.
+     *
+     * @param now - current time in nanoseconds of {@link System#nanoTime()}, as given to animators
+     * @return 0 right after a step up to 1 when the next step is due
+     */
+    public double alpha(long now) {
+        double speed = this.speed;
+        if (ticks == 0 || speed == Double.POSITIVE_INFINITY) {
+            return 1;
+        }
+        double alpha = (now - lastStep) * speed / stepNanos;
+        return Math.max(0, Math.min(1, alpha));
+    }
+
+    /**
+     * @return number of steps run
+     */
+    public long getTicks() {
+        return ticks;
+    }
+
+    /**
+     * @return number of steps skipped because the clock fell more than {@link #MAX_CATCH_UP} steps behind
+     */
+    public long getDropped() {
+        return dropped;
+    }
+
+    /**
+     * @return steps run per real second, measured over about the last second
+     */
+    public double getStepsPerSecond() {
+        return throughput;
+    }
+}
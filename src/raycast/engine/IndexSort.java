@@ -0,0 +1,70 @@
+package raycast.engine;
+
+/**
+ * sort an array of indices by the double key each index points to, without boxing.
+ * {@link java.util.Arrays} can only sort the keys themselves which loses which key belonged to which index.
+ *
+ * @author leon
+ * @since Mar-23-2019
+ */
+final class IndexSort {
+
+    /**
+     * below this size insertion sort is faster than splitting again
+     */
+    private static final int INSERTION_LIMIT = 16;
+
+    private IndexSort() {
+    }
+
+    /**
+     * sort order[from, to) so keys[order[i]] is ascending. not stable.
+     *
+     * @param order - indices into keys
+     * @param from  - inclusive
+     * @param to    - exclusive
+     * @param keys  - key of each index
+     */
+    static void sort(int[] order, int from, int to, double[] keys) {
+        while (to - from > INSERTION_LIMIT) {
+            int mid = (from + to) >>> 1;
+            // median of three as pivot so already sorted input does not become quadratic
+            if (keys[order[mid]] < keys[order[from]]) swap(order, mid, from);
+            if (keys[order[to - 1]] < keys[order[from]]) swap(order, to - 1, from);
+            if (keys[order[to - 1]] < keys[order[mid]]) swap(order, to - 1, mid);
+            double pivot = keys[order[mid]];
+            int i = from, j = to - 1;
+            while (i <= j) {
+                while (keys[order[i]] < pivot) i++;
+                while (keys[order[j]] > pivot) j--;
+                if (i <= j) {
+                    swap(order, i++, j--);
+                }
+            }
+            // recurse into the smaller half and loop on the bigger one to keep the stack shallow
+            if (j - from < to - i) {
+                sort(order, from, j + 1, keys);
+                from = i;
+            } else {
+                sort(order, i, to, keys);
+                to = j + 1;
+            }
+        }
+        for (int i = from + 1; i < to; i++) {
+            int index = order[i];
+            double key = keys[index];
+            int j = i - 1;
+            while (j >= from && keys[order[j]] > key) {
+                order[j + 1] = order[j];
+                j--;
+            }
+            order[j + 1] = index;
+        }
+    }
+
+    private static void swap(int[] order, int i, int j) {
+        int temp = order[i];
+        order[i] = order[j];
+        order[j] = temp;
+    }
+}
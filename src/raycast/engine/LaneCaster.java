@@ -0,0 +1,162 @@
+package raycast.engine;
+
+/**
+ * brute force like {@link RayKernel}, but on the vector unit when the JVM has the {@code jdk.incubator.vector}
+ * module. the edges are transposed into one array per component, and one ray is tested against as many edges
+ * per instruction as a vector of doubles holds, 4 with AVX2 and 8 with AVX-512. every lane keeps its own
+ * closest hit through a mask of the lanes that hit and are closer, and the lanes are reduced to one hit at
+ * the end of the edges.
+ *
+ * <p>the module is only resolved when the JVM is started with {@code --add-modules jdk.incubator.vector}, so
+ * the vector kernel is looked up once with {@link ModuleLayer#findModule} and loaded by reflection. without the
+ * module, or if it fails to load, every fan is handed to {@link RayKernel#castFan}. both paths use the same
+ * terms in the same order, and on equal scalars the lower edge wins in both, so the results are identical to
+ * {@link RayKernel} and either can be used where the other is.</p>
+ *
+ * @author leon
+ * @since Mar-28-2019
+ */
+public class LaneCaster implements RayCaster {
+
+    /**
+     * module of the Vector API, incubating and not resolved by default
+     */
+    public static final String VECTOR_MODULE = "jdk.incubator.vector";
+
+    /**
+     * casts one fan against transposed edges, implemented by {@link VectorKernel} which can only be linked when
+     * {@link #VECTOR_MODULE} is present.
+     */
+    interface Kernel {
+
+        /**
+         * @return number of edges tested per step, the edge arrays are padded to a multiple of it
+         */
+        int lanes();
+
+        /**
+         * same contract as {@link RayKernel#castFan}, edge e runs from start to start + delta. padding edges
+         * have a delta of 0 and are never hit.
+         */
+        void castFan(double ox, double oy, double[] dirX, double[] dirY, int from, int to,
+                     double[] startX, double[] startY, double[] deltaX, double[] deltaY, int count,
+                     double[] hitX, double[] hitY, double[] hitT, int[] hitSegment);
+    }
+
+    private static final Kernel VECTOR = loadVector();
+
+    private final Kernel kernel;
+
+    private double[] segments;
+    private double[] startX, startY, deltaX, deltaY;
+    private int size, padded;
+
+    /**
+     * what the lanes were filled from
+     */
+    private int modCount;
+    private int layoutModCount;
+
+    /**
+     * a caster on the vector unit if {@link #isVectorAvailable()}, otherwise on {@link RayKernel}
+     */
+    public LaneCaster() {
+        this(true);
+    }
+
+    /**
+     * @param vector - false to always use {@link RayKernel}, even when the vector kernel is available
+     */
+    public LaneCaster(boolean vector) {
+        kernel = vector ? VECTOR : null;
+        startX = startY = deltaX = deltaY = new double[0];
+        layoutModCount = -1;
+    }
+
+    private static Kernel loadVector() {
+        if (!ModuleLayer.boot().findModule(VECTOR_MODULE).isPresent()) {
+            return null;
+        }
+        try {
+            return (Kernel) Class.forName("raycast.engine.VectorKernel").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            // a module without the classes this was compiled against, the scalar kernel still works
+            return null;
+        }
+    }
+
+    /**
+     * @return true if {@link #VECTOR_MODULE} is present and the vector kernel loaded
+     */
+    public static boolean isVectorAvailable() {
+        return VECTOR != null;
+    }
+
+    /**
+     * @return true if this caster runs on the vector kernel
+     */
+    public boolean isVector() {
+        return kernel != null;
+    }
+
+    @Override
+    public void update(SegmentBuffer buffer) {
+        segments = buffer.segments();
+        size = buffer.size();
+        if (kernel == null) {
+            return;
+        }
+        boolean sameLayout = buffer.getLayoutModCount() == layoutModCount;
+        if (sameLayout && buffer.getModCount() == modCount) {
+            return;
+        }
+        int lanes = kernel.lanes();
+        padded = (size + lanes - 1) / lanes * lanes;
+        if (startX.length < padded) {
+            startX = new double[padded];
+            startY = new double[padded];
+            deltaX = new double[padded];
+            deltaY = new double[padded];
+        }
+        if (sameLayout && buffer.getModCount() == modCount + 1) {
+            for (int i = 0; i < buffer.changedCount(); i++) {
+                int shape = buffer.changedShape(i);
+                transpose(buffer.offset(shape), buffer.offset(shape + 1));
+            }
+        } else {
+            transpose(0, size);
+            // edges of a larger scene before may be left in the last step
+            for (int e = size; e < padded; e++) {
+                startX[e] = startY[e] = deltaX[e] = deltaY[e] = 0;
+            }
+        }
+        modCount = buffer.getModCount();
+        layoutModCount = buffer.getLayoutModCount();
+    }
+
+    private void transpose(int from, int to) {
+        for (int e = from; e < to; e++) {
+            int s = e * RayKernel.SEGMENT_STRIDE;
+            startX[e] = segments[s];
+            startY[e] = segments[s + 1];
+            deltaX[e] = segments[s + 2];
+            deltaY[e] = segments[s + 3];
+        }
+    }
+
+    @Override
+    public void castFan(double ox, double oy, double[] dirX, double[] dirY, int from, int to,
+                        double[] hitX, double[] hitY, double[] hitT, int[] hitSegment) {
+        if (kernel == null) {
+            RayKernel.castFan(ox, oy, dirX, dirY, from, to, segments, size, hitX, hitY, hitT, hitSegment);
+        } else {
+            kernel.castFan(ox, oy, dirX, dirY, from, to, startX, startY, deltaX, deltaY, padded,
+                    hitX, hitY, hitT, hitSegment);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return kernel == null ? "lane kernel (scalar)" : "lane kernel (" + kernel.lanes() + " lanes)";
+    }
+}
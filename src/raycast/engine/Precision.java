@@ -0,0 +1,37 @@
+package raycast.engine;
+
+/**
+ * number format the edges and rays are compiled to before casting.
+ *
+ * @author leon
+ * @since Mar-29-2019
+ */
+public enum Precision {
+
+    /**
+     * 64 bit floating point, same as the shapes themselves
+     */
+    DOUBLE("double"),
+
+    /**
+     * 32 bit floating point, half the memory traffic and plenty for pixel sized scenes
+     */
+    FLOAT("float"),
+
+    /**
+     * integer fixed point, inside or outside of every edge is decided exactly and the result is the same on
+     * every machine
+     */
+    FIXED("fixed");
+
+    private final String name;
+
+    Precision(String name) {
+        this.name = name;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,36 @@
+package raycast.engine;
+
+/**
+ * finds the closest edge of a {@link SegmentBuffer} along a fan of rays. implementations keep their own
+ * acceleration structure which {@link #update(SegmentBuffer)} brings up to date, once per frame on one thread.
+ * after that {@link #castFan} only reads, so any number of threads can cast disjoint ranges of rays at once.
+ *
+ * @author leon
+ * @since Mar-25-2019
+ */
+public interface RayCaster {
+
+    /**
+     * bring the caster up to date with the given edges, cheap if nothing changed.
+     *
+     * @param buffer - compiled edges of the scene
+     */
+    void update(SegmentBuffer buffer);
+
+    /**
+     * same contract as {@link RayKernel#castFan} against the edges of the last {@link #update(SegmentBuffer)}.
+     *
+     * @param ox         - x of origin shared by all rays
+     * @param oy         - y of origin shared by all rays
+     * @param dirX       - x component of ray directions
+     * @param dirY       - y component of ray directions
+     * @param from       - first ray index, inclusive
+     * @param to         - last ray index, exclusive
+     * @param hitX       - output, x of closest intersect per ray
+     * @param hitY       - output, y of closest intersect per ray
+     * @param hitT       - output, ray scalar of closest intersect per ray
+     * @param hitSegment - output, index of the segment that was hit per ray
+     */
+    void castFan(double ox, double oy, double[] dirX, double[] dirY, int from, int to,
+                 double[] hitX, double[] hitY, double[] hitT, int[] hitSegment);
+}
@@ -0,0 +1,161 @@
+package raycast.engine;
+
+import raycast.entity.geometry.PolyShape;
+
+import java.util.List;
+
+/**
+ * batched ray/segment intersection. this is the same math as
+ * {@link raycast.animator.AbstractAnimator#getIntersection} but it tests a whole fan of rays against
+ * a packed array of segments and writes the closest hit of every ray into caller owned buffers.
+ * nothing is allocated, so it can be called every frame.
+ *
+ * <p>
+ * segments are packed 4 doubles each as start x, start y, delta x, delta y where delta is end minus start.
+ * rays are given as one origin plus a direction per ray, the returned scalar t is in units of the direction
+ * vector so with unit directions it is the distance from the origin.
+ * </p>
+ *
+ * @author leon
+ * @since Mar-21-2019
+ */
+public final class RayKernel {
+
+    /**
+     * number of doubles used by one packed segment
+     */
+    public static final int SEGMENT_STRIDE = 4;
+
+    /**
+     * value stored in the segment index buffer when a ray hits nothing
+     */
+    public static final int NO_HIT = -1;
+
+    private RayKernel() {
+    }
+
+    /**
+     * count the edges of all given shapes, every shape is a closed polygon so it has as many edges as points.
+     *
+     * @param shapes - list of {@link PolyShape}
+     * @return number of edges
+     */
+    public static int segmentCount(List<PolyShape> shapes) {
+        int count = 0;
+        for (PolyShape shape : shapes) {
+            count += shape.getPointCount();
+        }
+        return count;
+    }
+
+    /**
+     * pack the edges of all given shapes into the given array. the array must be at least
+     * {@link #segmentCount(List)} * {@link #SEGMENT_STRIDE} long.
+     *
+     * @param shapes   - list of {@link PolyShape}
+     * @param segments - destination array
+     * @return number of segments written
+     */
+    public static int packSegments(List<PolyShape> shapes, double[] segments) {
+        int index = 0;
+        for (PolyShape shape : shapes) {
+            int n = shape.getPointCount();
+            for (int i = 0; i < n; i++) {
+                int j = i + 1 == n ? 0 : i + 1;
+                double sx = shape.pX(i);
+                double sy = shape.pY(i);
+                segments[index++] = sx;
+                segments[index++] = sy;
+                segments[index++] = shape.pX(j) - sx;
+                segments[index++] = shape.pY(j) - sy;
+            }
+        }
+        return index / SEGMENT_STRIDE;
+    }
+
+    /**
+     * find the closest intersection of every ray in [from, to) with the given segments.
+     * for a ray without any hit the segment index is {@link #NO_HIT}, t is {@link Double#POSITIVE_INFINITY}
+     * and x, y are {@link Double#NaN}.
+     *
+     * @param ox           - x of origin shared by all rays
+     * @param oy           - y of origin shared by all rays
+     * @param dirX         - x component of ray directions
+     * @param dirY         - y component of ray directions
+     * @param from         - first ray index, inclusive
+     * @param to           - last ray index, exclusive
+     * @param segments     - packed segments, see {@link #SEGMENT_STRIDE}
+     * @param segmentCount - number of segments to test
+     * @param hitX         - output, x of closest intersect per ray
+     * @param hitY         - output, y of closest intersect per ray
+     * @param hitT         - output, ray scalar of closest intersect per ray
+     * @param hitSegment   - output, index of the segment that was hit per ray
+     */
+    public static void castFan(double ox, double oy, double[] dirX, double[] dirY, int from, int to,
+                               double[] segments, int segmentCount,
+                               double[] hitX, double[] hitY, double[] hitT, int[] hitSegment) {
+        int end = segmentCount * SEGMENT_STRIDE;
+        for (int r = from; r < to; r++) {
+            double rx = dirX[r];
+            double ry = dirY[r];
+            double bestT = Double.POSITIVE_INFINITY;
+            int best = NO_HIT;
+            for (int s = 0; s < end; s += SEGMENT_STRIDE) {
+                // same terms as getIntersection, q is the ray origin and p the segment start
+                double sx = segments[s + 2];
+                double sy = segments[s + 3];
+                double rs = rx * sy - sx * ry;
+                if (rs == 0) {
+                    continue;
+                }
+                double qpx = ox - segments[s];
+                double qpy = oy - segments[s + 1];
+                double rayScaler = -(qpx * sy - sx * qpy) / rs;
+                if (rayScaler < 0 || rayScaler >= bestT) {
+                    continue;
+                }
+                double segmentScaler = -(qpx * ry - rx * qpy) / rs;
+                if (segmentScaler >= 0 && segmentScaler <= 1) {
+                    bestT = rayScaler;
+                    best = s;
+                }
+            }
+            hitT[r] = bestT;
+            if (best == NO_HIT) {
+                hitSegment[r] = NO_HIT;
+                hitX[r] = Double.NaN;
+                hitY[r] = Double.NaN;
+            } else {
+                hitSegment[r] = best / SEGMENT_STRIDE;
+                hitX[r] = ox + rx * bestT;
+                hitY[r] = oy + ry * bestT;
+            }
+        }
+    }
+
+    /**
+     * ray scalar where one ray hits one segment, with the same terms as {@link #castFan}.
+     *
+     * @param ox       - x of ray origin
+     * @param oy       - y of ray origin
+     * @param rx       - x of ray direction
+     * @param ry       - y of ray direction
+     * @param segments - packed segments, see {@link #SEGMENT_STRIDE}
+     * @param segment  - index of the segment
+     * @return ray scalar of the hit, or {@link Double#POSITIVE_INFINITY} if the ray misses the segment
+     */
+    public static double scalar(double ox, double oy, double rx, double ry, double[] segments, int segment) {
+        int s = segment * SEGMENT_STRIDE;
+        double sx = segments[s + 2];
+        double sy = segments[s + 3];
+        double rs = rx * sy - sx * ry;
+        if (rs == 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double qpx = ox - segments[s];
+        double qpy = oy - segments[s + 1];
+        double rayScaler = -(qpx * sy - sx * qpy) / rs;
+        double segmentScaler = -(qpx * ry - rx * qpy) / rs;
+        return rayScaler >= 0 && segmentScaler >= 0 && segmentScaler <= 1 ? rayScaler : Double.POSITIVE_INFINITY;
+    }
+}
@@ -0,0 +1,251 @@
+package raycast.engine;
+
+import raycast.entity.geometry.PolyShape;
+
+import java.util.List;
+
+/**
+ * every edge of the scene compiled into one contiguous array, packed as {@link RayKernel#SEGMENT_STRIDE}
+ * doubles of start and delta, with the index of the owning shape per edge. the 4 canvas borders are added at
+ * the end with owner {@link #BORDER} so every ray hits something.
+ *
+ * <p>the buffer is only rebuilt when the shape list, a shape's points or the canvas size changed. each update
+ * increases {@link #getModCount()} so anything derived from the buffer can tell when it is stale.
+ * if only the points of some shapes moved and every shape kept its number of points, the edges keep their
+ * indices and only those shapes are rewritten. {@link #getLayoutModCount()} stays the same in that case and
+ * {@link #changedShape(int)} lists them, so derived structures can update instead of rebuilding.</p>
+ *
+ * @author leon
+ * @since Mar-24-2019
+ */
+public class SegmentBuffer {
+
+    /**
+     * owner of the canvas border edges
+     */
+    public static final int BORDER = -1;
+
+    private double[] segments;
+    private int[] owner;
+    private int size;
+
+    /**
+     * first edge of every shape, the last entry is the first border edge
+     */
+    private int[] offsets;
+
+    /**
+     * what the buffer was built from
+     */
+    private int[] shapeModCounts;
+    private int shapeCount;
+    private int listModCount;
+    private double w, h;
+
+    /**
+     * shapes rewritten by the last update that kept the layout
+     */
+    private int[] changed;
+    private int changedCount;
+
+    private int modCount;
+    private int layoutModCount;
+
+    public SegmentBuffer() {
+        segments = new double[0];
+        owner = shapeModCounts = changed = new int[0];
+        offsets = new int[1];
+        listModCount = -1;
+    }
+
+    /**
+     * bring the buffer up to date if anything it was built from changed.
+     *
+     * @param shapes       - shapes of the scene
+     * @param listModCount - modification count of the shape list
+     * @param w            - width of canvas
+     * @param h            - height of canvas
+     * @return true if the buffer was changed
+     */
+    public boolean update(List<PolyShape> shapes, int listModCount, double w, double h) {
+        if (!isStale(shapes, listModCount, w, h)) {
+            return false;
+        }
+        if (sameLayout(shapes, listModCount, w, h)) {
+            changedCount = 0;
+            for (int s = 0; s < shapeCount; s++) {
+                PolyShape shape = shapes.get(s);
+                if (shape.getModCount() != shapeModCounts[s]) {
+                    writeShape(shape, s, offsets[s]);
+                    changed[changedCount++] = s;
+                }
+            }
+        } else {
+            rebuild(shapes, listModCount, w, h);
+        }
+        modCount++;
+        return true;
+    }
+
+    private boolean isStale(List<PolyShape> shapes, int listModCount, double w, double h) {
+        if (listModCount != this.listModCount || shapes.size() != shapeCount || w != this.w || h != this.h) {
+            return true;
+        }
+        for (int s = 0; s < shapeCount; s++) {
+            if (shapes.get(s).getModCount() != shapeModCounts[s]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean sameLayout(List<PolyShape> shapes, int listModCount, double w, double h) {
+        if (listModCount != this.listModCount || shapes.size() != shapeCount || w != this.w || h != this.h) {
+            return false;
+        }
+        for (int s = 0; s < shapeCount; s++) {
+            if (shapes.get(s).getPointCount() != offsets[s + 1] - offsets[s]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void rebuild(List<PolyShape> shapes, int listModCount, double w, double h) {
+        int needed = RayKernel.segmentCount(shapes) + 4;
+        if (owner.length < needed) {
+            segments = new double[needed * RayKernel.SEGMENT_STRIDE];
+            owner = new int[needed];
+        }
+        if (shapeModCounts.length < shapes.size()) {
+            shapeModCounts = new int[shapes.size()];
+            changed = new int[shapes.size()];
+            offsets = new int[shapes.size() + 1];
+        }
+
+        size = 0;
+        for (int s = 0; s < shapes.size(); s++) {
+            offsets[s] = size;
+            size = writeShape(shapes.get(s), s, size);
+        }
+        offsets[shapes.size()] = size;
+        put(size++, 0, 0, w, 0, BORDER);
+        put(size++, w, 0, 0, h, BORDER);
+        put(size++, w, h, -w, 0, BORDER);
+        put(size++, 0, h, 0, -h, BORDER);
+
+        shapeCount = shapes.size();
+        changedCount = shapeCount;
+        for (int s = 0; s < shapeCount; s++) {
+            changed[s] = s;
+        }
+        this.listModCount = listModCount;
+        this.w = w;
+        this.h = h;
+        layoutModCount++;
+    }
+
+    /**
+     * write the edges of one shape starting at the given edge index.
+     *
+     * @return index after the last edge written
+     */
+    private int writeShape(PolyShape shape, int s, int index) {
+        int n = shape.getPointCount();
+        for (int i = 0; i < n; i++) {
+            int j = i + 1 == n ? 0 : i + 1;
+            put(index++, shape.pX(i), shape.pY(i), shape.pX(j) - shape.pX(i), shape.pY(j) - shape.pY(i), s);
+        }
+        shapeModCounts[s] = shape.getModCount();
+        return index;
+    }
+
+    private void put(int index, double x, double y, double dx, double dy, int shape) {
+        int i = index * RayKernel.SEGMENT_STRIDE;
+        segments[i] = x;
+        segments[i + 1] = y;
+        segments[i + 2] = dx;
+        segments[i + 3] = dy;
+        owner[index] = shape;
+    }
+
+    /**
+     * @return packed edges, only the first {@link #size()} are valid
+     */
+    public double[] segments() {
+        return segments;
+    }
+
+    /**
+     * @param segment - index of edge
+     * @return index of the shape in the shape list the edge belongs to, or {@link #BORDER}
+     */
+    public int owner(int segment) {
+        return owner[segment];
+    }
+
+    /**
+     * @param shape - index of shape in the shape list, or the number of shapes for the border edges
+     * @return index of the first edge of the shape
+     */
+    public int offset(int shape) {
+        return offsets[shape];
+    }
+
+    /**
+     * @return number of shapes
+     */
+    public int shapeCount() {
+        return shapeCount;
+    }
+
+    /**
+     * @return width of canvas the borders were built for
+     */
+    public double w() {
+        return w;
+    }
+
+    /**
+     * @return height of canvas the borders were built for
+     */
+    public double h() {
+        return h;
+    }
+
+    /**
+     * @return number of edges including the 4 canvas borders
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return number of shapes changed by the last update
+     */
+    public int changedCount() {
+        return changedCount;
+    }
+
+    /**
+     * @param i - index between 0 and {@link #changedCount()}
+     * @return index of a shape changed by the last update
+     */
+    public int changedShape(int i) {
+        return changed[i];
+    }
+
+    /**
+     * @return number of times the buffer was changed
+     */
+    public int getModCount() {
+        return modCount;
+    }
+
+    /**
+     * @return number of times the edges were reindexed, when it is unchanged edge indices are still valid
+     */
+    public int getLayoutModCount() {
+        return layoutModCount;
+    }
+}
@@ -0,0 +1,162 @@
+package raycast.engine;
+
+import java.util.Arrays;
+
+/**
+ * split segments where they cross each other. shapes are allowed to overlap but the sweep in
+ * {@link SweepVisibility} needs segments that at most touch, so every crossing becomes an end point.
+ * candidate pairs are found by sorting on min x and only testing segments whose x ranges overlap,
+ * which is close to n log n for scenes where shapes do not pile up on one column.
+ *
+ * <p>the buffers are kept between calls and only grow.</p>
+ *
+ * @author leon
+ * @since Mar-23-2019
+ */
+public class SegmentSplitter {
+
+    /**
+     * crossings closer than this, as a fraction of segment length, to an end point are treated as touching
+     */
+    private static final double EPSILON = 0.000000001;
+
+    private double[] minX, maxX, splitKey, splitU, result;
+    private int[] order, active, splitSeg, splitOrder;
+    private int splitCount;
+
+    public SegmentSplitter() {
+        minX = maxX = splitKey = splitU = result = new double[0];
+        order = active = splitSeg = splitOrder = new int[0];
+    }
+
+    /**
+     * split the given segments at every crossing.
+     *
+     * @param segments     - packed segments, see {@link RayKernel#SEGMENT_STRIDE}
+     * @param segmentCount - number of segments
+     * @return number of segments in {@link #segments()}
+     */
+    public int split(double[] segments, int segmentCount) {
+        if (minX.length < segmentCount) {
+            minX = new double[segmentCount];
+            maxX = new double[segmentCount];
+            order = new int[segmentCount];
+            active = new int[segmentCount];
+        }
+        for (int i = 0; i < segmentCount; i++) {
+            int s = i * RayKernel.SEGMENT_STRIDE;
+            double dx = segments[s + 2];
+            minX[i] = dx < 0 ? segments[s] + dx : segments[s];
+            maxX[i] = dx < 0 ? segments[s] : segments[s] + dx;
+            order[i] = i;
+        }
+        IndexSort.sort(order, 0, segmentCount, minX);
+
+        splitCount = 0;
+        int activeCount = 0;
+        for (int k = 0; k < segmentCount; k++) {
+            int i = order[k];
+            int kept = 0;
+            for (int a = 0; a < activeCount; a++) {
+                int j = active[a];
+                if (maxX[j] < minX[i]) {
+                    continue;
+                }
+                active[kept++] = j;
+                cross(segments, i, j);
+            }
+            activeCount = kept;
+            active[activeCount++] = i;
+        }
+
+        int pieces = segmentCount + splitCount;
+        if (result.length < pieces * RayKernel.SEGMENT_STRIDE) {
+            result = new double[pieces * RayKernel.SEGMENT_STRIDE];
+        }
+        if (splitCount == 0) {
+            System.arraycopy(segments, 0, result, 0, segmentCount * RayKernel.SEGMENT_STRIDE);
+            return segmentCount;
+        }
+        return emit(segments, segmentCount);
+    }
+
+    /**
+     * @return segments produced by the last call to {@link #split(double[], int)}
+     */
+    public double[] segments() {
+        return result;
+    }
+
+    /**
+     * record a split on both segments if they cross away from their end points.
+     */
+    private void cross(double[] segments, int i, int j) {
+        int a = i * RayKernel.SEGMENT_STRIDE;
+        int b = j * RayKernel.SEGMENT_STRIDE;
+        double rx = segments[a + 2], ry = segments[a + 3];
+        double sx = segments[b + 2], sy = segments[b + 3];
+        double rs = rx * sy - sx * ry;
+        if (rs == 0) {
+            return;
+        }
+        double qpx = segments[a] - segments[b];
+        double qpy = segments[a + 1] - segments[b + 1];
+        double t = -(qpx * sy - sx * qpy) / rs;
+        double u = -(qpx * ry - rx * qpy) / rs;
+        if (t > EPSILON && t < 1 - EPSILON && u > EPSILON && u < 1 - EPSILON) {
+            addSplit(i, t);
+            addSplit(j, u);
+        }
+    }
+
+    private void addSplit(int segment, double u) {
+        if (splitSeg.length == splitCount) {
+            int size = Math.max(16, splitCount * 2);
+            splitSeg = Arrays.copyOf(splitSeg, size);
+            splitU = Arrays.copyOf(splitU, size);
+            splitKey = new double[size];
+            splitOrder = new int[size];
+        }
+        splitSeg[splitCount] = segment;
+        splitU[splitCount] = u;
+        splitCount++;
+    }
+
+    /**
+     * write every segment into the result, cut at its splits in order along the segment.
+     *
+     * @return number of segments written
+     */
+    private int emit(double[] segments, int segmentCount) {
+        for (int k = 0; k < splitCount; k++) {
+            // u is in (0, 1) so this orders by segment first and by position along it second
+            splitKey[k] = splitSeg[k] + splitU[k];
+            splitOrder[k] = k;
+        }
+        IndexSort.sort(splitOrder, 0, splitCount, splitKey);
+
+        int out = 0;
+        int next = 0;
+        for (int i = 0; i < segmentCount; i++) {
+            int s = i * RayKernel.SEGMENT_STRIDE;
+            double x = segments[s], y = segments[s + 1], dx = segments[s + 2], dy = segments[s + 3];
+            double u0 = 0;
+            while (next < splitCount && splitSeg[splitOrder[next]] == i) {
+                double u1 = splitU[splitOrder[next++]];
+                out = put(out, x + dx * u0, y + dy * u0, dx * (u1 - u0), dy * (u1 - u0));
+                u0 = u1;
+            }
+            out = put(out, x + dx * u0, y + dy * u0, dx * (1 - u0), dy * (1 - u0));
+        }
+        return out;
+    }
+
+    private int put(int index, double x, double y, double dx, double dy) {
+        int r = index * RayKernel.SEGMENT_STRIDE;
+        result[r] = x;
+        result[r + 1] = y;
+        result[r + 2] = dx;
+        result[r + 3] = dy;
+        return index + 1;
+    }
+}
@@ -0,0 +1,397 @@
+package raycast.engine;
+
+import raycast.entity.geometry.PolyShape;
+import raycast.entity.geometry.RectangleBounds;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * region quadtree of shapes by their {@link PolyShape#getBounds()}. a shape is kept in the smallest node whose
+ * region {@link RectangleBounds#contains(RectangleBounds)} its bounds, so it is stored once and queries only
+ * descend into nodes whose region {@link RectangleBounds#intersects(RectangleBounds)} what they look for.
+ *
+ * <p>every shape remembers its node, so remove and move go straight to it instead of searching, and cost
+ * the depth of the tree. a node splits once it holds more than {@link #CAPACITY} shapes and its children
+ * are merged back when fewer than half of that are left under it. a shape outside the root grows the root
+ * towards it, so shapes can be added anywhere.</p>
+ *
+ * <p>bounds of a {@link PolyShape} change when its points are set, call {@link #move(PolyShape)} for that shape
+ * or {@link #update()} to find every changed shape by its {@link PolyShape#getModCount()}.</p>
+ *
+ * @author leon
+ * @since Mar-27-2019
+ */
+public class ShapeQuadtree {
+
+    /**
+     * shapes a node holds before it splits
+     */
+    private static final int CAPACITY = 8;
+
+    /**
+     * nodes smaller than this do not split, many tiny shapes on one spot would split forever otherwise
+     */
+    private static final double MIN_SIZE = 4;
+
+    /**
+     * times the root may double to reach a shape, beyond that the shape stays in the root
+     */
+    private static final int MAX_GROWTH = 32;
+
+    private Node root;
+    private final Map<PolyShape, Entry> entries;
+
+    /**
+     * @param x - x of the initial root region
+     * @param y - y of the initial root region
+     * @param w - width of the initial root region
+     * @param h - height of the initial root region
+     */
+    public ShapeQuadtree(double x, double y, double w, double h) {
+        root = new Node(null, new RectangleBounds(x, y, Math.max(w, MIN_SIZE), Math.max(h, MIN_SIZE)));
+        entries = new IdentityHashMap<>();
+    }
+
+    /**
+     * add a shape, a shape already in the tree is moved instead.
+     *
+     * @param shape - {@link PolyShape} with points
+     */
+    public void insert(PolyShape shape) {
+        Entry entry = entries.get(shape);
+        if (entry != null) {
+            move(shape);
+            return;
+        }
+        entry = new Entry();
+        entries.put(shape, entry);
+        place(shape, entry);
+    }
+
+    /**
+     * @param shape - {@link PolyShape} to remove
+     * @return true if the shape was in the tree
+     */
+    public boolean remove(PolyShape shape) {
+        Entry entry = entries.remove(shape);
+        if (entry == null) {
+            return false;
+        }
+        unplace(shape, entry);
+        return true;
+    }
+
+    /**
+     * put a shape whose bounds changed in the right node. it stays where it is if that node is still the
+     * smallest one containing it.
+     *
+     * @param shape - {@link PolyShape} already in the tree, otherwise it is inserted
+     */
+    public void move(PolyShape shape) {
+        Entry entry = entries.get(shape);
+        if (entry == null) {
+            insert(shape);
+            return;
+        }
+        entry.modCount = shape.getModCount();
+        RectangleBounds bounds = shape.getBounds();
+        Node node = entry.node;
+        if ((node == root || node.region.contains(bounds)) && node.childContaining(bounds) == null) {
+            return;
+        }
+        unplace(shape, entry);
+        place(shape, entry);
+    }
+
+    /**
+     * move every shape whose points changed since it was placed.
+     *
+     * @return number of shapes moved
+     */
+    public int update() {
+        int moved = 0;
+        for (Map.Entry<PolyShape, Entry> e : entries.entrySet()) {
+            if (e.getKey().getModCount() != e.getValue().modCount) {
+                move(e.getKey());
+                moved++;
+            }
+        }
+        return moved;
+    }
+
+    /**
+     * @return number of shapes in the tree
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * find every shape whose bounds overlap the given rectangle.
+     *
+     * @param x      - x of top left
+     * @param y      - y of top left
+     * @param w      - width
+     * @param h      - height
+     * @param result - output, shapes are added to it
+     * @return result
+     */
+    public List<PolyShape> query(double x, double y, double w, double h, List<PolyShape> result) {
+        query(root, x, y, w, h, result);
+        return result;
+    }
+
+    private void query(Node node, double x, double y, double w, double h, List<PolyShape> result) {
+        for (PolyShape shape : node.items) {
+            if (shape.getBounds().intersects(x, y, w, h)) {
+                result.add(shape);
+            }
+        }
+        if (node.children != null) {
+            for (Node child : node.children) {
+                if (child.total > 0 && child.region.intersects(x, y, w, h)) {
+                    query(child, x, y, w, h, result);
+                }
+            }
+        }
+    }
+
+    /**
+     * find every shape whose bounds contain the given point.
+     *
+     * @param x      - x of point
+     * @param y      - y of point
+     * @param result - output, shapes are added to it
+     * @return result
+     */
+    public List<PolyShape> query(double x, double y, List<PolyShape> result) {
+        query(root, x, y, result);
+        return result;
+    }
+
+    private void query(Node node, double x, double y, List<PolyShape> result) {
+        for (PolyShape shape : node.items) {
+            if (shape.getBounds().contains(x, y)) {
+                result.add(shape);
+            }
+        }
+        if (node.children != null) {
+            // a point on the border between children is in more than one of them
+            for (Node child : node.children) {
+                if (child.total > 0 && child.region.contains(x, y)) {
+                    query(child, x, y, result);
+                }
+            }
+        }
+    }
+
+    /**
+     * find every shape whose bounds the ray passes through before the given distance.
+     *
+     * @param ox     - x of ray origin
+     * @param oy     - y of ray origin
+     * @param dx     - x of ray direction
+     * @param dy     - y of ray direction
+     * @param maxT   - longest ray scalar to look at, {@link Double#POSITIVE_INFINITY} for the whole ray
+     * @param result - output, shapes are added to it
+     * @return result
+     */
+    public List<PolyShape> queryRay(double ox, double oy, double dx, double dy, double maxT,
+                                    List<PolyShape> result) {
+        // a zero component would give 0 * infinity on a box side, a huge value gives 0 there instead
+        double invX = dx == 0 ? Double.MAX_VALUE : 1 / dx;
+        double invY = dy == 0 ? Double.MAX_VALUE : 1 / dy;
+        queryRay(root, ox, oy, invX, invY, maxT, result);
+        return result;
+    }
+
+    private void queryRay(Node node, double ox, double oy, double invX, double invY, double maxT,
+                          List<PolyShape> result) {
+        for (PolyShape shape : node.items) {
+            if (crosses(shape.getBounds(), ox, oy, invX, invY, maxT)) {
+                result.add(shape);
+            }
+        }
+        if (node.children != null) {
+            for (Node child : node.children) {
+                if (child.total > 0 && crosses(child.region, ox, oy, invX, invY, maxT)) {
+                    queryRay(child, ox, oy, invX, invY, maxT, result);
+                }
+            }
+        }
+    }
+
+    /**
+     * slab test of a ray against a rectangle.
+     */
+    private static boolean crosses(RectangleBounds b, double ox, double oy, double invX, double invY,
+                                   double maxT) {
+        double x1 = (b.x() - ox) * invX, x2 = (b.wPos() - ox) * invX;
+        double y1 = (b.y() - oy) * invY, y2 = (b.hPos() - oy) * invY;
+        double near = Math.max(0, Math.max(Math.min(x1, x2), Math.min(y1, y2)));
+        double far = Math.min(maxT, Math.min(Math.max(x1, x2), Math.max(y1, y2)));
+        return near <= far;
+    }
+
+    /**
+     * grow the root until it contains the bounds, then walk down to the smallest node containing them.
+     */
+    private void place(PolyShape shape, Entry entry) {
+        RectangleBounds bounds = shape.getBounds();
+        for (int i = 0; i < MAX_GROWTH && !root.region.contains(bounds); i++) {
+            grow(bounds);
+        }
+        Node node = root;
+        while (true) {
+            node.total++;
+            Node child = node.childContaining(bounds);
+            if (child == null) {
+                break;
+            }
+            node = child;
+        }
+        node.items.add(shape);
+        entry.node = node;
+        entry.modCount = shape.getModCount();
+        if (node.children == null && node.items.size() > CAPACITY && node.region.w() / 2 >= MIN_SIZE) {
+            split(node);
+        }
+    }
+
+    /**
+     * take a shape out of its node and merge the highest ancestor that became small enough.
+     */
+    private void unplace(PolyShape shape, Entry entry) {
+        Node node = entry.node;
+        node.items.remove(shape);
+        entry.node = null;
+        Node merge = null;
+        for (Node n = node; n != null; n = n.parent) {
+            n.total--;
+            if (n.children != null && n.total <= CAPACITY / 2) {
+                merge = n;
+            }
+        }
+        if (merge != null) {
+            merge(merge, merge);
+        }
+    }
+
+    private void split(Node node) {
+        double x = node.region.x(), y = node.region.y();
+        double w = node.region.w() / 2, h = node.region.h() / 2;
+        node.children = new Node[]{
+                new Node(node, new RectangleBounds(x, y, w, h)),
+                new Node(node, new RectangleBounds(x + w, y, w, h)),
+                new Node(node, new RectangleBounds(x, y + h, w, h)),
+                new Node(node, new RectangleBounds(x + w, y + h, w, h))};
+        List<PolyShape> items = node.items;
+        int kept = 0;
+        for (int i = 0; i < items.size(); i++) {
+            PolyShape shape = items.get(i);
+            Node child = node.childContaining(shape.getBounds());
+            if (child == null) {
+                items.set(kept++, shape);
+            } else {
+                child.items.add(shape);
+                child.total++;
+                entries.get(shape).node = child;
+            }
+        }
+        items.subList(kept, items.size()).clear();
+    }
+
+    /**
+     * move every shape under the given node into the target and drop the children.
+     */
+    private void merge(Node node, Node target) {
+        if (node != target) {
+            for (PolyShape shape : node.items) {
+                target.items.add(shape);
+                entries.get(shape).node = target;
+            }
+        }
+        if (node.children != null) {
+            for (Node child : node.children) {
+                merge(child, target);
+            }
+            node.children = null;
+        }
+    }
+
+    /**
+     * double the root towards the given bounds, the old root becomes one of the quadrants.
+     */
+    private void grow(RectangleBounds bounds) {
+        RectangleBounds old = root.region;
+        boolean left = bounds.x() < old.x();
+        boolean up = bounds.y() < old.y();
+        double x = left ? old.x() - old.w() : old.x();
+        double y = up ? old.y() - old.h() : old.y();
+        Node grown = new Node(null, new RectangleBounds(x, y, old.w() * 2, old.h() * 2));
+        grown.children = new Node[4];
+        int quadrant = (left ? 1 : 0) + (up ? 2 : 0);
+        for (int i = 0; i < 4; i++) {
+            if (i == quadrant) {
+                grown.children[i] = root;
+                root.parent = grown;
+            } else {
+                double cx = x + (i & 1) * old.w(), cy = y + (i >> 1) * old.h();
+                grown.children[i] = new Node(grown, new RectangleBounds(cx, cy, old.w(), old.h()));
+            }
+        }
+        grown.total = root.total;
+        root = grown;
+    }
+
+    /**
+     * where a shape is kept and the points it was placed with
+     */
+    private static class Entry {
+        private Node node;
+        private int modCount;
+    }
+
+    private static class Node {
+
+        private Node parent;
+        private final RectangleBounds region;
+
+        /**
+         * top left, top right, bottom left, bottom right, or null for a leaf
+         */
+        private Node[] children;
+
+        /**
+         * shapes that fit in this node but in none of its children
+         */
+        private final List<PolyShape> items = new ArrayList<>();
+
+        /**
+         * number of shapes in this node and below it
+         */
+        private int total;
+
+        private Node(Node parent, RectangleBounds region) {
+            this.parent = parent;
+            this.region = region;
+        }
+
+        /**
+         * @return the child whose region contains the bounds, or null if there are no children or none does
+         */
+        private Node childContaining(RectangleBounds bounds) {
+            if (children != null) {
+                for (Node child : children) {
+                    if (child.region.contains(bounds)) {
+                        return child;
+                    }
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,430 @@
+package raycast.engine;
+
+import raycast.entity.geometry.PolyShape;
+import raycast.render.Renderer;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+
+/**
+ * columnar store of polygons outside the java heap. all x coordinates are one column and all y coordinates
+ * another, shape s owns the vertices from {@link #offset(int)} of s to that of s + 1 and its bounds are 4 more
+ * doubles in a third column. the columns are direct buffers, so a scene of millions of edges is a handful of
+ * objects to the garbage collector instead of several per shape, and heap use does not grow with the scene.
+ *
+ * <p>edges are implicit, vertex i of a shape runs to vertex i + 1 and the last one back to the first. casting
+ * and drawing read the columns directly. columns grow by doubling, the old buffer is released by the
+ * collector once nothing refers to it.</p>
+ *
+ * <p>this is the form a {@link raycast.io.SceneFile} is opened in, for a large scene that is not brought onto the
+ * heap. a store set on {@link raycast.CanvasMap#setStore(ShapeStore)} is drawn under the editable
+ * {@link PolyShape}s and the rays of {@link raycast.animator.RayCastAnimator} are cast against it with
+ * {@link #castFanNearer} after the edges of the {@link SegmentBuffer}.</p>
+ *
+ * @author leon
+ * @since Mar-30-2019
+ */
+public class ShapeStore {
+
+    /**
+     * bytes per double and per int
+     */
+    private static final int DOUBLE_BYTES = 8, INT_BYTES = 4;
+
+    /**
+     * how far a ray may seem to miss the bounds of a shape and still be tested against it, rounding of the
+     * slab test must not skip a ray through a corner
+     */
+    private static final double SLACK = 0.000001;
+
+    private DoubleBuffer x, y, bounds;
+    private IntBuffer offsets;
+    private int shapeCount, vertexCount;
+
+    /**
+     * points of one shape while drawing, {@link Renderer} only takes arrays
+     */
+    private double[] drawX, drawY;
+
+    public ShapeStore() {
+        this(16, 64);
+    }
+
+    /**
+     * @param shapes   - number of shapes to reserve room for
+     * @param vertices - number of vertices to reserve room for
+     */
+    public ShapeStore(int shapes, int vertices) {
+        x = doubles(Math.max(1, vertices));
+        y = doubles(Math.max(1, vertices));
+        bounds = doubles(Math.max(1, shapes) * 4);
+        offsets = ints(Math.max(1, shapes) + 1);
+        offsets.put(0, 0);
+        drawX = drawY = new double[0];
+    }
+
+    /**
+     * a store over columns that already exist, for example mapped from a file. the columns are used as they
+     * are, if they are read only the store can be cast against and drawn but not changed.
+     *
+     * @param x           - x of every vertex
+     * @param y           - y of every vertex
+     * @param bounds      - min x, min y, max x and max y of every shape
+     * @param offsets     - first vertex of every shape followed by the number of vertices
+     * @param shapeCount  - number of shapes
+     * @param vertexCount - number of vertices
+     */
+    public ShapeStore(DoubleBuffer x, DoubleBuffer y, DoubleBuffer bounds, IntBuffer offsets, int shapeCount,
+                      int vertexCount) {
+        this.x = x;
+        this.y = y;
+        this.bounds = bounds;
+        this.offsets = offsets;
+        this.shapeCount = shapeCount;
+        this.vertexCount = vertexCount;
+        drawX = drawY = new double[0];
+    }
+
+    private static DoubleBuffer doubles(int count) {
+        return ByteBuffer.allocateDirect(count * DOUBLE_BYTES).order(ByteOrder.nativeOrder()).asDoubleBuffer();
+    }
+
+    private static IntBuffer ints(int count) {
+        return ByteBuffer.allocateDirect(count * INT_BYTES).order(ByteOrder.nativeOrder()).asIntBuffer();
+    }
+
+    /**
+     * add a shape with the points of the given {@link PolyShape}.
+     *
+     * @param shape - {@link PolyShape} with points
+     * @return index of the new shape
+     */
+    public int add(PolyShape shape) {
+        int n = shape.getPointCount();
+        reserve(shapeCount + 1, vertexCount + n);
+        for (int i = 0; i < n; i++) {
+            x.put(vertexCount + i, shape.pX(i));
+            y.put(vertexCount + i, shape.pY(i));
+        }
+        return append(n);
+    }
+
+    /**
+     * add a shape from coordinates.
+     *
+     * @param points - x and y of every point, expecting even number
+     * @return index of the new shape
+     */
+    public int add(double... points) {
+        int n = points.length / 2;
+        reserve(shapeCount + 1, vertexCount + n);
+        for (int i = 0; i < n; i++) {
+            x.put(vertexCount + i, points[2 * i]);
+            y.put(vertexCount + i, points[2 * i + 1]);
+        }
+        return append(n);
+    }
+
+    private int append(int n) {
+        vertexCount += n;
+        offsets.put(shapeCount + 1, vertexCount);
+        measure(shapeCount);
+        return shapeCount++;
+    }
+
+    /**
+     * replace the points of a shape, the number of points has to stay the same so no other shape moves.
+     *
+     * @param shape  - index of shape
+     * @param points - x and y of every point
+     */
+    public void set(int shape, double... points) {
+        int first = offset(shape);
+        if (points.length / 2 != offset(shape + 1) - first) {
+            throw new IllegalArgumentException("shape " + shape + " has " + (offset(shape + 1) - first)
+                    + " points, not " + points.length / 2);
+        }
+        for (int i = 0; i < points.length / 2; i++) {
+            x.put(first + i, points[2 * i]);
+            y.put(first + i, points[2 * i + 1]);
+        }
+        measure(shape);
+    }
+
+    /**
+     * remove every shape, the memory is kept.
+     */
+    public void clear() {
+        shapeCount = vertexCount = 0;
+    }
+
+    private void measure(int shape) {
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        for (int v = offset(shape); v < offset(shape + 1); v++) {
+            minX = Math.min(minX, x.get(v));
+            maxX = Math.max(maxX, x.get(v));
+            minY = Math.min(minY, y.get(v));
+            maxY = Math.max(maxY, y.get(v));
+        }
+        bounds.put(shape * 4, minX);
+        bounds.put(shape * 4 + 1, minY);
+        bounds.put(shape * 4 + 2, maxX);
+        bounds.put(shape * 4 + 3, maxY);
+    }
+
+    /**
+     * grow the columns to hold at least the given number of shapes and vertices.
+     */
+    private void reserve(int shapes, int vertices) {
+        if (x.capacity() < vertices) {
+            int capacity = Math.max(vertices, x.capacity() * 2);
+            x = copy(x, doubles(capacity), vertexCount);
+            y = copy(y, doubles(capacity), vertexCount);
+        }
+        if (offsets.capacity() < shapes + 1) {
+            int capacity = Math.max(shapes, (offsets.capacity() - 1) * 2);
+            bounds = copy(bounds, doubles(capacity * 4), shapeCount * 4);
+            IntBuffer grown = ints(capacity + 1);
+            for (int i = 0; i <= shapeCount; i++) {
+                grown.put(i, offsets.get(i));
+            }
+            offsets = grown;
+        }
+    }
+
+    private static DoubleBuffer copy(DoubleBuffer from, DoubleBuffer to, int count) {
+        DoubleBuffer source = from.duplicate();
+        source.position(0).limit(count);
+        to.put(source);
+        to.clear();
+        return to;
+    }
+
+    /**
+     * @return number of shapes
+     */
+    public int shapeCount() {
+        return shapeCount;
+    }
+
+    /**
+     * @return number of vertices of all shapes, which is also the number of edges
+     */
+    public int vertexCount() {
+        return vertexCount;
+    }
+
+    /**
+     * @param shape - index of shape, or {@link #shapeCount()} for the end of the last shape
+     * @return index of the first vertex of the shape
+     */
+    public int offset(int shape) {
+        return offsets.get(shape);
+    }
+
+    /**
+     * @param vertex - index of vertex
+     * @return x of vertex
+     */
+    public double x(int vertex) {
+        return x.get(vertex);
+    }
+
+    /**
+     * @param vertex - index of vertex
+     * @return y of vertex
+     */
+    public double y(int vertex) {
+        return y.get(vertex);
+    }
+
+    /**
+     * @param shape - index of shape
+     * @param i     - 0 to 3 for min x, min y, max x and max y
+     * @return one side of the bounds of the shape
+     */
+    public double bound(int shape, int i) {
+        return bounds.get(shape * 4 + i);
+    }
+
+    /**
+     * {@link RayKernel#castFan} straight from the columns. shapes whose bounds the ray misses, or only reaches
+     * beyond the closest hit so far, are skipped without looking at their vertices. the edge index of a hit is
+     * the index of its first vertex, which is the same index {@link RayKernel#packSegments} gives that edge.
+     *
+     * @param ox         - x of origin shared by all rays
+     * @param oy         - y of origin shared by all rays
+     * @param dirX       - x component of ray directions
+     * @param dirY       - y component of ray directions
+     * @param from       - first ray index, inclusive
+     * @param to         - last ray index, exclusive
+     * @param hitX       - output, x of closest intersect per ray
+     * @param hitY       - output, y of closest intersect per ray
+     * @param hitT       - output, ray scalar of closest intersect per ray
+     * @param hitSegment - output, index of the edge that was hit per ray
+     */
+    public void castFan(double ox, double oy, double[] dirX, double[] dirY, int from, int to,
+                        double[] hitX, double[] hitY, double[] hitT, int[] hitSegment) {
+        cast(ox, oy, dirX, dirY, from, to, false, 0, hitX, hitY, hitT, hitSegment);
+    }
+
+    /**
+     * {@link #castFan} for rays that already hold a hit of another caster, such as the edges of a
+     * {@link SegmentBuffer}. a ray only takes a hit of this store that is strictly closer, otherwise it is left as
+     * it is, and shapes beyond the hit it holds are skipped by their bounds.
+     *
+     * @param ox         - x of origin shared by all rays
+     * @param oy         - y of origin shared by all rays
+     * @param dirX       - x component of ray directions
+     * @param dirY       - y component of ray directions
+     * @param from       - first ray index, inclusive
+     * @param to         - last ray index, exclusive
+     * @param firstEdge  - added to the edge index of a hit of this store, so it follows the edges of the other
+     *                   caster
+     * @param hitX       - input and output, x of closest intersect per ray
+     * @param hitY       - input and output, y of closest intersect per ray
+     * @param hitT       - input and output, ray scalar of closest intersect per ray
+     * @param hitSegment - input and output, index of the edge that was hit per ray
+     */
+    public void castFanNearer(double ox, double oy, double[] dirX, double[] dirY, int from, int to, int firstEdge,
+                              double[] hitX, double[] hitY, double[] hitT, int[] hitSegment) {
+        cast(ox, oy, dirX, dirY, from, to, true, firstEdge, hitX, hitY, hitT, hitSegment);
+    }
+
+    private void cast(double ox, double oy, double[] dirX, double[] dirY, int from, int to, boolean nearer,
+                      int firstEdge, double[] hitX, double[] hitY, double[] hitT, int[] hitSegment) {
+        for (int r = from; r < to; r++) {
+            double rx = dirX[r];
+            double ry = dirY[r];
+            // a zero component would give 0 * infinity on a box side, a huge value gives 0 there instead
+            double invX = rx == 0 ? Double.MAX_VALUE : 1 / rx;
+            double invY = ry == 0 ? Double.MAX_VALUE : 1 / ry;
+            double bestT = nearer ? hitT[r] : Double.POSITIVE_INFINITY;
+            int best = RayKernel.NO_HIT;
+            for (int s = 0; s < shapeCount; s++) {
+                int b = s * 4;
+                double x1 = (bounds.get(b) - ox) * invX, x2 = (bounds.get(b + 2) - ox) * invX;
+                double y1 = (bounds.get(b + 1) - oy) * invY, y2 = (bounds.get(b + 3) - oy) * invY;
+                double near = Math.max(0, Math.max(Math.min(x1, x2), Math.min(y1, y2)));
+                double far = Math.min(Math.max(x1, x2), Math.max(y1, y2));
+                if (near - far > SLACK || near > bestT) {
+                    continue;
+                }
+                int first = offsets.get(s), end = offsets.get(s + 1);
+                for (int v = first; v < end; v++) {
+                    int w = v + 1 == end ? first : v + 1;
+                    double px = x.get(v), py = y.get(v);
+                    // same terms as RayKernel so both give identical scalars for the same edge
+                    double sx = x.get(w) - px;
+                    double sy = y.get(w) - py;
+                    double rs = rx * sy - sx * ry;
+                    if (rs == 0) {
+                        continue;
+                    }
+                    double qpx = ox - px;
+                    double qpy = oy - py;
+                    double rayScaler = -(qpx * sy - sx * qpy) / rs;
+                    if (rayScaler < 0 || rayScaler >= bestT) {
+                        continue;
+                    }
+                    double segmentScaler = -(qpx * ry - rx * qpy) / rs;
+                    if (segmentScaler >= 0 && segmentScaler <= 1) {
+                        bestT = rayScaler;
+                        best = v;
+                    }
+                }
+            }
+            if (nearer && best == RayKernel.NO_HIT) {
+                continue;
+            }
+            hitT[r] = bestT;
+            if (best == RayKernel.NO_HIT) {
+                hitSegment[r] = best;
+                hitX[r] = Double.NaN;
+                hitY[r] = Double.NaN;
+            } else {
+                hitSegment[r] = firstEdge + best;
+                hitX[r] = ox + rx * bestT;
+                hitY[r] = oy + ry * bestT;
+            }
+        }
+    }
+
+    /**
+     * fill and stroke every shape whose bounds overlap the given view, with the current fill and stroke of
+     * the {@link Renderer}.
+     *
+     * @param renderer - {@link Renderer} object
+     * @param vx       - x of view
+     * @param vy       - y of view
+     * @param vw       - width of view
+     * @param vh       - height of view
+     */
+    public void draw(Renderer renderer, double vx, double vy, double vw, double vh) {
+        for (int s = 0; s < shapeCount; s++) {
+            if (!overlaps(s, vx, vy, vw, vh)) {
+                continue;
+            }
+            int n = load(s);
+            renderer.fillPolygon(drawX, drawY, n);
+            renderer.strokePolygon(drawX, drawY, n);
+        }
+    }
+
+    /**
+     * @param shape - index of shape
+     * @param vx    - x of view
+     * @param vy    - y of view
+     * @param vw    - width of view
+     * @param vh    - height of view
+     * @return true if the bounds of the shape overlap the view
+     */
+    public boolean overlaps(int shape, double vx, double vy, double vw, double vh) {
+        int b = shape * 4;
+        return bounds.get(b) <= vx + vw && bounds.get(b + 1) <= vy + vh && bounds.get(b + 2) >= vx
+                && bounds.get(b + 3) >= vy;
+    }
+
+    /**
+     * fill one shape with the current fill of the {@link Renderer}.
+     *
+     * @param renderer - {@link Renderer} object
+     * @param shape    - index of shape
+     */
+    public void fill(Renderer renderer, int shape) {
+        int n = load(shape);
+        renderer.fillPolygon(drawX, drawY, n);
+    }
+
+    /**
+     * stroke one shape with the current stroke of the {@link Renderer}.
+     *
+     * @param renderer - {@link Renderer} object
+     * @param shape    - index of shape
+     */
+    public void stroke(Renderer renderer, int shape) {
+        int n = load(shape);
+        renderer.strokePolygon(drawX, drawY, n);
+    }
+
+    /**
+     * copy the points of a shape into {@link #drawX} and {@link #drawY}.
+     *
+     * @return number of points
+     */
+    private int load(int shape) {
+        int first = offsets.get(shape), n = offsets.get(shape + 1) - first;
+        if (drawX.length < n) {
+            drawX = new double[n];
+            drawY = new double[n];
+        }
+        for (int i = 0; i < n; i++) {
+            drawX[i] = x.get(first + i);
+            drawY[i] = y.get(first + i);
+        }
+        return n;
+    }
+}
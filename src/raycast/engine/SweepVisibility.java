@@ -0,0 +1,276 @@
+package raycast.engine;
+
+import java.util.TreeSet;
+
+/**
+ * exact visibility polygon by a rotational sweep around the light. segment end points are sorted by angle and
+ * the segments crossing the sweep ray are kept in a {@link TreeSet} ordered by distance from the light, so the
+ * closest one is always {@link TreeSet#first()}. the polygon only changes direction where the closest segment
+ * changes, which gives O(n log n) instead of casting a ray per corner against every segment.
+ *
+ * <p>the order of two segments along the sweep ray only stays fixed if they do not cross, so crossings are first
+ * split by {@link SegmentSplitter}. crossings do not depend on the light, so a caller whose scene changes less
+ * often than its light should split once and use {@link #computeSplit} every frame.</p>
+ *
+ * @author leon
+ * @since Mar-23-2019
+ * @see 2d Visibility https://www.redblobgames.com/articles/visibility/
+ */
+public class SweepVisibility {
+
+    /**
+     * end points whose angles differ less than this are handled as one event, this absorbs the rounding of
+     * shared corners that are computed as start plus delta of one segment and start of the next
+     */
+    private static final double ANGLE_EPSILON = 0.0000000001;
+
+    private final SegmentSplitter splitter;
+    private final TreeSet<Integer> active;
+
+    /**
+     * split segments as a, b where b follows a counter clockwise around the light
+     */
+    private double[] ends;
+
+    /**
+     * unit direction from the light to a and to b of every segment
+     */
+    private double[] units;
+
+    /**
+     * angle of every event, event e belongs to segment e / 2 and is its end if e is odd
+     */
+    private double[] eventAngle;
+    private int[] eventOrder;
+
+    /**
+     * boxed segment indices so the tree does not box on every insert
+     */
+    private Integer[] boxed;
+
+    /**
+     * light of the current computation
+     */
+    private double ox, oy;
+
+    public SweepVisibility() {
+        splitter = new SegmentSplitter();
+        active = new TreeSet<>(this::compare);
+        ends = units = eventAngle = new double[0];
+        eventOrder = new int[0];
+        boxed = new Integer[0];
+    }
+
+    /**
+     * compute what is visible from the light. the segments should enclose the light, for example by including the
+     * canvas borders, otherwise directions without any segment go back to the light.
+     *
+     * @param ox           - x of light
+     * @param oy           - y of light
+     * @param segments     - packed segments, see {@link RayKernel#SEGMENT_STRIDE}
+     * @param segmentCount - number of segments
+     * @param polygon      - output, cleared first
+     */
+    public void compute(double ox, double oy, double[] segments, int segmentCount, VisibilityPolygon polygon) {
+        int n = splitter.split(segments, segmentCount);
+        computeSplit(ox, oy, splitter.segments(), n, polygon);
+    }
+
+    /**
+     * compute what is visible from the light for segments that at most touch, as given by
+     * {@link SegmentSplitter#segments()}. the segments are only read, so one split scene can be shared by many
+     * lights computed at the same time, each by its own {@link SweepVisibility}.
+     *
+     * @param ox           - x of light
+     * @param oy           - y of light
+     * @param segments     - packed segments already split, see {@link RayKernel#SEGMENT_STRIDE}
+     * @param segmentCount - number of segments
+     * @param polygon      - output, cleared first
+     */
+    public void computeSplit(double ox, double oy, double[] segments, int segmentCount, VisibilityPolygon polygon) {
+        this.ox = ox;
+        this.oy = oy;
+        prepare(segmentCount);
+        int eventCount = orient(segments, segmentCount);
+        IndexSort.sort(eventOrder, 0, eventCount, eventAngle);
+
+        polygon.clear();
+        int closest = active.isEmpty() ? -1 : active.first();
+        // the sweep starts looking along negative x, where atan2 wraps from pi to -pi
+        addHit(polygon, closest, -1, 0);
+
+        int k = 0;
+        while (k < eventCount) {
+            double angle = eventAngle[eventOrder[k]];
+            int groupEnd = k + 1;
+            while (groupEnd < eventCount && eventAngle[eventOrder[groupEnd]] - angle < ANGLE_EPSILON) {
+                groupEnd++;
+            }
+            // remove first so a segment ending at a corner is never compared with the one starting there
+            for (int e = k; e < groupEnd; e++) {
+                int event = eventOrder[e];
+                if ((event & 1) == 1) {
+                    remove(event >> 1);
+                }
+            }
+            for (int e = k; e < groupEnd; e++) {
+                int event = eventOrder[e];
+                if ((event & 1) == 0) {
+                    active.add(boxed[event >> 1]);
+                }
+            }
+
+            int next = active.isEmpty() ? -1 : active.first();
+            if (next != closest) {
+                int corner = eventOrder[k];
+                int c = (corner >> 1) * 4 + ((corner & 1) == 1 ? 2 : 0);
+                double dx = ends[c] - ox;
+                double dy = ends[c + 1] - oy;
+                addHit(polygon, closest, dx, dy);
+                addHit(polygon, next, dx, dy);
+                closest = next;
+            }
+            k = groupEnd;
+        }
+
+        polygon.close();
+    }
+
+    /**
+     * grow the buffers for the given number of segments.
+     */
+    private void prepare(int n) {
+        if (boxed.length < n) {
+            Integer[] grown = new Integer[n];
+            System.arraycopy(boxed, 0, grown, 0, boxed.length);
+            for (int i = boxed.length; i < n; i++) {
+                grown[i] = i;
+            }
+            boxed = grown;
+            ends = new double[n * 4];
+            units = new double[n * 4];
+            eventAngle = new double[n * 2];
+            eventOrder = new int[n * 2];
+        }
+        active.clear();
+    }
+
+    /**
+     * orient every segment counter clockwise around the light, fill the events and put the segments that already
+     * cross the start of the sweep in the tree.
+     *
+     * @return number of events
+     */
+    private int orient(double[] segments, int n) {
+        int count = 0;
+        for (int i = 0; i < n; i++) {
+            int s = i * RayKernel.SEGMENT_STRIDE;
+            double x1 = segments[s], y1 = segments[s + 1];
+            double x2 = x1 + segments[s + 2], y2 = y1 + segments[s + 3];
+            double cross = (x1 - ox) * (y2 - oy) - (y1 - oy) * (x2 - ox);
+            if (cross == 0) {
+                // pointing at the light, it has no width to block anything
+                continue;
+            }
+            if (cross < 0) {
+                double tx = x1, ty = y1;
+                x1 = x2;
+                y1 = y2;
+                x2 = tx;
+                y2 = ty;
+            }
+            double start = angle(x1 - ox, y1 - oy);
+            double end = angle(x2 - ox, y2 - oy);
+            double extent = start > end ? end - start + 2 * Math.PI : end - start;
+            if (extent < ANGLE_EPSILON || extent > Math.PI) {
+                // too thin to see, both events would land in one group. more than pi only happens when
+                // rounding flipped the angles of such a thin segment
+                continue;
+            }
+            int c = i * 4;
+            ends[c] = x1;
+            ends[c + 1] = y1;
+            ends[c + 2] = x2;
+            ends[c + 3] = y2;
+            double l1 = Math.hypot(x1 - ox, y1 - oy), l2 = Math.hypot(x2 - ox, y2 - oy);
+            units[c] = (x1 - ox) / l1;
+            units[c + 1] = (y1 - oy) / l1;
+            units[c + 2] = (x2 - ox) / l2;
+            units[c + 3] = (y2 - oy) / l2;
+            if (start > end) {
+                active.add(boxed[i]);
+            }
+            eventAngle[2 * i] = start;
+            eventAngle[2 * i + 1] = end;
+            eventOrder[count++] = 2 * i;
+            eventOrder[count++] = 2 * i + 1;
+        }
+        return count;
+    }
+
+    /**
+     * angle in (-pi, pi], atan2 can return -pi for negative zero which is the same direction as pi.
+     */
+    private static double angle(double dx, double dy) {
+        double angle = Math.atan2(dy, dx);
+        return angle == -Math.PI ? Math.PI : angle;
+    }
+
+    private void remove(int segment) {
+        if (!active.remove(boxed[segment])) {
+            // rounding made the tree order disagree with itself, fall back to a scan by identity
+            active.removeIf(i -> i == segment);
+        }
+    }
+
+    /**
+     * add where the ray from the light in the given direction meets the segment, or the light if there is none.
+     */
+    private void addHit(VisibilityPolygon polygon, int segment, double dx, double dy) {
+        if (segment < 0) {
+            polygon.add(ox, oy);
+            return;
+        }
+        int c = segment * 4;
+        double sx = ends[c + 2] - ends[c];
+        double sy = ends[c + 3] - ends[c + 1];
+        double rs = dx * sy - sx * dy;
+        if (rs == 0) {
+            polygon.add(ends[c], ends[c + 1]);
+            return;
+        }
+        double t = ((ends[c] - ox) * sy - sx * (ends[c + 1] - oy)) / rs;
+        polygon.add(ox + dx * t, oy + dy * t);
+    }
+
+    /**
+     * order of two active segments by distance from the light. both cross the sweep ray so their angle ranges
+     * overlap, and since they do not cross each other the closer one is closer everywhere in that overlap.
+     * comparing in the middle of the overlap keeps shared corners and touching ends from deciding the order.
+     */
+    private int compare(Integer a, Integer b) {
+        int i = a, j = b;
+        if (i == j) {
+            return 0;
+        }
+        int ci = i * 4, cj = j * 4;
+        // the later of the two starts and the earlier of the two ends bound the overlap
+        boolean jStartsLater = units[ci] * units[cj + 1] - units[ci + 1] * units[cj] > 0;
+        int s = jStartsLater ? cj : ci;
+        boolean jEndsEarlier = units[ci + 2] * units[cj + 3] - units[ci + 3] * units[cj + 2] < 0;
+        int e = (jEndsEarlier ? cj : ci) + 2;
+        double dx = units[s] + units[e];
+        double dy = units[s + 1] + units[e + 1];
+        int order = Double.compare(distance(ci, dx, dy), distance(cj, dx, dy));
+        return order != 0 ? order : Integer.compare(i, j);
+    }
+
+    /**
+     * scalar along the given direction where the ray from the light meets the line of a segment.
+     */
+    private double distance(int c, double dx, double dy) {
+        double sx = ends[c + 2] - ends[c];
+        double sy = ends[c + 3] - ends[c + 1];
+        return ((ends[c] - ox) * sy - sx * (ends[c + 1] - oy)) / (dx * sy - sx * dy);
+    }
+}
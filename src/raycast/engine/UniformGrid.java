@@ -0,0 +1,264 @@
+package raycast.engine;
+
+import java.util.Arrays;
+
+/**
+ * uniform grid over the canvas where every cell lists the edges passing through it. a ray walks the cells it
+ * crosses in order, with the Amanatides-Woo DDA, and stops as soon as the closest hit so far is inside the
+ * current cell, so it only tests the edges near its path instead of every edge of the scene.
+ *
+ * <p>the cell size follows the number of edges so a cell holds about {@link #EDGES_PER_CELL} of them.
+ * when the {@link SegmentBuffer} only rewrote some shapes, just their edges are moved between cells,
+ * anything else rebuilds the grid. casting only reads the grid so it is safe from many threads; for that
+ * reason there is no mailbox and an edge in several cells may be tested more than once by the same ray.</p>
+ *
+ * @author leon
+ * @since Mar-25-2019
+ * @see A Fast Voxel Traversal Algorithm for Ray Tracing http://www.cse.yorku.ca/~amana/research/grid.pdf
+ */
+public class UniformGrid implements RayCaster {
+
+    /**
+     * average number of edges the cell size aims for
+     */
+    private static final double EDGES_PER_CELL = 2;
+
+    /**
+     * smallest cell side, below this walking cells costs more than testing edges
+     */
+    private static final double MIN_CELL = 8;
+
+    /**
+     * cells are widened by this fraction of their side when edges are assigned, so rounding in the walk never
+     * misses an edge that only touches a cell border
+     */
+    private static final double PADDING = 0.0000001;
+
+    private double[] segments;
+    private int size;
+
+    /**
+     * edges as they were put in the cells, needed to find the cells again when an edge moves
+     */
+    private double[] placed;
+
+    private double cell, inverse;
+    private int columns, rows;
+    private int[][] cells;
+    private int[] cellCount;
+
+    /**
+     * what the grid was built from
+     */
+    private int modCount;
+    private int layoutModCount;
+
+    public UniformGrid() {
+        placed = new double[0];
+        cells = new int[0][];
+        cellCount = new int[0];
+        layoutModCount = -1;
+    }
+
+    @Override
+    public void update(SegmentBuffer buffer) {
+        segments = buffer.segments();
+        size = buffer.size();
+        boolean sameLayout = buffer.getLayoutModCount() == layoutModCount;
+        if (sameLayout && buffer.getModCount() == modCount) {
+            return;
+        }
+        if (sameLayout && buffer.getModCount() == modCount + 1) {
+            // only the changed shapes moved and the last update was seen, so the grid is one step behind
+            for (int i = 0; i < buffer.changedCount(); i++) {
+                int shape = buffer.changedShape(i);
+                for (int e = buffer.offset(shape); e < buffer.offset(shape + 1); e++) {
+                    move(e);
+                }
+            }
+        } else {
+            rebuild(buffer.w(), buffer.h());
+        }
+        modCount = buffer.getModCount();
+        layoutModCount = buffer.getLayoutModCount();
+    }
+
+    /**
+     * size the cells for the current number of edges and put every edge in.
+     */
+    private void rebuild(double w, double h) {
+        w = Math.max(w, 1);
+        h = Math.max(h, 1);
+        cell = Math.max(MIN_CELL, Math.sqrt(w * h * EDGES_PER_CELL / Math.max(1, size)));
+        inverse = 1 / cell;
+        columns = Math.max(1, (int) Math.ceil(w * inverse));
+        rows = Math.max(1, (int) Math.ceil(h * inverse));
+
+        int n = columns * rows;
+        if (cells.length < n) {
+            cells = Arrays.copyOf(cells, n);
+            cellCount = new int[n];
+        } else {
+            Arrays.fill(cellCount, 0, n, 0);
+        }
+        if (placed.length < size * RayKernel.SEGMENT_STRIDE) {
+            placed = new double[size * RayKernel.SEGMENT_STRIDE];
+        }
+        System.arraycopy(segments, 0, placed, 0, size * RayKernel.SEGMENT_STRIDE);
+        for (int e = 0; e < size; e++) {
+            place(e, true);
+        }
+    }
+
+    /**
+     * take an edge out of the cells of its old position and put it in the cells of its new one.
+     */
+    private void move(int e) {
+        place(e, false);
+        System.arraycopy(segments, e * RayKernel.SEGMENT_STRIDE, placed, e * RayKernel.SEGMENT_STRIDE,
+                RayKernel.SEGMENT_STRIDE);
+        place(e, true);
+    }
+
+    /**
+     * add or remove an edge in every cell its {@link #placed} position passes through.
+     */
+    private void place(int e, boolean add) {
+        int i = e * RayKernel.SEGMENT_STRIDE;
+        double x = placed[i], y = placed[i + 1], dx = placed[i + 2], dy = placed[i + 3];
+        int c0 = column(Math.min(x, x + dx)), c1 = column(Math.max(x, x + dx));
+        int r0 = row(Math.min(y, y + dy)), r1 = row(Math.max(y, y + dy));
+        double pad = cell * PADDING;
+        for (int r = r0; r <= r1; r++) {
+            for (int c = c0; c <= c1; c++) {
+                if (c0 != c1 && r0 != r1) {
+                    // the bounds only overlap, skip cells with all 4 corners on one side of the line
+                    double left = c * cell - pad - x, right = (c + 1) * cell + pad - x;
+                    double top = r * cell - pad - y, bottom = (r + 1) * cell + pad - y;
+                    double a = left * dy - top * dx, b = right * dy - top * dx;
+                    double d = left * dy - bottom * dx, f = right * dy - bottom * dx;
+                    if (a > 0 && b > 0 && d > 0 && f > 0 || a < 0 && b < 0 && d < 0 && f < 0) {
+                        continue;
+                    }
+                }
+                if (add) {
+                    add(r * columns + c, e);
+                } else {
+                    remove(r * columns + c, e);
+                }
+            }
+        }
+    }
+
+    private void add(int c, int e) {
+        int[] items = cells[c];
+        if (items == null) {
+            items = cells[c] = new int[4];
+        } else if (items.length == cellCount[c]) {
+            items = cells[c] = Arrays.copyOf(items, items.length * 2);
+        }
+        items[cellCount[c]++] = e;
+    }
+
+    private void remove(int c, int e) {
+        int[] items = cells[c];
+        for (int k = 0; k < cellCount[c]; k++) {
+            if (items[k] == e) {
+                items[k] = items[--cellCount[c]];
+                return;
+            }
+        }
+    }
+
+    private int column(double x) {
+        return Math.max(0, Math.min(columns - 1, (int) Math.floor(x * inverse)));
+    }
+
+    private int row(double y) {
+        return Math.max(0, Math.min(rows - 1, (int) Math.floor(y * inverse)));
+    }
+
+    @Override
+    public void castFan(double ox, double oy, double[] dirX, double[] dirY, int from, int to,
+                        double[] hitX, double[] hitY, double[] hitT, int[] hitSegment) {
+        if (!(ox >= 0 && oy >= 0 && ox <= columns * cell && oy <= rows * cell)) {
+            // edges outside the grid are not all in a cell, a ray starting there could miss them
+            RayKernel.castFan(ox, oy, dirX, dirY, from, to, segments, size, hitX, hitY, hitT, hitSegment);
+            return;
+        }
+        int startColumn = column(ox), startRow = row(oy);
+        for (int r = from; r < to; r++) {
+            double rx = dirX[r];
+            double ry = dirY[r];
+            int cx = startColumn, cy = startRow;
+
+            // ray scalar where the next column and row start, and between two columns and two rows
+            int stepX = rx > 0 ? 1 : -1, stepY = ry > 0 ? 1 : -1;
+            double nextX = rx == 0 ? Double.POSITIVE_INFINITY : ((rx > 0 ? cx + 1 : cx) * cell - ox) / rx;
+            double nextY = ry == 0 ? Double.POSITIVE_INFINITY : ((ry > 0 ? cy + 1 : cy) * cell - oy) / ry;
+            double deltaX = rx == 0 ? Double.POSITIVE_INFINITY : cell / Math.abs(rx);
+            double deltaY = ry == 0 ? Double.POSITIVE_INFINITY : cell / Math.abs(ry);
+
+            double bestT = Double.POSITIVE_INFINITY;
+            int best = RayKernel.NO_HIT;
+            while (true) {
+                int c = cy * columns + cx;
+                int[] items = cells[c];
+                for (int k = 0; k < cellCount[c]; k++) {
+                    int e = items[k];
+                    int s = e * RayKernel.SEGMENT_STRIDE;
+                    // same math as RayKernel so both give identical scalars for the same edge
+                    double sx = segments[s + 2];
+                    double sy = segments[s + 3];
+                    double rs = rx * sy - sx * ry;
+                    if (rs == 0) {
+                        continue;
+                    }
+                    double qpx = ox - segments[s];
+                    double qpy = oy - segments[s + 1];
+                    double rayScaler = -(qpx * sy - sx * qpy) / rs;
+                    if (rayScaler < 0 || rayScaler > bestT || rayScaler == bestT && e > best) {
+                        continue;
+                    }
+                    double segmentScaler = -(qpx * ry - rx * qpy) / rs;
+                    if (segmentScaler >= 0 && segmentScaler <= 1) {
+                        bestT = rayScaler;
+                        best = e;
+                    }
+                }
+                // a hit before the ray leaves this cell can not be beaten by edges further along
+                if (bestT <= Math.min(nextX, nextY)) {
+                    break;
+                }
+                if (nextX < nextY) {
+                    cx += stepX;
+                    if (cx < 0 || cx >= columns) {
+                        break;
+                    }
+                    nextX += deltaX;
+                } else {
+                    cy += stepY;
+                    if (cy < 0 || cy >= rows) {
+                        break;
+                    }
+                    nextY += deltaY;
+                }
+            }
+
+            hitT[r] = bestT;
+            hitSegment[r] = best;
+            if (best == RayKernel.NO_HIT) {
+                hitX[r] = Double.NaN;
+                hitY[r] = Double.NaN;
+            } else {
+                hitX[r] = ox + rx * bestT;
+                hitY[r] = oy + ry * bestT;
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "uniform grid";
+    }
+}
@@ -0,0 +1,85 @@
+package raycast.engine;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * the vector kernel of {@link LaneCaster}, only loaded by it when {@link LaneCaster#VECTOR_MODULE} is present.
+ * the terms are those of {@link RayKernel#castFan} lane by lane, none of them fused, so every lane computes
+ * the very scalars the scalar kernel would.
+ *
+ * @author leon
+ * @since Mar-28-2019
+ */
+final class VectorKernel implements LaneCaster.Kernel {
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    /**
+     * index of every lane, added to the first edge of a step to give the edge of each lane
+     */
+    private final DoubleVector lane;
+    private final DoubleVector none;
+
+    VectorKernel() {
+        double[] index = new double[SPECIES.length()];
+        for (int i = 0; i < index.length; i++) {
+            index[i] = i;
+        }
+        lane = DoubleVector.fromArray(SPECIES, index, 0);
+        none = DoubleVector.broadcast(SPECIES, Double.POSITIVE_INFINITY);
+    }
+
+    @Override
+    public int lanes() {
+        return SPECIES.length();
+    }
+
+    @Override
+    public void castFan(double ox, double oy, double[] dirX, double[] dirY, int from, int to,
+                        double[] startX, double[] startY, double[] deltaX, double[] deltaY, int count,
+                        double[] hitX, double[] hitY, double[] hitT, int[] hitSegment) {
+        int step = SPECIES.length();
+        DoubleVector originX = DoubleVector.broadcast(SPECIES, ox);
+        DoubleVector originY = DoubleVector.broadcast(SPECIES, oy);
+        for (int r = from; r < to; r++) {
+            double rx = dirX[r];
+            double ry = dirY[r];
+            // closest scalar and its edge per lane, edges are exact in a double
+            DoubleVector bestT = none, bestEdge = none;
+            for (int e = 0; e < count; e += step) {
+                DoubleVector sx = DoubleVector.fromArray(SPECIES, deltaX, e);
+                DoubleVector sy = DoubleVector.fromArray(SPECIES, deltaY, e);
+                DoubleVector rs = sy.mul(rx).sub(sx.mul(ry));
+                DoubleVector qpx = originX.sub(DoubleVector.fromArray(SPECIES, startX, e));
+                DoubleVector qpy = originY.sub(DoubleVector.fromArray(SPECIES, startY, e));
+                DoubleVector rayScaler = qpx.mul(sy).sub(sx.mul(qpy)).neg().div(rs);
+                DoubleVector segmentScaler = qpx.mul(ry).sub(qpy.mul(rx)).neg().div(rs);
+                // strictly closer, so within a lane the lower edge keeps a tie like in RayKernel
+                VectorMask<Double> hit = rs.compare(VectorOperators.NE, 0)
+                        .and(rayScaler.compare(VectorOperators.GE, 0))
+                        .and(rayScaler.compare(VectorOperators.LT, bestT))
+                        .and(segmentScaler.compare(VectorOperators.GE, 0))
+                        .and(segmentScaler.compare(VectorOperators.LE, 1));
+                bestT = bestT.blend(rayScaler, hit);
+                bestEdge = bestEdge.blend(lane.add(e), hit);
+            }
+
+            double t = bestT.reduceLanes(VectorOperators.MIN);
+            hitT[r] = t;
+            if (t == Double.POSITIVE_INFINITY) {
+                hitSegment[r] = RayKernel.NO_HIT;
+                hitX[r] = Double.NaN;
+                hitY[r] = Double.NaN;
+            } else {
+                // of the lanes at the closest scalar the lowest edge wins
+                VectorMask<Double> closest = bestT.compare(VectorOperators.EQ, t);
+                hitSegment[r] = (int) none.blend(bestEdge, closest).reduceLanes(VectorOperators.MIN);
+                hitX[r] = ox + rx * t;
+                hitY[r] = oy + ry * t;
+            }
+        }
+    }
+}
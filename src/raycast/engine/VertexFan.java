@@ -0,0 +1,69 @@
+package raycast.engine;
+
+import java.util.Arrays;
+
+/**
+ * build the rays for an exact visibility polygon. a shadow edge can only start at a corner, so instead of
+ * sampling the whole circle it is enough to cast one ray at every corner plus one just before and one just after
+ * it to see past the corner. the rays are sorted by angle so the closest hits, as returned by
+ * {@link RayKernel#castFan}, are already the visibility polygon in order.
+ *
+ * @author leon
+ * @since Mar-22-2019
+ * @see Sight and Light https://ncase.me/sight-and-light/
+ */
+public final class VertexFan {
+
+    /**
+     * angle in radians between the ray at a corner and the two rays beside it
+     */
+    public static final double EPSILON = 0.00001;
+
+    /**
+     * number of rays cast per corner
+     */
+    public static final int RAYS_PER_VERTEX = 3;
+
+    private VertexFan() {
+    }
+
+    /**
+     * fill the sorted angles of all rays needed for the given segments. every corner is the start of exactly one
+     * segment of a closed shape so only segment starts are used. the array must be at least
+     * segmentCount * {@link #RAYS_PER_VERTEX} long.
+     *
+     * @param ox           - x of light
+     * @param oy           - y of light
+     * @param segments     - packed segments, see {@link RayKernel#SEGMENT_STRIDE}
+     * @param segmentCount - number of segments
+     * @param angles       - output, sorted angles in radians
+     * @return number of angles written
+     */
+    public static int angles(double ox, double oy, double[] segments, int segmentCount, double[] angles) {
+        int count = 0;
+        int end = segmentCount * RayKernel.SEGMENT_STRIDE;
+        for (int s = 0; s < end; s += RayKernel.SEGMENT_STRIDE) {
+            double angle = Math.atan2(segments[s + 1] - oy, segments[s] - ox);
+            angles[count++] = angle - EPSILON;
+            angles[count++] = angle;
+            angles[count++] = angle + EPSILON;
+        }
+        Arrays.sort(angles, 0, count);
+        return count;
+    }
+
+    /**
+     * turn angles into unit directions.
+     *
+     * @param angles - angles in radians
+     * @param count  - number of angles
+     * @param dirX   - output, x of direction
+     * @param dirY   - output, y of direction
+     */
+    public static void directions(double[] angles, int count, double[] dirX, double[] dirY) {
+        for (int i = 0; i < count; i++) {
+            dirX[i] = Math.cos(angles[i]);
+            dirY[i] = Math.sin(angles[i]);
+        }
+    }
+}
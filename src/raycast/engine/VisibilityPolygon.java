@@ -0,0 +1,78 @@
+package raycast.engine;
+
+import java.util.Arrays;
+
+/**
+ * the area a light can see, as a polygon in counter clockwise angle order around the light.
+ * the coordinate arrays are reused between frames and only grow, so they can be passed straight to
+ * {@link javafx.scene.canvas.GraphicsContext#fillPolygon(double[], double[], int)} together with {@link #size()}.
+ *
+ * @author leon
+ * @since Mar-23-2019
+ */
+public class VisibilityPolygon {
+
+    private double[] x, y;
+    private int size;
+
+    public VisibilityPolygon() {
+        x = new double[64];
+        y = new double[64];
+    }
+
+    /**
+     * remove all points, the buffers are kept.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * add a point unless it is the same as the last one.
+     *
+     * @param px - x coordinate
+     * @param py - y coordinate
+     */
+    public void add(double px, double py) {
+        if (size > 0 && x[size - 1] == px && y[size - 1] == py) {
+            return;
+        }
+        if (size == x.length) {
+            x = Arrays.copyOf(x, size * 2);
+            y = Arrays.copyOf(y, size * 2);
+        }
+        x[size] = px;
+        y[size] = py;
+        size++;
+    }
+
+    /**
+     * drop the last point if it is the same as the first, the polygon is closed implicitly.
+     */
+    public void close() {
+        if (size > 1 && x[size - 1] == x[0] && y[size - 1] == y[0]) {
+            size--;
+        }
+    }
+
+    /**
+     * @return x coordinates, only the first {@link #size()} are valid
+     */
+    public double[] x() {
+        return x;
+    }
+
+    /**
+     * @return y coordinates, only the first {@link #size()} are valid
+     */
+    public double[] y() {
+        return y;
+    }
+
+    /**
+     * @return number of points
+     */
+    public int size() {
+        return size;
+    }
+}
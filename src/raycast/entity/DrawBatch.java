@@ -0,0 +1,397 @@
+package raycast.entity;
+
+import javafx.scene.paint.Color;
+import raycast.render.Renderer;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * collects what would be drawn on a {@link Renderer} and draws it grouped by style, so thousands of shapes
+ * cost a few state changes and one path per group instead of a state change and a path per shape.
+ * {@link DrawableObject#draw(DrawBatch)} adds an object, polygons, ovals and text are grouped and anything else
+ * is drawn as is with {@link DrawableObject#draw(Renderer)}.
+ *
+ * <p>grouping changes the order things are drawn in, which would change the picture where they overlap. an item
+ * joins the latest group of its style only if nothing it overlaps was added to that group or a later one,
+ * otherwise it starts a new group at the end. overlaps are found on a grid of {@link #CELL} sized cells, items
+ * are treated as overlapping if their bounds share a cell. so the picture is the same as drawing every item in
+ * the order it was added, and items in one group never overlap, which keeps filling them as one path the same
+ * as filling them one by one. an object drawn as is cannot be moved, nothing after it joins a group before it.</p>
+ *
+ * <p>coordinates are copied into arrays that are reused from one {@link #clear(double, double)} to the next.</p>
+ *
+ * @author leon
+ * @since Apr-5-2019
+ */
+public class DrawBatch {
+
+    /**
+     * size of the cells overlaps are found on
+     */
+    public static final double CELL = 32;
+
+    private static final int POLYGON = 0, OVAL = 1, TEXT = 2, OBJECT = 3;
+
+    /**
+     * per item, the group it is drawn in and its kind. coordinates are in {@link #coords} from start, count points
+     * for polygons, x, y, w, h for ovals and x, y for text.
+     */
+    private int[] itemGroup = new int[64], itemKind = new int[64], itemStart = new int[64], itemCount = new int[64];
+    private String[] itemText = new String[64];
+    private DrawableObject<?>[] itemObject = new DrawableObject<?>[64];
+    private int items;
+
+    private double[] coords = new double[1024];
+    private int coordCount;
+
+    /**
+     * style of every group and the latest group of every style
+     */
+    private Style[] groupStyle = new Style[64];
+    private int groups;
+    private final Map<Style, Integer> latest = new HashMap<>();
+
+    /**
+     * latest group that covers each cell, nothing may join a group before it
+     */
+    private int[] cells = new int[0];
+    private int columns, rows;
+    private int barrier = -1;
+
+    /**
+     * first item of every group in {@link #order}, used by {@link #flush(Renderer)}
+     */
+    private int[] first = new int[0], order = new int[0];
+
+    /**
+     * state changes skipped by the last {@link #flush(Renderer)}
+     */
+    private int skipped;
+
+    /**
+     * remove everything and size the overlap grid for the next frame.
+     *
+     * @param w - width of the area drawn on
+     * @param h - height of the area drawn on
+     * @return the current instance of this object
+     */
+    public DrawBatch clear(double w, double h) {
+        columns = Math.max(1, (int) Math.ceil(w / CELL));
+        rows = Math.max(1, (int) Math.ceil(h / CELL));
+        if (cells.length < columns * rows) {
+            cells = new int[columns * rows];
+        }
+        Arrays.fill(cells, 0, columns * rows, -1);
+        Arrays.fill(itemText, 0, items, null);
+        Arrays.fill(itemObject, 0, items, null);
+        Arrays.fill(groupStyle, 0, groups, null);
+        items = coordCount = groups = 0;
+        barrier = -1;
+        latest.clear();
+        return this;
+    }
+
+    /**
+     * add a closed polygon, stroked and then filled like {@link Renderer#strokePolygon} and
+     * {@link Renderer#fillPolygon}.
+     *
+     * @param x      - x of the points
+     * @param y      - y of the points
+     * @param count  - number of points
+     * @param fill   - fill {@link Color} or null
+     * @param stroke - stroke {@link Color} or null
+     * @param width  - stroke width
+     */
+    public void polygon(double[] x, double[] y, int count, Color fill, Color stroke, double width) {
+        if (count == 0 || fill == null && stroke == null) {
+            return;
+        }
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        int start = reserve(count * 2);
+        for (int i = 0; i < count; i++) {
+            coords[start + 2 * i] = x[i];
+            coords[start + 2 * i + 1] = y[i];
+            minX = Math.min(minX, x[i]);
+            minY = Math.min(minY, y[i]);
+            maxX = Math.max(maxX, x[i]);
+            maxY = Math.max(maxY, y[i]);
+        }
+        double pad = stroke == null ? 1 : width / 2 + 1;
+        int group = place(new Style(POLYGON, fill, stroke, stroke == null ? 0 : width), minX - pad, minY - pad,
+                maxX + pad, maxY + pad);
+        add(group, POLYGON, start, count, null, null);
+    }
+
+    /**
+     * add a filled oval like {@link Renderer#fillOval}.
+     *
+     * @param x    - left of the oval
+     * @param y    - top of the oval
+     * @param w    - width of the oval
+     * @param h    - height of the oval
+     * @param fill - fill {@link Color}
+     */
+    public void oval(double x, double y, double w, double h, Color fill) {
+        int start = reserve(4);
+        coords[start] = x;
+        coords[start + 1] = y;
+        coords[start + 2] = w;
+        coords[start + 3] = h;
+        int group = place(new Style(OVAL, fill, null, 0), x - 1, y - 1, x + w + 1, y + h + 1);
+        add(group, OVAL, start, 1, null, null);
+    }
+
+    /**
+     * add a filled text like {@link Renderer#fillText} in the font the renderer has when flushed.
+     *
+     * @param text - text to draw
+     * @param x    - x of the start of the base line
+     * @param y    - y of the base line
+     * @param size - font size, bounds are taken as size high above the base line and size wide per character
+     * @param fill - fill {@link Color}
+     */
+    public void text(String text, double x, double y, double size, Color fill) {
+        int start = reserve(2);
+        coords[start] = x;
+        coords[start + 1] = y;
+        int group = place(new Style(TEXT, fill, null, 0), x - 1, y - size, x + size * text.length(), y + size / 2);
+        add(group, TEXT, start, 1, text, null);
+    }
+
+    /**
+     * add an object that is drawn as is, in its own group that nothing before it joins.
+     *
+     * @param object - {@link DrawableObject} to draw
+     */
+    public void object(DrawableObject<?> object) {
+        int group = groups;
+        grow();
+        groupStyle[groups++] = null;
+        barrier = group;
+        add(group, OBJECT, 0, 0, null, object);
+    }
+
+    /**
+     * find the group for an item with the given style and bounds, and mark its cells.
+     */
+    private int place(Style style, double left, double top, double right, double bottom) {
+        int c0 = column(left), c1 = column(right), r0 = row(top), r1 = row(bottom);
+        int last = barrier;
+        for (int r = r0; r <= r1; r++) {
+            for (int c = c0; c <= c1; c++) {
+                last = Math.max(last, cells[r * columns + c]);
+            }
+        }
+        Integer group = latest.get(style);
+        int chosen;
+        if (group != null && group > last) {
+            chosen = group;
+        } else {
+            grow();
+            chosen = groups;
+            groupStyle[groups++] = style;
+            latest.put(style, chosen);
+        }
+        for (int r = r0; r <= r1; r++) {
+            for (int c = c0; c <= c1; c++) {
+                cells[r * columns + c] = Math.max(cells[r * columns + c], chosen);
+            }
+        }
+        return chosen;
+    }
+
+    private int column(double x) {
+        // NaN and anything outside the grid lands in the border cells
+        return x >= 0 ? Math.min(columns - 1, (int) (x / CELL)) : 0;
+    }
+
+    private int row(double y) {
+        return y >= 0 ? Math.min(rows - 1, (int) (y / CELL)) : 0;
+    }
+
+    private void grow() {
+        if (groups == groupStyle.length) {
+            groupStyle = Arrays.copyOf(groupStyle, groups * 2);
+        }
+    }
+
+    private int reserve(int length) {
+        if (coordCount + length > coords.length) {
+            coords = Arrays.copyOf(coords, Math.max(coords.length * 2, coordCount + length));
+        }
+        int start = coordCount;
+        coordCount += length;
+        return start;
+    }
+
+    private void add(int group, int kind, int start, int count, String text, DrawableObject<?> object) {
+        if (items == itemGroup.length) {
+            int length = items * 2;
+            itemGroup = Arrays.copyOf(itemGroup, length);
+            itemKind = Arrays.copyOf(itemKind, length);
+            itemStart = Arrays.copyOf(itemStart, length);
+            itemCount = Arrays.copyOf(itemCount, length);
+            itemText = Arrays.copyOf(itemText, length);
+            itemObject = Arrays.copyOf(itemObject, length);
+        }
+        itemGroup[items] = group;
+        itemKind[items] = kind;
+        itemStart[items] = start;
+        itemCount[items] = count;
+        itemText[items] = text;
+        itemObject[items++] = object;
+    }
+
+    /**
+     * @return number of items added since {@link #clear(double, double)}
+     */
+    public int size() {
+        return items;
+    }
+
+    /**
+     * @return number of groups the items are drawn in
+     */
+    public int groupCount() {
+        return groups;
+    }
+
+    /**
+     * @return state changes skipped by the last {@link #flush(Renderer)} because the state was already set
+     */
+    public int getSkipped() {
+        return skipped;
+    }
+
+    /**
+     * draw every group in order. the items stay until {@link #clear(double, double)}, so the same batch can be
+     * drawn again, such as once per clip. the fill, stroke and line width of the renderer are left as the last
+     * group set them.
+     *
+     * @param renderer - {@link Renderer} to draw on
+     */
+    public void flush(Renderer renderer) {
+        // items of each group in the order they were added
+        if (first.length < groups + 1) {
+            first = new int[groupStyle.length + 1];
+        }
+        if (order.length < items) {
+            order = new int[itemGroup.length];
+        }
+        Arrays.fill(first, 0, groups + 1, 0);
+        for (int i = 0; i < items; i++) {
+            first[itemGroup[i] + 1]++;
+        }
+        for (int g = 0; g < groups; g++) {
+            first[g + 1] += first[g];
+        }
+        for (int i = 0; i < items; i++) {
+            order[first[itemGroup[i]]++] = i;
+        }
+        // each first moved to the start of the next group, move them back
+        for (int g = groups; g > 0; g--) {
+            first[g] = first[g - 1];
+        }
+        first[0] = 0;
+
+        skipped = 0;
+        Color fill = null, stroke = null;
+        double width = Double.NaN;
+        for (int g = 0; g < groups; g++) {
+            Style style = groupStyle[g];
+            if (style == null) {
+                DrawableObject<?> object = itemObject[order[first[g]]];
+                object.draw(renderer);
+                // the object may have changed anything
+                fill = stroke = null;
+                width = Double.NaN;
+                continue;
+            }
+            if (style.stroke != null) {
+                if (style.stroke.equals(stroke)) {
+                    skipped++;
+                } else {
+                    renderer.setStroke(stroke = style.stroke);
+                }
+                if (style.width == width) {
+                    skipped++;
+                } else {
+                    renderer.setLineWidth(width = style.width);
+                }
+            }
+            if (style.fill != null) {
+                if (style.fill.equals(fill)) {
+                    skipped++;
+                } else {
+                    renderer.setFill(fill = style.fill);
+                }
+            }
+            if (style.kind == TEXT) {
+                for (int k = first[g]; k < first[g + 1]; k++) {
+                    int i = order[k];
+                    renderer.fillText(itemText[i], coords[itemStart[i]], coords[itemStart[i] + 1]);
+                }
+                continue;
+            }
+            renderer.beginPath();
+            for (int k = first[g]; k < first[g + 1]; k++) {
+                int i = order[k];
+                int s = itemStart[i];
+                if (style.kind == OVAL) {
+                    double rx = coords[s + 2] / 2, ry = coords[s + 3] / 2;
+                    double cx = coords[s] + rx, cy = coords[s + 1] + ry;
+                    renderer.moveTo(cx + rx, cy);
+                    renderer.arc(cx, cy, rx, ry, 0, 360);
+                } else {
+                    renderer.moveTo(coords[s], coords[s + 1]);
+                    for (int p = 1; p < itemCount[i]; p++) {
+                        renderer.lineTo(coords[s + 2 * p], coords[s + 2 * p + 1]);
+                    }
+                }
+                renderer.closePath();
+            }
+            if (style.stroke != null) {
+                renderer.stroke();
+            }
+            if (style.fill != null) {
+                renderer.fill();
+            }
+        }
+    }
+
+    /**
+     * what a group shares
+     */
+    private static final class Style {
+
+        private final int kind;
+        private final Color fill, stroke;
+        private final double width;
+
+        private Style(int kind, Color fill, Color stroke, double width) {
+            this.kind = kind;
+            this.fill = fill;
+            this.stroke = stroke;
+            this.width = width;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Style)) {
+                return false;
+            }
+            Style style = (Style) o;
+            return kind == style.kind && width == style.width && Objects.equals(fill, style.fill)
+                    && Objects.equals(stroke, style.stroke);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(kind, fill, stroke, width);
+        }
+    }
+}
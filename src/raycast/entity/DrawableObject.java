@@ -1,7 +1,7 @@
 package raycast.entity;
 
-import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.paint.Color;
+import raycast.render.Renderer;
 
 /**
  * an interface used on drawable objects.
@@ -51,8 +51,17 @@ public interface DrawableObject<T>{
     double getWidth();
 
     /**
-     * draw the shape given the {@link GraphicsContext}
-     * @param gc - {@link GraphicsContext} object
+     * draw the shape given the {@link Renderer}
+     * @param renderer - {@link Renderer} object
      */
-    void draw( GraphicsContext gc);
+    void draw( Renderer renderer);
+
+    /**
+     * add the shape to a {@link DrawBatch} to be drawn grouped with others of the same style. by default the
+     * object is drawn as is with {@link DrawableObject#draw(Renderer)} when the batch is flushed
+     * @param batch - {@link DrawBatch} object
+     */
+    default void draw( DrawBatch batch) {
+        batch.object( this);
+    }
 }
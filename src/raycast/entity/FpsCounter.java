@@ -1,9 +1,10 @@
 package raycast.entity;
 
-import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.paint.Color;
 import javafx.scene.text.Font;
 import javafx.scene.text.FontWeight;
+import raycast.entity.geometry.RectangleBounds;
+import raycast.render.Renderer;
 
 public class FpsCounter implements DrawableObject<FpsCounter> {
 
@@ -29,13 +30,35 @@ public class FpsCounter implements DrawableObject<FpsCounter> {
         setPos(x, y);
     }
 
-    public void calculateFPS(long now) {
+    /**
+     * count a frame and update the displayed rate every half second.
+     *
+     * @param now - current time in nanoseconds
+     * @return true if the displayed text changed
+     */
+    public boolean calculateFPS(long now) {
+        boolean changed = false;
         if ((now - lastTime) > HALF_SECOND) {
-            fpsDisplay = String.format("%s", frameCount * 2);
+            String display = String.format("%s", frameCount * 2);
+            changed = !display.equals(fpsDisplay);
+            fpsDisplay = display;
             frameCount = 0;
             lastTime = now;
         }
         frameCount++;
+        return changed;
+    }
+
+    /**
+     * get the area the current text is drawn in, wide enough for a character as wide as the font is tall
+     *
+     * @return {@link RectangleBounds} of the text and its stroke
+     */
+    public RectangleBounds getBounds() {
+        int length = fpsDisplay == null ? 0 : fpsDisplay.length();
+        double size = fpsFont.getSize();
+        return new RectangleBounds(x - strokeWidth, y - size - strokeWidth, length * size + 2 * strokeWidth,
+                size * 1.3 + 2 * strokeWidth);
     }
 
     public FpsCounter setFont(Font font) {
@@ -50,15 +73,15 @@ public class FpsCounter implements DrawableObject<FpsCounter> {
     }
 
     @Override
-    public void draw(GraphicsContext gc) {
-        Font font = gc.getFont();
-        gc.setFont(fpsFont);
-        gc.setFill(getFill());
-        gc.fillText(fpsDisplay, x, y);
-        gc.setStroke(stroke);
-        gc.setLineWidth(strokeWidth);
-        gc.strokeText(fpsDisplay, x, y);
-        gc.setFont(font);
+    public void draw(Renderer renderer) {
+        Font font = renderer.getFont();
+        renderer.setFont(fpsFont);
+        renderer.setFill(getFill());
+        renderer.fillText(fpsDisplay, x, y);
+        renderer.setStroke(stroke);
+        renderer.setLineWidth(strokeWidth);
+        renderer.strokeText(fpsDisplay, x, y);
+        renderer.setFont(font);
     }
 
     @Override
@@ -0,0 +1,102 @@
+package raycast.entity;
+
+import javafx.scene.paint.Color;
+import raycast.entity.geometry.RectangleBounds;
+
+/**
+ * a light of a color, brightest at its position and fading out at its radius. nothing outside of its
+ * {@link #getBounds()} is lit by it, so only shapes overlapping them can cast its shadows. a light of some
+ * {@link #getSize()} shines from a disc instead of a point and casts soft shadows.
+ *
+ * @author leon
+ * @since Apr-10-2019
+ */
+public class Light {
+
+    private double x, y;
+    private double radius;
+    private double size;
+    private Color color;
+
+    /**
+     * @param x      - x of the light
+     * @param y      - y of the light
+     * @param radius - distance at which the light fades out
+     * @param color  - {@link Color} of the light, its brightness scales the light
+     */
+    public Light(double x, double y, double radius, Color color) {
+        setPosition(x, y).setRadius(radius).setColor(color);
+    }
+
+    /**
+     * @param x - x of the light
+     * @param y - y of the light
+     * @return the current instance of this object
+     */
+    public Light setPosition(double x, double y) {
+        this.x = x;
+        this.y = y;
+        return this;
+    }
+
+    /**
+     * @param radius - distance at which the light fades out, positive
+     * @return the current instance of this object
+     */
+    public Light setRadius(double radius) {
+        if (!(radius > 0)) {
+            throw new IllegalArgumentException("radius has to be positive: " + radius);
+        }
+        this.radius = radius;
+        return this;
+    }
+
+    /**
+     * @param size - radius of the disc the light shines from, 0 for a point
+     * @return the current instance of this object
+     */
+    public Light setSize(double size) {
+        if (!(size >= 0)) {
+            throw new IllegalArgumentException("size can not be negative: " + size);
+        }
+        this.size = size;
+        return this;
+    }
+
+    /**
+     * @param color - {@link Color} of the light
+     * @return the current instance of this object
+     */
+    public Light setColor(Color color) {
+        this.color = color;
+        return this;
+    }
+
+    public double x() {
+        return x;
+    }
+
+    public double y() {
+        return y;
+    }
+
+    public double getRadius() {
+        return radius;
+    }
+
+    public double getSize() {
+        return size;
+    }
+
+    public Color getColor() {
+        return color;
+    }
+
+    /**
+     * @return square around the light as wide as its reach from any point of its disc
+     */
+    public RectangleBounds getBounds() {
+        double reach = radius + size;
+        return new RectangleBounds(x - reach, y - reach, reach * 2, reach * 2);
+    }
+}
@@ -1,9 +1,10 @@
 package raycast.entity.geometry;
 
-import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.paint.Color;
-import javafx.scene.paint.Paint;
+import javafx.scene.text.Font;
+import raycast.entity.DrawBatch;
 import raycast.entity.DrawableObject;
+import raycast.render.Renderer;
 
 import java.util.Arrays;
 import java.util.Random;
@@ -16,6 +17,11 @@ import java.util.Random;
  */
 public class PolyShape implements DrawableObject<PolyShape> {
 
+    /**
+     * generator of the shapes randomized without one of their own
+     */
+    private static final Random RANDOM = new Random();
+
     /**
      * number of points
      */
@@ -54,6 +60,21 @@ public class PolyShape implements DrawableObject<PolyShape> {
      */
     private RectangleBounds bounds;
 
+    /**
+     * number of times the points have been changed
+     */
+    private int modCount;
+
+    /**
+     * number of times fill, stroke or width have been changed
+     */
+    private int styleModCount;
+
+    /**
+     * called after every change of the points or the style, set by the {@link raycast.CanvasMap} holding the shape
+     */
+    private Runnable onChange;
+
     public PolyShape() {
         // set stroke width to 1
         setWidth(1.0f);
@@ -68,18 +89,24 @@ public class PolyShape implements DrawableObject<PolyShape> {
     @Override
     public PolyShape setFill(Color color) {
         this.fill = color;
+        styleModCount++;
+        changed();
         return this;
     }
 
     @Override
     public PolyShape setStroke(Color color) {
         this.stroke = color;
+        styleModCount++;
+        changed();
         return this;
     }
 
     @Override
     public PolyShape setWidth(double width) {
         this.strokeWidth = width;
+        styleModCount++;
+        changed();
         return this;
     }
 
@@ -101,40 +128,72 @@ public class PolyShape implements DrawableObject<PolyShape> {
     /**
      * draw the shape
      *
-     * @param gc - {@link GraphicsContext} object
+     * @param renderer - {@link Renderer} object
      */
     @Override
-    public void draw(GraphicsContext gc) {
+    public void draw(Renderer renderer) {
         // set line width
-        gc.setLineWidth(strokeWidth);
+        renderer.setLineWidth(strokeWidth);
 
         if (stroke != null) {
-            gc.setStroke(stroke);
-            gc.strokePolygon(points[0], points[1], pointCount);
+            renderer.setStroke(stroke);
+            renderer.strokePolygon(points[0], points[1], pointCount);
         }
 
         if (fill != null) {
-            gc.setFill(fill);
-            gc.fillPolygon(points[0], points[1], pointCount);
+            renderer.setFill(fill);
+            renderer.fillPolygon(points[0], points[1], pointCount);
         }
     }
 
+    /**
+     * add the shape to the batch, stroked and filled as {@link PolyShape#draw(Renderer)} would
+     *
+     * @param batch - {@link DrawBatch} object
+     */
+    @Override
+    public void draw(DrawBatch batch) {
+        batch.polygon(points[0], points[1], pointCount, fill, stroke, strokeWidth);
+    }
+
     /**
      * draw little circles on the corners of the shape plus a little number
      *
-     * @param gc - {@link GraphicsContext} object
+     * @param renderer - {@link Renderer} object
      */
-    public void drawCorners(GraphicsContext gc) {
+    public void drawCorners(Renderer renderer) {
+        renderer.save();
+        renderer.setFill(Color.BLACK);
         for (int i = 0; i < pointCount; i++) {
-            Paint fill = gc.getFill();
-            gc.setFill(Color.BLACK);
-            gc.fillText(Integer.toString(i), points[0][i] - 5, points[1][i] - 5);
-            gc.fillOval(points[0][i] - 5, points[1][i] - 5, 10, 10);
-            gc.setStroke(fill);
+            renderer.fillText(Integer.toString(i), points[0][i] - 5, points[1][i] - 5);
+            renderer.fillOval(points[0][i] - 5, points[1][i] - 5, 10, 10);
+        }
+        renderer.restore();
+    }
 
+    /**
+     * add little circles on the corners of the shape plus a little number to the batch, the numbers are drawn in
+     * the font of the renderer the batch is flushed to, which is taken to be the default font
+     *
+     * @param batch - {@link DrawBatch} object
+     */
+    public void drawCorners(DrawBatch batch) {
+        double size = Font.getDefault().getSize();
+        for (int i = 0; i < pointCount; i++) {
+            batch.text(Integer.toString(i), points[0][i] - 5, points[1][i] - 5, size, Color.BLACK);
+            batch.oval(points[0][i] - 5, points[1][i] - 5, 10, 10, Color.BLACK);
         }
     }
 
+    /**
+     * get the number of points, which is also the number of edges of the closed polygon
+     *
+     * @return - number of points
+     */
+    public int getPointCount() {
+        return pointCount;
+    }
+
     /**
      * get the x coordinates of the point with the index
      *
@@ -178,6 +237,8 @@ public class PolyShape implements DrawableObject<PolyShape> {
 
         // initialize rectangle bounds
         bounds = new RectangleBounds(minX, minY, maxX - minX, maxY - minY);
+        modCount++;
+        changed();
         return this;
     }
 
@@ -204,13 +265,28 @@ public class PolyShape implements DrawableObject<PolyShape> {
      * @return
      */
     public PolyShape randomize(double centerX, double centerY, double size, int minPoints, int maxPoints) {
-        pointCount = minPoints + (int)(Math.random() * (maxPoints - minPoints) + 1);
+        return randomize(RANDOM, centerX, centerY, size, minPoints, maxPoints);
+    }
+
+    /**
+     * Randomly generate a polygon from the given generator, the same seed gives the same polygon
+     * @param random - the generator to draw from
+     * @param centerX - the x coordinate of the center of the polygon
+     * @param centerY - the y coordinate of the center of the polygon
+     * @param size
+     * @param minPoints - the minimum number of the points of the polygon
+     * @param maxPoints - the maximum number of the points of the polygon
+     * @return
+     */
+    public PolyShape randomize(Random random, double centerX, double centerY, double size, int minPoints,
+                               int maxPoints) {
+        pointCount = minPoints + (int)(random.nextDouble() * (maxPoints - minPoints) + 1);
         points = new double[2][pointCount];
 
         // randomly generates angles
         double thetas[] = new double[pointCount];
         for (int i = 0; i < pointCount; ++i) {
-            thetas[i] = Math.random() * 360;
+            thetas[i] = random.nextDouble() * 360;
         }
 
         // sort angles ascending
@@ -221,7 +297,7 @@ public class PolyShape implements DrawableObject<PolyShape> {
 
         for (int j = 0; j < pointCount; ++j) {
             // generate R randomly
-            double r = Math.random() * size + 1;
+            double r = random.nextDouble() * size + 1;
             // vertex of polygon described in polar coordinates
             points[0][j] = r * Math.cos(Math.toRadians(thetas[j])) + centerX;
             points[1][j] = r * Math.sin(Math.toRadians(thetas[j])) + centerY;
@@ -231,10 +307,57 @@ public class PolyShape implements DrawableObject<PolyShape> {
 
         // initialize rectangle bounds
         bounds = new RectangleBounds(minX, minY, maxX - minX, maxY - minY);
+        modCount++;
+        changed();
 
         return this;
     }
 
+    /**
+     * get the number of times the points have been changed, anything computed from the points is stale
+     * when this is different from the value it was computed with
+     *
+     * @return - modification count
+     */
+    public int getModCount() {
+        return modCount;
+    }
+
+    /**
+     * get the number of times fill, stroke or width have been changed, anything drawn with the style is stale
+     * when this is different from the value it was drawn with
+     *
+     * @return - style modification count
+     */
+    public int getStyleModCount() {
+        return styleModCount;
+    }
+
+    /**
+     * set what to call after every change of the points or the style, one listener per shape, the last one set
+     * replaces the others
+     *
+     * @param onChange - {@link Runnable} to call, null for none
+     * @return - PolyShape object
+     */
+    public PolyShape setOnChange(Runnable onChange) {
+        this.onChange = onChange;
+        return this;
+    }
+
+    /**
+     * @return - what is called after every change of the points or the style, null if nothing
+     */
+    public Runnable getOnChange() {
+        return onChange;
+    }
+
+    private void changed() {
+        if (onChange != null) {
+            onChange.run();
+        }
+    }
+
     /**
      * getter method for bounds
      * @return
@@ -1,8 +1,9 @@
 package raycast.entity.geometry;
 
-import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.paint.Color;
+import raycast.entity.DrawBatch;
 import raycast.entity.DrawableObject;
+import raycast.render.Renderer;
 import utility.Point;
 
 /**
@@ -354,9 +355,21 @@ public class RectangleBounds implements DrawableObject<RectangleBounds> {
      * (non-Javadoc)
      */
     @Override
-    public void draw(GraphicsContext gc) {
-        gc.setStroke(stroke);
-        gc.setLineWidth(strokeWidth);
-        gc.strokeRect(x(), y(), w(), h());
+    public void draw(Renderer renderer) {
+        renderer.setStroke(stroke);
+        renderer.setLineWidth(strokeWidth);
+        renderer.strokeRect(x(), y(), w(), h());
+    }
+
+    /**
+     * add the outline of the rectangle to the batch
+     *
+     * @param batch - {@link DrawBatch} object
+     */
+    @Override
+    public void draw(DrawBatch batch) {
+        double[] x = {x(), wPos(), wPos(), x()};
+        double[] y = {y(), y(), hPos(), hPos()};
+        batch.polygon(x, y, 4, null, stroke, strokeWidth);
     }
 }
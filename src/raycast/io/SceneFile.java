@@ -0,0 +1,350 @@
+package raycast.io;
+
+import javafx.scene.paint.Color;
+import raycast.engine.ShapeStore;
+import raycast.entity.geometry.PolyShape;
+import raycast.render.Renderer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * binary scene file that is used in place through {@link FileChannel#map}. only the header and the offsets are
+ * read on open, the offsets to check that they run in order within the vertices. the sections are handed to a
+ * {@link ShapeStore} as views of the mapped file, so the vertices are not read until they are used and their
+ * pages are read by the OS as they are touched.
+ *
+ * <p>the app opens scene files through {@link raycast.CanvasMap#openScene(Path)}, which casts against
+ * {@link #store()} and draws with {@link #draw} straight from the mapping. the shapes are only copied onto the
+ * heap with {@link #toShapes()} when they are to be edited.</p>
+ *
+ * <p>all values are little endian, sections follow each other in this order:</p>
+ * <pre>
+ * header   int magic, int version, int shape count n, int vertex count v, double min x, min y, max x, max y
+ * offsets  int[n + 1], first vertex of every shape and v at the end
+ * fill     int[n], ARGB fill per shape
+ * stroke   int[n], ARGB stroke per shape
+ * width    float[n], stroke width per shape
+ * flags    byte[n], 1 if the shape has a fill and 2 if it has a stroke
+ * padding  to a multiple of 8 bytes
+ * bounds   double[4n], min x, min y, max x, max y per shape
+ * x        double[v]
+ * y        double[v]
+ * </pre>
+ *
+ * @author leon
+ * @since Mar-31-2019
+ */
+public class SceneFile {
+
+    /**
+     * "RCSN" as the first 4 bytes
+     */
+    public static final int MAGIC = 0x4E534352;
+    public static final int VERSION = 2;
+
+    /**
+     * file name extension of scene files
+     */
+    public static final String EXTENSION = "rcs";
+
+    /**
+     * bits of the flags of a shape
+     */
+    private static final int HAS_FILL = 1, HAS_STROKE = 2;
+
+    private static final int HEADER_BYTES = 48;
+
+    private final ByteBuffer file;
+    private final int shapeCount, vertexCount;
+    private final Layout layout;
+    private final ShapeStore store;
+
+    private SceneFile(ByteBuffer file) throws IOException {
+        this.file = file.order(ByteOrder.LITTLE_ENDIAN);
+        if (file.capacity() < HEADER_BYTES || file.getInt(0) != MAGIC) {
+            throw new IOException("not a scene file");
+        }
+        if (file.getInt(4) != VERSION) {
+            throw new IOException("unsupported scene file version " + file.getInt(4));
+        }
+        shapeCount = file.getInt(8);
+        vertexCount = file.getInt(12);
+        if (shapeCount < 0 || vertexCount < 0) {
+            throw new IOException("corrupt scene file header");
+        }
+        layout = new Layout(shapeCount, vertexCount);
+        if (file.capacity() < layout.size) {
+            throw new IOException("scene file is " + file.capacity() + " bytes, header needs " + layout.size);
+        }
+        // the store trusts the offsets, a shape running past the vertices or backwards would read garbage
+        int last = 0;
+        for (int s = 0; s <= shapeCount; s++) {
+            int offset = file.getInt(layout.offsets + s * 4);
+            if (offset < last || offset > vertexCount || s == 0 && offset != 0
+                    || s == shapeCount && offset != vertexCount) {
+                throw new IOException("corrupt scene file, offset " + offset + " of shape " + s);
+            }
+            last = offset;
+        }
+        store = new ShapeStore(section(layout.x, vertexCount * 8).asDoubleBuffer(),
+                section(layout.y, vertexCount * 8).asDoubleBuffer(),
+                section(layout.bounds, shapeCount * 32).asDoubleBuffer(),
+                section(layout.offsets, (shapeCount + 1) * 4).asIntBuffer(), shapeCount, vertexCount);
+    }
+
+    /**
+     * map a scene file read only.
+     *
+     * @param path - file written by {@link #write(Path, List)}
+     * @return the opened scene
+     * @throws IOException if the file can not be read or is not a scene file
+     */
+    public static SceneFile open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            // the mapping stays valid after the channel is closed
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new SceneFile(mapped);
+        }
+    }
+
+    /**
+     * write the shapes with their style as a scene file, through a mapping of the new file.
+     *
+     * @param path   - file to create or replace
+     * @param shapes - shapes to write
+     * @throws IOException if the file can not be written
+     */
+    public static void write(Path path, List<PolyShape> shapes) throws IOException {
+        int vertexCount = 0;
+        for (PolyShape shape : shapes) {
+            vertexCount += shape.getPointCount();
+        }
+        Layout layout = new Layout(shapes.size(), vertexCount);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer out = channel.map(FileChannel.MapMode.READ_WRITE, 0, layout.size)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            out.putInt(0, MAGIC);
+            out.putInt(4, VERSION);
+            out.putInt(8, shapes.size());
+            out.putInt(12, vertexCount);
+
+            double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+            double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+            int vertex = 0;
+            for (int s = 0; s < shapes.size(); s++) {
+                PolyShape shape = shapes.get(s);
+                out.putInt(layout.offsets + s * 4, vertex);
+                out.putInt(layout.fill + s * 4, argb(shape.getFill()));
+                out.putInt(layout.stroke + s * 4, argb(shape.getStroke()));
+                out.putFloat(layout.width + s * 4, (float) shape.getWidth());
+                out.put(layout.flags + s, (byte) ((shape.getFill() == null ? 0 : HAS_FILL)
+                        | (shape.getStroke() == null ? 0 : HAS_STROKE)));
+
+                double sMinX = Double.POSITIVE_INFINITY, sMinY = Double.POSITIVE_INFINITY;
+                double sMaxX = Double.NEGATIVE_INFINITY, sMaxY = Double.NEGATIVE_INFINITY;
+                for (int i = 0; i < shape.getPointCount(); i++, vertex++) {
+                    double x = shape.pX(i), y = shape.pY(i);
+                    out.putDouble(layout.x + vertex * 8, x);
+                    out.putDouble(layout.y + vertex * 8, y);
+                    sMinX = Math.min(sMinX, x);
+                    sMaxX = Math.max(sMaxX, x);
+                    sMinY = Math.min(sMinY, y);
+                    sMaxY = Math.max(sMaxY, y);
+                }
+                out.putDouble(layout.bounds + s * 32, sMinX);
+                out.putDouble(layout.bounds + s * 32 + 8, sMinY);
+                out.putDouble(layout.bounds + s * 32 + 16, sMaxX);
+                out.putDouble(layout.bounds + s * 32 + 24, sMaxY);
+                minX = Math.min(minX, sMinX);
+                minY = Math.min(minY, sMinY);
+                maxX = Math.max(maxX, sMaxX);
+                maxY = Math.max(maxY, sMaxY);
+            }
+            out.putInt(layout.offsets + shapes.size() * 4, vertex);
+            out.putDouble(16, minX);
+            out.putDouble(24, minY);
+            out.putDouble(32, maxX);
+            out.putDouble(40, maxY);
+            if (out instanceof MappedByteBuffer) {
+                ((MappedByteBuffer) out).force();
+            }
+        }
+    }
+
+    private static int argb(Color color) {
+        if (color == null) {
+            return 0;
+        }
+        return (int) Math.round(color.getOpacity() * 255) << 24 | (int) Math.round(color.getRed() * 255) << 16
+                | (int) Math.round(color.getGreen() * 255) << 8 | (int) Math.round(color.getBlue() * 255);
+    }
+
+    private static Color color(int argb) {
+        return Color.rgb(argb >> 16 & 0xFF, argb >> 8 & 0xFF, argb & 0xFF, (argb >>> 24) / 255.0);
+    }
+
+    /**
+     * little endian view of a section of the file.
+     */
+    private ByteBuffer section(int start, int length) {
+        ByteBuffer view = file.duplicate();
+        view.position(start);
+        view.limit(start + length);
+        return view.slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * @return the shapes as columns read straight from the mapped file, read only
+     */
+    public ShapeStore store() {
+        return store;
+    }
+
+    /**
+     * @return number of shapes
+     */
+    public int shapeCount() {
+        return shapeCount;
+    }
+
+    /**
+     * @return number of vertices of all shapes
+     */
+    public int vertexCount() {
+        return vertexCount;
+    }
+
+    /**
+     * @param i - 0 to 3 for min x, min y, max x and max y
+     * @return one side of the bounds of all shapes
+     */
+    public double bound(int i) {
+        return file.getDouble(16 + i * 8);
+    }
+
+    /**
+     * @param shape - index of shape
+     * @return fill of the shape, or null for none
+     */
+    public Color getFill(int shape) {
+        if ((file.get(layout.flags + shape) & HAS_FILL) == 0) {
+            return null;
+        }
+        return color(file.getInt(layout.fill + shape * 4));
+    }
+
+    /**
+     * @param shape - index of shape
+     * @return stroke of the shape, or null for none
+     */
+    public Color getStroke(int shape) {
+        if ((file.get(layout.flags + shape) & HAS_STROKE) == 0) {
+            return null;
+        }
+        return color(file.getInt(layout.stroke + shape * 4));
+    }
+
+    /**
+     * @param shape - index of shape
+     * @return stroke width of the shape
+     */
+    public double getWidth(int shape) {
+        return file.getFloat(layout.width + shape * 4);
+    }
+
+    /**
+     * fill and stroke every shape whose bounds overlap the given view with its own style, straight from the
+     * mapping.
+     *
+     * @param renderer - {@link Renderer} object
+     * @param vx       - x of view
+     * @param vy       - y of view
+     * @param vw       - width of view
+     * @param vh       - height of view
+     */
+    public void draw(Renderer renderer, double vx, double vy, double vw, double vh) {
+        for (int s = 0; s < shapeCount; s++) {
+            if (store.offset(s + 1) == store.offset(s) || !store.overlaps(s, vx, vy, vw, vh)) {
+                continue;
+            }
+            Color fill = getFill(s), stroke = getStroke(s);
+            if (fill != null) {
+                renderer.setFill(fill);
+                store.fill(renderer, s);
+            }
+            if (stroke != null) {
+                renderer.setStroke(stroke);
+                renderer.setLineWidth(getWidth(s));
+                store.stroke(renderer, s);
+            }
+        }
+    }
+
+    /**
+     * copy one shape onto the heap as a {@link PolyShape}, for editing.
+     *
+     * @param shape - index of shape
+     * @return new {@link PolyShape} with the points and style of the shape
+     */
+    public PolyShape toShape(int shape) {
+        int first = store.offset(shape), n = store.offset(shape + 1) - first;
+        double[] points = new double[n * 2];
+        for (int i = 0; i < n; i++) {
+            points[2 * i] = store.x(first + i);
+            points[2 * i + 1] = store.y(first + i);
+        }
+        return new PolyShape().setPoints(points).setFill(getFill(shape)).setStroke(getStroke(shape))
+                .setWidth(getWidth(shape));
+    }
+
+    /**
+     * @return every shape copied onto the heap, see {@link #toShape(int)}
+     */
+    public List<PolyShape> toShapes() {
+        List<PolyShape> shapes = new ArrayList<>(shapeCount);
+        for (int s = 0; s < shapeCount; s++) {
+            if (store.offset(s + 1) > store.offset(s)) {
+                shapes.add(toShape(s));
+            }
+        }
+        return shapes;
+    }
+
+    /**
+     * byte position of every section for the given counts. a mapping is at most 2 GB, which is about 130
+     * million vertices.
+     */
+    private static class Layout {
+
+        private final int offsets, fill, stroke, width, flags, bounds, x, y, size;
+
+        private Layout(int shapeCount, int vertexCount) throws IOException {
+            long fill = HEADER_BYTES + (shapeCount + 1) * 4L;
+            long width = fill + shapeCount * 8L;
+            // doubles start on a multiple of 8 so the views are aligned
+            long bounds = (width + shapeCount * 5L + 7) & ~7L;
+            long size = bounds + shapeCount * 32L + vertexCount * 16L;
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("scene of " + size + " bytes is too large to map");
+            }
+            this.offsets = HEADER_BYTES;
+            this.fill = (int) fill;
+            this.stroke = this.fill + shapeCount * 4;
+            this.width = (int) width;
+            this.flags = this.width + shapeCount * 4;
+            this.bounds = (int) bounds;
+            this.x = this.bounds + shapeCount * 32;
+            this.y = x + vertexCount * 8;
+            this.size = (int) size;
+        }
+    }
+}
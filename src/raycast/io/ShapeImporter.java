@@ -0,0 +1,719 @@
+package raycast.io;
+
+import javafx.scene.paint.Color;
+import raycast.entity.geometry.PolyShape;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * streaming reader of polygons from SVG or WKT text. the input is read through a fixed buffer one character at
+ * a time and never held as a whole, not even one attribute or one geometry, so memory stays the buffer, the
+ * points of the polygon being read and one batch of finished shapes, however large the file is.
+ *
+ * <p>every closed ring becomes one {@link PolyShape}, with its bounds computed by
+ * {@link PolyShape#setPoints}, and shapes are handed on in batches of {@link #setBatchSize(int)}. holes become
+ * shapes of their own, which is what ray casting needs since only edges block light.</p>
+ *
+ * <p>from SVG the {@code d} of {@code <path>}, the {@code points} of {@code <polygon>} and {@code <rect>} are
+ * read. every sub path of a path is one shape, curves are flattened into {@link #CURVE_STEPS} lines and arcs
+ * are replaced by a line to their end point. transforms are not applied. from WKT every {@code POLYGON} and
+ * {@code MULTIPOLYGON} is read, also inside {@code GEOMETRYCOLLECTION}, coordinates after the second of a
+ * point are ignored and other geometry is skipped.</p>
+ *
+ * @author leon
+ * @since Apr-1-2019
+ */
+public class ShapeImporter {
+
+    public enum Format {
+        SVG, WKT;
+
+        /**
+         * @param path - file to read
+         * @return {@link #SVG} for files ending in .svg, otherwise {@link #WKT}
+         */
+        public static Format of(Path path) {
+            return path.getFileName().toString().toLowerCase().endsWith(".svg") ? SVG : WKT;
+        }
+    }
+
+    /**
+     * called after every batch
+     */
+    @FunctionalInterface
+    public interface Progress {
+
+        /**
+         * @param read   - bytes read so far
+         * @param total  - size of input in bytes, or -1 if not known
+         * @param shapes - shapes read so far
+         */
+        void update(long read, long total, int shapes);
+    }
+
+    /**
+     * lines a curve of a path is flattened into
+     */
+    public static final int CURVE_STEPS = 8;
+
+    /**
+     * characters read from the input at a time
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * longest number accepted, anything longer is not a coordinate
+     */
+    private static final int MAX_TOKEN = 64;
+
+    private int batchSize = 1024;
+    private Color fill, stroke = Color.BLACK;
+    private double width = 1;
+    private Progress progress = (read, total, shapes) -> {
+    };
+    private volatile boolean cancelled;
+
+    /**
+     * @param batchSize - number of shapes handed on at once
+     * @return the current instance of this object
+     */
+    public ShapeImporter setBatchSize(int batchSize) {
+        this.batchSize = Math.max(1, batchSize);
+        return this;
+    }
+
+    /**
+     * @param fill - fill of imported shapes, null for none
+     * @return the current instance of this object
+     */
+    public ShapeImporter setFill(Color fill) {
+        this.fill = fill;
+        return this;
+    }
+
+    /**
+     * @param stroke - stroke of imported shapes
+     * @return the current instance of this object
+     */
+    public ShapeImporter setStroke(Color stroke) {
+        this.stroke = stroke;
+        return this;
+    }
+
+    /**
+     * @param width - stroke width of imported shapes
+     * @return the current instance of this object
+     */
+    public ShapeImporter setWidth(double width) {
+        this.width = width;
+        return this;
+    }
+
+    /**
+     * @param progress - called on the reading thread after every batch
+     * @return the current instance of this object
+     */
+    public ShapeImporter setProgress(Progress progress) {
+        this.progress = progress;
+        return this;
+    }
+
+    /**
+     * stop a running read after the shape being read, or at the next refill of the buffer if that comes first.
+     * the read then hands on the shapes it finished and returns their number as if the input had ended there, a
+     * cancelled importer reads nothing more.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * read the file on a background thread.
+     *
+     * @param path - SVG or WKT file, see {@link Format#of(Path)}
+     * @param sink - gets every batch, on the background thread
+     * @return number of shapes read once done, or the {@link IOException} wrapped in {@link UncheckedIOException}
+     */
+    public CompletableFuture<Integer> readAsync(Path path, Consumer<List<PolyShape>> sink) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return read(path, sink);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, task -> {
+            Thread thread = new Thread(task, "shape import");
+            thread.setDaemon(true);
+            thread.start();
+        });
+    }
+
+    /**
+     * read the file on this thread.
+     *
+     * @param path - SVG or WKT file, see {@link Format#of(Path)}
+     * @param sink - gets every batch
+     * @return number of shapes read
+     * @throws IOException if the file can not be read or is malformed
+     */
+    public int read(Path path, Consumer<List<PolyShape>> sink) throws IOException {
+        try (InputStream in = Files.newInputStream(path)) {
+            return read(in, Files.size(path), Format.of(path), sink);
+        }
+    }
+
+    /**
+     * read a stream on this thread, the stream is not closed.
+     *
+     * @param in     - UTF-8 text
+     * @param total  - size of the stream in bytes for {@link Progress}, or -1 if not known
+     * @param format - format of the text
+     * @param sink   - gets every batch
+     * @return number of shapes read, up to the cancel if {@link #cancel()} was called
+     * @throws IOException if the stream can not be read or is malformed
+     */
+    public int read(InputStream in, long total, Format format, Consumer<List<PolyShape>> sink) throws IOException {
+        CountingStream counter = new CountingStream(in);
+        Parser parser = new Parser(new InputStreamReader(counter, StandardCharsets.UTF_8), counter, total, sink);
+        try {
+            if (format == Format.SVG) {
+                parser.svg();
+            } else {
+                parser.wkt();
+            }
+        } catch (Cancelled e) {
+            // the shapes so far are complete, the input simply ends here
+        }
+        parser.flush();
+        return parser.shapes;
+    }
+
+    /**
+     * one read of one input, everything that grows is reused between shapes.
+     */
+    private class Parser {
+
+        private final Reader reader;
+        private final CountingStream counter;
+        private final long total;
+        private final Consumer<List<PolyShape>> sink;
+
+        private final char[] buffer = new char[BUFFER_SIZE];
+        private int position, limit;
+        private long offset;
+        private final StringBuilder token = new StringBuilder();
+
+        /**
+         * x and y of the points of the ring being read
+         */
+        private double[] points = new double[64];
+        private int pointCount;
+
+        private List<PolyShape> batch;
+        private int shapes;
+
+        private Parser(Reader reader, CountingStream counter, long total, Consumer<List<PolyShape>> sink) {
+            this.reader = reader;
+            this.counter = counter;
+            this.total = total;
+            this.sink = sink;
+            batch = new ArrayList<>(batchSize);
+        }
+
+        private int peek() throws IOException {
+            if (position == limit) {
+                if (cancelled) {
+                    throw new Cancelled();
+                }
+                offset += limit;
+                limit = Math.max(0, reader.read(buffer));
+                position = 0;
+                if (limit == 0) {
+                    return -1;
+                }
+            }
+            return buffer[position];
+        }
+
+        private int next() throws IOException {
+            int c = peek();
+            if (c != -1) {
+                position++;
+            }
+            return c;
+        }
+
+        /**
+         * @return next character that is not white space, without consuming it
+         */
+        private int skipSpace() throws IOException {
+            int c;
+            while ((c = peek()) != -1 && Character.isWhitespace(c)) {
+                position++;
+            }
+            return c;
+        }
+
+        private IOException malformed(String what) {
+            return new IOException(what + " at character " + (offset + position));
+        }
+
+        private void expect(char expected) throws IOException {
+            if (skipSpace() != expected) {
+                throw malformed("expected '" + expected + "'");
+            }
+            position++;
+        }
+
+        private boolean startsNumber(int c) {
+            return c >= '0' && c <= '9' || c == '-' || c == '+' || c == '.';
+        }
+
+        /**
+         * read a number after white space or a comma, it may follow another number without a separator as SVG
+         * allows, like "1-2" or "0.5.5".
+         */
+        private double number() throws IOException {
+            int c;
+            while ((c = peek()) != -1 && (Character.isWhitespace(c) || c == ',')) {
+                position++;
+            }
+            token.setLength(0);
+            boolean dot = false, exponent = false;
+            while ((c = peek()) != -1) {
+                if (c == '-' || c == '+') {
+                    int last = token.length() == 0 ? 0 : token.charAt(token.length() - 1);
+                    if (token.length() > 0 && last != 'e' && last != 'E') {
+                        break;
+                    }
+                } else if (c == '.') {
+                    if (dot || exponent) {
+                        break;
+                    }
+                    dot = true;
+                } else if (c == 'e' || c == 'E') {
+                    if (exponent || token.length() == 0) {
+                        break;
+                    }
+                    exponent = true;
+                } else if (c < '0' || c > '9') {
+                    break;
+                }
+                if (token.length() == MAX_TOKEN) {
+                    throw malformed("number too long");
+                }
+                token.append((char) c);
+                position++;
+            }
+            try {
+                return Double.parseDouble(token.toString());
+            } catch (NumberFormatException e) {
+                throw malformed("expected number but found '" + token + "'");
+            }
+        }
+
+        /**
+         * @return the next word of letters, digits and the given extra characters, cut at {@link #MAX_TOKEN}
+         */
+        private String word(String extra) throws IOException {
+            token.setLength(0);
+            int c;
+            while ((c = peek()) != -1 && (Character.isLetterOrDigit(c) || extra.indexOf(c) >= 0)) {
+                if (token.length() < MAX_TOKEN) {
+                    token.append((char) c);
+                }
+                position++;
+            }
+            return token.toString();
+        }
+
+        private void point(double x, double y) {
+            if (pointCount * 2 == points.length) {
+                points = Arrays.copyOf(points, points.length * 2);
+            }
+            points[pointCount * 2] = x;
+            points[pointCount * 2 + 1] = y;
+            pointCount++;
+        }
+
+        /**
+         * hand on the points read so far as a shape if they make one, a last point repeating the first is
+         * dropped.
+         */
+        private void ring() {
+            int n = pointCount;
+            pointCount = 0;
+            if (n > 1 && points[0] == points[2 * n - 2] && points[1] == points[2 * n - 1]) {
+                n--;
+            }
+            if (n >= 3) {
+                batch.add(new PolyShape().setPoints(Arrays.copyOf(points, n * 2))
+                        .setFill(fill).setStroke(stroke).setWidth(width));
+                shapes++;
+                if (batch.size() == batchSize) {
+                    flush();
+                }
+            }
+            if (cancelled) {
+                throw new Cancelled();
+            }
+        }
+
+        private void flush() {
+            if (!batch.isEmpty()) {
+                sink.accept(batch);
+                batch = new ArrayList<>(batchSize);
+            }
+            progress.update(counter.count, total, shapes);
+        }
+
+        private void wkt() throws IOException {
+            int c;
+            while ((c = skipSpace()) != -1) {
+                if (!Character.isLetter(c)) {
+                    // separators of collections, numbers of other geometry, SRID prefixes
+                    position++;
+                    continue;
+                }
+                String word = word("").toUpperCase();
+                if (word.equals("POLYGON")) {
+                    if (dimensions()) {
+                        wktPolygon();
+                    }
+                } else if (word.equals("MULTIPOLYGON")) {
+                    if (dimensions()) {
+                        expect('(');
+                        do {
+                            wktPolygon();
+                        } while (listNext());
+                    }
+                }
+            }
+        }
+
+        /**
+         * skip Z, M or ZM after a geometry type.
+         *
+         * @return false if the geometry is EMPTY
+         */
+        private boolean dimensions() throws IOException {
+            while (Character.isLetter(skipSpace())) {
+                if (word("").equalsIgnoreCase("EMPTY")) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * @return true after a ',' and false after the ')' closing a list
+         */
+        private boolean listNext() throws IOException {
+            int c = skipSpace();
+            position++;
+            if (c == ',') {
+                return true;
+            }
+            if (c == ')') {
+                return false;
+            }
+            throw malformed("expected ',' or ')'");
+        }
+
+        private void wktPolygon() throws IOException {
+            expect('(');
+            do {
+                expect('(');
+                do {
+                    double x = number();
+                    double y = number();
+                    while (startsNumber(skipSpace())) {
+                        number();
+                    }
+                    point(x, y);
+                } while (listNext());
+                ring();
+            } while (listNext());
+        }
+
+        private void svg() throws IOException {
+            int c;
+            while ((c = next()) != -1) {
+                if (c != '<') {
+                    continue;
+                }
+                c = peek();
+                if (c == '!' || c == '?' || c == '/') {
+                    skipMarkup();
+                    continue;
+                }
+                String name = word(":-_");
+                // a prefix like svg:path
+                name = name.substring(name.lastIndexOf(':') + 1);
+                if (name.equals("path") || name.equals("polygon") || name.equals("rect")) {
+                    element(name);
+                }
+            }
+        }
+
+        /**
+         * skip a comment, declaration or end tag.
+         */
+        private void skipMarkup() throws IOException {
+            if (next() == '!' && peek() == '-') {
+                // a comment ends at --> and may hold '>' before that
+                int dashes = 0, c;
+                while ((c = next()) != -1 && !(c == '>' && dashes >= 2)) {
+                    dashes = c == '-' ? dashes + 1 : 0;
+                }
+                return;
+            }
+            int c;
+            while ((c = next()) != -1 && c != '>') {
+            }
+        }
+
+        /**
+         * read the attributes of an element up to its '>', reading the geometry of the ones that have it.
+         */
+        private void element(String name) throws IOException {
+            double x = 0, y = 0, w = 0, h = 0;
+            int c;
+            while ((c = skipSpace()) != -1 && c != '>') {
+                if (c == '/') {
+                    position++;
+                    continue;
+                }
+                String attribute = word(":-_");
+                if (attribute.isEmpty()) {
+                    throw malformed("expected attribute");
+                }
+                expect('=');
+                int quote = skipSpace();
+                if (quote != '"' && quote != '\'') {
+                    throw malformed("expected quoted value");
+                }
+                position++;
+                if (name.equals("path") && attribute.equals("d")) {
+                    path(quote);
+                } else if (name.equals("polygon") && attribute.equals("points")) {
+                    while (startsNumber(separator(quote))) {
+                        point(number(), number());
+                    }
+                    ring();
+                } else if (name.equals("rect") && attribute.matches("x|y|width|height")) {
+                    double value = number();
+                    switch (attribute) {
+                        case "x":
+                            x = value;
+                            break;
+                        case "y":
+                            y = value;
+                            break;
+                        case "width":
+                            w = value;
+                            break;
+                        default:
+                            h = value;
+                    }
+                }
+                // whatever is left of the value, units and all
+                while ((c = next()) != -1 && c != quote) {
+                }
+            }
+            if (c == '>') {
+                position++;
+            }
+            if (name.equals("rect") && w > 0 && h > 0) {
+                point(x, y);
+                point(x + w, y);
+                point(x + w, y + h);
+                point(x, y + h);
+                ring();
+            }
+        }
+
+        /**
+         * skip white space and commas inside a value.
+         *
+         * @return next character, or -1 at the closing quote
+         */
+        private int separator(int quote) throws IOException {
+            int c;
+            while ((c = peek()) != -1 && (Character.isWhitespace(c) || c == ',')) {
+                position++;
+            }
+            return c == quote ? -1 : c;
+        }
+
+        /**
+         * read path data up to the closing quote, every sub path is a ring.
+         */
+        private void path(int quote) throws IOException {
+            double cx = 0, cy = 0, startX = 0, startY = 0;
+            // last control point, for the smooth curves that mirror it
+            double controlX = 0, controlY = 0;
+            char command = 0, last = 0;
+            int c;
+            while ((c = separator(quote)) != -1) {
+                if (Character.isLetter(c)) {
+                    command = (char) c;
+                    position++;
+                } else if (command == 0 || !startsNumber(c)) {
+                    throw malformed("expected path command");
+                }
+                boolean relative = Character.isLowerCase(command);
+                double rx = relative ? cx : 0, ry = relative ? cy : 0;
+                char upper = Character.toUpperCase(command);
+                if (upper != 'M' && upper != 'Z' && pointCount == 0) {
+                    point(cx, cy);
+                }
+                switch (upper) {
+                    case 'M':
+                        ring();
+                        cx = startX = number() + rx;
+                        cy = startY = number() + ry;
+                        point(cx, cy);
+                        // further pairs are lines
+                        command = relative ? 'l' : 'L';
+                        break;
+                    case 'L':
+                        cx = number() + rx;
+                        cy = number() + ry;
+                        point(cx, cy);
+                        break;
+                    case 'H':
+                        cx = number() + rx;
+                        point(cx, cy);
+                        break;
+                    case 'V':
+                        cy = number() + ry;
+                        point(cx, cy);
+                        break;
+                    case 'C':
+                    case 'S': {
+                        double x1, y1;
+                        if (upper == 'C') {
+                            x1 = number() + rx;
+                            y1 = number() + ry;
+                        } else {
+                            boolean smooth = last == 'C' || last == 'S';
+                            x1 = smooth ? 2 * cx - controlX : cx;
+                            y1 = smooth ? 2 * cy - controlY : cy;
+                        }
+                        double x2 = number() + rx, y2 = number() + ry;
+                        double x = number() + rx, y = number() + ry;
+                        for (int i = 1; i <= CURVE_STEPS; i++) {
+                            double t = (double) i / CURVE_STEPS, u = 1 - t;
+                            point(u * u * u * cx + 3 * u * u * t * x1 + 3 * u * t * t * x2 + t * t * t * x,
+                                    u * u * u * cy + 3 * u * u * t * y1 + 3 * u * t * t * y2 + t * t * t * y);
+                        }
+                        controlX = x2;
+                        controlY = y2;
+                        cx = x;
+                        cy = y;
+                        break;
+                    }
+                    case 'Q':
+                    case 'T': {
+                        double x1, y1;
+                        if (upper == 'Q') {
+                            x1 = number() + rx;
+                            y1 = number() + ry;
+                        } else {
+                            boolean smooth = last == 'Q' || last == 'T';
+                            x1 = smooth ? 2 * cx - controlX : cx;
+                            y1 = smooth ? 2 * cy - controlY : cy;
+                        }
+                        double x = number() + rx, y = number() + ry;
+                        for (int i = 1; i <= CURVE_STEPS; i++) {
+                            double t = (double) i / CURVE_STEPS, u = 1 - t;
+                            point(u * u * cx + 2 * u * t * x1 + t * t * x, u * u * cy + 2 * u * t * y1 + t * t * y);
+                        }
+                        controlX = x1;
+                        controlY = y1;
+                        cx = x;
+                        cy = y;
+                        break;
+                    }
+                    case 'A':
+                        // radii, rotation and the two flags
+                        for (int i = 0; i < 5; i++) {
+                            number();
+                        }
+                        cx = number() + rx;
+                        cy = number() + ry;
+                        point(cx, cy);
+                        break;
+                    case 'Z':
+                        ring();
+                        cx = startX;
+                        cy = startY;
+                        // close takes no numbers, one after it is not a repeat of the command
+                        command = 0;
+                        break;
+                    default:
+                        throw malformed("unknown path command '" + command + "'");
+                }
+                last = upper;
+            }
+            // an open sub path still encloses an obstacle
+            ring();
+        }
+    }
+
+    /**
+     * thrown by the parser once {@link #cancel()} was called, unwinds to {@link #read} which ends normally
+     */
+    private static class Cancelled extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        private Cancelled() {
+            super(null, null, false, false);
+        }
+    }
+
+    /**
+     * counts bytes as they are read, for {@link Progress}
+     */
+    private static class CountingStream extends FilterInputStream {
+
+        private volatile long count;
+
+        private CountingStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package raycast.render;
+
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+
+/**
+ * {@link Renderer} that draws on a JavaFX {@link GraphicsContext}, to be used on the JavaFX thread.
+ *
+ * @author leon
+ * @since Apr-8-2019
+ */
+public class FxRenderer implements Renderer {
+
+    private final GraphicsContext gc;
+
+    /**
+     * @param gc - {@link GraphicsContext} to draw on
+     */
+    public FxRenderer(GraphicsContext gc) {
+        this.gc = gc;
+    }
+
+    /**
+     * @return {@link GraphicsContext} drawn on, for what only JavaFX can draw
+     */
+    public GraphicsContext getGraphicsContext() {
+        return gc;
+    }
+
+    @Override
+    public double getWidth() {
+        return gc.getCanvas().getWidth();
+    }
+
+    @Override
+    public double getHeight() {
+        return gc.getCanvas().getHeight();
+    }
+
+    @Override
+    public void save() {
+        gc.save();
+    }
+
+    @Override
+    public void restore() {
+        gc.restore();
+    }
+
+    @Override
+    public void clipRect(double x, double y, double w, double h) {
+        gc.beginPath();
+        gc.rect(x, y, w, h);
+        gc.clip();
+    }
+
+    @Override
+    public void setFill(Color color) {
+        gc.setFill(color);
+    }
+
+    @Override
+    public void setStroke(Color color) {
+        gc.setStroke(color);
+    }
+
+    @Override
+    public void setLineWidth(double width) {
+        gc.setLineWidth(width);
+    }
+
+    @Override
+    public Font getFont() {
+        return gc.getFont();
+    }
+
+    @Override
+    public void setFont(Font font) {
+        gc.setFont(font);
+    }
+
+    @Override
+    public void clearRect(double x, double y, double w, double h) {
+        gc.clearRect(x, y, w, h);
+    }
+
+    @Override
+    public void fillRect(double x, double y, double w, double h) {
+        gc.fillRect(x, y, w, h);
+    }
+
+    @Override
+    public void strokeRect(double x, double y, double w, double h) {
+        gc.strokeRect(x, y, w, h);
+    }
+
+    @Override
+    public void fillPolygon(double[] x, double[] y, int count) {
+        gc.fillPolygon(x, y, count);
+    }
+
+    @Override
+    public void strokePolygon(double[] x, double[] y, int count) {
+        gc.strokePolygon(x, y, count);
+    }
+
+    @Override
+    public void strokeLine(double x1, double y1, double x2, double y2) {
+        gc.strokeLine(x1, y1, x2, y2);
+    }
+
+    @Override
+    public void fillOval(double x, double y, double w, double h) {
+        gc.fillOval(x, y, w, h);
+    }
+
+    @Override
+    public void fillText(String text, double x, double y) {
+        gc.fillText(text, x, y);
+    }
+
+    @Override
+    public void strokeText(String text, double x, double y) {
+        gc.strokeText(text, x, y);
+    }
+
+    @Override
+    public void beginPath() {
+        gc.beginPath();
+    }
+
+    @Override
+    public void moveTo(double x, double y) {
+        gc.moveTo(x, y);
+    }
+
+    @Override
+    public void lineTo(double x, double y) {
+        gc.lineTo(x, y);
+    }
+
+    @Override
+    public void arc(double centerX, double centerY, double radiusX, double radiusY, double startAngle,
+                    double length) {
+        gc.arc(centerX, centerY, radiusX, radiusY, startAngle, length);
+    }
+
+    @Override
+    public void closePath() {
+        gc.closePath();
+    }
+
+    @Override
+    public void fill() {
+        gc.fill();
+    }
+
+    @Override
+    public void stroke() {
+        gc.stroke();
+    }
+}
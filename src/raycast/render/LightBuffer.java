@@ -0,0 +1,226 @@
+package raycast.render;
+
+import javafx.scene.paint.Color;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * the light of many lights added up per pixel over an ambient color, shown as one opaque {@link PixelImage}. each
+ * light is its lit area as a {@link ScanConverter} plus its position, radius and color, packed as
+ * {@link #STRIDE} doubles. a light adds its color faded by (1 - (distance / radius)^2)^2 to the pixels of its
+ * area, which is 0 at the radius and needs no square root.
+ *
+ * <p>the rows are split in bands of {@link #BAND} rows filled on a {@link ForkJoinPool}. a band only scans the
+ * lights whose square reaches its rows, and a band that no light reaches in this frame or the last is left as it
+ * is, so the cost follows the area the lights cover and not lights times canvas. bands write only their own rows,
+ * so lights are added up without any locking.</p>
+ *
+ * <p>{@link #composite} touches nothing but this object and may run on any thread, {@link #draw(Renderer)} has
+ * the rules of {@link PixelImage#draw(Renderer)}.</p>
+ *
+ * @author leon
+ * @since Apr-10-2019
+ */
+public class LightBuffer {
+
+    /**
+     * doubles per light: x, y, radius, red, green and blue. colors are 0 to 1 and may be scaled by any weight
+     */
+    public static final int STRIDE = 6;
+
+    /**
+     * rows filled by one task
+     */
+    private static final int BAND = 32;
+
+    private final float ambientRed, ambientGreen, ambientBlue;
+    private final PixelImage image = new PixelImage();
+    private int width, height;
+
+    /**
+     * light added up per pixel, red, green and blue, each band uses its own rows
+     */
+    private float[] sums = new float[0];
+
+    /**
+     * bands lit in the last frame, and bands written in this one
+     */
+    private boolean[] lit = new boolean[0], written = new boolean[0];
+
+    /**
+     * lights of the current {@link #composite}
+     */
+    private double[] lights;
+    private ScanConverter[] areas;
+    private int count;
+
+    /**
+     * @param ambient - {@link Color} where no light reaches
+     */
+    public LightBuffer(Color ambient) {
+        ambientRed = (float) ambient.getRed();
+        ambientGreen = (float) ambient.getGreen();
+        ambientBlue = (float) ambient.getBlue();
+    }
+
+    /**
+     * draw the given lights into the pixels in place of the last ones.
+     *
+     * @param width  - width of the pixels, every band is written if it changes
+     * @param height - height of the pixels, every band is written if it changes
+     * @param lights - lights packed as {@link #STRIDE} doubles
+     * @param areas  - lit area of every light, already closed
+     * @param count  - number of lights
+     * @param pool   - {@link ForkJoinPool} filling the bands of rows
+     */
+    public void composite(int width, int height, double[] lights, ScanConverter[] areas, int count,
+                          ForkJoinPool pool) {
+        int bands = (Math.max(0, height) + BAND - 1) / BAND;
+        if (image.resize(width, height)) {
+            this.width = image.getWidth();
+            this.height = image.getHeight();
+            sums = new float[this.width * this.height * 3];
+            lit = new boolean[bands];
+            written = new boolean[bands];
+            // new pixels are transparent, every band has to be written once
+            Arrays.fill(lit, true);
+        }
+        if (bands == 0 || this.width == 0) {
+            return;
+        }
+        this.lights = lights;
+        this.areas = areas;
+        this.count = count;
+        Arrays.fill(written, false);
+        pool.invoke(new Bands(0, bands));
+        for (int b = 0; b < bands; b++) {
+            if (written[b]) {
+                image.changed(b * BAND, Math.min(this.height, (b + 1) * BAND));
+            }
+        }
+        this.lights = null;
+        this.areas = null;
+    }
+
+    /**
+     * lay the pixels over what is drawn, see {@link PixelImage#draw(Renderer)}.
+     *
+     * @param renderer - {@link Renderer} to draw on
+     */
+    public void draw(Renderer renderer) {
+        image.draw(renderer);
+    }
+
+    /**
+     * @param x - column
+     * @param y - row
+     * @return ARGB of the pixel, always opaque
+     */
+    public int pixel(int x, int y) {
+        return image.pixel(x, y);
+    }
+
+    /**
+     * a range of bands, split in half until it is one band.
+     */
+    private class Bands extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int from, to;
+
+        Bands(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new Bands(from, mid), new Bands(mid, to));
+                return;
+            }
+            int top = from * BAND, bottom = Math.min(height, top + BAND);
+            boolean reached = false;
+            for (int i = 0; i < count && !reached; i++) {
+                reached = reaches(i, top, bottom);
+            }
+            if (!reached && !lit[from]) {
+                return;
+            }
+            new Band(top, bottom).fill();
+            lit[from] = reached;
+            written[from] = true;
+        }
+    }
+
+    /**
+     * @return true if the square of light i overlaps the rows and the canvas
+     */
+    private boolean reaches(int i, int top, int bottom) {
+        int l = i * STRIDE;
+        double x = lights[l], y = lights[l + 1], radius = lights[l + 2];
+        return y - radius < bottom && y + radius > top && x - radius < width && x + radius > 0;
+    }
+
+    /**
+     * one band being filled, it takes the spans of one light after the other
+     */
+    private class Band implements ScanConverter.SpanSink {
+
+        private final int top, bottom;
+        private double lightX, lightY, inverseRadius2;
+        private float red, green, blue;
+
+        Band(int top, int bottom) {
+            this.top = top;
+            this.bottom = bottom;
+        }
+
+        void fill() {
+            Arrays.fill(sums, top * width * 3, bottom * width * 3, 0);
+            for (int i = 0; i < count; i++) {
+                if (!reaches(i, top, bottom)) {
+                    continue;
+                }
+                int l = i * STRIDE;
+                lightX = lights[l];
+                lightY = lights[l + 1];
+                inverseRadius2 = 1 / (lights[l + 2] * lights[l + 2]);
+                red = (float) lights[l + 3];
+                green = (float) lights[l + 4];
+                blue = (float) lights[l + 5];
+                areas[i].scan(top, bottom, this);
+            }
+            int[] pixels = image.pixels();
+            for (int p = top * width, end = bottom * width, i = p * 3; p < end; p++, i += 3) {
+                pixels[p] = 0xFF000000 | channel(ambientRed + sums[i]) << 16
+                        | channel(ambientGreen + sums[i + 1]) << 8 | channel(ambientBlue + sums[i + 2]);
+            }
+        }
+
+        @Override
+        public void span(int row, int from, int to) {
+            from = Math.max(0, from);
+            to = Math.min(width, to);
+            double dy = row + 0.5 - lightY, dy2 = dy * dy * inverseRadius2;
+            double dx = from + 0.5 - lightX;
+            for (int i = (row * width + from) * 3, end = (row * width + to) * 3; i < end; i += 3, dx++) {
+                double fade = 1 - dx * dx * inverseRadius2 - dy2;
+                if (fade > 0) {
+                    float f = (float) (fade * fade);
+                    sums[i] += red * f;
+                    sums[i + 1] += green * f;
+                    sums[i + 2] += blue * f;
+                }
+            }
+        }
+    }
+
+    private static int channel(float value) {
+        return value >= 1 ? 255 : value <= 0 ? 0 : (int) (value * 255 + 0.5f);
+    }
+}
@@ -0,0 +1,190 @@
+package raycast.render;
+
+import javafx.scene.paint.Color;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * the lit area of a light rasterized straight into pixels, brightest at the light and fading with the distance
+ * from it. the pixels are a {@link PixelImage}, so on a canvas the whole area costs one image that reads them in
+ * place, instead of a polygon of thousands of points going through the command queue of the canvas.
+ *
+ * <p>the polygon is turned into spans by a {@link ScanConverter} and the rows are filled in bands of
+ * {@link #BAND} rows on a {@link ForkJoinPool}. each band first clears the rows the last area covered, so only
+ * the rows of the old and new area are touched. a span is filled with the light faded by
+ * 1 / (1 + (distance / falloff)^2), looked up in a table of 256 shades.</p>
+ *
+ * <p>{@link #rasterize} touches nothing but this object and may run on any thread, {@link #draw(Renderer)} has
+ * the rules of {@link PixelImage#draw(Renderer)}.</p>
+ *
+ * @author leon
+ * @since Apr-9-2019
+ */
+public class LightRaster {
+
+    /**
+     * rows filled by one task
+     */
+    private static final int BAND = 32;
+
+    /**
+     * light at every alpha, premultiplied
+     */
+    private final int[] shades = new int[256];
+
+    /**
+     * 1 / falloff^2, 0 for no falloff
+     */
+    private double inverseFalloff;
+
+    private final PixelImage image = new PixelImage();
+    private int width;
+    private int[] pixels = new int[0];
+
+    /**
+     * rows the area covers, bottom exclusive
+     */
+    private int top, bottom;
+
+    private final ScanConverter converter = new ScanConverter();
+    private double lightX, lightY;
+
+    /**
+     * @param light   - {@link Color} at the light
+     * @param falloff - distance at which the light is half as bright, infinite for none
+     */
+    public LightRaster(Color light, double falloff) {
+        for (int alpha = 0; alpha < shades.length; alpha++) {
+            int red = (int) Math.round(light.getRed() * alpha), green = (int) Math.round(light.getGreen() * alpha);
+            int blue = (int) Math.round(light.getBlue() * alpha);
+            shades[alpha] = alpha << 24 | red << 16 | green << 8 | blue;
+        }
+        setFalloff(falloff);
+    }
+
+    /**
+     * @param falloff - distance at which the light is half as bright, infinite for none
+     * @return the current instance of this object
+     */
+    public LightRaster setFalloff(double falloff) {
+        if (!(falloff > 0)) {
+            throw new IllegalArgumentException("falloff has to be positive: " + falloff);
+        }
+        inverseFalloff = 1 / (falloff * falloff);
+        return this;
+    }
+
+    /**
+     * draw the lit area into the pixels in place of the last one.
+     *
+     * @param width  - width of the pixels, the pixels are cleared if it changes
+     * @param height - height of the pixels, the pixels are cleared if it changes
+     * @param x      - x of the points of the lit area
+     * @param y      - y of the points of the lit area
+     * @param count  - number of points
+     * @param lightX - x of the light
+     * @param lightY - y of the light
+     * @param pool   - {@link ForkJoinPool} filling the bands of rows
+     */
+    public void rasterize(int width, int height, double[] x, double[] y, int count, double lightX, double lightY,
+                          ForkJoinPool pool) {
+        if (image.resize(width, height)) {
+            this.width = image.getWidth();
+            pixels = image.pixels();
+            top = bottom = 0;
+        }
+        int rows = image.getHeight();
+        this.lightX = lightX;
+        this.lightY = lightY;
+        converter.clear().addPolygon(x, y, count);
+        int newTop = Math.max(0, converter.firstRow()), newBottom = Math.min(rows, converter.lastRow());
+        if (newTop >= newBottom) {
+            newTop = newBottom = 0;
+        }
+        int from = top == bottom ? newTop : newTop == newBottom ? top : Math.min(top, newTop);
+        int to = Math.max(bottom, newBottom);
+        if (from < to) {
+            pool.invoke(new Band(from, to));
+            image.changed(from, to);
+        }
+        top = newTop;
+        bottom = newBottom;
+    }
+
+    /**
+     * lay the lit area over what is drawn, see {@link PixelImage#draw(Renderer)}.
+     *
+     * @param renderer - {@link Renderer} to draw on
+     */
+    public void draw(Renderer renderer) {
+        image.draw(renderer);
+    }
+
+    /**
+     * @return premultiplied ARGB pixels, row after row
+     */
+    public int[] pixels() {
+        return pixels;
+    }
+
+    /**
+     * @param x - column
+     * @param y - row
+     * @return premultiplied ARGB of the pixel
+     */
+    public int pixel(int x, int y) {
+        return image.pixel(x, y);
+    }
+
+    /**
+     * fill a span of a row with the light faded by distance.
+     */
+    private void fill(int row, int from, int to) {
+        from = Math.max(0, from);
+        to = Math.min(width, to);
+        if (from >= to) {
+            return;
+        }
+        int start = row * width;
+        if (inverseFalloff == 0) {
+            Arrays.fill(pixels, start + from, start + to, shades[255]);
+            return;
+        }
+        double dy = row + 0.5 - lightY, dy2 = dy * dy * inverseFalloff;
+        double dx = from + 0.5 - lightX;
+        for (int i = start + from, end = start + to; i < end; i++, dx++) {
+            pixels[i] = shades[(int) (255 / (1 + dx * dx * inverseFalloff + dy2))];
+        }
+    }
+
+    /**
+     * a range of rows, split in half until it is no more than {@link #BAND} rows.
+     */
+    private class Band extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int from, to;
+
+        Band(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= BAND) {
+                int clearFrom = Math.max(from, top), clearTo = Math.min(to, bottom);
+                if (clearFrom < clearTo) {
+                    Arrays.fill(pixels, clearFrom * width, clearTo * width, 0);
+                }
+                converter.scan(from, to, LightRaster.this::fill);
+            } else {
+                int mid = (from + to) >>> 1;
+                invokeAll(new Band(from, mid), new Band(mid, to));
+            }
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package raycast.render;
+
+import javafx.geometry.Rectangle2D;
+import javafx.scene.image.PixelBuffer;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+
+import java.nio.IntBuffer;
+
+/**
+ * premultiplied ARGB pixels drawn in place by the CPU and shown on a canvas without copying. a JavaFX
+ * {@link PixelBuffer} wraps the int array as an {@link IntBuffer} and a {@link WritableImage} reads it, so showing
+ * the pixels costs one {@link javafx.scene.canvas.GraphicsContext#drawImage}. only the rows marked with
+ * {@link #changed(int, int)} are handed to JavaFX again.
+ *
+ * <p>the pixels may be written on any thread, {@link #draw(Renderer)} must run on the thread of the renderer,
+ * the JavaFX thread for a canvas, and not while writing. JavaFX may read the pixels after the pulse that drew
+ * them, so they should not be written in the next pulse, use several images in turn for that.</p>
+ *
+ * @author leon
+ * @since Apr-10-2019
+ */
+public class PixelImage {
+
+    private int width, height;
+    private int[] pixels = new int[0];
+
+    /**
+     * rows changed since the pixels were last given to JavaFX, bottom exclusive
+     */
+    private int changedTop, changedBottom;
+
+    /**
+     * JavaFX view of {@link #pixels}, made on the JavaFX thread when first drawn on a canvas
+     */
+    private PixelBuffer<IntBuffer> pixelBuffer;
+    private WritableImage image;
+
+    /**
+     * change the size, the pixels are cleared if it changes.
+     *
+     * @param width  - width in pixels
+     * @param height - height in pixels
+     * @return true if the size changed
+     */
+    public boolean resize(int width, int height) {
+        width = Math.max(0, width);
+        height = Math.max(0, height);
+        if (width == this.width && height == this.height) {
+            return false;
+        }
+        this.width = width;
+        this.height = height;
+        pixels = new int[width * height];
+        changedTop = 0;
+        changedBottom = height;
+        return true;
+    }
+
+    /**
+     * mark rows as written since the last {@link #draw(Renderer)}.
+     *
+     * @param top    - first row
+     * @param bottom - row after the last
+     */
+    public void changed(int top, int bottom) {
+        if (top >= bottom) {
+            return;
+        }
+        changedTop = changedTop < changedBottom ? Math.min(changedTop, top) : top;
+        changedBottom = Math.max(changedBottom, bottom);
+    }
+
+    /**
+     * lay the pixels over what is drawn, at 0, 0 one pixel per unit. a canvas draws them as an image that
+     * reads the pixels in place, a {@link SoftwareRenderer} blends them in. other renderers draw nothing.
+     *
+     * @param renderer - {@link Renderer} to draw on
+     */
+    public void draw(Renderer renderer) {
+        if (width == 0 || height == 0) {
+            return;
+        }
+        if (renderer instanceof SoftwareRenderer) {
+            ((SoftwareRenderer) renderer).drawPixels(pixels, width, height);
+        } else if (renderer instanceof FxRenderer) {
+            if (pixelBuffer == null || pixelBuffer.getBuffer().array() != pixels) {
+                pixelBuffer = new PixelBuffer<>(width, height, IntBuffer.wrap(pixels),
+                        PixelFormat.getIntArgbPreInstance());
+                image = new WritableImage(pixelBuffer);
+            } else if (changedTop < changedBottom) {
+                Rectangle2D changed = new Rectangle2D(0, changedTop, width, changedBottom - changedTop);
+                pixelBuffer.updateBuffer(buffer -> changed);
+            }
+            changedTop = changedBottom = 0;
+            ((FxRenderer) renderer).getGraphicsContext().drawImage(image, 0, 0);
+        }
+    }
+
+    /**
+     * @return premultiplied ARGB pixels, row after row, written in place
+     */
+    public int[] pixels() {
+        return pixels;
+    }
+
+    /**
+     * @param x - column
+     * @param y - row
+     * @return premultiplied ARGB of the pixel
+     */
+    public int pixel(int x, int y) {
+        return pixels[y * width + x];
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+}
@@ -0,0 +1,107 @@
+package raycast.render;
+
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+
+/**
+ * what animators and shapes draw on. the methods are those of {@link GraphicsContext} that are used here, with the
+ * same meaning, so {@link FxRenderer} passes them on to a canvas and {@link SoftwareRenderer} draws them into an
+ * ARGB pixel array without JavaFX.
+ *
+ * @author leon
+ * @since Apr-8-2019
+ */
+public interface Renderer {
+
+    /**
+     * @return width of the drawing area
+     */
+    double getWidth();
+
+    /**
+     * @return height of the drawing area
+     */
+    double getHeight();
+
+    /**
+     * push fill, stroke, line width, font and clip, see {@link GraphicsContext#save()}
+     */
+    void save();
+
+    /**
+     * pop what the last {@link #save()} pushed, see {@link GraphicsContext#restore()}
+     */
+    void restore();
+
+    /**
+     * limit drawing to a rectangle inside the current clip, until {@link #restore()}.
+     *
+     * @param x - left of the rectangle
+     * @param y - top of the rectangle
+     * @param w - width of the rectangle
+     * @param h - height of the rectangle
+     */
+    void clipRect(double x, double y, double w, double h);
+
+    void setFill(Color color);
+
+    void setStroke(Color color);
+
+    void setLineWidth(double width);
+
+    Font getFont();
+
+    void setFont(Font font);
+
+    /**
+     * make a rectangle transparent, see {@link GraphicsContext#clearRect}
+     */
+    void clearRect(double x, double y, double w, double h);
+
+    void fillRect(double x, double y, double w, double h);
+
+    void strokeRect(double x, double y, double w, double h);
+
+    void fillPolygon(double[] x, double[] y, int count);
+
+    void strokePolygon(double[] x, double[] y, int count);
+
+    void strokeLine(double x1, double y1, double x2, double y2);
+
+    void fillOval(double x, double y, double w, double h);
+
+    void fillText(String text, double x, double y);
+
+    void strokeText(String text, double x, double y);
+
+    /**
+     * start a new path, see {@link GraphicsContext#beginPath()}
+     */
+    void beginPath();
+
+    void moveTo(double x, double y);
+
+    void lineTo(double x, double y);
+
+    /**
+     * add an elliptical arc to the path, see {@link GraphicsContext#arc}
+     *
+     * @param centerX    - x of the center
+     * @param centerY    - y of the center
+     * @param radiusX    - horizontal radius
+     * @param radiusY    - vertical radius
+     * @param startAngle - start angle in degrees
+     * @param length     - length of the arc in degrees
+     */
+    void arc(double centerX, double centerY, double radiusX, double radiusY, double startAngle, double length);
+
+    void closePath();
+
+    /**
+     * fill the path with the non zero rule
+     */
+    void fill();
+
+    void stroke();
+}
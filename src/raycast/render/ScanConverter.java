@@ -0,0 +1,177 @@
+package raycast.render;
+
+import java.util.Arrays;
+
+/**
+ * turns polygons into horizontal spans of pixels with the non zero rule, a pixel is inside if its center is.
+ * edges are collected first, then {@link #scan(int, int, SpanSink)} finds for every row where the edges cross the
+ * center of the row and hands the inside runs to a {@link SpanSink}.
+ *
+ * <p>scanning only reads the edges, so bands of rows can be scanned by different threads at the same time, each
+ * band looks only at the edges that reach into it.</p>
+ *
+ * @author leon
+ * @since Apr-8-2019
+ */
+public class ScanConverter {
+
+    /**
+     * receives the inside runs of a row
+     */
+    public interface SpanSink {
+
+        /**
+         * @param row  - row of pixels
+         * @param from - first pixel inside, may be outside the drawing area
+         * @param to   - pixel after the last inside, greater than from
+         */
+        void span(int row, int from, int to);
+    }
+
+    /**
+     * per edge, x at its top, top, bottom, change of x per row and +1 going down or -1 going up
+     */
+    private double[] edgeX = new double[64], edgeTop = new double[64], edgeBottom = new double[64];
+    private double[] edgeSlope = new double[64];
+    private int[] edgeDir = new int[64];
+    private int edges;
+
+    private double minY = Double.POSITIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+
+    /**
+     * remove every edge.
+     *
+     * @return the current instance of this object
+     */
+    public ScanConverter clear() {
+        edges = 0;
+        minY = Double.POSITIVE_INFINITY;
+        maxY = Double.NEGATIVE_INFINITY;
+        return this;
+    }
+
+    /**
+     * add an edge of a closed outline, horizontal edges and edges with NaN are left out as they cross no row.
+     *
+     * @param ax - x of the start
+     * @param ay - y of the start
+     * @param bx - x of the end
+     * @param by - y of the end
+     */
+    public void addEdge(double ax, double ay, double bx, double by) {
+        if (!(ay != by) || Double.isNaN(ax) || Double.isNaN(bx)) {
+            return;
+        }
+        if (edges == edgeX.length) {
+            int length = edges * 2;
+            edgeX = Arrays.copyOf(edgeX, length);
+            edgeTop = Arrays.copyOf(edgeTop, length);
+            edgeBottom = Arrays.copyOf(edgeBottom, length);
+            edgeSlope = Arrays.copyOf(edgeSlope, length);
+            edgeDir = Arrays.copyOf(edgeDir, length);
+        }
+        boolean down = ay < by;
+        double topX = down ? ax : bx, top = down ? ay : by, bottom = down ? by : ay;
+        edgeX[edges] = topX;
+        edgeTop[edges] = top;
+        edgeBottom[edges] = bottom;
+        edgeSlope[edges] = (bx - ax) / (by - ay);
+        edgeDir[edges++] = down ? 1 : -1;
+        minY = Math.min(minY, top);
+        maxY = Math.max(maxY, bottom);
+    }
+
+    /**
+     * add every edge of a polygon, the last point is joined to the first.
+     *
+     * @param x     - x of the points
+     * @param y     - y of the points
+     * @param count - number of points
+     */
+    public void addPolygon(double[] x, double[] y, int count) {
+        for (int i = 0, j = count - 1; i < count; j = i++) {
+            addEdge(x[j], y[j], x[i], y[i]);
+        }
+    }
+
+    /**
+     * @return number of edges that cross rows
+     */
+    public int size() {
+        return edges;
+    }
+
+    /**
+     * @return first row that may have spans
+     */
+    public int firstRow() {
+        return edges == 0 ? 0 : (int) Math.ceil(minY - 0.5);
+    }
+
+    /**
+     * @return row after the last that may have spans
+     */
+    public int lastRow() {
+        return edges == 0 ? 0 : (int) Math.ceil(maxY - 0.5);
+    }
+
+    /**
+     * find the spans of a band of rows, in order of rows and then of x. safe to call from several threads at
+     * once as long as no edge is added.
+     *
+     * @param fromRow - first row
+     * @param toRow   - row after the last
+     * @param sink    - {@link SpanSink} receiving the spans
+     */
+    public void scan(int fromRow, int toRow, SpanSink sink) {
+        fromRow = Math.max(fromRow, firstRow());
+        toRow = Math.min(toRow, lastRow());
+        if (fromRow >= toRow) {
+            return;
+        }
+        // edges that cross the center of a row in the band
+        double bandTop = fromRow + 0.5, bandBottom = toRow - 0.5;
+        int[] band = new int[edges];
+        int bandSize = 0;
+        for (int e = 0; e < edges; e++) {
+            if (edgeTop[e] <= bandBottom && edgeBottom[e] > bandTop) {
+                band[bandSize++] = e;
+            }
+        }
+        double[] crossX = new double[bandSize];
+        int[] crossDir = new int[bandSize];
+        for (int row = fromRow; row < toRow; row++) {
+            double center = row + 0.5;
+            int crossings = 0;
+            for (int i = 0; i < bandSize; i++) {
+                int e = band[i];
+                if (edgeTop[e] <= center && center < edgeBottom[e]) {
+                    double x = edgeX[e] + (center - edgeTop[e]) * edgeSlope[e];
+                    // insertion sort, rows are crossed a few times
+                    int k = crossings++;
+                    while (k > 0 && crossX[k - 1] > x) {
+                        crossX[k] = crossX[k - 1];
+                        crossDir[k] = crossDir[k - 1];
+                        k--;
+                    }
+                    crossX[k] = x;
+                    crossDir[k] = edgeDir[e];
+                }
+            }
+            int winding = 0;
+            double start = 0;
+            for (int k = 0; k < crossings; k++) {
+                int before = winding;
+                winding += crossDir[k];
+                if (before == 0 && winding != 0) {
+                    start = crossX[k];
+                } else if (before != 0 && winding == 0) {
+                    int from = (int) Math.ceil(start - 0.5), to = (int) Math.ceil(crossX[k] - 0.5);
+                    if (from < to) {
+                        sink.span(row, from, to);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,424 @@
+package raycast.render;
+
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+/**
+ * {@link Renderer} that draws into an array of ARGB pixels, without a canvas or the JavaFX thread, so animators can
+ * run in tests, on servers and on any thread. shapes are filled by a {@link ScanConverter} without anti aliasing
+ * and blended source over, lines are filled as quads as wide as the line width. text is not drawn, fonts need a
+ * JavaFX toolkit to be rasterized.
+ *
+ * @author leon
+ * @since Apr-8-2019
+ */
+public class SoftwareRenderer implements Renderer {
+
+    /**
+     * straight pieces of a full ellipse
+     */
+    private static final int ELLIPSE_SEGMENTS = 32;
+
+    /**
+     * what {@link #save()} pushes
+     */
+    private static final class State {
+        private final Color fill, stroke;
+        private final double lineWidth;
+        private final Font font;
+        private final int clipLeft, clipTop, clipRight, clipBottom;
+
+        private State(SoftwareRenderer renderer) {
+            fill = renderer.fill;
+            stroke = renderer.stroke;
+            lineWidth = renderer.lineWidth;
+            font = renderer.font;
+            clipLeft = renderer.clipLeft;
+            clipTop = renderer.clipTop;
+            clipRight = renderer.clipRight;
+            clipBottom = renderer.clipBottom;
+        }
+    }
+
+    private final int width, height;
+    private final int[] pixels;
+    private final Deque<State> saved = new ArrayDeque<>();
+
+    private Color fill = Color.BLACK, stroke = Color.BLACK;
+    private double lineWidth = 1;
+    private Font font = Font.getDefault();
+    /**
+     * pixels that may be drawn, right and bottom exclusive
+     */
+    private int clipLeft, clipTop, clipRight, clipBottom;
+
+    private final ScanConverter converter = new ScanConverter();
+    /**
+     * color the sink blends, set before each scan
+     */
+    private Color paint;
+    private final ScanConverter.SpanSink sink = (row, from, to) -> blend(row, from, to, paint);
+
+    /**
+     * path as points, with the start of each sub path and whether it is closed
+     */
+    private double[] pathX = new double[64], pathY = new double[64];
+    private int pathSize;
+    private int[] subPathStart = new int[8];
+    private boolean[] subPathClosed = new boolean[8];
+    private int subPaths;
+
+    private final double[] quadX = new double[4], quadY = new double[4];
+    private final double[] ovalX = new double[ELLIPSE_SEGMENTS], ovalY = new double[ELLIPSE_SEGMENTS];
+
+    /**
+     * @param width  - width in pixels, at least 1
+     * @param height - height in pixels, at least 1
+     */
+    public SoftwareRenderer(int width, int height) {
+        if (width < 1 || height < 1) {
+            throw new IllegalArgumentException("size has to be at least 1x1: " + width + "x" + height);
+        }
+        this.width = width;
+        this.height = height;
+        pixels = new int[width * height];
+        clipRight = width;
+        clipBottom = height;
+    }
+
+    /**
+     * @return pixels as ARGB, row after row, drawn in place
+     */
+    public int[] pixels() {
+        return pixels;
+    }
+
+    /**
+     * @param x - column
+     * @param y - row
+     * @return ARGB of the pixel
+     */
+    public int pixel(int x, int y) {
+        return pixels[y * width + x];
+    }
+
+    @Override
+    public double getWidth() {
+        return width;
+    }
+
+    @Override
+    public double getHeight() {
+        return height;
+    }
+
+    @Override
+    public void save() {
+        saved.push(new State(this));
+    }
+
+    @Override
+    public void restore() {
+        State state = saved.poll();
+        if (state == null) {
+            return;
+        }
+        fill = state.fill;
+        stroke = state.stroke;
+        lineWidth = state.lineWidth;
+        font = state.font;
+        clipLeft = state.clipLeft;
+        clipTop = state.clipTop;
+        clipRight = state.clipRight;
+        clipBottom = state.clipBottom;
+    }
+
+    @Override
+    public void clipRect(double x, double y, double w, double h) {
+        clipLeft = Math.max(clipLeft, first(x));
+        clipTop = Math.max(clipTop, first(y));
+        clipRight = Math.min(clipRight, first(x + w));
+        clipBottom = Math.min(clipBottom, first(y + h));
+    }
+
+    @Override
+    public void setFill(Color color) {
+        fill = color;
+    }
+
+    @Override
+    public void setStroke(Color color) {
+        stroke = color;
+    }
+
+    @Override
+    public void setLineWidth(double width) {
+        // as the canvas, a width that is not positive is ignored
+        if (width > 0 && width < Double.POSITIVE_INFINITY) {
+            lineWidth = width;
+        }
+    }
+
+    @Override
+    public Font getFont() {
+        return font;
+    }
+
+    @Override
+    public void setFont(Font font) {
+        if (font != null) {
+            this.font = font;
+        }
+    }
+
+    @Override
+    public void clearRect(double x, double y, double w, double h) {
+        int left = Math.max(clipLeft, first(x)), right = Math.min(clipRight, first(x + w));
+        for (int row = Math.max(clipTop, first(y)), bottom = Math.min(clipBottom, first(y + h)); row < bottom;
+                row++) {
+            if (left < right) {
+                Arrays.fill(pixels, row * width + left, row * width + right, 0);
+            }
+        }
+    }
+
+    @Override
+    public void fillRect(double x, double y, double w, double h) {
+        int left = first(x), right = first(x + w);
+        for (int row = first(y), bottom = first(y + h); row < bottom; row++) {
+            blend(row, left, right, fill);
+        }
+    }
+
+    @Override
+    public void strokeRect(double x, double y, double w, double h) {
+        quadX[0] = x;
+        quadY[0] = y;
+        quadX[1] = x + w;
+        quadY[1] = y;
+        quadX[2] = x + w;
+        quadY[2] = y + h;
+        quadX[3] = x;
+        quadY[3] = y + h;
+        strokePolygon(quadX, quadY, 4);
+    }
+
+    @Override
+    public void fillPolygon(double[] x, double[] y, int count) {
+        converter.clear().addPolygon(x, y, count);
+        fillConverted(fill);
+    }
+
+    @Override
+    public void strokePolygon(double[] x, double[] y, int count) {
+        converter.clear();
+        for (int i = 0, j = count - 1; i < count; j = i++) {
+            addLine(x[j], y[j], x[i], y[i]);
+        }
+        fillConverted(stroke);
+    }
+
+    @Override
+    public void strokeLine(double x1, double y1, double x2, double y2) {
+        converter.clear();
+        addLine(x1, y1, x2, y2);
+        fillConverted(stroke);
+    }
+
+    @Override
+    public void fillOval(double x, double y, double w, double h) {
+        double radiusX = w / 2, radiusY = h / 2;
+        for (int i = 0; i < ELLIPSE_SEGMENTS; i++) {
+            double angle = 2 * Math.PI * i / ELLIPSE_SEGMENTS;
+            ovalX[i] = x + radiusX + radiusX * Math.cos(angle);
+            ovalY[i] = y + radiusY - radiusY * Math.sin(angle);
+        }
+        fillPolygon(ovalX, ovalY, ELLIPSE_SEGMENTS);
+    }
+
+    @Override
+    public void fillText(String text, double x, double y) {
+        // text needs the JavaFX toolkit to be rasterized
+    }
+
+    @Override
+    public void strokeText(String text, double x, double y) {
+        // text needs the JavaFX toolkit to be rasterized
+    }
+
+    /**
+     * blend premultiplied ARGB pixels source over what is drawn, at 0, 0 one pixel per pixel, inside the clip.
+     *
+     * @param argb   - premultiplied ARGB pixels, row after row
+     * @param width  - width of the pixels
+     * @param height - height of the pixels
+     */
+    public void drawPixels(int[] argb, int width, int height) {
+        int right = Math.min(clipRight, width), bottom = Math.min(clipBottom, height);
+        for (int row = clipTop; row < bottom; row++) {
+            for (int x = clipLeft, i = row * this.width + x, j = row * width + x; x < right; x++, i++, j++) {
+                int over = argb[j], alpha = over >>> 24;
+                if (alpha == 0) {
+                    continue;
+                }
+                if (alpha == 255) {
+                    pixels[i] = over;
+                    continue;
+                }
+                int red = over >> 16 & 0xFF, green = over >> 8 & 0xFF, blue = over & 0xFF;
+                int under = pixels[i], underAlpha = (under >>> 24) * (255 - alpha) / 255;
+                int outAlpha = alpha + underAlpha;
+                int r = (red * 255 + (under >> 16 & 0xFF) * underAlpha) / outAlpha;
+                int g = (green * 255 + (under >> 8 & 0xFF) * underAlpha) / outAlpha;
+                int b = (blue * 255 + (under & 0xFF) * underAlpha) / outAlpha;
+                pixels[i] = outAlpha << 24 | Math.min(255, r) << 16 | Math.min(255, g) << 8 | Math.min(255, b);
+            }
+        }
+    }
+
+    @Override
+    public void beginPath() {
+        pathSize = 0;
+        subPaths = 0;
+    }
+
+    @Override
+    public void moveTo(double x, double y) {
+        if (subPaths == subPathStart.length) {
+            subPathStart = Arrays.copyOf(subPathStart, subPaths * 2);
+            subPathClosed = Arrays.copyOf(subPathClosed, subPaths * 2);
+        }
+        subPathStart[subPaths] = pathSize;
+        subPathClosed[subPaths++] = false;
+        addPoint(x, y);
+    }
+
+    @Override
+    public void lineTo(double x, double y) {
+        if (subPaths == 0 || subPathClosed[subPaths - 1]) {
+            moveTo(x, y);
+        } else {
+            addPoint(x, y);
+        }
+    }
+
+    @Override
+    public void arc(double centerX, double centerY, double radiusX, double radiusY, double startAngle,
+                    double length) {
+        int segments = Math.max(1, (int) Math.ceil(ELLIPSE_SEGMENTS * Math.abs(length) / 360));
+        for (int i = 0; i <= segments; i++) {
+            double angle = Math.toRadians(startAngle + length * i / segments);
+            double x = centerX + radiusX * Math.cos(angle), y = centerY - radiusY * Math.sin(angle);
+            if (i == 0) {
+                lineTo(x, y);
+            } else {
+                addPoint(x, y);
+            }
+        }
+    }
+
+    @Override
+    public void closePath() {
+        if (subPaths > 0) {
+            subPathClosed[subPaths - 1] = true;
+        }
+    }
+
+    @Override
+    public void fill() {
+        converter.clear();
+        for (int s = 0; s < subPaths; s++) {
+            int start = subPathStart[s], end = s + 1 < subPaths ? subPathStart[s + 1] : pathSize;
+            for (int i = start, j = end - 1; i < end; j = i++) {
+                converter.addEdge(pathX[j], pathY[j], pathX[i], pathY[i]);
+            }
+        }
+        fillConverted(fill);
+    }
+
+    @Override
+    public void stroke() {
+        converter.clear();
+        for (int s = 0; s < subPaths; s++) {
+            int start = subPathStart[s], end = s + 1 < subPaths ? subPathStart[s + 1] : pathSize;
+            for (int i = start + 1; i < end; i++) {
+                addLine(pathX[i - 1], pathY[i - 1], pathX[i], pathY[i]);
+            }
+            if (subPathClosed[s] && end - start > 2) {
+                addLine(pathX[end - 1], pathY[end - 1], pathX[start], pathY[start]);
+            }
+        }
+        fillConverted(stroke);
+    }
+
+    private void addPoint(double x, double y) {
+        if (pathSize == pathX.length) {
+            pathX = Arrays.copyOf(pathX, pathSize * 2);
+            pathY = Arrays.copyOf(pathY, pathSize * 2);
+        }
+        pathX[pathSize] = x;
+        pathY[pathSize++] = y;
+    }
+
+    /**
+     * add a line as a quad as wide as the line width, at least a pixel. every quad turns the same way, so where
+     * they overlap the non zero rule fills them once.
+     */
+    private void addLine(double x1, double y1, double x2, double y2) {
+        double dx = x2 - x1, dy = y2 - y1, length = Math.sqrt(dx * dx + dy * dy);
+        if (length == 0) {
+            return;
+        }
+        double half = Math.max(lineWidth, 1) / 2, nx = -dy / length * half, ny = dx / length * half;
+        converter.addEdge(x1 + nx, y1 + ny, x2 + nx, y2 + ny);
+        converter.addEdge(x2 + nx, y2 + ny, x2 - nx, y2 - ny);
+        converter.addEdge(x2 - nx, y2 - ny, x1 - nx, y1 - ny);
+        converter.addEdge(x1 - nx, y1 - ny, x1 + nx, y1 + ny);
+    }
+
+    private void fillConverted(Color color) {
+        paint = color;
+        converter.scan(clipTop, clipBottom, sink);
+    }
+
+    /**
+     * blend a color source over a run of a row, inside the clip.
+     */
+    private void blend(int row, int from, int to, Color color) {
+        if (row < clipTop || row >= clipBottom || color == null) {
+            return;
+        }
+        from = Math.max(from, clipLeft);
+        to = Math.min(to, clipRight);
+        int alpha = (int) Math.round(color.getOpacity() * 255);
+        if (from >= to || alpha == 0) {
+            return;
+        }
+        int red = (int) Math.round(color.getRed() * 255), green = (int) Math.round(color.getGreen() * 255);
+        int blue = (int) Math.round(color.getBlue() * 255);
+        int start = row * width;
+        if (alpha == 255) {
+            Arrays.fill(pixels, start + from, start + to, 0xFF000000 | red << 16 | green << 8 | blue);
+            return;
+        }
+        int rest = 255 - alpha;
+        for (int i = start + from, end = start + to; i < end; i++) {
+            int under = pixels[i], underAlpha = (under >>> 24) * rest / 255, outAlpha = alpha + underAlpha;
+            int r = (red * alpha + (under >> 16 & 0xFF) * underAlpha) / outAlpha;
+            int g = (green * alpha + (under >> 8 & 0xFF) * underAlpha) / outAlpha;
+            int b = (blue * alpha + (under & 0xFF) * underAlpha) / outAlpha;
+            pixels[i] = outAlpha << 24 | r << 16 | g << 8 | b;
+        }
+    }
+
+    /**
+     * @return first pixel whose center is at or after a coordinate
+     */
+    private static int first(double coordinate) {
+        return (int) Math.ceil(coordinate - 0.5);
+    }
+}
@@ -4,8 +4,14 @@ import org.junit.jupiter.api.*;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
+import javafx.scene.paint.Color;
+import raycast.CanvasMap;
 import raycast.animator.AbstractAnimator;
+import raycast.animator.StaticShapes;
 import raycast.animator.TextAnimator;
+import raycast.engine.RayKernel;
+import raycast.entity.geometry.PolyShape;
+import raycast.render.SoftwareRenderer;
 import utility.Point;
 
 import java.util.stream.Stream;
@@ -146,6 +152,123 @@ class AbstractAnimatorTest {
         );
     }
 
+    @ParameterizedTest
+    @MethodSource("intersectDataProvider")
+    void TestForIntersectWithResultArray(double rsx, double rsy, double rex, double rey,
+                                         double ssx, double ssy, double sex, double sey,
+                                         double inx, double iny, double sca) {
+        double[] result = new double[4];
+        assertTrue(AbstractAnimator.getIntersection(rsx, rsy, rex, rey, ssx, ssy, sex, sey, result));
+        assertEquals(inx, result[0], EPSILON);
+        assertEquals(iny, result[1], EPSILON);
+        assertEquals(sca, result[2], EPSILON);
+    }
+
+    /**
+     * the overload with a result array must leave {@link AbstractAnimator#intersect()} of the animator alone,
+     * otherwise threads sharing one animator would see each others results.
+     */
+    @Test
+    void TestForIntersectKeepsSharedResult() {
+        assertTrue(animator.getIntersection(ptA.x(), ptA.y(), ptB.x(), ptB.y(), ptF.x(), ptF.y(), ptH.x(), ptH.y()));
+        double[] shared = animator.intersect().clone();
+        double[] result = new double[4];
+        assertTrue(AbstractAnimator.getIntersection(ptA.x(), ptA.y(), ptF.x(), ptF.y(), ptB.x(), ptB.y(), ptC.x(),
+                ptC.y(), result));
+        assertEquals(2.0, result[2], EPSILON);
+        assertArrayEquals(shared, animator.intersect());
+        assertEquals(0.5, animator.intersect()[2], EPSILON);
+    }
+
+    /**
+     * cast a fan of rays from near E against the square ABCD plus two segments crossing its inside,
+     * the batch kernel must agree with the closest hit found by {@link AbstractAnimator#getIntersection}.
+     */
+    @Test
+    void TestCastFanMatchesGetIntersection() {
+        double[] segments = {
+                ptA.x(), ptA.y(), ptB.x() - ptA.x(), ptB.y() - ptA.y(),
+                ptB.x(), ptB.y(), ptC.x() - ptB.x(), ptC.y() - ptB.y(),
+                ptC.x(), ptC.y(), ptD.x() - ptC.x(), ptD.y() - ptC.y(),
+                ptD.x(), ptD.y(), ptA.x() - ptD.x(), ptA.y() - ptD.y(),
+                ptF.x(), ptF.y(), 0, 120,
+                ptI.x() + 10, ptI.y() - 20, 70, 0
+        };
+        int segmentCount = segments.length / RayKernel.SEGMENT_STRIDE;
+        int rayCount = 360;
+        double[] dirX = new double[rayCount];
+        double[] dirY = new double[rayCount];
+        for (int i = 0; i < rayCount; i++) {
+            dirX[i] = Math.cos(2 * Math.PI * i / rayCount);
+            dirY[i] = Math.sin(2 * Math.PI * i / rayCount);
+        }
+        double[] hitX = new double[rayCount];
+        double[] hitY = new double[rayCount];
+        double[] hitT = new double[rayCount];
+        int[] hitSegment = new int[rayCount];
+
+        double ox = ptE.x() + 3, oy = ptE.y() + 7;
+        RayKernel.castFan(ox, oy, dirX, dirY, 0, rayCount, segments, segmentCount, hitX, hitY, hitT, hitSegment);
+
+        for (int r = 0; r < rayCount; r++) {
+            double bestT = Double.POSITIVE_INFINITY, bestX = 0, bestY = 0;
+            for (int s = 0; s < segmentCount; s++) {
+                int i = s * RayKernel.SEGMENT_STRIDE;
+                if (animator.getIntersection(ox, oy, ox + dirX[r], oy + dirY[r], segments[i], segments[i + 1],
+                        segments[i] + segments[i + 2], segments[i + 1] + segments[i + 3])
+                        && animator.intersect()[2] < bestT) {
+                    bestT = animator.intersect()[2];
+                    bestX = animator.intersect()[0];
+                    bestY = animator.intersect()[1];
+                }
+            }
+            assertNotEquals(RayKernel.NO_HIT, hitSegment[r]);
+            assertEquals(bestT, hitT[r], EPSILON);
+            assertEquals(bestX, hitX[r], EPSILON);
+            assertEquals(bestY, hitY[r], EPSILON);
+        }
+    }
+
+    @Test
+    void TestCastFanNoHit() {
+        double[] segments = {ptA.x(), ptA.y(), ptB.x() - ptA.x(), ptB.y() - ptA.y()};
+        double[] dirX = {1, 0};
+        double[] dirY = {0, 1};
+        double[] hitX = new double[2], hitY = new double[2], hitT = new double[2];
+        int[] hitSegment = new int[2];
+        RayKernel.castFan(ptE.x(), ptE.y(), dirX, dirY, 0, 2, segments, 1, hitX, hitY, hitT, hitSegment);
+        assertEquals(RayKernel.NO_HIT, hitSegment[0]);
+        assertEquals(RayKernel.NO_HIT, hitSegment[1]);
+        assertEquals(Double.POSITIVE_INFINITY, hitT[0]);
+    }
+
+    /**
+     * a frame without changes draws nothing, so what another animator drew stays on the canvas until
+     * {@link AbstractAnimator#repaint()}, which every start calls, repaints all of it.
+     */
+    @Test
+    void TestRepaintDrawsWholeCanvas() {
+        CanvasMap map = new CanvasMap();
+        map.getCanvas().setWidth(200);
+        map.getCanvas().setHeight(200);
+        map.shapes().add(new PolyShape().setPoints(50, 50, 150, 50, 150, 150, 50, 150).setFill(Color.RED));
+        StaticShapes shapes = new StaticShapes();
+        shapes.setCanvas(map);
+        SoftwareRenderer renderer = new SoftwareRenderer(200, 200);
+        shapes.render(renderer, 0);
+        int red = renderer.pixel(100, 100);
+
+        // another animator drew over the shape
+        renderer.setFill(Color.BLUE);
+        renderer.fillRect(0, 0, 200, 200);
+        shapes.render(renderer, 1);
+        assertNotEquals(red, renderer.pixel(100, 100));
+
+        shapes.repaint();
+        shapes.render(renderer, 2);
+        assertEquals(red, renderer.pixel(100, 100));
+    }
+
     @Test
     void exceptionNullPointerTesting() {
         Throwable exception = assertThrows(NullPointerException.class, () -> {
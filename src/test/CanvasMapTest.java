@@ -0,0 +1,71 @@
+package test;
+
+import javafx.scene.paint.Color;
+import org.junit.jupiter.api.Test;
+import raycast.CanvasMap;
+import raycast.entity.geometry.PolyShape;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author leon Apr 3 2019
+ *
+ * {@link CanvasMap#getShapesVersion()} has to grow with every change of the shape list, the points or the style
+ * of a shape in it, and never come back to a value it had before.
+ */
+class CanvasMapTest {
+
+    @Test
+    void TestShapesVersionGrows() {
+        CanvasMap map = new CanvasMap();
+        PolyShape a = new PolyShape().setPoints(0, 0, 10, 0, 10, 10);
+        PolyShape b = new PolyShape().setPoints(20, 20, 30, 20, 30, 30);
+        long version = map.getShapesVersion();
+
+        map.shapes().addAll(List.of(a, b));
+        version = assertGrown(map, version);
+        a.setPoints(0, 0, 20, 0, 20, 20);
+        version = assertGrown(map, version);
+        b.setFill(Color.RED);
+        version = assertGrown(map, version);
+        b.setWidth(3);
+        version = assertGrown(map, version);
+
+        // removing a shape that was changed many times must not bring back an older version
+        for (int i = 0; i < 10; i++) {
+            a.setStroke(Color.BLUE);
+        }
+        version = assertGrown(map, version);
+        map.shapes().remove(a);
+        version = assertGrown(map, version);
+
+        // a removed shape no longer changes what is drawn
+        a.setPoints(5, 5, 15, 5, 15, 15);
+        assertEquals(version, map.getShapesVersion());
+        assertNull(a.getOnChange());
+
+        map.shapes().add(a);
+        version = assertGrown(map, version);
+        a.setFill(Color.GREEN);
+        assertGrown(map, version);
+    }
+
+    @Test
+    void TestShapeInListTwice() {
+        CanvasMap map = new CanvasMap();
+        PolyShape a = new PolyShape().setPoints(0, 0, 10, 0, 10, 10);
+        map.shapes().addAll(List.of(a, a));
+        map.shapes().remove(0);
+        long version = map.getShapesVersion();
+        a.setFill(Color.RED);
+        assertGrown(map, version);
+    }
+
+    private static long assertGrown(CanvasMap map, long before) {
+        long after = map.getShapesVersion();
+        assertTrue(after > before, after + " after " + before);
+        return after;
+    }
+}
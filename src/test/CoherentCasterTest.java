@@ -0,0 +1,156 @@
+package test;
+
+import org.junit.jupiter.api.Test;
+import raycast.engine.CoherentCaster;
+import raycast.engine.RayCaster;
+import raycast.engine.RayKernel;
+import raycast.engine.SegmentBuffer;
+import raycast.engine.UniformGrid;
+import raycast.entity.geometry.PolyShape;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author leon Apr 2 2019
+ *
+ * {@link CoherentCaster} has to give the hits of {@link RayKernel#castFan} in every frame, and has to skip the
+ * cast for rays whose light and scene did not change.
+ */
+class CoherentCasterTest {
+
+    private static final double SIZE = 800;
+    private static final int RAYS = 720;
+
+    private final Random random = new Random(204);
+
+    private final double[] dirX = new double[RAYS], dirY = new double[RAYS];
+
+    {
+        for (int i = 0; i < RAYS; i++) {
+            dirX[i] = Math.cos(i * 2 * Math.PI / RAYS);
+            dirY[i] = Math.sin(i * 2 * Math.PI / RAYS);
+        }
+    }
+
+    @Test
+    void TestStillLightIsNotCast() {
+        SegmentBuffer buffer = new SegmentBuffer();
+        buffer.update(randomShapes(100), 0, SIZE, SIZE);
+        CountingCaster counter = new CountingCaster(new UniformGrid());
+        CoherentCaster caster = new CoherentCaster(counter);
+
+        // the first frame only tells how many rays to remember, the second remembers them
+        for (int frame = 0; frame < 2; frame++) {
+            caster.update(buffer);
+            assertSameHits(caster, buffer, 400, 400);
+        }
+        assertEquals(2 * RAYS, counter.rays);
+
+        counter.rays = 0;
+        caster.update(buffer);
+        assertSameHits(caster, buffer, 400, 400);
+        assertEquals(0, counter.rays);
+    }
+
+    @Test
+    void TestMovingLight() {
+        SegmentBuffer buffer = new SegmentBuffer();
+        buffer.update(randomShapes(100), 0, SIZE, SIZE);
+        CoherentCaster caster = new CoherentCaster(new UniformGrid());
+        double x = 400, y = 400;
+        for (int frame = 0; frame < 30; frame++) {
+            x += random.nextDouble() * 6 - 3;
+            y += random.nextDouble() * 6 - 3;
+            caster.update(buffer);
+            assertSameHits(caster, buffer, x, y);
+        }
+    }
+
+    /**
+     * with the light still only the moved edges are looked at, unless a ray hit one of them before.
+     */
+    @Test
+    void TestMovingShapesUnderStillLight() {
+        List<PolyShape> shapes = randomShapes(100);
+        SegmentBuffer buffer = new SegmentBuffer();
+        buffer.update(shapes, 0, SIZE, SIZE);
+        CountingCaster counter = new CountingCaster(new UniformGrid());
+        CoherentCaster caster = new CoherentCaster(counter);
+        for (int frame = 0; frame < 2; frame++) {
+            caster.update(buffer);
+            assertSameHits(caster, buffer, 400, 400);
+        }
+
+        for (int frame = 0; frame < 20; frame++) {
+            PolyShape shape = shapes.get(random.nextInt(shapes.size()));
+            double[] points = new double[shape.getPointCount() * 2];
+            double dx = random.nextDouble() * 40 - 20, dy = random.nextDouble() * 40 - 20;
+            for (int i = 0; i < shape.getPointCount(); i++) {
+                points[2 * i] = shape.pX(i) + dx;
+                points[2 * i + 1] = shape.pY(i) + dy;
+            }
+            shape.setPoints(points);
+            buffer.update(shapes, 0, SIZE, SIZE);
+            counter.rays = 0;
+            caster.update(buffer);
+            assertSameHits(caster, buffer, 400, 400);
+            assertTrue(counter.rays < RAYS / 2, counter.rays + " rays cast after moving one shape");
+        }
+    }
+
+    private void assertSameHits(RayCaster caster, SegmentBuffer buffer, double ox, double oy) {
+        double[] expectedX = new double[RAYS], expectedY = new double[RAYS], expectedT = new double[RAYS];
+        int[] expectedSegment = new int[RAYS];
+        RayKernel.castFan(ox, oy, dirX, dirY, 0, RAYS, buffer.segments(), buffer.size(),
+                expectedX, expectedY, expectedT, expectedSegment);
+        double[] hitX = new double[RAYS], hitY = new double[RAYS], hitT = new double[RAYS];
+        int[] hitSegment = new int[RAYS];
+        // in two halves like the chunks of the animator
+        caster.castFan(ox, oy, dirX, dirY, 0, RAYS / 2, hitX, hitY, hitT, hitSegment);
+        caster.castFan(ox, oy, dirX, dirY, RAYS / 2, RAYS, hitX, hitY, hitT, hitSegment);
+        for (int i = 0; i < RAYS; i++) {
+            String ray = "light (" + ox + "," + oy + ") ray " + i;
+            assertEquals(expectedT[i], hitT[i], ray);
+            assertEquals(expectedSegment[i], hitSegment[i], ray);
+            assertEquals(expectedX[i], hitX[i], ray);
+        }
+    }
+
+    private List<PolyShape> randomShapes(int count) {
+        List<PolyShape> shapes = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            shapes.add(new PolyShape().randomize(random, random.nextDouble() * SIZE, random.nextDouble() * SIZE, 30, 3,
+                    7));
+        }
+        return shapes;
+    }
+
+    /**
+     * counts the rays that reach the wrapped caster
+     */
+    private static class CountingCaster implements RayCaster {
+
+        private final RayCaster caster;
+        private int rays;
+
+        private CountingCaster(RayCaster caster) {
+            this.caster = caster;
+        }
+
+        @Override
+        public void update(SegmentBuffer buffer) {
+            caster.update(buffer);
+        }
+
+        @Override
+        public void castFan(double ox, double oy, double[] dirX, double[] dirY, int from, int to,
+                            double[] hitX, double[] hitY, double[] hitT, int[] hitSegment) {
+            rays += to - from;
+            caster.castFan(ox, oy, dirX, dirY, from, to, hitX, hitY, hitT, hitSegment);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package test;
+
+import javafx.beans.property.IntegerProperty;
+import javafx.beans.property.SimpleIntegerProperty;
+import org.junit.jupiter.api.Test;
+import raycast.engine.DirectionTable;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author leon Mar 24 2019
+ *
+ * {@link DirectionTable} has to follow the ray count as it grows and shrinks, and the first
+ * {@link DirectionTable#size()} directions have to be the evenly spread unit rays of that count whatever is left
+ * after them. arrays already read must not change when the count does.
+ */
+class DirectionTableTest {
+
+    private static final double EPSILON = 0.000000001;
+
+    @Test
+    void TestGrowsAndShrinks() {
+        IntegerProperty rayCount = new SimpleIntegerProperty(8);
+        DirectionTable table = new DirectionTable(rayCount);
+        assertEvenlySpread(table, 8);
+
+        rayCount.set(360);
+        assertEvenlySpread(table, 360);
+
+        rayCount.set(5);
+        assertEvenlySpread(table, 5);
+
+        rayCount.set(12);
+        assertEvenlySpread(table, 12);
+    }
+
+    @Test
+    void TestSizeLimitsRead() {
+        IntegerProperty rayCount = new SimpleIntegerProperty(100);
+        DirectionTable table = new DirectionTable(rayCount);
+        rayCount.set(3);
+        assertEquals(3, table.size());
+        assertTrue(table.dirX().length >= table.size());
+        assertTrue(table.dirY().length >= table.size());
+        // the 3 rays add up to nothing, anything read past them would not
+        double sumX = 0, sumY = 0;
+        for (int i = 0; i < table.size(); i++) {
+            sumX += table.dirX()[i];
+            sumY += table.dirY()[i];
+        }
+        assertEquals(0, sumX, EPSILON);
+        assertEquals(0, sumY, EPSILON);
+
+        rayCount.set(-4);
+        assertEquals(0, table.size());
+    }
+
+    /**
+     * a frame casts from the arrays it read while the count may change on the FX thread.
+     */
+    @Test
+    void TestRebuildKeepsReadArrays() {
+        IntegerProperty rayCount = new SimpleIntegerProperty(360);
+        DirectionTable table = new DirectionTable(rayCount);
+        double[] x = table.dirX(), y = table.dirY();
+        double[] copyX = x.clone(), copyY = y.clone();
+        rayCount.set(90);
+        rayCount.set(720);
+        assertArrayEquals(copyX, x);
+        assertArrayEquals(copyY, y);
+        assertNotSame(x, table.dirX());
+    }
+
+    private static void assertEvenlySpread(DirectionTable table, int count) {
+        assertEquals(count, table.size());
+        double step = 2 * Math.PI / count;
+        for (int i = 0; i < count; i++) {
+            assertEquals(Math.cos(step * i), table.dirX()[i], EPSILON, "x of ray " + i);
+            assertEquals(Math.sin(step * i), table.dirY()[i], EPSILON, "y of ray " + i);
+        }
+    }
+}
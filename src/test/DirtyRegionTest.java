@@ -0,0 +1,91 @@
+package test;
+
+import org.junit.jupiter.api.Test;
+import raycast.animator.DirtyRegion;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author leon Apr 4 2019
+ *
+ * {@link DirtyRegion} has to cover every rectangle added to it with at most {@link DirtyRegion#MAX_RECTS}
+ * rectangles inside the canvas that do not overlap.
+ */
+class DirtyRegionTest {
+
+    private static final double SIZE = 800;
+
+    @Test
+    void TestMergeAndClamp() {
+        DirtyRegion region = new DirtyRegion();
+        region.clear(SIZE, SIZE);
+        assertTrue(region.isEmpty());
+
+        region.add(10.5, 10.5, 20, 20);
+        assertEquals(1, region.size());
+        // grown to whole pixels and the margin
+        assertEquals(Math.floor(10.5 - DirtyRegion.MARGIN), region.x(0));
+        assertEquals(Math.ceil(30.5 + DirtyRegion.MARGIN) - Math.floor(10.5 - DirtyRegion.MARGIN), region.w(0));
+
+        // far away stays apart, touching is merged
+        region.add(500, 500, 10, 10);
+        assertEquals(2, region.size());
+        region.add(25, 25, 100, 5);
+        assertEquals(2, region.size());
+
+        // outside and empty rectangles add nothing, the rest is cut to the canvas
+        region.add(-100, -100, 50, 50);
+        region.add(300, 300, 0, Double.NaN);
+        assertEquals(2, region.size());
+        region.add(700, -50, 500, 100);
+        assertEquals(3, region.size());
+        for (int i = 0; i < region.size(); i++) {
+            assertTrue(region.x(i) >= 0 && region.y(i) >= 0);
+            assertTrue(region.x(i) + region.w(i) <= SIZE && region.y(i) + region.h(i) <= SIZE);
+        }
+
+        region.addAll();
+        assertEquals(1, region.size());
+        assertEquals(SIZE * SIZE, region.area());
+    }
+
+    @Test
+    void TestCoversEverything() {
+        Random random = new Random(404);
+        DirtyRegion region = new DirtyRegion();
+        for (int frame = 0; frame < 200; frame++) {
+            region.clear(SIZE, SIZE);
+            int count = 1 + random.nextInt(12);
+            double[][] rects = new double[count][];
+            for (int r = 0; r < count; r++) {
+                rects[r] = new double[]{random.nextDouble() * SIZE, random.nextDouble() * SIZE,
+                        random.nextDouble() * 80, random.nextDouble() * 80};
+                region.add(rects[r][0], rects[r][1], rects[r][2], rects[r][3]);
+            }
+            assertTrue(region.size() <= DirtyRegion.MAX_RECTS);
+            for (double[] rect : rects) {
+                assertTrue(covered(region, rect[0], rect[1])
+                        && covered(region, Math.min(SIZE, rect[0] + rect[2]), Math.min(SIZE, rect[1] + rect[3])));
+            }
+            for (int i = 0; i < region.size(); i++) {
+                for (int j = i + 1; j < region.size(); j++) {
+                    assertFalse(region.x(i) < region.x(j) + region.w(j) && region.x(j) < region.x(i) + region.w(i)
+                            && region.y(i) < region.y(j) + region.h(j) && region.y(j) < region.y(i) + region.h(i),
+                            "rectangles " + i + " and " + j + " overlap");
+                }
+            }
+        }
+    }
+
+    private boolean covered(DirtyRegion region, double x, double y) {
+        for (int i = 0; i < region.size(); i++) {
+            if (x >= region.x(i) && x <= region.x(i) + region.w(i) && y >= region.y(i)
+                    && y <= region.y(i) + region.h(i)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
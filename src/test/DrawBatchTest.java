@@ -0,0 +1,80 @@
+package test;
+
+import javafx.scene.paint.Color;
+import org.junit.jupiter.api.Test;
+import raycast.entity.DrawBatch;
+import raycast.entity.FpsCounter;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author leon Apr 5 2019
+ *
+ * {@link DrawBatch} has to group items of one style into as few groups as it can without drawing any item before
+ * something it overlaps that was added before it.
+ */
+class DrawBatchTest {
+
+    private static final double SIZE = 800;
+
+    @Test
+    void TestApartShapesShareGroups() {
+        DrawBatch batch = new DrawBatch().clear(SIZE, SIZE);
+        Color[] fills = {Color.RED, Color.GREEN, Color.BLUE};
+        int count = 0;
+        // every square in a cell of its own with an empty cell between
+        for (double y = 6; y < SIZE; y += 64) {
+            for (double x = 6; x < SIZE; x += 64) {
+                square(batch, x, y, fills[count++ % fills.length], Color.BLACK, 2);
+            }
+        }
+        assertEquals(count, batch.size());
+        assertEquals(fills.length, batch.groupCount());
+    }
+
+    @Test
+    void TestOverlapKeepsOrder() {
+        DrawBatch batch = new DrawBatch().clear(SIZE, SIZE);
+        // red, green, red on one spot cannot be drawn as red, red, green
+        square(batch, 100, 100, Color.RED, null, 1);
+        square(batch, 110, 110, Color.GREEN, null, 1);
+        square(batch, 120, 120, Color.RED, null, 1);
+        assertEquals(3, batch.groupCount());
+
+        // far away red joins the latest red group, a stroke that reaches over does not
+        square(batch, 600, 600, Color.RED, null, 1);
+        assertEquals(3, batch.groupCount());
+        square(batch, 145, 145, Color.GREEN, Color.BLACK, 80);
+        assertEquals(4, batch.groupCount());
+
+        // two of one style that overlap are not filled as one path
+        batch.clear(SIZE, SIZE);
+        square(batch, 100, 100, Color.RED, null, 1);
+        square(batch, 110, 110, Color.RED, null, 1);
+        assertEquals(2, batch.groupCount());
+    }
+
+    @Test
+    void TestObjectIsABarrier() {
+        DrawBatch batch = new DrawBatch().clear(SIZE, SIZE);
+        square(batch, 100, 100, Color.RED, null, 1);
+        new FpsCounter(10, 20).draw(batch);
+        square(batch, 600, 600, Color.RED, null, 1);
+        assertEquals(3, batch.groupCount());
+
+        batch.clear(SIZE, SIZE);
+        assertEquals(0, batch.size());
+        // outside the canvas and without fill or stroke
+        square(batch, -500, -500, Color.RED, null, 1);
+        square(batch, 5000, 100, null, null, 1);
+        assertEquals(1, batch.size());
+    }
+
+    /**
+     * a 20 by 20 square
+     */
+    private void square(DrawBatch batch, double x, double y, Color fill, Color stroke, double width) {
+        batch.polygon(new double[]{x, x + 20, x + 20, x}, new double[]{y, y, y + 20, y + 20}, 4, fill, stroke,
+                width);
+    }
+}
@@ -0,0 +1,89 @@
+package test;
+
+import org.junit.jupiter.api.Test;
+import raycast.animator.LightMotion;
+import raycast.engine.FixedStepClock;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author leon Apr 7 2019
+ *
+ * {@link FixedStepClock} has to step with the same time step on the calling thread and on its own, faster than
+ * real time when asked, and {@link LightMotion} has to reach a still target in the same simulated time whatever
+ * the step.
+ */
+class FixedStepClockTest {
+
+    @Test
+    void TestAdvance() {
+        double[] simulated = new double[1];
+        FixedStepClock clock = new FixedStepClock(50, dt -> simulated[0] += dt);
+        assertEquals(1, clock.alpha(System.nanoTime()));
+        clock.advance(100);
+        assertEquals(100, clock.getTicks());
+        assertEquals(2, simulated[0], 0.000001);
+        assertEquals(0, clock.alpha(0));
+        assertEquals(1, clock.alpha(Long.MAX_VALUE / 2));
+    }
+
+    @Test
+    void TestRunsOnItsOwnThread() throws InterruptedException {
+        AtomicInteger steps = new AtomicInteger();
+        Thread test = Thread.currentThread();
+        FixedStepClock clock = new FixedStepClock(100, dt -> {
+            assertNotSame(test, Thread.currentThread());
+            steps.incrementAndGet();
+        });
+        clock.setSpeed(Double.POSITIVE_INFINITY).start();
+        Thread.sleep(200);
+        clock.stop();
+        assertFalse(clock.isRunning());
+        int unpaced = steps.get();
+        // 200 ms at 100 steps per second would be 20 steps
+        assertTrue(unpaced > 100, unpaced + " steps");
+        assertEquals(unpaced, clock.getTicks());
+        Thread.sleep(50);
+        assertEquals(unpaced, steps.get(), "stepped after stop");
+
+        steps.set(0);
+        clock.setSpeed(1).start();
+        Thread.sleep(300);
+        clock.stop();
+        // paced, about 30 steps give or take a busy machine
+        assertTrue(steps.get() > 5 && steps.get() < 60, steps.get() + " steps");
+        assertThrows(IllegalArgumentException.class, () -> clock.setSpeed(0));
+    }
+
+    @Test
+    void TestLightMotionIndependentOfRate() {
+        double[] slow = follow(30), fast = follow(240);
+        assertEquals(slow[0], fast[0], 0.5);
+        assertEquals(slow[1], fast[1], 0.5);
+
+        // long enough to arrive exactly, a still light is the same every frame
+        LightMotion light = new LightMotion(0.02);
+        FixedStepClock clock = new FixedStepClock(120, dt -> light.step(300, 200, dt));
+        clock.advance(120);
+        double[] position = new double[2];
+        light.position(0.3, position);
+        assertEquals(300, position[0]);
+        assertEquals(200, position[1]);
+    }
+
+    /**
+     * move a light 100 simulated milliseconds towards a target after starting 200 pixels from it
+     */
+    private double[] follow(double rate) {
+        LightMotion light = new LightMotion(0.05);
+        light.step(0, 0, 1 / rate);
+        FixedStepClock clock = new FixedStepClock(rate, dt -> light.step(200, 100, dt));
+        clock.advance((int) Math.round(rate / 10));
+        double[] position = new double[2];
+        light.position(1, position);
+        assertTrue(position[0] > 0 && position[0] < 200);
+        return position;
+    }
+}
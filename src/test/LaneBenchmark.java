@@ -0,0 +1,76 @@
+package test;
+
+import raycast.engine.LaneCaster;
+import raycast.engine.SegmentBuffer;
+import raycast.entity.geometry.PolyShape;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * @author leon Mar 28 2019
+ *
+ * edge tests per second of {@link LaneCaster} on the vector kernel against the scalar kernel, on one thread.
+ * not a test, run it with {@code --add-modules jdk.incubator.vector} and the number of shapes and rays as
+ * arguments, for example {@code 2000 3600}. without the module only the scalar kernel is timed.
+ */
+public class LaneBenchmark {
+
+    private static final double SIZE = 1000;
+    private static final int LIGHTS = 5;
+    private static final long RUN_NANOS = 1_000_000_000L;
+
+    public static void main(String[] args) {
+        int shapeCount = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int rays = args.length > 1 ? Integer.parseInt(args[1]) : 3600;
+
+        Random random = new Random(2803);
+        List<PolyShape> shapes = new ArrayList<>();
+        for (int i = 0; i < shapeCount; i++) {
+            shapes.add(new PolyShape().randomize(random,
+                    random.nextDouble() * SIZE, random.nextDouble() * SIZE, 30, 3, 7));
+        }
+        SegmentBuffer buffer = new SegmentBuffer();
+        buffer.update(shapes, 0, SIZE, SIZE);
+
+        double[] dirX = new double[rays], dirY = new double[rays];
+        for (int i = 0; i < rays; i++) {
+            dirX[i] = Math.cos(i * 2 * Math.PI / rays);
+            dirY[i] = Math.sin(i * 2 * Math.PI / rays);
+        }
+        double[] lightX = new double[LIGHTS], lightY = new double[LIGHTS];
+        for (int i = 0; i < LIGHTS; i++) {
+            lightX[i] = random.nextDouble() * SIZE;
+            lightY[i] = random.nextDouble() * SIZE;
+        }
+
+        System.out.printf("%d shapes, %d edges, %d rays%n", shapeCount, buffer.size(), rays);
+        System.out.printf("%-24s %14s%n", "kernel", "Mtests/s");
+        double[] hitX = new double[rays], hitY = new double[rays], hitT = new double[rays];
+        int[] hitSegment = new int[rays];
+        LaneCaster[] casters = LaneCaster.isVectorAvailable()
+                ? new LaneCaster[]{new LaneCaster(false), new LaneCaster()}
+                : new LaneCaster[]{new LaneCaster(false)};
+        for (LaneCaster caster : casters) {
+            caster.update(buffer);
+            // warm up so the kernel is compiled before it is timed
+            for (int i = 0; i < 3; i++) {
+                caster.castFan(lightX[i % LIGHTS], lightY[i % LIGHTS], dirX, dirY, 0, rays,
+                        hitX, hitY, hitT, hitSegment);
+            }
+            long fans = 0, nanos = 0;
+            for (int l = 0; l < LIGHTS; l++) {
+                long start = System.nanoTime(), now = start;
+                while (now - start < RUN_NANOS / LIGHTS) {
+                    caster.castFan(lightX[l], lightY[l], dirX, dirY, 0, rays, hitX, hitY, hitT, hitSegment);
+                    fans++;
+                    now = System.nanoTime();
+                }
+                nanos += now - start;
+            }
+            double tests = (double) fans * rays * buffer.size();
+            System.out.printf("%-24s %14.1f%n", caster, tests / nanos * 1000);
+        }
+    }
+}
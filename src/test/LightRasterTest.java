@@ -0,0 +1,123 @@
+package test;
+
+import javafx.scene.input.MouseButton;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.paint.Color;
+import org.junit.jupiter.api.Test;
+import raycast.CanvasMap;
+import raycast.animator.RayCastAnimator;
+import raycast.engine.CastMode;
+import raycast.entity.geometry.PolyShape;
+import raycast.render.LightRaster;
+import raycast.render.SoftwareRenderer;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author leon Apr 9 2019
+ *
+ * {@link LightRaster} has to fill the same pixels whatever the number of threads, clear what the last area
+ * covered, fade the light with distance, and show the same scene as the polygon fill where nothing fades.
+ */
+class LightRasterTest {
+
+    private static final double[] SQUARE_X = {100, 180, 180, 100}, SQUARE_Y = {20, 20, 220, 220};
+
+    @Test
+    void TestBandsMatchOneThread() {
+        ForkJoinPool one = new ForkJoinPool(1), many = new ForkJoinPool(4);
+        try {
+            // a star of many edges over many bands
+            int points = 400;
+            double[] x = new double[points], y = new double[points];
+            for (int i = 0; i < points; i++) {
+                double angle = 2 * Math.PI * i / points, radius = i % 2 == 0 ? 140 : 60;
+                x[i] = 160 + radius * Math.cos(angle);
+                y[i] = 150 + radius * Math.sin(angle);
+            }
+            LightRaster serial = new LightRaster(Color.WHITE, 100), parallel = new LightRaster(Color.WHITE, 100);
+            // the light on the center of a pixel
+            serial.rasterize(320, 300, x, y, points, 160.5, 150.5, one);
+            parallel.rasterize(320, 300, x, y, points, 160.5, 150.5, many);
+            assertArrayEquals(serial.pixels(), parallel.pixels());
+            assertEquals(0xFFFFFFFF, serial.pixel(160, 150));
+        } finally {
+            one.shutdown();
+            many.shutdown();
+        }
+    }
+
+    @Test
+    void TestClearsLastAreaAndFades() {
+        LightRaster raster = new LightRaster(Color.WHITE, Double.POSITIVE_INFINITY);
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        raster.rasterize(300, 250, SQUARE_X, SQUARE_Y, 4, 140, 120, pool);
+        assertEquals(80 * 200, lit(raster));
+
+        // moved right, the rows stay the same and the old columns are cleared
+        double[] moved = {200, 280, 280, 200};
+        raster.rasterize(300, 250, moved, SQUARE_Y, 4, 240, 120, pool);
+        assertEquals(80 * 200, lit(raster));
+        assertEquals(0, raster.pixel(140, 120));
+        assertEquals(0xFFFFFFFF, raster.pixel(240, 120));
+
+        // half as bright at the falloff distance
+        raster.setFalloff(40).rasterize(300, 250, moved, SQUARE_Y, 4, 240, 60, pool);
+        assertEquals(255, raster.pixel(240, 60) >>> 24, 1);
+        assertEquals(127, raster.pixel(240, 100) >>> 24, 3);
+        assertTrue((raster.pixel(240, 200) >>> 24) < 127);
+        assertEquals(0, raster.pixel(240, 230));
+    }
+
+    @Test
+    void TestSameSceneAsPolygon() {
+        CanvasMap map = new CanvasMap();
+        map.getCanvas().setWidth(400);
+        map.getCanvas().setHeight(300);
+        map.shapes().add(new PolyShape().setPoints(200, 100, 260, 100, 260, 160, 200, 160)
+                .setWidth(2).setStroke(Color.DARKRED).setFill(Color.RED));
+        MouseEvent moved = new MouseEvent(MouseEvent.MOUSE_MOVED, 50, 130, 50, 130, MouseButton.NONE, 0, false,
+                false, false, false, false, false, false, false, false, false, null);
+
+        RayCastAnimator polygon = new RayCastAnimator(2).setMode(CastMode.VERTEX);
+        polygon.setCanvas(map);
+        polygon.mouseMoved(moved);
+        SoftwareRenderer expected = new SoftwareRenderer(400, 300);
+        polygon.render(expected, 0);
+
+        map.pixelLightProperty().set(true);
+        RayCastAnimator pixels = new RayCastAnimator(2).setMode(CastMode.VERTEX);
+        pixels.setCanvas(map);
+        pixels.mouseMoved(moved);
+        SoftwareRenderer actual = new SoftwareRenderer(400, 300);
+        pixels.render(actual, 0);
+
+        // bright near the light and dimmer away from it, the same everywhere else
+        assertEquals(expected.pixel(50, 130) & 0xFF, actual.pixel(50, 130) & 0xFF, 1);
+        assertNotEquals(expected.pixel(390, 290), actual.pixel(390, 290));
+        int different = 0;
+        for (int y = 0; y < 300; y++) {
+            for (int x = 0; x < 400; x++) {
+                boolean same = expected.pixel(x, y) == actual.pixel(x, y) || expected.pixel(x, y) == 0xFFFFFFE0;
+                if (!same) {
+                    different++;
+                }
+            }
+        }
+        assertEquals(0, different);
+        assertEquals(expected.pixel(350, 130), actual.pixel(350, 130));
+        assertEquals(expected.pixel(230, 130), actual.pixel(230, 130));
+    }
+
+    private static int lit(LightRaster raster) {
+        int count = 0;
+        for (int pixel : raster.pixels()) {
+            if (pixel != 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
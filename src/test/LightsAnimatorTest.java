@@ -0,0 +1,177 @@
+package test;
+
+import javafx.scene.input.MouseButton;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.paint.Color;
+import org.junit.jupiter.api.Test;
+import raycast.CanvasMap;
+import raycast.animator.LightsAnimator;
+import raycast.entity.Light;
+import raycast.entity.geometry.PolyShape;
+import raycast.render.LightBuffer;
+import raycast.render.ScanConverter;
+import raycast.render.SoftwareRenderer;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author leon Apr 10 2019
+ *
+ * {@link LightBuffer} has to add up overlapping lights over the ambient color, and {@link LightsAnimator} has to
+ * sweep only the shapes a light reaches, skip lights that did not move, cast the shadows of every light, soften
+ * them by sampling the disc of a light and cut the samples when frames are over the budget.
+ */
+class LightsAnimatorTest {
+
+    /**
+     * gray of the ambient light of {@link LightsAnimator}
+     */
+    private static final int AMBIENT = 38;
+
+    @Test
+    void TestLightsAddUp() {
+        ScanConverter square = new ScanConverter();
+        square.addPolygon(new double[]{0, 200, 200, 0}, new double[]{0, 0, 200, 200}, 4);
+        double[] lights = {
+                80, 100, 100, 0.5, 0, 0,
+                120, 100, 100, 0, 0, 0.5};
+        LightBuffer buffer = new LightBuffer(Color.BLACK);
+        ForkJoinPool one = new ForkJoinPool(1);
+        try {
+            buffer.composite(200, 200, lights, new ScanConverter[]{square, square}, 1, one);
+            int red = buffer.pixel(100, 100);
+            assertEquals(0xFF000000, red & 0xFF00FFFF);
+            assertTrue((red >> 16 & 0xFF) > 0);
+
+            buffer.composite(200, 200, lights, new ScanConverter[]{square, square}, 2, one);
+            int both = buffer.pixel(100, 100);
+            assertEquals(red & 0xFFFF0000, both & 0xFFFF0000);
+            // the pixel center is half a pixel closer to the blue light
+            assertEquals(red >> 16 & 0xFF, both & 0xFF, 1);
+            // nothing past the radius, and nothing where the light went away
+            assertEquals(0xFF000000, buffer.pixel(199, 199));
+            buffer.composite(200, 200, lights, new ScanConverter[]{square, square}, 0, one);
+            assertEquals(0xFF000000, buffer.pixel(100, 100));
+        } finally {
+            one.shutdown();
+        }
+    }
+
+    @Test
+    void TestOnlyReachedShapesAreSwept() {
+        CanvasMap map = newMap();
+        map.lights().add(new Light(50, 50, 40, Color.RED));
+        LightsAnimator animator = new LightsAnimator(2);
+        animator.setCanvas(map);
+        // the mouse light is off the canvas and not swept at all
+        animator.mouseMoved(move(-400, -400));
+        animator.render(new SoftwareRenderer(400, 300), 0);
+        assertEquals(4, animator.getSweptEdges());
+
+        // lights that did not move are not swept again
+        animator.render(new SoftwareRenderer(400, 300), 1);
+        assertEquals(0, animator.getSweptEdges());
+
+        // the square is inside the reach of the light now
+        map.lights().get(0).setPosition(230, 250).setRadius(160);
+        animator.render(new SoftwareRenderer(400, 300), 2);
+        assertEquals(8, animator.getSweptEdges());
+    }
+
+    @Test
+    void TestEveryLightCastsShadows() {
+        CanvasMap map = newMap();
+        map.lights().add(new Light(300, 130, 150, Color.WHITE));
+        LightsAnimator animator = new LightsAnimator(2);
+        animator.setCanvas(map);
+        animator.mouseMoved(move(100, 130));
+        SoftwareRenderer renderer = new SoftwareRenderer(400, 300);
+        animator.render(renderer, 0);
+
+        // behind the square from the mouse and lit by the other light
+        assertTrue(green(renderer.pixel(290, 130)) > AMBIENT);
+        assertTrue(green(renderer.pixel(170, 130)) > AMBIENT);
+
+        // in the shadow of both
+        map.lights().get(0).setPosition(100, 60).setRadius(300);
+        animator.render(renderer, 1);
+        assertEquals(0xFF000000 | AMBIENT * 0x010101, renderer.pixel(290, 130));
+        assertTrue(green(renderer.pixel(290, 40)) > AMBIENT);
+    }
+
+    @Test
+    void TestSoftShadowsFade() {
+        CanvasMap map = newMap();
+        map.lights().add(new Light(100, 130, 400, Color.WHITE).setSize(30));
+        LightsAnimator hard = new LightsAnimator(2).setBudget(Double.POSITIVE_INFINITY);
+        LightsAnimator soft = new LightsAnimator(2).setSamples(16).setBudget(Double.POSITIVE_INFINITY);
+        SoftwareRenderer hardImage = new SoftwareRenderer(400, 300), softImage = new SoftwareRenderer(400, 300);
+        for (LightsAnimator animator : new LightsAnimator[]{hard, soft}) {
+            animator.setCanvas(map);
+            animator.mouseMoved(move(-1000, -1000));
+        }
+        hard.render(hardImage, 0);
+        soft.render(softImage, 0);
+
+        // the corner at 200, 100 hides the center of the light on 330, 61 and below
+        assertEquals(AMBIENT, green(hardImage.pixel(330, 70)));
+        assertTrue(green(hardImage.pixel(330, 52)) > AMBIENT + 20);
+        int edge = green(softImage.pixel(330, 61));
+        assertTrue(edge > AMBIENT + 10 && edge < green(hardImage.pixel(330, 52)) - 10);
+        // the whole disc is hidden in the middle of the shadow
+        assertEquals(AMBIENT, green(softImage.pixel(330, 130)));
+
+        // a light that did not move is not sampled again
+        soft.render(softImage, 1);
+        assertEquals(0, soft.getSweptEdges());
+    }
+
+    @Test
+    void TestBudgetCutsSamples() {
+        CanvasMap map = newMap();
+        LightsAnimator animator = new LightsAnimator(2).setSamples(16).setBudget(0.000001);
+        animator.setCanvas(map);
+        animator.mouseMoved(move(100, 130));
+        animator.render(new SoftwareRenderer(400, 300), 0);
+        assertEquals(1, animator.getActiveSamples());
+
+        // samples grow back one per frame that sweeps, a sample already swept is kept
+        animator.setBudget(Double.POSITIVE_INFINITY);
+        animator.mouseMoved(move(110, 130));
+        animator.render(new SoftwareRenderer(400, 300), 1);
+        assertEquals(2, animator.getActiveSamples());
+        // the first sample moves off the center and the second is new
+        animator.render(new SoftwareRenderer(400, 300), 2);
+        int two = animator.getSweptEdges();
+        assertEquals(3, animator.getActiveSamples());
+        animator.render(new SoftwareRenderer(400, 300), 3);
+        assertEquals(two / 2, animator.getSweptEdges());
+        assertEquals(4, animator.getActiveSamples());
+
+        // the knob caps the samples
+        animator.setSamples(2);
+        animator.render(new SoftwareRenderer(400, 300), 4);
+        assertEquals(2, animator.getActiveSamples());
+        assertEquals(0, animator.getSweptEdges());
+    }
+
+    private static CanvasMap newMap() {
+        CanvasMap map = new CanvasMap();
+        map.getCanvas().setWidth(400);
+        map.getCanvas().setHeight(300);
+        map.shapes().add(new PolyShape().setPoints(200, 100, 260, 100, 260, 160, 200, 160)
+                .setWidth(2).setStroke(Color.DARKRED).setFill(Color.RED));
+        return map;
+    }
+
+    private static MouseEvent move(double x, double y) {
+        return new MouseEvent(MouseEvent.MOUSE_MOVED, x, y, x, y, MouseButton.NONE, 0, false, false, false, false,
+                false, false, false, false, false, false, null);
+    }
+
+    private static int green(int argb) {
+        return argb >> 8 & 0xFF;
+    }
+}
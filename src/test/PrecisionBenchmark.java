@@ -0,0 +1,92 @@
+package test;
+
+import raycast.engine.BruteForceCaster;
+import raycast.engine.Precision;
+import raycast.engine.SegmentBuffer;
+import raycast.entity.geometry.PolyShape;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * @author leon Mar 29 2019
+ *
+ * throughput and error of every {@link Precision} of {@link BruteForceCaster} against {@link Precision#DOUBLE}.
+ * not a test, run it with the number of shapes and rays as arguments, for example {@code 2000 3600}.
+ * each mode is warmed up first and then timed for about a second per light.
+ */
+public class PrecisionBenchmark {
+
+    private static final double SIZE = 1000;
+    private static final int LIGHTS = 5;
+    private static final long RUN_NANOS = 1_000_000_000L;
+
+    public static void main(String[] args) {
+        int shapeCount = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int rays = args.length > 1 ? Integer.parseInt(args[1]) : 3600;
+
+        Random random = new Random(2903);
+        List<PolyShape> shapes = new ArrayList<>();
+        for (int i = 0; i < shapeCount; i++) {
+            shapes.add(new PolyShape().randomize(random,
+                    random.nextDouble() * SIZE, random.nextDouble() * SIZE, 30, 3, 7));
+        }
+        SegmentBuffer buffer = new SegmentBuffer();
+        buffer.update(shapes, 0, SIZE, SIZE);
+
+        double[] dirX = new double[rays], dirY = new double[rays];
+        for (int i = 0; i < rays; i++) {
+            dirX[i] = Math.cos(i * 2 * Math.PI / rays);
+            dirY[i] = Math.sin(i * 2 * Math.PI / rays);
+        }
+        double[] lightX = new double[LIGHTS], lightY = new double[LIGHTS];
+        for (int i = 0; i < LIGHTS; i++) {
+            lightX[i] = random.nextDouble() * SIZE;
+            lightY[i] = random.nextDouble() * SIZE;
+        }
+
+        // reference hits of the double path for every light
+        BruteForceCaster reference = new BruteForceCaster();
+        reference.update(buffer);
+        double[][] refX = new double[LIGHTS][rays], refY = new double[LIGHTS][rays];
+        for (int l = 0; l < LIGHTS; l++) {
+            reference.castFan(lightX[l], lightY[l], dirX, dirY, 0, rays, refX[l], refY[l],
+                    new double[rays], new int[rays]);
+        }
+
+        System.out.printf("%d shapes, %d edges, %d rays%n", shapeCount, buffer.size(), rays);
+        System.out.printf("%-8s %14s %12s %12s %10s%n", "mode", "Mtests/s", "mean err", "max err", "> 0.5px");
+        double[] hitX = new double[rays], hitY = new double[rays], hitT = new double[rays];
+        int[] hitSegment = new int[rays];
+        for (Precision precision : Precision.values()) {
+            BruteForceCaster caster = new BruteForceCaster().setPrecision(precision);
+            caster.update(buffer);
+            caster.castFan(lightX[0], lightY[0], dirX, dirY, 0, rays, hitX, hitY, hitT, hitSegment);
+
+            long fans = 0, nanos = 0;
+            double sum = 0, max = 0;
+            int off = 0;
+            for (int l = 0; l < LIGHTS; l++) {
+                long start = System.nanoTime(), now = start;
+                while (now - start < RUN_NANOS / LIGHTS) {
+                    caster.castFan(lightX[l], lightY[l], dirX, dirY, 0, rays, hitX, hitY, hitT, hitSegment);
+                    fans++;
+                    now = System.nanoTime();
+                }
+                nanos += now - start;
+                for (int i = 0; i < rays; i++) {
+                    double error = Math.hypot(hitX[i] - refX[l][i], hitY[i] - refY[l][i]);
+                    sum += error;
+                    max = Math.max(max, error);
+                    if (error > 0.5) {
+                        off++;
+                    }
+                }
+            }
+            double tests = (double) fans * rays * buffer.size();
+            System.out.printf("%-8s %14.1f %12.6f %12.4f %10d%n", precision, tests / nanos * 1000,
+                    sum / (LIGHTS * rays), max, off);
+        }
+    }
+}
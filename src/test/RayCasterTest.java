@@ -0,0 +1,301 @@
+package test;
+
+import javafx.scene.input.MouseButton;
+import javafx.scene.input.MouseEvent;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.junit.jupiter.params.provider.MethodSource;
+import raycast.CanvasMap;
+import raycast.animator.RayCastAnimator;
+import raycast.engine.BoundingVolumeHierarchy;
+import raycast.engine.BruteForceCaster;
+import raycast.engine.CoherentCaster;
+import raycast.engine.LaneCaster;
+import raycast.engine.Precision;
+import raycast.engine.RayCaster;
+import raycast.engine.RayKernel;
+import raycast.engine.SegmentBuffer;
+import raycast.engine.UniformGrid;
+import raycast.entity.geometry.PolyShape;
+import raycast.render.SoftwareRenderer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author leon Mar 25 2019
+ *
+ * every {@link RayCaster} has to find the same closest edge as {@link RayKernel#castFan} testing every edge,
+ * also after shapes moved and the caster only updated part of its structure.
+ */
+class RayCasterTest {
+
+    private static final double SIZE = 800;
+    private static final int RAYS = 720;
+
+    private final Random random = new Random(2503);
+
+    private static Stream<Arguments> casters() {
+        return Stream.of(
+                Arguments.of((Supplier<RayCaster>) UniformGrid::new),
+                Arguments.of((Supplier<RayCaster>) BoundingVolumeHierarchy::new),
+                Arguments.of((Supplier<RayCaster>) LaneCaster::new),
+                Arguments.of((Supplier<RayCaster>) () -> new LaneCaster(false)),
+                Arguments.of((Supplier<RayCaster>) () -> new CoherentCaster(new UniformGrid())),
+                Arguments.of((Supplier<RayCaster>) () -> new CoherentCaster(new BoundingVolumeHierarchy()))
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource("casters")
+    void TestMatchesBruteForce(Supplier<RayCaster> factory) {
+        List<PolyShape> shapes = randomShapes(200);
+        SegmentBuffer buffer = new SegmentBuffer();
+        buffer.update(shapes, 0, SIZE, SIZE);
+        RayCaster caster = factory.get();
+        caster.update(buffer);
+        for (int i = 0; i < 20; i++) {
+            assertSameHits(caster, buffer, random.nextDouble() * SIZE, random.nextDouble() * SIZE);
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("casters")
+    void TestMatchesBruteForceAfterMoves(Supplier<RayCaster> factory) {
+        List<PolyShape> shapes = randomShapes(100);
+        SegmentBuffer buffer = new SegmentBuffer();
+        buffer.update(shapes, 0, SIZE, SIZE);
+        RayCaster caster = factory.get();
+        caster.update(buffer);
+        // only grows when a shape is added, like the mod count of the shape list
+        int listModCount = 0;
+        for (int frame = 0; frame < 20; frame++) {
+            int layout = buffer.getLayoutModCount();
+            // move a few shapes keeping their number of points, so edges keep their indices
+            for (int k = 0; k < 5; k++) {
+                PolyShape shape = shapes.get(random.nextInt(shapes.size()));
+                double[] points = new double[shape.getPointCount() * 2];
+                double dx = random.nextDouble() * 60 - 30, dy = random.nextDouble() * 60 - 30;
+                for (int i = 0; i < shape.getPointCount(); i++) {
+                    points[2 * i] = shape.pX(i) + dx;
+                    points[2 * i + 1] = shape.pY(i) + dy;
+                }
+                shape.setPoints(points);
+            }
+            boolean added = frame % 5 == 4;
+            if (added) {
+                // and sometimes change the layout, which rebuilds
+                shapes.add(new PolyShape().randomize(random,
+                        random.nextDouble() * SIZE, random.nextDouble() * SIZE, 40, 3, 7));
+                listModCount++;
+            }
+            buffer.update(shapes, listModCount, SIZE, SIZE);
+            // the frames without a new shape have to take the path that only moves edges
+            assertEquals(added, buffer.getLayoutModCount() != layout, "frame " + frame);
+            caster.update(buffer);
+            assertSameHits(caster, buffer, random.nextDouble() * SIZE, random.nextDouble() * SIZE);
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("casters")
+    void TestLightOutsideCanvas(Supplier<RayCaster> factory) {
+        SegmentBuffer buffer = new SegmentBuffer();
+        buffer.update(randomShapes(50), 0, SIZE, SIZE);
+        RayCaster caster = factory.get();
+        caster.update(buffer);
+        assertSameHits(caster, buffer, -50, SIZE / 2);
+        assertSameHits(caster, buffer, SIZE + 10, SIZE + 10);
+    }
+
+    /**
+     * the vector kernel is used exactly when its module is there, and the scalar kernel when asked for.
+     */
+    @Test
+    void TestLaneCasterFallsBack() {
+        boolean present = ModuleLayer.boot().findModule(LaneCaster.VECTOR_MODULE).isPresent();
+        assertEquals(present, LaneCaster.isVectorAvailable());
+        assertEquals(present, new LaneCaster().isVector());
+        assertFalse(new LaneCaster(false).isVector());
+    }
+
+    /**
+     * both paths of {@link LaneCaster} on a scene that does not fill the last step of lanes, and again after
+     * it shrank so the old edges past the end must not be hit.
+     */
+    @Test
+    void TestLaneCasterPadding() {
+        SegmentBuffer buffer = new SegmentBuffer();
+        List<PolyShape> shapes = randomShapes(60);
+        buffer.update(shapes, 0, SIZE, SIZE);
+        RayCaster vector = new LaneCaster(), scalar = new LaneCaster(false);
+        for (int size = 60; size > 0; size -= 13) {
+            buffer.update(shapes.subList(0, size), size, SIZE, SIZE);
+            vector.update(buffer);
+            scalar.update(buffer);
+            assertSameHits(vector, buffer, random.nextDouble() * SIZE, random.nextDouble() * SIZE);
+            assertSameHits(scalar, buffer, random.nextDouble() * SIZE, random.nextDouble() * SIZE);
+        }
+    }
+
+    /**
+     * float and fixed point round the edges and rays, so every hit has to lie on the ray and on the edge the
+     * double path hits, within a fraction of a pixel. only a ray passing that close to a corner may go to the
+     * other side of it and hit something else.
+     */
+    @ParameterizedTest
+    @EnumSource(value = Precision.class, names = {"FLOAT", "FIXED"})
+    void TestReducedPrecisionCloseToDouble(Precision precision) {
+        SegmentBuffer buffer = new SegmentBuffer();
+        buffer.update(randomShapes(200), 0, SIZE, SIZE);
+        RayCaster exact = new BruteForceCaster();
+        RayCaster reduced = new BruteForceCaster().setPrecision(precision);
+        exact.update(buffer);
+        reduced.update(buffer);
+        double tolerance = precision == Precision.FLOAT ? 0.001 : 0.01;
+        double[] segments = buffer.segments();
+
+        double[] dirX = new double[RAYS], dirY = new double[RAYS];
+        for (int i = 0; i < RAYS; i++) {
+            dirX[i] = Math.cos(i * 2 * Math.PI / RAYS);
+            dirY[i] = Math.sin(i * 2 * Math.PI / RAYS);
+        }
+        double[] x1 = new double[RAYS], y1 = new double[RAYS], t1 = new double[RAYS];
+        double[] x2 = new double[RAYS], y2 = new double[RAYS], t2 = new double[RAYS];
+        int[] s1 = new int[RAYS], s2 = new int[RAYS];
+        for (int light = 0; light < 10; light++) {
+            double ox = random.nextDouble() * SIZE, oy = random.nextDouble() * SIZE;
+            exact.castFan(ox, oy, dirX, dirY, 0, RAYS, x1, y1, t1, s1);
+            reduced.castFan(ox, oy, dirX, dirY, 0, RAYS, x2, y2, t2, s2);
+            for (int i = 0; i < RAYS; i++) {
+                double off = Math.max(rayDistance(ox, oy, dirX[i], dirY[i], x2[i], y2[i]),
+                        edgeDistance(segments, s1[i], x2[i], y2[i]));
+                if (off > tolerance) {
+                    String ray = precision + " light (" + ox + "," + oy + ") ray " + i + " off by " + off;
+                    assertTrue(passesCorner(ox, oy, dirX[i], dirY[i], segments, s1[i], tolerance)
+                            || passesCorner(ox, oy, dirX[i], dirY[i], segments, s2[i], tolerance), ray);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return distance of a point to the line of a ray with a unit direction
+     */
+    private static double rayDistance(double ox, double oy, double dx, double dy, double x, double y) {
+        return Math.abs(dx * (y - oy) - dy * (x - ox));
+    }
+
+    /**
+     * @return distance of a point to an edge of the buffer
+     */
+    private static double edgeDistance(double[] segments, int edge, double x, double y) {
+        int i = edge * RayKernel.SEGMENT_STRIDE;
+        double sx = segments[i + 2], sy = segments[i + 3];
+        double t = ((x - segments[i]) * sx + (y - segments[i + 1]) * sy) / (sx * sx + sy * sy);
+        t = Math.max(0, Math.min(1, t));
+        return Math.hypot(x - segments[i] - t * sx, y - segments[i + 1] - t * sy);
+    }
+
+    private static boolean passesCorner(double ox, double oy, double dx, double dy, double[] segments, int edge,
+                                        double tolerance) {
+        int i = edge * RayKernel.SEGMENT_STRIDE;
+        return rayDistance(ox, oy, dx, dy, segments[i], segments[i + 1]) <= tolerance
+                || rayDistance(ox, oy, dx, dy, segments[i] + segments[i + 2], segments[i + 1] + segments[i + 3])
+                <= tolerance;
+    }
+
+    /**
+     * {@link Precision#FIXED} refuses coordinates it can not multiply exactly instead of overflowing.
+     */
+    @Test
+    void TestFixedRangeChecked() {
+        SegmentBuffer buffer = new SegmentBuffer();
+        List<PolyShape> shapes = new ArrayList<>();
+        shapes.add(new PolyShape().setPoints(10, 10, BruteForceCaster.FIXED_RANGE + 1, 10, 10, 20));
+        buffer.update(shapes, 0, SIZE, SIZE);
+        RayCaster caster = new BruteForceCaster().setPrecision(Precision.FIXED);
+        assertThrows(IllegalArgumentException.class, () -> caster.update(buffer));
+
+        buffer.update(randomShapes(10), 0, SIZE, SIZE);
+        caster.update(buffer);
+        double[] dir = {1}, none = {0}, hit = new double[1];
+        assertThrows(IllegalArgumentException.class, () -> caster.castFan(-BruteForceCaster.FIXED_RANGE * 2, 0,
+                dir, none, 0, 1, hit, hit, hit, new int[1]));
+    }
+
+    /**
+     * an animator on a {@link Precision#FIXED} caster casts a scene beyond the range in double precision instead
+     * of failing every frame, and says so.
+     */
+    @Test
+    void TestFixedFallsBackToDouble() {
+        CanvasMap map = new CanvasMap();
+        map.getCanvas().setWidth(200);
+        map.getCanvas().setHeight(200);
+        map.shapes().add(new PolyShape().setPoints(50, 50, BruteForceCaster.FIXED_RANGE * 2, 60, 50, 70));
+        MouseEvent move = new MouseEvent(MouseEvent.MOUSE_MOVED, 100, 150, 100, 150, MouseButton.NONE, 0, false,
+                false, false, false, false, false, false, false, false, false, null);
+
+        RayCastAnimator reference = new RayCastAnimator(2).setCaster(new BruteForceCaster());
+        reference.setCanvas(map);
+        reference.mouseMoved(move);
+        SoftwareRenderer expected = new SoftwareRenderer(200, 200);
+        reference.render(expected, 0);
+
+        BruteForceCaster fixed = new BruteForceCaster().setPrecision(Precision.FIXED);
+        List<String> told = new ArrayList<>();
+        RayCastAnimator animator = new RayCastAnimator(2).setCaster(fixed).setStatusListener(told::add);
+        animator.setCanvas(map);
+        animator.mouseMoved(move);
+        assertNull(animator.getStatus());
+        SoftwareRenderer actual = new SoftwareRenderer(200, 200);
+        animator.render(actual, 0);
+
+        assertEquals(Precision.DOUBLE, fixed.getPrecision());
+        assertNotNull(animator.getStatus());
+        assertEquals(List.of(animator.getStatus()), told);
+        assertArrayEquals(expected.pixels(), actual.pixels());
+        assertNull(reference.getStatus());
+    }
+
+    private void assertSameHits(RayCaster caster, SegmentBuffer buffer, double ox, double oy) {
+        double[] dirX = new double[RAYS], dirY = new double[RAYS];
+        for (int i = 0; i < RAYS; i++) {
+            double angle = random.nextDouble() * 2 * Math.PI;
+            dirX[i] = Math.cos(angle);
+            dirY[i] = Math.sin(angle);
+        }
+        double[] expectedX = new double[RAYS], expectedY = new double[RAYS], expectedT = new double[RAYS];
+        int[] expectedSegment = new int[RAYS];
+        RayKernel.castFan(ox, oy, dirX, dirY, 0, RAYS, buffer.segments(), buffer.size(),
+                expectedX, expectedY, expectedT, expectedSegment);
+
+        double[] hitX = new double[RAYS], hitY = new double[RAYS], hitT = new double[RAYS];
+        int[] hitSegment = new int[RAYS];
+        caster.castFan(ox, oy, dirX, dirY, 0, RAYS, hitX, hitY, hitT, hitSegment);
+
+        for (int i = 0; i < RAYS; i++) {
+            String ray = caster + " light (" + ox + "," + oy + ") ray " + i;
+            assertEquals(expectedT[i], hitT[i], ray);
+            assertEquals(expectedSegment[i], hitSegment[i], ray);
+        }
+    }
+
+    private List<PolyShape> randomShapes(int count) {
+        List<PolyShape> shapes = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            shapes.add(new PolyShape().randomize(random,
+                    random.nextDouble() * SIZE, random.nextDouble() * SIZE, 40, 3, 7));
+        }
+        return shapes;
+    }
+
+}
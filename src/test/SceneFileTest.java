@@ -0,0 +1,192 @@
+package test;
+
+import javafx.scene.paint.Color;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import raycast.CanvasMap;
+import raycast.animator.StaticShapes;
+import raycast.engine.RayKernel;
+import raycast.engine.ShapeStore;
+import raycast.entity.geometry.PolyShape;
+import raycast.io.SceneFile;
+import raycast.render.SoftwareRenderer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author leon Mar 31 2019
+ *
+ * shapes written to a {@link SceneFile} have to come back with the same points, bounds and style, and the
+ * mapped {@link ShapeStore} has to cast like {@link RayKernel} on the original shapes. a scene shown on a
+ * {@link CanvasMap} is drawn from the mapping with the style of every shape until it is edited. files that are
+ * not scene files, or whose offsets do not fit their vertices, are refused on open.
+ */
+class SceneFileTest {
+
+    private static final double SIZE = 800;
+    private static final int RAYS = 360;
+
+    private final Random random = new Random(3103);
+    private Path path;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        path = Files.createTempFile("scene", ".rcs");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        Files.deleteIfExists(path);
+    }
+
+    @Test
+    void TestRoundTrip() throws IOException {
+        List<PolyShape> shapes = randomShapes(150);
+        shapes.get(0).setFill(null).setStroke(Color.rgb(10, 20, 30, 0.4)).setWidth(2.5);
+        SceneFile.write(path, shapes);
+
+        SceneFile scene = SceneFile.open(path);
+        assertEquals(shapes.size(), scene.shapeCount());
+        assertEquals(RayKernel.segmentCount(shapes), scene.vertexCount());
+        List<PolyShape> loaded = scene.toShapes();
+        for (int s = 0; s < shapes.size(); s++) {
+            PolyShape shape = shapes.get(s), copy = loaded.get(s);
+            assertEquals(shape.getPointCount(), copy.getPointCount());
+            for (int i = 0; i < shape.getPointCount(); i++) {
+                assertEquals(shape.pX(i), copy.pX(i));
+                assertEquals(shape.pY(i), copy.pY(i));
+            }
+            assertEquals(shape.getBounds().x(), scene.store().bound(s, 0), 0.000001);
+            assertEquals(shape.getBounds().hPos(), scene.store().bound(s, 3), 0.000001);
+            assertEquals(shape.getFill(), copy.getFill());
+            assertEquals(shape.getWidth(), copy.getWidth(), 0.0001);
+        }
+        assertNull(loaded.get(0).getFill());
+        assertEquals(Color.rgb(10, 20, 30, 0.4), loaded.get(0).getStroke());
+    }
+
+    @Test
+    void TestTransparentBlackIsAColor() throws IOException {
+        List<PolyShape> shapes = new ArrayList<>();
+        shapes.add(new PolyShape().setPoints(0, 0, 10, 0, 10, 10).setFill(Color.TRANSPARENT).setStroke(null));
+        shapes.add(new PolyShape().setPoints(0, 0, 10, 0, 10, 10).setFill(null).setStroke(Color.TRANSPARENT));
+        SceneFile.write(path, shapes);
+
+        SceneFile scene = SceneFile.open(path);
+        assertEquals(Color.TRANSPARENT, scene.getFill(0));
+        assertNull(scene.getStroke(0));
+        assertNull(scene.getFill(1));
+        assertEquals(Color.TRANSPARENT, scene.getStroke(1));
+    }
+
+    @Test
+    void TestCastInPlace() throws IOException {
+        List<PolyShape> shapes = randomShapes(200);
+        SceneFile.write(path, shapes);
+        ShapeStore store = SceneFile.open(path).store();
+        double[] segments = new double[RayKernel.segmentCount(shapes) * RayKernel.SEGMENT_STRIDE];
+        int count = RayKernel.packSegments(shapes, segments);
+
+        double[] dirX = new double[RAYS], dirY = new double[RAYS];
+        for (int i = 0; i < RAYS; i++) {
+            dirX[i] = Math.cos(i * 2 * Math.PI / RAYS);
+            dirY[i] = Math.sin(i * 2 * Math.PI / RAYS);
+        }
+        double[] x1 = new double[RAYS], y1 = new double[RAYS], t1 = new double[RAYS];
+        double[] x2 = new double[RAYS], y2 = new double[RAYS], t2 = new double[RAYS];
+        int[] s1 = new int[RAYS], s2 = new int[RAYS];
+        for (int light = 0; light < 5; light++) {
+            double ox = random.nextDouble() * SIZE, oy = random.nextDouble() * SIZE;
+            RayKernel.castFan(ox, oy, dirX, dirY, 0, RAYS, segments, count, x1, y1, t1, s1);
+            store.castFan(ox, oy, dirX, dirY, 0, RAYS, x2, y2, t2, s2);
+            for (int i = 0; i < RAYS; i++) {
+                assertEquals(t1[i], t2[i], "ray " + i);
+                assertEquals(s1[i], s2[i], "ray " + i);
+            }
+        }
+    }
+
+    @Test
+    void TestShownInPlaceUntilEdited() throws IOException {
+        List<PolyShape> shapes = new ArrayList<>();
+        shapes.add(new PolyShape().setPoints(20, 20, 80, 20, 80, 80, 20, 80).setFill(Color.rgb(10, 200, 30)));
+        shapes.add(new PolyShape().setPoints(120, 20, 180, 20, 180, 80, 120, 80).setFill(null).setWidth(3));
+        SceneFile.write(path, shapes);
+
+        CanvasMap map = new CanvasMap();
+        map.getCanvas().setWidth(200);
+        map.getCanvas().setHeight(100);
+        SoftwareRenderer empty = render(map);
+        SceneFile scene = SceneFile.open(path);
+        map.setScene(scene);
+        assertSame(scene.store(), map.store());
+        assertTrue(map.shapes().isEmpty());
+        SoftwareRenderer shown = render(map);
+        assertEquals(0xFF0AC81E, shown.pixel(50, 50));
+        // no fill, only the stroke
+        assertEquals(empty.pixel(150, 50), shown.pixel(150, 50));
+        assertEquals(0xFF000000, shown.pixel(120, 50));
+
+        assertEquals(2, map.editScene());
+        assertNull(map.scene());
+        assertNull(map.store());
+        assertEquals(2, map.shapes().size());
+        assertNull(map.shapes().get(1).getFill());
+        assertEquals(0xFF0AC81E, render(map).pixel(50, 50));
+    }
+
+    private static SoftwareRenderer render(CanvasMap map) {
+        StaticShapes animator = new StaticShapes();
+        animator.setCanvas(map);
+        SoftwareRenderer renderer = new SoftwareRenderer(200, 100);
+        animator.render(renderer, 0);
+        return renderer;
+    }
+
+    @Test
+    void TestRejectsOtherFiles() throws IOException {
+        Files.write(path, new byte[100]);
+        assertThrows(IOException.class, () -> SceneFile.open(path));
+
+        SceneFile.write(path, randomShapes(20));
+        byte[] bytes = Files.readAllBytes(path);
+        Files.write(path, Arrays.copyOf(bytes, bytes.length - 8));
+        assertThrows(IOException.class, () -> SceneFile.open(path));
+    }
+
+    @Test
+    void TestRejectsBadOffsets() throws IOException {
+        SceneFile.write(path, randomShapes(20));
+        byte[] bytes = Files.readAllBytes(path);
+        int vertices = SceneFile.open(path).vertexCount();
+        // the offsets follow the 48 byte header, one per shape and the vertex count at the end
+        int[][] corruptions = {{0, 3}, {5, 1}, {12, vertices + 1}, {20, vertices - 1}, {7, -2}};
+        for (int[] corruption : corruptions) {
+            byte[] corrupt = bytes.clone();
+            ByteBuffer.wrap(corrupt).order(ByteOrder.LITTLE_ENDIAN).putInt(48 + corruption[0] * 4, corruption[1]);
+            Files.write(path, corrupt);
+            assertThrows(IOException.class, () -> SceneFile.open(path), "offset " + corruption[0]);
+        }
+    }
+
+    private List<PolyShape> randomShapes(int count) {
+        List<PolyShape> shapes = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            shapes.add(new PolyShape().randomize(random, random.nextDouble() * SIZE, random.nextDouble() * SIZE, 30, 3,
+                    7)
+                    .setFill(Color.rgb(random.nextInt(256), random.nextInt(256), random.nextInt(256))));
+        }
+        return shapes;
+    }
+}
@@ -0,0 +1,147 @@
+package test;
+
+import org.junit.jupiter.api.Test;
+import raycast.entity.geometry.PolyShape;
+import raycast.io.ShapeImporter;
+import raycast.io.ShapeImporter.Format;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author leon Apr 1 2019
+ *
+ * {@link ShapeImporter} has to read every ring of the supported SVG and WKT geometry into a shape with the right
+ * points, across buffer boundaries and in batches no larger than asked for.
+ */
+class ShapeImporterTest {
+
+    @Test
+    void TestWkt() throws IOException {
+        List<PolyShape> shapes = read(Format.WKT, "SRID=4326;POLYGON ((0 0, 10 0, 10 10, 0 10, 0 0), "
+                + "(2 2, 4 2, 4 4, 2 2))\n"
+                + "POINT (5 5) LINESTRING (0 0, 1 1) POLYGON EMPTY\n"
+                + "MULTIPOLYGON Z (((20 20 1, 30 20 1, 25 30 1, 20 20 1)), ((40 40 0, 50 40 0, 45 50 0)))\n"
+                + "GEOMETRYCOLLECTION (POLYGON ((1.5e2 -1 , 160 -1, 155 9)))");
+        assertEquals(5, shapes.size());
+        assertPoints(shapes.get(0), 0, 0, 10, 0, 10, 10, 0, 10);
+        assertPoints(shapes.get(1), 2, 2, 4, 2, 4, 4);
+        assertPoints(shapes.get(2), 20, 20, 30, 20, 25, 30);
+        assertPoints(shapes.get(3), 40, 40, 50, 40, 45, 50);
+        assertPoints(shapes.get(4), 150, -1, 160, -1, 155, 9);
+        assertEquals(150, shapes.get(4).getBounds().x());
+        assertEquals(10, shapes.get(4).getBounds().h());
+    }
+
+    @Test
+    void TestSvg() throws IOException {
+        List<PolyShape> shapes = read(Format.SVG, "<?xml version=\"1.0\"?>\n"
+                + "<svg xmlns=\"http://www.w3.org/2000/svg\"><!-- <path d=\"M 0 0 L 1 1 L 1 0 Z\"/> -->\n"
+                + "<path fill='red' d='M10,10 h20 v20 H10 z m50 0 l10-5 5 10Z'/>\n"
+                + "<g><polygon points=\"0,0 5,0 5,5\" stroke=\"black\"></polygon>\n"
+                + "<rect x=\"100\" y=\"50px\" width=\"20\" height=\"10\"/>\n"
+                + "<polyline points=\"0,0 1,1 2,0\"/>\n"
+                + "<path d=\"M0 0C0 10 10 10 10 0\"/></g></svg>");
+        assertEquals(5, shapes.size());
+        assertPoints(shapes.get(0), 10, 10, 30, 10, 30, 30, 10, 30);
+        assertPoints(shapes.get(1), 60, 10, 70, 5, 75, 15);
+        assertPoints(shapes.get(2), 0, 0, 5, 0, 5, 5);
+        assertPoints(shapes.get(3), 100, 50, 120, 50, 120, 60, 100, 60);
+        // the curve is flattened, the open sub path is closed
+        PolyShape curve = shapes.get(4);
+        assertEquals(1 + ShapeImporter.CURVE_STEPS, curve.getPointCount());
+        assertEquals(10, curve.pX(curve.getPointCount() - 1), 0.000001);
+        assertEquals(7.5, curve.getBounds().h(), 0.000001);
+    }
+
+    /**
+     * a file far larger than the read buffer, produced piece by piece so the test does not hold it either.
+     */
+    @Test
+    void TestLargeInputInBatches() throws IOException {
+        int count = 20000;
+        List<Integer> batches = new ArrayList<>();
+        long[] lastRead = new long[1];
+        ShapeImporter importer = new ShapeImporter().setBatchSize(500)
+                .setProgress((read, total, shapes) -> lastRead[0] = read);
+        int read = importer.read(polygons(count, Format.WKT), -1, Format.WKT, batch -> {
+            batches.add(batch.size());
+            PolyShape first = batch.get(0);
+            assertEquals(4, first.getPointCount());
+        });
+        assertEquals(count, read);
+        assertEquals(count / 500, batches.size());
+        assertTrue(batches.stream().allMatch(size -> size == 500));
+        assertTrue(lastRead[0] > 1 << 20, "read " + lastRead[0] + " bytes");
+    }
+
+    @Test
+    void TestMalformed() {
+        assertThrows(IOException.class, () -> read(Format.WKT, "POLYGON ((0 0, 1 1, 1 x))"));
+        assertThrows(IOException.class, () -> read(Format.SVG, "<path d=\"M 0 0 L 1 1 Y 3 3\"/>"));
+        // close takes no numbers, this used to read the same command forever
+        assertThrows(IOException.class, () -> read(Format.SVG, "<path d=\"M0 0 L10 0 L10 10 Z 5 5\"/>"));
+    }
+
+    /**
+     * cancel from the sink stops both formats after the batch, and the read ends like the input ended there.
+     */
+    @Test
+    void TestCancelStopsRead() throws IOException {
+        for (Format format : Format.values()) {
+            List<PolyShape> shapes = new ArrayList<>();
+            ShapeImporter importer = new ShapeImporter().setBatchSize(100);
+            int read = importer.read(polygons(20000, format), -1, format, batch -> {
+                shapes.addAll(batch);
+                importer.cancel();
+            });
+            assertEquals(100, read, format.toString());
+            assertEquals(100, shapes.size(), format.toString());
+            assertEquals(0, importer.read(polygons(10, format), -1, format, shapes::addAll), format.toString());
+        }
+    }
+
+    private List<PolyShape> read(Format format, String text) throws IOException {
+        List<PolyShape> shapes = new ArrayList<>();
+        new ShapeImporter().setBatchSize(2).read(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)),
+                text.length(), format, shapes::addAll);
+        return shapes;
+    }
+
+    private InputStream polygons(int count, Format format) {
+        return new SequenceInputStream(new Enumeration<InputStream>() {
+            private int i;
+
+            @Override
+            public boolean hasMoreElements() {
+                return i < count;
+            }
+
+            @Override
+            public InputStream nextElement() {
+                double x = i % 1000, y = i++ / 1000;
+                String polygon = format == Format.SVG
+                        ? "<path d=\"M" + x + " " + y + " h0.5 v0.5 h-0.5 Z\"/>\n"
+                        : "POLYGON ((" + x + " " + y + ", " + (x + 0.5) + " " + y + ", " + (x + 0.5) + " " + (y + 0.5)
+                        + ", " + x + " " + (y + 0.5) + ", " + x + " " + y + "))\n";
+                return new ByteArrayInputStream(polygon.getBytes(StandardCharsets.UTF_8));
+            }
+        });
+    }
+
+    private void assertPoints(PolyShape shape, double... points) {
+        assertEquals(points.length / 2, shape.getPointCount());
+        for (int i = 0; i < points.length / 2; i++) {
+            assertEquals(points[2 * i], shape.pX(i), 0.000001, "x of point " + i);
+            assertEquals(points[2 * i + 1], shape.pY(i), 0.000001, "y of point " + i);
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package test;
+
+import org.junit.jupiter.api.Test;
+import raycast.animator.AbstractAnimator;
+import raycast.engine.ShapeQuadtree;
+import raycast.entity.geometry.PolyShape;
+import raycast.entity.geometry.RectangleBounds;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author leon Mar 27 2019
+ *
+ * every query of {@link ShapeQuadtree} has to find exactly the shapes a scan of all bounds finds, also after
+ * shapes were moved, removed and added outside of the initial root.
+ */
+class ShapeQuadtreeTest {
+
+    private static final double SIZE = 800;
+
+    private final Random random = new Random(2703);
+    private final double[] result = new double[4];
+    private final Comparator<PolyShape> identity = Comparator.comparingInt(System::identityHashCode);
+
+    @Test
+    void TestQueriesMatchScan() {
+        List<PolyShape> shapes = new ArrayList<>();
+        ShapeQuadtree tree = new ShapeQuadtree(0, 0, SIZE, SIZE);
+        for (int i = 0; i < 500; i++) {
+            PolyShape shape = new PolyShape().randomize(random,
+                    random.nextDouble() * SIZE, random.nextDouble() * SIZE, 30, 3, 7);
+            shapes.add(shape);
+            tree.insert(shape);
+        }
+        assertEquals(shapes.size(), tree.size());
+        assertQueriesMatch(tree, shapes);
+    }
+
+    @Test
+    void TestMoveRemoveAndGrow() {
+        List<PolyShape> shapes = new ArrayList<>();
+        ShapeQuadtree tree = new ShapeQuadtree(0, 0, SIZE, SIZE);
+        for (int i = 0; i < 300; i++) {
+            PolyShape shape = new PolyShape().randomize(random,
+                    random.nextDouble() * SIZE, random.nextDouble() * SIZE, 30, 3, 7);
+            shapes.add(shape);
+            tree.insert(shape);
+        }
+        for (int round = 0; round < 20; round++) {
+            for (int k = 0; k < 20; k++) {
+                PolyShape shape = shapes.get(random.nextInt(shapes.size()));
+                shape.randomize(random, random.nextDouble() * SIZE, random.nextDouble() * SIZE, 30, 3, 7);
+                if (k % 2 == 0) {
+                    tree.move(shape);
+                }
+            }
+            // the other half is found by its mod count
+            tree.update();
+            for (int k = 0; k < 10; k++) {
+                assertTrue(tree.remove(shapes.remove(random.nextInt(shapes.size()))));
+            }
+            for (int k = 0; k < 10; k++) {
+                // some far outside the initial root
+                double spread = round % 4 == 3 ? SIZE * 8 : SIZE;
+                PolyShape shape = new PolyShape().randomize(random, random.nextDouble() * spread - spread / 4,
+                        random.nextDouble() * spread - spread / 4, 30, 3, 7);
+                shapes.add(shape);
+                tree.insert(shape);
+            }
+            assertEquals(shapes.size(), tree.size());
+            assertQueriesMatch(tree, shapes);
+        }
+        for (PolyShape shape : shapes) {
+            assertTrue(tree.remove(shape));
+        }
+        assertEquals(0, tree.size());
+        assertTrue(tree.query(-SIZE * 8, -SIZE * 8, SIZE * 16, SIZE * 16, new ArrayList<>()).isEmpty());
+    }
+
+    private void assertQueriesMatch(ShapeQuadtree tree, List<PolyShape> shapes) {
+        for (int i = 0; i < 50; i++) {
+            double x = random.nextDouble() * SIZE, y = random.nextDouble() * SIZE;
+            double w = random.nextDouble() * 200, h = random.nextDouble() * 200;
+            List<PolyShape> expected = new ArrayList<>();
+            for (PolyShape shape : shapes) {
+                if (shape.getBounds().intersects(x, y, w, h)) {
+                    expected.add(shape);
+                }
+            }
+            assertSameShapes(expected, tree.query(x, y, w, h, new ArrayList<>()));
+
+            expected.clear();
+            for (PolyShape shape : shapes) {
+                if (shape.getBounds().contains(x, y)) {
+                    expected.add(shape);
+                }
+            }
+            assertSameShapes(expected, tree.query(x, y, new ArrayList<>()));
+
+            double angle = random.nextDouble() * 2 * Math.PI;
+            double dx = Math.cos(angle), dy = Math.sin(angle), maxT = random.nextDouble() * SIZE;
+            expected.clear();
+            for (PolyShape shape : shapes) {
+                if (crosses(shape.getBounds(), x, y, dx, dy, maxT)) {
+                    expected.add(shape);
+                }
+            }
+            assertSameShapes(expected, tree.queryRay(x, y, dx, dy, maxT, new ArrayList<>()));
+        }
+    }
+
+    /**
+     * the part of the ray up to max t crosses the bounds if it starts inside them or meets one of their sides.
+     */
+    private boolean crosses(RectangleBounds b, double ox, double oy, double dx, double dy, double maxT) {
+        if (b.contains(ox, oy)) {
+            return true;
+        }
+        double ex = ox + dx * maxT, ey = oy + dy * maxT;
+        double[] x = {b.x(), b.wPos(), b.wPos(), b.x()};
+        double[] y = {b.y(), b.y(), b.hPos(), b.hPos()};
+        for (int i = 0; i < 4; i++) {
+            int j = (i + 1) % 4;
+            if (AbstractAnimator.getIntersection(ox, oy, ex, ey, x[i], y[i], x[j], y[j], result) && result[2] <= 1) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void assertSameShapes(List<PolyShape> expected, List<PolyShape> actual) {
+        Collections.sort(expected, identity);
+        Collections.sort(actual, identity);
+        assertEquals(expected, actual);
+    }
+
+}
@@ -0,0 +1,174 @@
+package test;
+
+import javafx.scene.input.MouseButton;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.paint.Color;
+import org.junit.jupiter.api.Test;
+import raycast.CanvasMap;
+import raycast.animator.RayCastAnimator;
+import raycast.engine.RayKernel;
+import raycast.engine.ShapeStore;
+import raycast.entity.geometry.PolyShape;
+import raycast.render.SoftwareRenderer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author leon Mar 30 2019
+ *
+ * {@link ShapeStore} has to keep the points it was given across growing, and cast the same hits as
+ * {@link RayKernel} on the same shapes, also when it is cast after the edges of other shapes.
+ */
+class ShapeStoreTest {
+
+    private static final double SIZE = 800;
+    private static final int RAYS = 720;
+
+    private final Random random = new Random(3003);
+
+    @Test
+    void TestGrowKeepsShapes() {
+        // start tiny so the columns grow many times
+        ShapeStore store = new ShapeStore(1, 1);
+        List<PolyShape> shapes = randomShapes(300);
+        for (PolyShape shape : shapes) {
+            store.add(shape);
+        }
+        assertEquals(shapes.size(), store.shapeCount());
+        assertEquals(RayKernel.segmentCount(shapes), store.vertexCount());
+        for (int s = 0; s < shapes.size(); s++) {
+            PolyShape shape = shapes.get(s);
+            assertEquals(shape.getPointCount(), store.offset(s + 1) - store.offset(s));
+            for (int i = 0; i < shape.getPointCount(); i++) {
+                assertEquals(shape.pX(i), store.x(store.offset(s) + i));
+                assertEquals(shape.pY(i), store.y(store.offset(s) + i));
+            }
+            assertEquals(shape.getBounds().x(), store.bound(s, 0), 0.000001);
+            assertEquals(shape.getBounds().hPos(), store.bound(s, 3), 0.000001);
+        }
+    }
+
+    @Test
+    void TestSetRequiresSamePointCount() {
+        ShapeStore store = new ShapeStore();
+        int s = store.add(0, 0, 10, 0, 10, 10);
+        store.set(s, 5, 5, 20, 5, 20, 20);
+        assertEquals(20, store.bound(s, 2));
+        assertThrows(IllegalArgumentException.class, () -> store.set(s, 0, 0, 1, 1));
+    }
+
+    @Test
+    void TestCastMatchesKernel() {
+        List<PolyShape> shapes = randomShapes(200);
+        ShapeStore store = new ShapeStore();
+        for (PolyShape shape : shapes) {
+            store.add(shape);
+        }
+        double[] segments = new double[RayKernel.segmentCount(shapes) * RayKernel.SEGMENT_STRIDE];
+        int count = RayKernel.packSegments(shapes, segments);
+
+        double[] dirX = new double[RAYS], dirY = new double[RAYS];
+        for (int i = 0; i < RAYS; i++) {
+            double angle = random.nextDouble() * 2 * Math.PI;
+            dirX[i] = Math.cos(angle);
+            dirY[i] = Math.sin(angle);
+        }
+        double[] x1 = new double[RAYS], y1 = new double[RAYS], t1 = new double[RAYS];
+        double[] x2 = new double[RAYS], y2 = new double[RAYS], t2 = new double[RAYS];
+        int[] s1 = new int[RAYS], s2 = new int[RAYS];
+        for (int light = 0; light < 10; light++) {
+            double ox = random.nextDouble() * SIZE, oy = random.nextDouble() * SIZE;
+            RayKernel.castFan(ox, oy, dirX, dirY, 0, RAYS, segments, count, x1, y1, t1, s1);
+            store.castFan(ox, oy, dirX, dirY, 0, RAYS, x2, y2, t2, s2);
+            for (int i = 0; i < RAYS; i++) {
+                assertEquals(t1[i], t2[i], "ray " + i);
+                assertEquals(s1[i], s2[i], "ray " + i);
+            }
+        }
+    }
+
+    /**
+     * casting half the shapes with {@link RayKernel} and the other half from the store after it has to give the
+     * hits of all shapes cast together, with the edges of the store following the others.
+     */
+    @Test
+    void TestCastNearerMatchesKernel() {
+        List<PolyShape> shapes = randomShapes(200);
+        List<PolyShape> packed = shapes.subList(0, 100);
+        ShapeStore store = new ShapeStore();
+        for (PolyShape shape : shapes.subList(100, 200)) {
+            store.add(shape);
+        }
+        double[] all = new double[RayKernel.segmentCount(shapes) * RayKernel.SEGMENT_STRIDE];
+        int allCount = RayKernel.packSegments(shapes, all);
+        double[] part = new double[RayKernel.segmentCount(packed) * RayKernel.SEGMENT_STRIDE];
+        int partCount = RayKernel.packSegments(packed, part);
+
+        double[] dirX = new double[RAYS], dirY = new double[RAYS];
+        for (int i = 0; i < RAYS; i++) {
+            double angle = random.nextDouble() * 2 * Math.PI;
+            dirX[i] = Math.cos(angle);
+            dirY[i] = Math.sin(angle);
+        }
+        double[] x1 = new double[RAYS], y1 = new double[RAYS], t1 = new double[RAYS];
+        double[] x2 = new double[RAYS], y2 = new double[RAYS], t2 = new double[RAYS];
+        int[] s1 = new int[RAYS], s2 = new int[RAYS];
+        for (int light = 0; light < 10; light++) {
+            double ox = random.nextDouble() * SIZE, oy = random.nextDouble() * SIZE;
+            RayKernel.castFan(ox, oy, dirX, dirY, 0, RAYS, all, allCount, x1, y1, t1, s1);
+            RayKernel.castFan(ox, oy, dirX, dirY, 0, RAYS, part, partCount, x2, y2, t2, s2);
+            store.castFanNearer(ox, oy, dirX, dirY, 0, RAYS, partCount, x2, y2, t2, s2);
+            for (int i = 0; i < RAYS; i++) {
+                assertEquals(t1[i], t2[i], "ray " + i);
+                assertEquals(s1[i], s2[i], "ray " + i);
+                assertEquals(x1[i], x2[i], "ray " + i);
+            }
+        }
+    }
+
+    /**
+     * a shape in the store of the map is drawn and casts a shadow like the same shape in its list.
+     */
+    @Test
+    void TestAnimatorCastsStore() {
+        double[] square = {200, 100, 260, 100, 260, 160, 200, 160};
+        CanvasMap listed = new CanvasMap();
+        listed.shapes().add(new PolyShape().setPoints(square).setFill(Color.LIGHTCORAL).setStroke(Color.DARKRED));
+        ShapeStore store = new ShapeStore();
+        store.add(square);
+        CanvasMap stored = new CanvasMap().setStore(store);
+
+        SoftwareRenderer expected = render(listed), actual = render(stored);
+        // lit in front of the square and dark behind it
+        assertNotEquals(expected.pixel(150, 130), expected.pixel(350, 130));
+        for (int[] p : new int[][]{{150, 130}, {350, 130}, {230, 130}, {350, 40}, {350, 220}}) {
+            assertEquals(expected.pixel(p[0], p[1]), actual.pixel(p[0], p[1]), p[0] + "," + p[1]);
+        }
+    }
+
+    private static SoftwareRenderer render(CanvasMap map) {
+        map.getCanvas().setWidth(400);
+        map.getCanvas().setHeight(300);
+        map.rayCountProperty().set(2000);
+        RayCastAnimator animator = new RayCastAnimator(2);
+        animator.setCanvas(map);
+        animator.mouseMoved(new MouseEvent(MouseEvent.MOUSE_MOVED, 100, 130, 100, 130, MouseButton.NONE, 0, false,
+                false, false, false, false, false, false, false, false, false, null));
+        SoftwareRenderer renderer = new SoftwareRenderer(400, 300);
+        animator.render(renderer, 0);
+        return renderer;
+    }
+
+    private List<PolyShape> randomShapes(int count) {
+        List<PolyShape> shapes = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            shapes.add(new PolyShape().randomize(random, random.nextDouble() * SIZE, random.nextDouble() * SIZE, 30, 3,
+                    7));
+        }
+        return shapes;
+    }
+}
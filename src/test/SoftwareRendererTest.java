@@ -0,0 +1,138 @@
+package test;
+
+import javafx.scene.input.MouseButton;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.paint.Color;
+import org.junit.jupiter.api.Test;
+import raycast.CanvasMap;
+import raycast.animator.RayCastAnimator;
+import raycast.engine.CastMode;
+import raycast.entity.geometry.PolyShape;
+import raycast.render.SoftwareRenderer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author leon Apr 8 2019
+ *
+ * {@link SoftwareRenderer} has to fill the pixels whose centers are inside a shape with the non zero rule, keep to
+ * the clip, blend source over, and draw a whole frame of an animator without a JavaFX thread.
+ */
+class SoftwareRendererTest {
+
+    private static final int OPAQUE_RED = 0xFFFF0000;
+
+    @Test
+    void TestFillsPixelCenters() {
+        SoftwareRenderer renderer = new SoftwareRenderer(40, 40);
+        renderer.setFill(Color.RED);
+        // centers 10.5 to 29.5 across, 11.5 to 14.5 down
+        renderer.fillRect(10.2, 10.7, 20, 4.4);
+        assertEquals(20 * 4, count(renderer, OPAQUE_RED));
+        assertEquals(0, renderer.pixel(9, 12));
+        assertEquals(OPAQUE_RED, renderer.pixel(10, 11));
+        assertEquals(0, renderer.pixel(10, 10));
+
+        // a triangle covers about half of its box
+        renderer.clearRect(0, 0, 40, 40);
+        renderer.fillPolygon(new double[]{0, 40, 0}, new double[]{0, 0, 40}, 3);
+        assertEquals(800, count(renderer, OPAQUE_RED), 40);
+    }
+
+    @Test
+    void TestNonZeroWinding() {
+        SoftwareRenderer renderer = new SoftwareRenderer(30, 30);
+        renderer.setFill(Color.RED);
+        // both squares clockwise, the inner one is filled twice over and stays filled
+        square(renderer, 0, 0, 30, true);
+        square(renderer, 10, 10, 10, true);
+        renderer.fill();
+        assertEquals(OPAQUE_RED, renderer.pixel(15, 15));
+        assertEquals(30 * 30, count(renderer, OPAQUE_RED));
+
+        // the inner square turning the other way cuts a hole
+        renderer.clearRect(0, 0, 30, 30);
+        renderer.beginPath();
+        square(renderer, 0, 0, 30, true);
+        square(renderer, 10, 10, 10, false);
+        renderer.fill();
+        assertEquals(0, renderer.pixel(15, 15));
+        assertEquals(30 * 30 - 10 * 10, count(renderer, OPAQUE_RED));
+    }
+
+    @Test
+    void TestClipAndBlend() {
+        SoftwareRenderer renderer = new SoftwareRenderer(20, 20);
+        renderer.setFill(Color.BLACK);
+        renderer.fillRect(0, 0, 20, 20);
+        renderer.save();
+        renderer.clipRect(5, 5, 10, 10);
+        renderer.setFill(Color.color(1, 1, 1, 0.5));
+        renderer.fillOval(-100, -100, 300, 300);
+        renderer.restore();
+        assertEquals(0xFF000000, renderer.pixel(4, 10));
+        assertEquals(0xFF000000, renderer.pixel(15, 10));
+        int blended = renderer.pixel(10, 10);
+        assertEquals(0xFF, blended >>> 24);
+        assertEquals(128, blended & 0xFF, 1);
+
+        // restore brought back the black fill and the whole canvas
+        renderer.fillRect(0, 0, 20, 20);
+        assertEquals(0xFF000000, renderer.pixel(10, 10));
+        renderer.setLineWidth(4);
+        renderer.setStroke(Color.RED);
+        renderer.strokeLine(0, 10, 20, 10);
+        assertEquals(20 * 4, count(renderer, OPAQUE_RED));
+    }
+
+    @Test
+    void TestAnimatorWithoutJavaFX() {
+        CanvasMap map = new CanvasMap();
+        map.getCanvas().setWidth(400);
+        map.getCanvas().setHeight(300);
+        map.shapes().add(new PolyShape().setPoints(200, 100, 260, 100, 260, 160, 200, 160)
+                .setWidth(2).setStroke(Color.DARKRED).setFill(Color.RED));
+        // rays at the corners give the exact lit area
+        RayCastAnimator animator = new RayCastAnimator().setMode(CastMode.VERTEX);
+        animator.setCanvas(map);
+        animator.mouseMoved(new MouseEvent(MouseEvent.MOUSE_MOVED, 50, 130, 50, 130, MouseButton.NONE, 0, false,
+                false, false, false, false, false, false, false, false, false, null));
+
+        SoftwareRenderer renderer = new SoftwareRenderer(400, 300);
+        animator.render(renderer, 0);
+        int light = argb(Color.LIGHTYELLOW), shadow = argb(Color.DARKGREY);
+        assertEquals(light, renderer.pixel(50, 250));
+        assertEquals(light, renderer.pixel(350, 20));
+        assertEquals(OPAQUE_RED, renderer.pixel(230, 130));
+        // behind the square seen from the light
+        assertEquals(shadow, renderer.pixel(350, 130));
+    }
+
+    private static void square(SoftwareRenderer renderer, double x, double y, double size, boolean clockwise) {
+        double[] xs = {x, x + size, x + size, x}, ys = {y, y, y + size, y + size};
+        if (!clockwise) {
+            xs = new double[]{x, x, x + size, x + size};
+            ys = new double[]{y, y + size, y + size, y};
+        }
+        renderer.moveTo(xs[0], ys[0]);
+        for (int i = 1; i < 4; i++) {
+            renderer.lineTo(xs[i], ys[i]);
+        }
+        renderer.closePath();
+    }
+
+    private static int count(SoftwareRenderer renderer, int argb) {
+        int count = 0;
+        for (int pixel : renderer.pixels()) {
+            if (pixel == argb) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static int argb(Color color) {
+        return 0xFF000000 | (int) Math.round(color.getRed() * 255) << 16
+                | (int) Math.round(color.getGreen() * 255) << 8 | (int) Math.round(color.getBlue() * 255);
+    }
+}
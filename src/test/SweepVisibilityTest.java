@@ -0,0 +1,149 @@
+package test;
+
+import org.junit.jupiter.api.Test;
+import raycast.animator.AbstractAnimator;
+import raycast.engine.RayKernel;
+import raycast.engine.SegmentSplitter;
+import raycast.engine.SweepVisibility;
+import raycast.engine.VisibilityPolygon;
+import raycast.entity.geometry.PolyShape;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author leon Mar 23 2019
+ *
+ * the sweep polygon is compared with brute force {@link AbstractAnimator#getIntersection} along probe rays.
+ * from the light the polygon is seen once in every direction so the first polygon edge a probe hits must be
+ * as far as the closest segment it hits.
+ */
+class SweepVisibilityTest {
+
+    private static final double SIZE = 800;
+    private static final double TOLERANCE = 0.000001;
+
+    private final Random random = new Random(8288);
+    private final double[] result = new double[4];
+
+    @Test
+    void TestSquareFromCenter() {
+        double[] segments = pack(new ArrayList<>());
+        int count = segments.length / RayKernel.SEGMENT_STRIDE;
+        VisibilityPolygon polygon = new VisibilityPolygon();
+        new SweepVisibility().compute(400, 400, segments, count, polygon);
+        // 4 corners plus the point on the left border where the sweep starts
+        assertEquals(5, polygon.size());
+        assertProbesMatch(400, 400, segments, count, polygon, 360);
+    }
+
+    @Test
+    void TestSingleShape() {
+        List<PolyShape> shapes = new ArrayList<>();
+        shapes.add(new PolyShape().setPoints(90, 120, 150, 50, 300, 80, 200, 250));
+        double[] segments = pack(shapes);
+        int count = segments.length / RayKernel.SEGMENT_STRIDE;
+        VisibilityPolygon polygon = new VisibilityPolygon();
+        SweepVisibility sweep = new SweepVisibility();
+        for (int i = 0; i < 20; i++) {
+            double ox = 10 + random.nextDouble() * (SIZE - 20);
+            double oy = 10 + random.nextDouble() * (SIZE - 20);
+            sweep.compute(ox, oy, segments, count, polygon);
+            assertProbesMatch(ox, oy, segments, count, polygon, 500);
+        }
+    }
+
+    /**
+     * a few hundred overlapping random shapes, so the sweep also has to split crossing segments.
+     */
+    @Test
+    void TestManyOverlappingShapes() {
+        List<PolyShape> shapes = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            shapes.add(new PolyShape().randomize(random,
+                    random.nextDouble() * SIZE, random.nextDouble() * SIZE, 40, 3, 7));
+        }
+        double[] segments = pack(shapes);
+        int count = segments.length / RayKernel.SEGMENT_STRIDE;
+        VisibilityPolygon polygon = new VisibilityPolygon();
+        SweepVisibility sweep = new SweepVisibility();
+        for (int i = 0; i < 20; i++) {
+            double ox = 10 + random.nextDouble() * (SIZE - 20);
+            double oy = 10 + random.nextDouble() * (SIZE - 20);
+            sweep.compute(ox, oy, segments, count, polygon);
+            assertProbesMatch(ox, oy, segments, count, polygon, 500);
+        }
+    }
+
+    /**
+     * edges split once and shared by many lights give the same polygon as splitting for every light.
+     */
+    @Test
+    void TestSharedSplitMatchesCompute() {
+        List<PolyShape> shapes = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            shapes.add(new PolyShape().randomize(random,
+                    random.nextDouble() * SIZE, random.nextDouble() * SIZE, 60, 3, 7));
+        }
+        double[] segments = pack(shapes);
+        int count = segments.length / RayKernel.SEGMENT_STRIDE;
+        SegmentSplitter splitter = new SegmentSplitter();
+        int split = splitter.split(segments, count);
+        assertTrue(split > count);
+        VisibilityPolygon expected = new VisibilityPolygon(), actual = new VisibilityPolygon();
+        SweepVisibility sweep = new SweepVisibility();
+        for (int i = 0; i < 20; i++) {
+            double ox = 10 + random.nextDouble() * (SIZE - 20);
+            double oy = 10 + random.nextDouble() * (SIZE - 20);
+            sweep.compute(ox, oy, segments, count, expected);
+            sweep.computeSplit(ox, oy, splitter.segments(), split, actual);
+            assertEquals(expected.size(), actual.size());
+            assertArrayEquals(Arrays.copyOf(expected.x(), expected.size()), Arrays.copyOf(actual.x(), actual.size()));
+            assertArrayEquals(Arrays.copyOf(expected.y(), expected.size()), Arrays.copyOf(actual.y(), actual.size()));
+        }
+    }
+
+    /**
+     * pack the shapes plus the borders of a {@link #SIZE} square.
+     */
+    private static double[] pack(List<PolyShape> shapes) {
+        int count = RayKernel.segmentCount(shapes);
+        double[] segments = new double[(count + 4) * RayKernel.SEGMENT_STRIDE];
+        int i = RayKernel.packSegments(shapes, segments) * RayKernel.SEGMENT_STRIDE;
+        double[] border = {0, 0, SIZE, 0, SIZE, 0, 0, SIZE, SIZE, SIZE, -SIZE, 0, 0, SIZE, 0, -SIZE};
+        System.arraycopy(border, 0, segments, i, border.length);
+        return segments;
+    }
+
+    private void assertProbesMatch(double ox, double oy, double[] segments, int count,
+                                   VisibilityPolygon polygon, int probes) {
+        for (int p = 0; p < probes; p++) {
+            double angle = random.nextDouble() * 2 * Math.PI;
+            double rex = ox + Math.cos(angle), rey = oy + Math.sin(angle);
+
+            double expected = Double.POSITIVE_INFINITY;
+            for (int s = 0; s < count; s++) {
+                int i = s * RayKernel.SEGMENT_STRIDE;
+                if (AbstractAnimator.getIntersection(ox, oy, rex, rey, segments[i], segments[i + 1],
+                        segments[i] + segments[i + 2], segments[i + 1] + segments[i + 3], result)) {
+                    expected = Math.min(expected, result[2]);
+                }
+            }
+
+            double actual = Double.POSITIVE_INFINITY;
+            double[] x = polygon.x(), y = polygon.y();
+            for (int i = 0; i < polygon.size(); i++) {
+                int j = (i + 1) % polygon.size();
+                if (AbstractAnimator.getIntersection(ox, oy, rex, rey, x[i], y[i], x[j], y[j], result)) {
+                    actual = Math.min(actual, result[2]);
+                }
+            }
+            assertEquals(expected, actual, TOLERANCE * Math.max(1, expected),
+                    "light (" + ox + "," + oy + ") angle " + angle);
+        }
+    }
+}
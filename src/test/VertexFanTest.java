@@ -0,0 +1,190 @@
+package test;
+
+import javafx.scene.input.MouseButton;
+import javafx.scene.input.MouseEvent;
+import org.junit.jupiter.api.Test;
+import raycast.CanvasMap;
+import raycast.animator.AbstractAnimator;
+import raycast.animator.RayCastAnimator;
+import raycast.engine.CastMode;
+import raycast.engine.RayKernel;
+import raycast.engine.VertexFan;
+import raycast.entity.geometry.PolyShape;
+import raycast.render.SoftwareRenderer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author leon Mar 22 2019
+ *
+ * {@link VertexFan} has to aim one ray at every corner and one {@link VertexFan#EPSILON} to each side of it,
+ * sorted by angle, and the closest hits of those rays have to match brute force
+ * {@link AbstractAnimator#getIntersection} and go around the light in order. a ray that slips through a corner
+ * must not break the lit area.
+ */
+class VertexFanTest {
+
+    private static final double SIZE = 800;
+    private static final double TOLERANCE = 0.000001;
+
+    private final double[] result = new double[4];
+
+    @Test
+    void TestThreeRaysPerCorner() {
+        double[] segments = pack(shapes());
+        int count = segments.length / RayKernel.SEGMENT_STRIDE;
+        double ox = 420, oy = 330;
+        double[] angles = new double[count * VertexFan.RAYS_PER_VERTEX];
+        assertEquals(count * VertexFan.RAYS_PER_VERTEX, VertexFan.angles(ox, oy, segments, count, angles));
+
+        for (int i = 1; i < angles.length; i++) {
+            assertTrue(angles[i - 1] <= angles[i], "angle " + i + " out of order");
+        }
+        for (int s = 0; s < count; s++) {
+            int i = s * RayKernel.SEGMENT_STRIDE;
+            double corner = Math.atan2(segments[i + 1] - oy, segments[i] - ox);
+            assertTrue(contains(angles, corner), "no ray at corner " + s);
+            assertTrue(contains(angles, corner - VertexFan.EPSILON), "no ray before corner " + s);
+            assertTrue(contains(angles, corner + VertexFan.EPSILON), "no ray after corner " + s);
+        }
+    }
+
+    @Test
+    void TestFanMatchesGetIntersection() {
+        double[] segments = pack(shapes());
+        int count = segments.length / RayKernel.SEGMENT_STRIDE;
+        int rayCount = count * VertexFan.RAYS_PER_VERTEX;
+        double[] angles = new double[rayCount], dirX = new double[rayCount], dirY = new double[rayCount];
+        double[] hitX = new double[rayCount], hitY = new double[rayCount], hitT = new double[rayCount];
+        int[] hitSegment = new int[rayCount];
+
+        double[][] lights = {{420, 330}, {20, 20}, {700, 500}, {160, 90}};
+        for (double[] light : lights) {
+            double ox = light[0], oy = light[1];
+            VertexFan.angles(ox, oy, segments, count, angles);
+            VertexFan.directions(angles, rayCount, dirX, dirY);
+            RayKernel.castFan(ox, oy, dirX, dirY, 0, rayCount, segments, count, hitX, hitY, hitT, hitSegment);
+
+            double last = Double.NEGATIVE_INFINITY;
+            for (int r = 0; r < rayCount; r++) {
+                if (hitSegment[r] == RayKernel.NO_HIT) {
+                    // only a ray aimed exactly at a corner can pass between its two edges by rounding
+                    assertTrue(aimsAtCorner(ox, oy, angles[r], segments, count), "ray " + r + " hit nothing");
+                    continue;
+                }
+                double expected = closest(ox, oy, dirX[r], dirY[r], segments, count);
+                if (hitT[r] < expected - TOLERANCE * expected) {
+                    // a ray aimed at a corner may stop on it or pass it by rounding, either is the same polygon
+                    assertTrue(isCorner(hitX[r], hitY[r], segments, count), "ray " + r + " stopped short");
+                } else {
+                    assertEquals(expected, hitT[r], TOLERANCE * Math.max(1, expected));
+                }
+                // the hits are the polygon in order around the light
+                double angle = Math.atan2(hitY[r] - oy, hitX[r] - ox);
+                if (Math.abs(angle - angles[r]) > Math.PI) {
+                    angle += angle < angles[r] ? 2 * Math.PI : -2 * Math.PI;
+                }
+                assertEquals(angles[r], angle, TOLERANCE);
+                assertTrue(angle >= last - TOLERANCE);
+                last = angle;
+            }
+        }
+    }
+
+    /**
+     * the ray at the far corner of the canvas passes between the two borders, the lit area must still be drawn.
+     */
+    @Test
+    void TestRayThroughCanvasCorner() {
+        CanvasMap map = new CanvasMap();
+        map.getCanvas().setWidth(SIZE);
+        map.getCanvas().setHeight(SIZE);
+        RayCastAnimator animator = new RayCastAnimator(2).setMode(CastMode.VERTEX);
+        animator.setCanvas(map);
+        animator.mouseMoved(new MouseEvent(MouseEvent.MOUSE_MOVED, 700, 500, 700, 500, MouseButton.NONE, 0, false,
+                false, false, false, false, false, false, false, false, false, null));
+        List<String> bad = new ArrayList<>();
+        SoftwareRenderer renderer = new SoftwareRenderer((int) SIZE, (int) SIZE) {
+            @Override
+            public void fillPolygon(double[] x, double[] y, int count) {
+                for (int i = 0; i < count; i++) {
+                    if (Double.isNaN(x[i]) || Double.isNaN(y[i])) {
+                        bad.add("point " + i + " of " + count);
+                    }
+                }
+                super.fillPolygon(x, y, count);
+            }
+        };
+        animator.render(renderer, 0);
+        assertEquals(new ArrayList<>(), bad);
+        assertEquals(0xFFFFFFE0, renderer.pixel(700, 500));
+    }
+
+    /**
+     * @return distance to the closest segment the ray crosses, not counting a segment only touched at an end
+     */
+    private double closest(double ox, double oy, double dx, double dy, double[] segments, int count) {
+        double best = Double.POSITIVE_INFINITY;
+        for (int s = 0; s < count; s++) {
+            int i = s * RayKernel.SEGMENT_STRIDE;
+            if (AbstractAnimator.getIntersection(ox, oy, ox + dx, oy + dy, segments[i], segments[i + 1],
+                    segments[i] + segments[i + 2], segments[i + 1] + segments[i + 3], result)
+                    && result[3] > TOLERANCE && result[3] < 1 - TOLERANCE) {
+                best = Math.min(best, result[2]);
+            }
+        }
+        return best;
+    }
+
+    private static boolean isCorner(double x, double y, double[] segments, int count) {
+        for (int s = 0; s < count; s++) {
+            int i = s * RayKernel.SEGMENT_STRIDE;
+            if (Math.hypot(x - segments[i], y - segments[i + 1]) < 0.001) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean aimsAtCorner(double ox, double oy, double angle, double[] segments, int count) {
+        for (int s = 0; s < count; s++) {
+            int i = s * RayKernel.SEGMENT_STRIDE;
+            if (Math.atan2(segments[i + 1] - oy, segments[i] - ox) == angle) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean contains(double[] angles, double angle) {
+        for (double a : angles) {
+            if (a == angle) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static List<PolyShape> shapes() {
+        List<PolyShape> shapes = new ArrayList<>();
+        shapes.add(new PolyShape().setPoints(90, 120, 150, 50, 300, 80, 200, 250));
+        shapes.add(new PolyShape().setPoints(500, 100, 620, 140, 560, 260));
+        shapes.add(new PolyShape().setPoints(300, 450, 420, 450, 420, 560, 300, 560));
+        return shapes;
+    }
+
+    /**
+     * pack the shapes plus the borders of a {@link #SIZE} square.
+     */
+    private static double[] pack(List<PolyShape> shapes) {
+        int count = RayKernel.segmentCount(shapes);
+        double[] segments = new double[(count + 4) * RayKernel.SEGMENT_STRIDE];
+        int i = RayKernel.packSegments(shapes, segments) * RayKernel.SEGMENT_STRIDE;
+        double[] border = {0, 0, SIZE, 0, SIZE, 0, 0, SIZE, SIZE, SIZE, -SIZE, 0, 0, SIZE, 0, -SIZE};
+        System.arraycopy(border, 0, segments, i, border.length);
+        return segments;
+    }
+}